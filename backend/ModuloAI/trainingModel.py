@@ -1,7 +1,11 @@
 # coding: utf-8
+import sys
+
 import pandas as pd
 
-FILE_NAME = "../src/main/resources/ModuloAI/data.csv"
+# Il file PMML di destinazione e il dataset possono essere indicati come argomenti
+OUTPUT_FILE = sys.argv[1] if len(sys.argv) > 1 else "RegressoreDurataMeeting.pmml"
+FILE_NAME = sys.argv[2] if len(sys.argv) > 2 else "data.csv"
 
 # Verifica il contenuto del file
 try:
@@ -35,10 +39,11 @@ pipeline = PMMLPipeline([("Regression", model)])
 
 # Tentativo di estrazione del pipeline in un file PMML con gestione delle eccezioni
 try:
-    sklearn2pmml(pipeline, "RegressoreDurataMeeting.pmml", with_repr=True)
+    sklearn2pmml(pipeline, OUTPUT_FILE, with_repr=True)
 except Exception as e:
     print("Si è verificato un errore durante l'estrazione del pipeline in un file PMML:")
     print(e)
+    sys.exit(1)
 
 
 
@@ -0,0 +1,91 @@
+package com.commigo.metaclass.gestionestimaduratameeting.modello;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark che confronta la valutazione del regressore PMML tramite l'evaluator JPMML e tramite
+ * il modello compilato in array. Richiede il file PMML prodotto dallo script di addestramento.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValutazioneModelloBenchmark {
+
+  /** Percorso del file PMML da valutare. */
+  @Param("ModuloAI/RegressoreDurataMeeting.pmml")
+  public String percorso;
+
+  /** Numero di righe valutate per invocazione, come in una stanza. */
+  @Param({"1", "200"})
+  public int righe;
+
+  private ModelloPmml jpmml;
+  private ModelloDurata compilato;
+  private double[][] dati;
+
+  /**
+   * Metodo che carica i due modelli e genera le righe di prova.
+   *
+   * @throws IOException errore nella lettura del modello.
+   */
+  @Setup
+  public void setup() throws IOException {
+    File file = new File(percorso);
+    jpmml = ModelloPmml.carica(file);
+    compilato = CompilatorePmml.carica(file);
+    if (!(compilato instanceof ForestaCasuale)) {
+      throw new IllegalStateException("il modello " + percorso + " non è compilabile");
+    }
+
+    SplittableRandom random = new SplittableRandom(42);
+    dati = new double[righe][ModelloDurata.NUMERO_FEATURE];
+    for (double[] riga : dati) {
+      riga[ModelloDurata.ETA] = random.nextInt(14, 80);
+      riga[ModelloDurata.GENERE] = random.nextInt(3);
+      riga[ModelloDurata.IMMERSION_LEVEL] = random.nextInt(1, 6);
+      riga[ModelloDurata.MOTION_SICKNESS] = random.nextInt(1, 11);
+    }
+  }
+
+  /**
+   * Valutazione tramite l'evaluator JPMML.
+   *
+   * @param blackhole consumatore dei risultati.
+   */
+  @Benchmark
+  public void jpmml(Blackhole blackhole) {
+    for (double[] riga : dati) {
+      blackhole.consume(jpmml.predici(riga));
+    }
+  }
+
+  /**
+   * Valutazione tramite il modello compilato.
+   *
+   * @param blackhole consumatore dei risultati.
+   */
+  @Benchmark
+  public void compilato(Blackhole blackhole) {
+    for (double[] riga : dati) {
+      blackhole.consume(compilato.predici(riga));
+    }
+  }
+}
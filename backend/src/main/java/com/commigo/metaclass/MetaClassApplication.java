@@ -2,9 +2,11 @@ package com.commigo.metaclass;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /** Classe che avvia tutto il sistema. */
 @SpringBootApplication
+@EnableScheduling
 public class MetaClassApplication {
 
   public static void main(String[] args) {
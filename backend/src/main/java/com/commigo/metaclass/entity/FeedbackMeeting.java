@@ -6,8 +6,10 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
@@ -22,6 +24,12 @@ import org.hibernate.annotations.OnDeleteAction;
 
 /** Entità Feedback Meeting. */
 @Entity
+@Table(
+    indexes = {
+      // ricerche per utente e per utente e meeting
+      @Index(name = "idx_feedback_utente_meeting", columnList = "id_utente, idMeeting"),
+      @Index(name = "idx_feedback_meeting", columnList = "idMeeting")
+    })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -47,6 +55,10 @@ public class FeedbackMeeting {
   @Column
   private LocalDateTime dataUltimoAccesso;
 
+  /** Fine del tempo già conteggiato in tempoTotale, null se non è stato conteggiato nulla. */
+  @Column
+  private LocalDateTime fineConteggiata;
+
   /** Chiave Esterna sull' utente. */
   @NotNull(message = "L'utente non può essere nullo")
   @ManyToOne()
@@ -116,4 +128,22 @@ public class FeedbackMeeting {
     this.motionSickness = 1;
     this.immersionLevel = 1;
   }
+
+  /**
+   * Aggiunge a tempoTotale un intervallo di presenza nel meeting, contando una sola volta il tempo
+   * in cui si sovrappone a quelli già aggiunti. Gli intervalli devono essere aggiunti in ordine di
+   * inizio, così basta ricordare la fine del tempo già conteggiato senza rileggere gli intervalli
+   * precedenti.
+   *
+   * @param inizio istante dell'ingresso nel meeting
+   * @param fine istante dell'uscita dal meeting
+   */
+  public void aggiungiIntervallo(LocalDateTime inizio, LocalDateTime fine) {
+    LocalDateTime da =
+        fineConteggiata != null && fineConteggiata.isAfter(inizio) ? fineConteggiata : inizio;
+    if (fine.isAfter(da)) {
+      tempoTotale = tempoTotale.plus(Duration.between(da, fine));
+      fineConteggiata = fine;
+    }
+  }
 }
@@ -0,0 +1,72 @@
+package com.commigo.metaclass.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/** Intervallo di tempo trascorso da un utente in un meeting, dall'ingresso all'uscita. */
+@Entity
+@Table(
+    indexes = {
+      // intervalli di un utente in un meeting
+      @Index(name = "idx_intervallo_utente_meeting", columnList = "id_utente, idMeeting")
+    })
+@Data
+@NoArgsConstructor
+public class IntervalloPresenza {
+
+  /**
+   * Gli id vengono riservati a blocchi, così gli intervalli chiusi da uno scarico delle presenze
+   * vengono inseriti in batch; con IDENTITY Hibernate eseguirebbe un INSERT per intervallo.
+   */
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "intervallo_presenza_seq")
+  @SequenceGenerator(name = "intervallo_presenza_seq", allocationSize = 500)
+  private long id;
+
+  @NotNull(message = "L'utente non può essere nullo")
+  @ManyToOne
+  @JoinColumn(name = "id_utente")
+  @OnDelete(action = OnDeleteAction.CASCADE)
+  private Utente utente;
+
+  @NotNull(message = "Il meeting non può essere nullo")
+  @ManyToOne
+  @JoinColumn(name = "idMeeting")
+  @OnDelete(action = OnDeleteAction.CASCADE)
+  private Meeting meeting;
+
+  @NotNull(message = "L'inizio non può essere nullo")
+  private LocalDateTime inizio;
+
+  @NotNull(message = "La fine non può essere nulla")
+  private LocalDateTime fine;
+
+  /**
+   * Costruttore.
+   *
+   * @param utente Istanza dell'utente.
+   * @param meeting Istanza del meeting.
+   * @param inizio Istante dell'ingresso nel meeting.
+   * @param fine Istante dell'uscita dal meeting.
+   */
+  public IntervalloPresenza(
+      Utente utente, Meeting meeting, LocalDateTime inizio, LocalDateTime fine) {
+    this.utente = utente;
+    this.meeting = meeting;
+    this.inizio = inizio;
+    this.fine = fine;
+  }
+}
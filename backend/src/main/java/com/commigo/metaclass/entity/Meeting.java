@@ -11,8 +11,10 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.NotBlank;
@@ -30,6 +32,11 @@ import org.hibernate.annotations.OnDeleteAction;
 
 /** Entità Meeting. */
 @Entity
+@Table(
+    indexes = {
+      // meeting di una stanza e controllo delle sovrapposizioni nella stessa stanza
+      @Index(name = "idx_meeting_stanza_inizio", columnList = "id_stanza, inizio, fine")
+    })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,30 @@
+package com.commigo.metaclass.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entità Sequenza. Contiene il prossimo valore libero di una sequenza da cui le istanze del
+ * backend riservano blocchi di valori.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Sequenza {
+
+  /** Costante per valore intero di 50. */
+  public static final int MAX_NAME_LENGTH = 50;
+
+  @Id
+  @Column(length = MAX_NAME_LENGTH)
+  private String nome;
+
+  @NotNull(message = "Il prossimo valore non può essere nullo")
+  private long prossimo;
+}
@@ -6,8 +6,10 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
@@ -25,6 +27,15 @@ import org.springframework.transaction.TransactionSystemException;
 
 /** Entità Stanza. */
 @Entity
+@Table(
+    indexes = {
+      // elenchi dei membri di una stanza per stato, ordinati per utente senza leggere la tabella
+      @Index(
+          name = "idx_stato_stanza_flag_utente",
+          columnList = "id_stanza, isBannato, isInAttesa, id_utente"),
+      // stanze di un utente; la chiave primaria (id_stanza, id_utente) copre le altre ricerche
+      @Index(name = "idx_stato_utente", columnList = "id_utente")
+    })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
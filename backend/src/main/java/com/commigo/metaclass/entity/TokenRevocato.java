@@ -0,0 +1,31 @@
+package com.commigo.metaclass.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entità TokenRevocato. Un token revocato (ad esempio dopo il logout) resta nella tabella solo
+ * fino alla sua scadenza naturale.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenRevocato {
+
+  /** Lunghezza dell'hash SHA-256 codificato in base64. */
+  public static final int HASH_LENGTH = 44;
+
+  @Id
+  @Column(length = HASH_LENGTH)
+  private String hash;
+
+  /** Istante di scadenza del token, in millisecondi. */
+  @NotNull(message = "La scadenza non può essere nulla")
+  private long scadenza;
+}
@@ -116,11 +116,10 @@ public class Utente {
   @NotBlank(message = "Il IdMeta non può essere vuoto")
   private String metaId;
 
-  // da valutare la lunghezza della stringa
-  @NotNull(message = "TokenAuth non può essere nulla")
-  @Column(length = MAX_TOKEN_LENGTH, unique = true)
+  // il token non viene più salvato al login: i token sono stateless e le revoche sono in
+  // TokenRevocato
+  @Column(length = MAX_TOKEN_LENGTH)
   @Size(min = MIN_TOKEN_LENGTH, max = MAX_TOKEN_LENGTH, message = "Lunghezza TokenAuth non valida")
-  @NotBlank(message = "Il TokenAuth non può essere vuoto")
   private String tokenAuth;
 
   @Column(updatable = false)
@@ -5,8 +5,10 @@ import jakarta.persistence.CascadeType;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -16,6 +18,11 @@ import org.hibernate.annotations.OnDeleteAction;
 
 /** UtenteInMeeting. */
 @Entity
+@Table(
+    indexes = {
+      // meeting di un utente; la chiave primaria (idMeeting, id_utente) copre le altre ricerche
+      @Index(name = "idx_utente_in_meeting_utente", columnList = "id_utente")
+    })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
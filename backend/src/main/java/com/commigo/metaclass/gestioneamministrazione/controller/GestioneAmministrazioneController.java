@@ -10,7 +10,7 @@ import com.commigo.metaclass.gestioneamministrazione.service.GestioneAmministraz
 import com.commigo.metaclass.gestionestanza.controller.GestioneStanzaControl;
 import com.commigo.metaclass.utility.request.RequestUtils;
 import com.commigo.metaclass.utility.response.types.Response;
-import com.commigo.metaclass.webconfig.JwtTokenUtil;
+import com.commigo.metaclass.webconfig.CacheTokenVerificati;
 import com.commigo.metaclass.webconfig.ValidationToken;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -36,10 +36,10 @@ public class GestioneAmministrazioneController {
 
   @Autowired private ValidationToken validationToken;
 
-  @Autowired private JwtTokenUtil jwtTokenUtil;
-
   @Autowired private GestioneStanzaControl stanzaControl;
 
+  @Autowired private CacheTokenVerificati cacheTokenVerificati;
+
   /**
    * confronta il metaId di un utente con quelli degli admin, per verificare se l'utente è un admin.
    *
@@ -64,7 +64,7 @@ public class GestioneAmministrazioneController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       if (!checkAdmin(metaId)) {
         throw new RuntimeException403("Non sei amministratore");
@@ -95,7 +95,7 @@ public class GestioneAmministrazioneController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       // verifica dei permessi
       if (!checkAdmin(metaId)) {
@@ -130,7 +130,7 @@ public class GestioneAmministrazioneController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       // verifica dei permessi
       if (!checkAdmin(metaId)) {
@@ -172,7 +172,7 @@ public class GestioneAmministrazioneController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       // verifica dei permessi
       if (!checkAdmin(metaId)) {
@@ -208,7 +208,7 @@ public class GestioneAmministrazioneController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       // verifica dei permessi
       if (!checkAdmin(metaId)) {
@@ -246,7 +246,7 @@ public class GestioneAmministrazioneController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       // verifica dei permessi
       if (!checkAdmin(metaId)) {
@@ -288,7 +288,7 @@ public class GestioneAmministrazioneController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       // verifica dei permessi
       if (!checkAdmin(metaId)) {
@@ -320,7 +320,7 @@ public class GestioneAmministrazioneController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       // verifica dei permessi
       if (!checkAdmin(metaId)) {
@@ -352,7 +352,7 @@ public class GestioneAmministrazioneController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       // verifica dei permessi
       if (!checkAdmin(metaId)) {
@@ -365,4 +365,33 @@ public class GestioneAmministrazioneController {
           .body(new Response<>(null, "Errore durante l'operazione: " + re.getMessage()));
     }
   }
+
+  /**
+   * Metodo che permette a un admin di sistema di visualizzare le statistiche della cache dei token
+   * verificati.
+   *
+   * @param request richiesta HTTP fornita dal client
+   * @return hit, miss, hit rate e dimensione della cache
+   */
+  @GetMapping(value = "/statisticheCacheToken")
+  public ResponseEntity<Response<Map<String, Object>>> statisticheCacheToken(
+      HttpServletRequest request) {
+    try {
+      if (!validationToken.isTokenValid(request)) {
+        throw new RuntimeException403("Token non valido");
+      }
+
+      String metaId = validationToken.getMetaId(request);
+
+      if (!checkAdmin(metaId)) {
+        throw new RuntimeException403("Non sei un amministratore");
+      }
+
+      return ResponseEntity.ok(
+          new Response<>(cacheTokenVerificati.getStatistiche(), "Operazione effettuata"));
+    } catch (RuntimeException403 re) {
+      return ResponseEntity.status(403)
+          .body(new Response<>(null, "Errore durante l'operazione: " + re.getMessage()));
+    }
+  }
 }
@@ -4,13 +4,17 @@ import com.commigo.metaclass.entity.Categoria;
 import com.commigo.metaclass.entity.Immagine;
 import com.commigo.metaclass.entity.Scenario;
 import com.commigo.metaclass.entity.Stanza;
-import com.commigo.metaclass.entity.StatoPartecipazione;
 import com.commigo.metaclass.entity.Utente;
 import com.commigo.metaclass.exceptions.RuntimeException403;
 import com.commigo.metaclass.exceptions.ServerRuntimeException;
 import com.commigo.metaclass.gestioneamministrazione.repository.CategoriaRepository;
 import com.commigo.metaclass.gestioneamministrazione.repository.ImmagineRepository;
 import com.commigo.metaclass.gestioneamministrazione.repository.ScenarioRepository;
+import com.commigo.metaclass.gestionestanza.eventi.EventoStanza;
+import com.commigo.metaclass.gestionestanza.eventi.TipoEventoStanza;
+import com.commigo.metaclass.gestionestanza.membri.CacheMembri;
+import com.commigo.metaclass.gestionestanza.membri.StatoMembro;
+import com.commigo.metaclass.gestionestanza.posti.AmmissioneStanze;
 import com.commigo.metaclass.gestionestanza.repository.StanzaRepository;
 import com.commigo.metaclass.gestionestanza.repository.StatoPartecipazioneRepository;
 import com.commigo.metaclass.gestioneutenza.repository.UtenteRepository;
@@ -25,6 +29,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
@@ -56,6 +61,12 @@ public class GestioneAmministrazioneServiceImpl implements GestioneAmministrazio
   @Qualifier("StanzaRepository")
   private StanzaRepository stanzaRepository;
 
+  @Autowired private CacheMembri cacheMembri;
+
+  @Autowired private AmmissioneStanze ammissioneStanze;
+
+  @Autowired private ApplicationEventPublisher eventPublisher;
+
   @Autowired
   @Qualifier("UtenteRepository")
   private UtenteRepository utenteRepository;
@@ -186,22 +197,28 @@ public class GestioneAmministrazioneServiceImpl implements GestioneAmministrazio
       throw new RuntimeException403("stanza non trovata");
     }
 
-    StatoPartecipazione sp;
-    if ((sp = statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(u, s))
-        == null) {
+    StatoMembro stato = cacheMembri.get(s.getId(), u.getMetaId());
+    if (!stato.isMembro()) {
       throw new RuntimeException403("L'utente non ha acceduto alla stanza " + s.getNome());
     }
 
-    if (sp.isInAttesa()) {
+    if (stato.isInAttesa()) {
       throw new RuntimeException403("L'utente ancora viene accettato nella stanza " + s.getNome());
     }
 
-    if (!sp.isBannato()) {
+    if (!stato.isBannato()) {
       throw new RuntimeException403("L'utente non è bannato nella stanza " + s.getNome());
     }
 
-    sp.setBannato(false);
-    statoPartecipazioneRepository.save(sp);
+    if (statoPartecipazioneRepository.aggiornaBannato(s.getId(), List.of(u.getId()), false)
+        == 0) {
+      throw new RuntimeException403("L'utente non ha acceduto alla stanza " + s.getNome());
+    }
+    // l'utente torna ad occupare un posto anche se la stanza è piena
+    ammissioneStanze.occupa(s.getId(), s.getMaxPosti());
+    cacheMembri.invalida(s.getId(), u.getMetaId());
+    eventPublisher.publishEvent(
+        new EventoStanza(TipoEventoStanza.BAN_RIMOSSO, s.getId(), u.getId(), null));
     return true;
   }
 }
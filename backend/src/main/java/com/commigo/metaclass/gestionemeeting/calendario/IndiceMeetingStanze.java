@@ -0,0 +1,293 @@
+package com.commigo.metaclass.gestionemeeting.calendario;
+
+import com.commigo.metaclass.entity.Meeting;
+import com.commigo.metaclass.gestionemeeting.repository.MeetingRepository;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Indice in memoria dei meeting schedulati in ogni stanza, usato per verificare che un meeting non
+ * si accavalli con gli altri della stessa stanza. Il calendario di una stanza viene caricato dal
+ * database alla prima richiesta e poi aggiornato ad ogni schedulazione e modifica.
+ *
+ * <p>I meeting di una stanza sono ordinati per inizio e, poiché l'indice non ne accetta di
+ * sovrapposti, sono ordinati anche per fine: un nuovo intervallo si sovrappone ad un meeting se e
+ * solo se si sovrappone all'ultimo meeting che inizia non dopo la sua fine, quindi ogni verifica
+ * richiede una sola ricerca in tempo O(log n). Come nella query che sostituisce, due meeting in
+ * cui uno inizia esattamente quando finisce l'altro sono considerati sovrapposti.
+ *
+ * <p>Il database può contenere meeting sovrapposti salvati prima che l'indice esistesse. Se il
+ * calendario caricato ne contiene, la verifica confronta l'intervallo con tutti i meeting che
+ * iniziano non dopo la sua fine, finché i meeting sovrapposti non vengono spostati.
+ *
+ * <p>Ogni modifica all'indice fatta durante una transazione viene annullata se la transazione
+ * viene annullata.
+ */
+@Slf4j
+@Component
+public class IndiceMeetingStanze {
+
+  private final MeetingRepository meetingRepository;
+  private final Map<Long, CalendarioStanza> stanze = new ConcurrentHashMap<>();
+
+  /**
+   * Costruttore.
+   *
+   * @param meetingRepository repository dei meeting, usato per caricare i calendari
+   */
+  public IndiceMeetingStanze(MeetingRepository meetingRepository) {
+    this.meetingRepository = meetingRepository;
+  }
+
+  /**
+   * Restituisce i meeting, tra quelli indicati, che si accavallano con i meeting già schedulati
+   * nella stanza o tra loro. Non modifica l'indice.
+   *
+   * @param idStanza id della stanza
+   * @param meeting meeting da verificare
+   * @return posizioni nella lista dei meeting che si accavallano, in ordine crescente
+   */
+  public List<Integer> sovrapposizioni(Long idStanza, List<Meeting> meeting) {
+    CalendarioStanza c = calendario(idStanza);
+    synchronized (c) {
+      return c.sovrapposizioni(meeting);
+    }
+  }
+
+  /**
+   * Inserisce nell'indice dei meeting appena salvati, solo se nessuno di essi si accavalla con i
+   * meeting della stanza o con gli altri inseriti.
+   *
+   * @param idStanza id della stanza
+   * @param meeting meeting salvati, con il loro id
+   * @return posizioni dei meeting che si accavallano; se è vuota i meeting sono stati inseriti
+   */
+  public List<Integer> riservaTutti(Long idStanza, List<Meeting> meeting) {
+    CalendarioStanza c = calendario(idStanza);
+    synchronized (c) {
+      List<Integer> sovrapposti = c.sovrapposizioni(meeting);
+      if (sovrapposti.isEmpty()) {
+        meeting.forEach(m -> c.aggiungi(new Voce(m.getId(), m.getInizio(), m.getFine())));
+        dopoIlRollback(
+            () -> {
+              synchronized (c) {
+                meeting.forEach(m -> c.rimuovi(m.getId()));
+              }
+            });
+      }
+      return sovrapposti;
+    }
+  }
+
+  /**
+   * Sposta nell'indice un meeting già schedulato, solo se il nuovo intervallo non si accavalla con
+   * gli altri meeting della stanza.
+   *
+   * @param idStanza id della stanza
+   * @param idMeeting id del meeting
+   * @param inizio nuovo inizio del meeting
+   * @param fine nuova fine del meeting
+   * @return true se il meeting è stato spostato, false se si accavalla con un altro meeting
+   */
+  public boolean sposta(Long idStanza, Long idMeeting, LocalDateTime inizio, LocalDateTime fine) {
+    CalendarioStanza c = calendario(idStanza);
+    synchronized (c) {
+      if (c.sovrapposto(inizio, fine, idMeeting)) {
+        return false;
+      }
+      Voce precedente = c.rimuovi(idMeeting);
+      c.aggiungi(new Voce(idMeeting, inizio, fine));
+      dopoIlRollback(
+          () -> {
+            synchronized (c) {
+              c.rimuovi(idMeeting);
+              if (precedente != null) {
+                c.aggiungi(precedente);
+              }
+            }
+          });
+      return true;
+    }
+  }
+
+  /**
+   * Rimuove il calendario di una stanza eliminata. Se è in corso una transazione la rimozione
+   * avviene solo dopo il commit.
+   *
+   * @param idStanza id della stanza
+   */
+  public void rimuoviStanza(Long idStanza) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      stanze.remove(idStanza);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            stanze.remove(idStanza);
+          }
+        });
+  }
+
+  /**
+   * Restituisce il calendario di una stanza, caricandolo dal database alla prima richiesta.
+   *
+   * @param idStanza id della stanza
+   * @return calendario della stanza
+   */
+  private CalendarioStanza calendario(Long idStanza) {
+    return stanze.computeIfAbsent(
+        idStanza,
+        id -> {
+          CalendarioStanza c = new CalendarioStanza();
+          for (Object[] riga : meetingRepository.findIntervalliByStanza(id)) {
+            c.aggiungi(new Voce((Long) riga[0], (LocalDateTime) riga[1], (LocalDateTime) riga[2]));
+          }
+          if (!c.disgiunto) {
+            log.warn("La stanza {} contiene meeting sovrapposti", id);
+          }
+          return c;
+        });
+  }
+
+  /**
+   * Esegue un'azione se la transazione in corso viene annullata.
+   *
+   * @param azione azione da eseguire
+   */
+  private static void dopoIlRollback(Runnable azione) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCompletion(int status) {
+            if (status != STATUS_COMMITTED) {
+              azione.run();
+            }
+          }
+        });
+  }
+
+  /** Intervallo occupato da un meeting. */
+  private record Voce(Long idMeeting, LocalDateTime inizio, LocalDateTime fine) {}
+
+  /** Meeting schedulati in una stanza; l'accesso è sincronizzato sull'istanza. */
+  private static final class CalendarioStanza {
+
+    private final NavigableSet<Voce> perInizio =
+        new TreeSet<>(Comparator.comparing(Voce::inizio).thenComparing(Voce::idMeeting));
+    private final Map<Long, Voce> perId = new HashMap<>();
+
+    /** true se nessun meeting del calendario si sovrappone ad un altro. */
+    private boolean disgiunto = true;
+
+    private void aggiungi(Voce v) {
+      rimuovi(v.idMeeting());
+      perInizio.add(v);
+      perId.put(v.idMeeting(), v);
+      // se il calendario era disgiunto basta confrontare il nuovo meeting con i vicini
+      Voce prima = perInizio.lower(v);
+      Voce dopo = perInizio.higher(v);
+      if ((prima != null && !prima.fine().isBefore(v.inizio()))
+          || (dopo != null && !v.fine().isBefore(dopo.inizio()))) {
+        disgiunto = false;
+      }
+    }
+
+    private Voce rimuovi(Long idMeeting) {
+      Voce v = perId.remove(idMeeting);
+      if (v != null) {
+        perInizio.remove(v);
+        if (!disgiunto) {
+          verificaDisgiunto();
+        }
+      }
+      return v;
+    }
+
+    /** Ricalcola se i meeting del calendario sono disgiunti, confrontando quelli consecutivi. */
+    private void verificaDisgiunto() {
+      Voce precedente = null;
+      for (Voce v : perInizio) {
+        if (precedente != null && !precedente.fine().isBefore(v.inizio())) {
+          disgiunto = false;
+          return;
+        }
+        precedente = v;
+      }
+      disgiunto = true;
+    }
+
+    /**
+     * Verifica se un intervallo si accavalla con un meeting della stanza.
+     *
+     * @param inizio inizio dell'intervallo
+     * @param fine fine dell'intervallo
+     * @param escluso id di un meeting da ignorare, null per nessuno
+     * @return true se l'intervallo si accavalla con un meeting
+     */
+    private boolean sovrapposto(LocalDateTime inizio, LocalDateTime fine, Long escluso) {
+      Voce limite = new Voce(Long.MAX_VALUE, fine, fine);
+      if (!disgiunto) {
+        for (Voce v : perInizio.headSet(limite, true)) {
+          if (!v.idMeeting().equals(escluso) && !v.fine().isBefore(inizio)) {
+            return true;
+          }
+        }
+        return false;
+      }
+      // ultimo meeting che inizia non dopo la fine dell'intervallo
+      Voce v = perInizio.floor(limite);
+      if (v != null && v.idMeeting().equals(escluso)) {
+        v = perInizio.lower(v);
+      }
+      return v != null && !v.fine().isBefore(inizio);
+    }
+
+    /**
+     * Restituisce i meeting che si accavallano con il calendario o tra loro.
+     *
+     * @param meeting meeting da verificare
+     * @return posizioni nella lista dei meeting che si accavallano, in ordine crescente
+     */
+    private List<Integer> sovrapposizioni(List<Meeting> meeting) {
+      List<Integer> ordine = new ArrayList<>(meeting.size());
+      for (int i = 0; i < meeting.size(); i++) {
+        ordine.add(i);
+      }
+      ordine.sort(Comparator.comparing((Integer i) -> meeting.get(i).getInizio()));
+
+      TreeSet<Integer> sovrapposti = new TreeSet<>();
+      Integer precedente = null;
+      for (Integer i : ordine) {
+        Meeting m = meeting.get(i);
+        if (sovrapposto(m.getInizio(), m.getFine(), null)) {
+          sovrapposti.add(i);
+        }
+        // tra i nuovi meeting basta confrontare quello che finisce più tardi tra i precedenti
+        if (precedente != null && !meeting.get(precedente).getFine().isBefore(m.getInizio())) {
+          sovrapposti.add(precedente);
+          sovrapposti.add(i);
+        }
+        if (precedente == null || m.getFine().isAfter(meeting.get(precedente).getFine())) {
+          precedente = i;
+        }
+      }
+      return new ArrayList<>(sovrapposti);
+    }
+  }
+}
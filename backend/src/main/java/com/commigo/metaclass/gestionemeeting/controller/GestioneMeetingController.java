@@ -9,7 +9,6 @@ import com.commigo.metaclass.gestionemeeting.service.GestioneMeetingService;
 import com.commigo.metaclass.utility.MapValidator;
 import com.commigo.metaclass.utility.request.RequestUtils;
 import com.commigo.metaclass.utility.response.types.Response;
-import com.commigo.metaclass.webconfig.JwtTokenUtil;
 import com.commigo.metaclass.webconfig.ValidationToken;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -26,6 +25,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /** Gestione meeting. */
@@ -36,8 +36,6 @@ public class GestioneMeetingController {
 
   @Autowired private ValidationToken validationToken;
 
-  @Autowired private JwtTokenUtil jwtTokenUtil;
-
   /**
    * Metodo che permette di gestire la richiesta di schedulazione di un meeting.
    *
@@ -62,7 +60,7 @@ public class GestioneMeetingController {
         throw new RuntimeException403(RequestUtils.errorsRequest(result));
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       meetingService.creaScheduling(m, metaId);
       return ResponseEntity.ok(new Response<>(true, "Meeting schedulato con successo"));
@@ -80,6 +78,55 @@ public class GestioneMeetingController {
     }
   }
 
+  /**
+   * Metodo che permette di gestire la richiesta di schedulazione di una serie di meeting
+   * ricorrenti.
+   *
+   * @param m primo meeting della serie
+   * @param result Parametro che serve per raccogliere gli errori della richiesta
+   * @param ripetizioni numero di meeting da schedulare, compreso il primo
+   * @param intervalloGiorni giorni tra l'inizio di un meeting e quello del successivo
+   * @param request richiesta HTTP fornita dal client
+   * @return la lista dei meeting schedulati ed un messaggio che descrive l'esito dell'operazione
+   */
+  @PostMapping(value = "/schedulingMeetingRicorrente")
+  public ResponseEntity<Response<List<Meeting>>> schedulingMeetingRicorrente(
+      @Valid @RequestBody Meeting m,
+      BindingResult result,
+      @RequestParam int ripetizioni,
+      @RequestParam(defaultValue = "7") int intervalloGiorni,
+      HttpServletRequest request) {
+    try {
+
+      // controllo token
+      if (!validationToken.isTokenValid(request)) {
+        throw new RuntimeException403("Token non valido");
+      }
+
+      // controlla se i parametri passati al meeting sono corretti
+      if (result.hasErrors()) {
+        throw new RuntimeException403(RequestUtils.errorsRequest(result));
+      }
+
+      String metaId = validationToken.getMetaId(request);
+
+      List<Meeting> serie =
+          meetingService.creaSchedulingRicorrente(m, ripetizioni, intervalloGiorni, metaId);
+      return ResponseEntity.ok(new Response<>(serie, "Meeting schedulati con successo"));
+
+    } catch (RuntimeException403 e) {
+      return ResponseEntity.status(403)
+          .body(
+              new Response<>(
+                  null, "Errore durante la schedulazione dei meeting: " + e.getMessage()));
+    } catch (ServerRuntimeException e) {
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(
+              new Response<>(
+                  null, "Errore durante la schedulazione dei meeting: " + e.getMessage()));
+    }
+  }
+
   /**
    * Metodo che permette di gestire la richiesta di modifica di schedulazione di un meeting.
    *
@@ -102,7 +149,7 @@ public class GestioneMeetingController {
       // validazione della map
       MapValidator.meetingValidate(params);
 
-      if (!meetingService.modificaScheduling(params, id)) {
+      if (!meetingService.modificaScheduling(params, id, validationToken.getMetaId(request))) {
         throw new ServerRuntimeException("modifica non effettuata");
       } else {
         return ResponseEntity.ok(new Response<>(true, "Meeting modificata con successo"));
@@ -139,7 +186,7 @@ public class GestioneMeetingController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       if (meetingService.avviaMeeting(metaId, idMeeting)) {
         return ResponseEntity.ok(new Response<>(true, "Avvio meeting avvenuto con successo"));
@@ -196,7 +243,7 @@ public class GestioneMeetingController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       if (meetingService.accediMeeting(metaId, idMeeting)) {
         return ResponseEntity.ok(new Response<>(true, "Accesso avvenuto con successo"));
@@ -227,7 +274,7 @@ public class GestioneMeetingController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       if (meetingService.terminaMeeting(metaId, idMeeting)) {
         return ResponseEntity.ok(new Response<>(true, "Meeting terminato con successo"));
@@ -259,7 +306,7 @@ public class GestioneMeetingController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       if (meetingService.uscitaMeeting(metaId, idMeeting)) {
         return ResponseEntity.ok(new Response<>(true, "Uscita avvenuta con successo"));
@@ -274,6 +321,64 @@ public class GestioneMeetingController {
     }
   }
 
+  /**
+   * Metodo che permette di gestire il battito con cui un client segnala di essere ancora collegato
+   * ad un meeting. Un utente senza battiti per un certo tempo viene fatto uscire dal meeting.
+   *
+   * @param idMeeting id del meeting a cui il client è collegato
+   * @param request richiesta HTTP fornita dal client
+   * @return un valore booleano che identifica la riuscita dell'operazione ed un messaggio che
+   *     descrive l'esito di essa
+   */
+  @PostMapping(value = "/battitoMeeting/{idMeeting}")
+  public ResponseEntity<Response<Boolean>> battitoMeeting(
+      @PathVariable Long idMeeting, HttpServletRequest request) {
+    try {
+      // controllo token
+      if (!validationToken.isTokenValid(request)) {
+        throw new RuntimeException403("Token non valido");
+      }
+
+      String metaId = validationToken.getMetaId(request);
+
+      return ResponseEntity.ok(
+          new Response<>(meetingService.battitoMeeting(metaId, idMeeting), "Battito ricevuto"));
+
+    } catch (RuntimeException403 e) {
+      return ResponseEntity.status(403).body(new Response<>(false, e.getMessage()));
+    }
+  }
+
+  /**
+   * Metodo che permette di gestire la richiesta di visualizzazione degli utenti presenti in un
+   * meeting avviato.
+   *
+   * @param idMeeting id del meeting di cui si vogliono conoscere i presenti
+   * @param request richiesta HTTP fornita dal client
+   * @return lista degli id degli utenti presenti nel meeting ed un messaggio che descrive l'esito
+   *     dell'operazione
+   */
+  @PostMapping(value = "/visualizzaPresentiMeeting/{idMeeting}")
+  public ResponseEntity<Response<List<Long>>> visualizzaPresentiMeeting(
+      @PathVariable Long idMeeting, HttpServletRequest request) {
+    try {
+      // controllo token
+      if (!validationToken.isTokenValid(request)) {
+        throw new RuntimeException403("Token non valido");
+      }
+
+      String metaId = validationToken.getMetaId(request);
+
+      return ResponseEntity.ok(
+          new Response<>(
+              meetingService.visualizzaPresentiMeeting(metaId, idMeeting),
+              "Utenti presenti nel meeting"));
+
+    } catch (RuntimeException403 e) {
+      return ResponseEntity.status(403).body(new Response<>(null, e.getMessage()));
+    }
+  }
+
   /**
    * Metodo che permette di gestire la richiesta di visualizzazione del questionario.
    *
@@ -291,7 +396,7 @@ public class GestioneMeetingController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
       List<Meeting> meetingToQuest = meetingService.visualizzaQuestionari(metaId);
       return ResponseEntity.ok(
           new Response<>(
@@ -357,7 +462,7 @@ public class GestioneMeetingController {
         throw new RuntimeException403("valore di motionSickness non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       meetingService.compilaQuestionario(value, motionSickness, metaId, idMeeting);
 
@@ -394,7 +499,7 @@ public class GestioneMeetingController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       List<Meeting> meetingToQuest = meetingService.getMeetingPrecedenti(metaId);
       return ResponseEntity.ok(new Response<>(meetingToQuest, "Operazione avvenuta con successo"));
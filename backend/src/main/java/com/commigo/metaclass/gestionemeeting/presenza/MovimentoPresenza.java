@@ -0,0 +1,24 @@
+package com.commigo.metaclass.gestionemeeting.presenza;
+
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/** Ingresso o uscita di un utente da un meeting, in attesa di essere scritto nel database. */
+@Getter
+@AllArgsConstructor
+@ToString
+public class MovimentoPresenza {
+
+  private final Long idMeeting;
+  private final Long idUtente;
+
+  /** true per un ingresso, false per un'uscita. */
+  private final boolean ingresso;
+
+  private final LocalDateTime istante;
+
+  /** Istante dell'ingresso della sessione chiusa da un'uscita, null per un ingresso. */
+  private final LocalDateTime inizioSessione;
+}
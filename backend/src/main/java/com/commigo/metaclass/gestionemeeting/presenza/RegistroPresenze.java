@@ -0,0 +1,378 @@
+package com.commigo.metaclass.gestionemeeting.presenza;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Registro in memoria degli utenti presenti nei meeting avviati. Per ogni meeting mantiene gli id
+ * degli utenti online con l'istante del loro ingresso ed il numero massimo di utenti presenti
+ * contemporaneamente, così le domande su chi è nel meeting non interrogano il database.
+ *
+ * <p>Ogni ingresso ed ogni uscita vengono accodati come {@link MovimentoPresenza}; la {@link
+ * SincronizzazionePresenze} li preleva e li scrive in UtenteInMeeting e FeedbackMeeting in batch.
+ *
+ * <p>I client possono segnalare periodicamente di essere ancora collegati con un battito, che
+ * aggiorna solo l'istante dell'ultimo segnale della sessione. Al primo battito la sessione viene
+ * inserita in una {@link RuotaScadenze}: ad ogni tick quelle senza battiti da più del timeout
+ * vengono fatte uscire insieme, meeting per meeting, come se l'utente avesse lasciato il meeting
+ * all'ultimo battito. Le sessioni dei client che non inviano battiti non scadono e restano aperte
+ * fino all'uscita dal meeting o alla sua terminazione.
+ */
+@Slf4j
+@Component
+public class RegistroPresenze {
+
+  private final Map<Long, PresenzeMeeting> meeting = new ConcurrentHashMap<>();
+  private final Queue<MovimentoPresenza> movimenti = new ConcurrentLinkedQueue<>();
+  private final long timeoutBattito;
+  private final RuotaScadenze<Sessione> scadenze;
+
+  /**
+   * Costruttore.
+   *
+   * @param timeoutBattito millisecondi senza battiti dopo i quali un utente esce dal meeting
+   * @param durataTick millisecondi tra due controlli delle sessioni scadute
+   */
+  public RegistroPresenze(
+      @Value("${meeting.presenze.battito.timeout:30000}") long timeoutBattito,
+      @Value("${meeting.presenze.battito.tick:1000}") long durataTick) {
+    this.timeoutBattito = timeoutBattito;
+    this.scadenze = new RuotaScadenze<>(durataTick, timeoutBattito, System.currentTimeMillis());
+  }
+
+  /**
+   * Registra un meeting avviato, se non è già presente nel registro.
+   *
+   * @param idMeeting id del meeting
+   * @param idStanza id della stanza del meeting
+   */
+  public void avvia(Long idMeeting, Long idStanza) {
+    meeting.computeIfAbsent(idMeeting, id -> new PresenzeMeeting(idStanza));
+  }
+
+  /**
+   * Ripristina la presenza di un utente in un meeting avviato a partire dai dati persistenti,
+   * senza accodare movimenti. Il meeting deve essere già stato registrato con {@link #avvia}.
+   *
+   * @param idMeeting id del meeting
+   * @param idUtente id dell'utente
+   * @param metaId metaId dell'utente
+   * @param ingresso istante dell'ultimo ingresso dell'utente
+   */
+  public void ripristina(Long idMeeting, Long idUtente, String metaId, LocalDateTime ingresso) {
+    PresenzeMeeting p = meeting.get(idMeeting);
+    if (p != null) {
+      aggiungi(p, new Sessione(idMeeting, idUtente, metaId, ingresso));
+    }
+  }
+
+  /**
+   * Registra l'ingresso di un utente in un meeting avviato.
+   *
+   * @param idMeeting id del meeting
+   * @param idUtente id dell'utente
+   * @param metaId metaId dell'utente, usato per riconoscerne i battiti
+   * @return true se l'utente è entrato, false se il meeting non è avviato o l'utente è già
+   *     presente
+   */
+  public boolean entra(Long idMeeting, Long idUtente, String metaId) {
+    PresenzeMeeting p = meeting.get(idMeeting);
+    if (p == null) {
+      return false;
+    }
+    Sessione s = new Sessione(idMeeting, idUtente, metaId, LocalDateTime.now());
+    if (!aggiungi(p, s)) {
+      return false;
+    }
+    movimenti.add(new MovimentoPresenza(idMeeting, idUtente, true, s.ingresso, null));
+    return true;
+  }
+
+  /**
+   * Registra l'uscita di un utente da un meeting.
+   *
+   * @param idMeeting id del meeting
+   * @param idUtente id dell'utente
+   * @return true se l'utente è uscito, false se non era presente nel meeting
+   */
+  public boolean esce(Long idMeeting, Long idUtente) {
+    PresenzeMeeting p = meeting.get(idMeeting);
+    Sessione s = p != null ? p.presenti.get(idUtente) : null;
+    return s != null && rimuovi(p, s, LocalDateTime.now());
+  }
+
+  /**
+   * Fa uscire tutti gli utenti presenti in un meeting, ad esempio alla sua terminazione.
+   *
+   * @param idMeeting id del meeting
+   * @return numero di utenti che erano presenti
+   */
+  public int esconoTutti(Long idMeeting) {
+    PresenzeMeeting p = meeting.get(idMeeting);
+    if (p == null) {
+      return 0;
+    }
+    LocalDateTime ora = LocalDateTime.now();
+    int uscite = 0;
+    for (Sessione s : p.presenti.values()) {
+      if (rimuovi(p, s, ora)) {
+        uscite++;
+      }
+    }
+    return uscite;
+  }
+
+  /**
+   * Registra il battito di un utente presente in un meeting. Il costo è costante e non comporta
+   * scritture sul database; il primo battito di una sessione la inserisce nella ruota delle
+   * scadenze.
+   *
+   * @param idMeeting id del meeting
+   * @param metaId metaId dell'utente
+   * @return true se l'utente è presente nel meeting, false altrimenti
+   */
+  public boolean battito(Long idMeeting, String metaId) {
+    PresenzeMeeting p = meeting.get(idMeeting);
+    Sessione s = p != null ? p.perMetaId.get(metaId) : null;
+    if (s == null) {
+      return false;
+    }
+    s.ultimoBattito = System.currentTimeMillis();
+    if (s.inRuota.compareAndSet(false, true)) {
+      scadenze.aggiungi(s, s.ultimoBattito + timeoutBattito);
+    }
+    return true;
+  }
+
+  /**
+   * Fa avanzare la ruota delle scadenze e fa uscire, raggruppati per meeting, gli utenti senza
+   * battiti da più del timeout. Le sessioni che hanno ricevuto battiti vengono reinserite nella
+   * ruota alla loro nuova scadenza.
+   */
+  @Scheduled(fixedDelayString = "${meeting.presenze.battito.tick:1000}")
+  public void rimuoviSessioniScadute() {
+    long ora = System.currentTimeMillis();
+    Map<Long, List<Sessione>> scadute = new HashMap<>();
+    scadenze.avanza(
+        ora,
+        s -> {
+          PresenzeMeeting p = meeting.get(s.idMeeting);
+          if (p == null || p.presenti.get(s.idUtente) != s) {
+            return; // sessione già chiusa
+          }
+          long scadenza = s.ultimoBattito + timeoutBattito;
+          if (scadenza <= ora) {
+            scadute.computeIfAbsent(s.idMeeting, id -> new ArrayList<>()).add(s);
+          } else {
+            scadenze.aggiungi(s, scadenza);
+          }
+        });
+    scadute.forEach(this::esconoScadute);
+  }
+
+  /**
+   * Fa uscire insieme gli utenti di un meeting le cui sessioni sono scadute. L'uscita viene
+   * registrata all'istante dell'ultimo battito.
+   *
+   * @param idMeeting id del meeting
+   * @param sessioni sessioni scadute
+   */
+  private void esconoScadute(Long idMeeting, List<Sessione> sessioni) {
+    PresenzeMeeting p = meeting.get(idMeeting);
+    if (p == null) {
+      return;
+    }
+    int uscite = 0;
+    for (Sessione s : sessioni) {
+      LocalDateTime ultimoBattito =
+          LocalDateTime.ofInstant(Instant.ofEpochMilli(s.ultimoBattito), ZoneId.systemDefault());
+      if (rimuovi(p, s, ultimoBattito)) {
+        uscite++;
+      }
+    }
+    log.info("Meeting {}: {} utenti usciti per assenza di battiti", idMeeting, uscite);
+  }
+
+  /**
+   * Aggiunge una sessione alle presenze di un meeting. La sessione entra nella ruota delle
+   * scadenze solo al primo battito.
+   *
+   * @param p presenze del meeting
+   * @param s sessione da aggiungere
+   * @return true se la sessione è stata aggiunta, false se l'utente era già presente
+   */
+  private boolean aggiungi(PresenzeMeeting p, Sessione s) {
+    if (p.presenti.putIfAbsent(s.idUtente, s) != null) {
+      return false;
+    }
+    p.perMetaId.put(s.metaId, s);
+    p.picco.accumulateAndGet(p.presenti.size(), Math::max);
+    return true;
+  }
+
+  /**
+   * Rimuove una sessione dalle presenze di un meeting accodandone l'uscita.
+   *
+   * @param p presenze del meeting
+   * @param s sessione da rimuovere
+   * @param istante istante dell'uscita
+   * @return true se la sessione è stata rimossa, false se era già stata chiusa
+   */
+  private boolean rimuovi(PresenzeMeeting p, Sessione s, LocalDateTime istante) {
+    if (!p.presenti.remove(s.idUtente, s)) {
+      return false;
+    }
+    p.perMetaId.remove(s.metaId, s);
+    movimenti.add(new MovimentoPresenza(s.idMeeting, s.idUtente, false, istante, s.ingresso));
+    return true;
+  }
+
+  /**
+   * Rimuove dal registro un meeting terminato. Se è in corso una transazione la rimozione avviene
+   * solo dopo il commit, così un rollback lascia il meeting avviato con i suoi presenti.
+   *
+   * @param idMeeting id del meeting
+   */
+  public void termina(Long idMeeting) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      meeting.remove(idMeeting);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            meeting.remove(idMeeting);
+          }
+        });
+  }
+
+  /**
+   * Metodo che indica se un meeting è avviato.
+   *
+   * @param idMeeting id del meeting
+   * @return true se il meeting è nel registro
+   */
+  public boolean isAvviato(Long idMeeting) {
+    return meeting.containsKey(idMeeting);
+  }
+
+  /**
+   * Metodo che restituisce la stanza di un meeting avviato.
+   *
+   * @param idMeeting id del meeting
+   * @return id della stanza, null se il meeting non è avviato
+   */
+  public Long getIdStanza(Long idMeeting) {
+    PresenzeMeeting p = meeting.get(idMeeting);
+    return p != null ? p.idStanza : null;
+  }
+
+  /**
+   * Metodo che indica se un utente è presente in un meeting.
+   *
+   * @param idMeeting id del meeting
+   * @param idUtente id dell'utente
+   * @return true se l'utente è online nel meeting
+   */
+  public boolean isPresente(Long idMeeting, Long idUtente) {
+    PresenzeMeeting p = meeting.get(idMeeting);
+    return p != null && p.presenti.containsKey(idUtente);
+  }
+
+  /**
+   * Metodo che restituisce gli utenti presenti in un meeting.
+   *
+   * @param idMeeting id del meeting
+   * @return vista non modificabile degli id degli utenti online
+   */
+  public Set<Long> getPresenti(Long idMeeting) {
+    PresenzeMeeting p = meeting.get(idMeeting);
+    return p != null ? Collections.unmodifiableSet(p.presenti.keySet()) : Set.of();
+  }
+
+  /**
+   * Metodo che restituisce il numero di utenti presenti in un meeting.
+   *
+   * @param idMeeting id del meeting
+   * @return numero di utenti online
+   */
+  public int getNumeroPresenti(Long idMeeting) {
+    PresenzeMeeting p = meeting.get(idMeeting);
+    return p != null ? p.presenti.size() : 0;
+  }
+
+  /**
+   * Metodo che restituisce il numero massimo di utenti presenti contemporaneamente in un meeting.
+   *
+   * @param idMeeting id del meeting
+   * @return picco di utenti online dall'avvio del meeting
+   */
+  public int getPicco(Long idMeeting) {
+    PresenzeMeeting p = meeting.get(idMeeting);
+    return p != null ? p.picco.get() : 0;
+  }
+
+  /**
+   * Preleva i movimenti accodati, nell'ordine in cui sono avvenuti.
+   *
+   * @param destinazione lista a cui aggiungere i movimenti prelevati
+   */
+  void preleva(List<MovimentoPresenza> destinazione) {
+    MovimentoPresenza m;
+    while ((m = movimenti.poll()) != null) {
+      destinazione.add(m);
+    }
+  }
+
+  /** Presenze di un meeting avviato. */
+  private static final class PresenzeMeeting {
+
+    private final Long idStanza;
+    private final Map<Long, Sessione> presenti = new ConcurrentHashMap<>();
+    private final Map<String, Sessione> perMetaId = new ConcurrentHashMap<>();
+    private final AtomicInteger picco = new AtomicInteger();
+
+    private PresenzeMeeting(Long idStanza) {
+      this.idStanza = idStanza;
+    }
+  }
+
+  /** Presenza di un utente in un meeting, dall'ingresso all'uscita. */
+  private static final class Sessione {
+
+    private final Long idMeeting;
+    private final Long idUtente;
+    private final String metaId;
+    private final LocalDateTime ingresso;
+    private volatile long ultimoBattito;
+
+    /** true dopo il primo battito, quando la sessione è stata inserita nella ruota. */
+    private final AtomicBoolean inRuota = new AtomicBoolean();
+
+    private Sessione(Long idMeeting, Long idUtente, String metaId, LocalDateTime ingresso) {
+      this.idMeeting = idMeeting;
+      this.idUtente = idUtente;
+      this.metaId = metaId;
+      this.ingresso = ingresso;
+    }
+  }
+}
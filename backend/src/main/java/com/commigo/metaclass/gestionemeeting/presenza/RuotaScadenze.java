@@ -0,0 +1,77 @@
+package com.commigo.metaclass.gestionemeeting.presenza;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Ruota temporale (hashed timing wheel) di scadenze. Il tempo è diviso in tick di durata fissa e
+ * ogni tick corrisponde ad uno slot della ruota; un elemento viene inserito nello slot del tick in
+ * cui scade, con costo costante, e viene restituito quando la ruota raggiunge quel tick.
+ *
+ * <p>La ruota copre un orizzonte limitato: un elemento che scade oltre l'orizzonte viene restituito
+ * in anticipo, quindi chi lo riceve deve verificare la scadenza effettiva ed eventualmente
+ * reinserirlo. Gli inserimenti possono avvenire da più thread, l'avanzamento da uno solo.
+ *
+ * @param <T> tipo degli elementi
+ */
+class RuotaScadenze<T> {
+
+  private final long durataTick;
+  private final List<Queue<T>> slot;
+  private volatile long ultimoTick;
+
+  /**
+   * Costruttore.
+   *
+   * @param durataTick durata di un tick in millisecondi
+   * @param orizzonte intervallo massimo di scadenza coperto dalla ruota, in millisecondi
+   * @param ora istante attuale in millisecondi
+   */
+  RuotaScadenze(long durataTick, long orizzonte, long ora) {
+    this.durataTick = durataTick;
+    int numeroSlot = (int) (orizzonte / durataTick) + 2;
+    this.slot = new ArrayList<>(numeroSlot);
+    for (int i = 0; i < numeroSlot; i++) {
+      slot.add(new ConcurrentLinkedQueue<>());
+    }
+    this.ultimoTick = ora / durataTick;
+  }
+
+  /**
+   * Inserisce un elemento nello slot della sua scadenza. Se il tick è già passato l'elemento viene
+   * restituito al prossimo avanzamento.
+   *
+   * @param elemento elemento da inserire
+   * @param scadenza istante di scadenza in millisecondi
+   */
+  void aggiungi(T elemento, long scadenza) {
+    long corrente = ultimoTick;
+    // l'ultimo slot utilizzabile precede quello del tick corrente, che può essere in svuotamento
+    long tick =
+        Math.min(Math.max(scadenza / durataTick, corrente + 1), corrente + slot.size() - 1);
+    slot.get((int) (tick % slot.size())).add(elemento);
+  }
+
+  /**
+   * Fa avanzare la ruota fino all'istante indicato, restituendo gli elementi degli slot superati.
+   *
+   * @param ora istante attuale in millisecondi
+   * @param azione azione eseguita su ogni elemento restituito
+   */
+  void avanza(long ora, Consumer<T> azione) {
+    long fino = ora / durataTick;
+    while (ultimoTick < fino) {
+      long tick = ultimoTick + 1;
+      // il tick viene pubblicato prima di svuotare lo slot, così i nuovi inserimenti vanno avanti
+      ultimoTick = tick;
+      Queue<T> coda = slot.get((int) (tick % slot.size()));
+      T elemento;
+      while ((elemento = coda.poll()) != null) {
+        azione.accept(elemento);
+      }
+    }
+  }
+}
@@ -0,0 +1,294 @@
+package com.commigo.metaclass.gestionemeeting.presenza;
+
+import com.commigo.metaclass.entity.FeedbackMeeting;
+import com.commigo.metaclass.entity.IntervalloPresenza;
+import com.commigo.metaclass.entity.Meeting;
+import com.commigo.metaclass.entity.Report;
+import com.commigo.metaclass.entity.Utente;
+import com.commigo.metaclass.entity.UtenteInMeeting;
+import com.commigo.metaclass.gestionemeeting.repository.FeedbackMeetingRepository;
+import com.commigo.metaclass.gestionemeeting.repository.IntervalloPresenzaRepository;
+import com.commigo.metaclass.gestionemeeting.repository.MeetingRepository;
+import com.commigo.metaclass.gestionemeeting.repository.ReportRepository;
+import com.commigo.metaclass.gestionemeeting.repository.UtenteInMeetingRepository;
+import com.commigo.metaclass.gestioneutenza.repository.UtenteRepository;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Scrive nel database, in batch e fuori dalle richieste degli utenti, i movimenti accodati dal
+ * {@link RegistroPresenze}, e ricostruisce il registro all'avvio dell'applicazione.
+ *
+ * <p>I movimenti dello stesso utente nello stesso meeting vengono accorpati, così ogni scarico
+ * esegue per meeting al più un UPDATE per stato online, una lettura ed un salvataggio in batch dei
+ * questionari, e l'inserimento delle righe per chi entra per la prima volta. Ogni meeting viene
+ * scritto in una transazione separata, così un meeting i cui movimenti non possono essere scritti
+ * non blocca gli altri; i suoi movimenti vengono riprovati per un numero limitato di scarichi e poi
+ * scartati.
+ *
+ * <p>Ogni uscita aggiunge al registro degli intervalli di presenza la sessione appena chiusa. La
+ * stessa sessione viene aggiunta al tempo totale del questionario, che conta una sola volta il
+ * tempo degli intervalli sovrapposti. Il tempo trascorso fuori dal meeting non viene conteggiato.
+ */
+@Slf4j
+@Component
+public class SincronizzazionePresenze {
+
+  private final RegistroPresenze registroPresenze;
+  private final MeetingRepository meetingRepository;
+  private final UtenteRepository utenteRepository;
+  private final UtenteInMeetingRepository utenteInMeetingRepository;
+  private final FeedbackMeetingRepository feedbackMeetingRepository;
+  private final IntervalloPresenzaRepository intervalloPresenzaRepository;
+  private final ReportRepository reportRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final int maxTentativi;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final List<MovimentoPresenza> sospesi = new ArrayList<>();
+  private final Map<Long, Integer> tentativi = new HashMap<>();
+
+  /**
+   * Costruttore.
+   *
+   * @param registroPresenze registro delle presenze da scaricare
+   * @param meetingRepository repository dei meeting
+   * @param utenteRepository repository degli utenti
+   * @param utenteInMeetingRepository repository degli utenti nei meeting
+   * @param feedbackMeetingRepository repository dei questionari
+   * @param intervalloPresenzaRepository repository degli intervalli di presenza
+   * @param reportRepository repository dei report
+   * @param transactionManager gestore delle transazioni, usato per scaricare in una transazione
+   *     separata da quella del chiamante
+   * @param maxTentativi numero di scarichi falliti dopo i quali i movimenti di un meeting vengono
+   *     scartati
+   */
+  public SincronizzazionePresenze(
+      RegistroPresenze registroPresenze,
+      MeetingRepository meetingRepository,
+      UtenteRepository utenteRepository,
+      UtenteInMeetingRepository utenteInMeetingRepository,
+      FeedbackMeetingRepository feedbackMeetingRepository,
+      IntervalloPresenzaRepository intervalloPresenzaRepository,
+      ReportRepository reportRepository,
+      PlatformTransactionManager transactionManager,
+      @Value("${meeting.presenze.scarico.tentativi:5}") int maxTentativi) {
+    this.registroPresenze = registroPresenze;
+    this.meetingRepository = meetingRepository;
+    this.utenteRepository = utenteRepository;
+    this.utenteInMeetingRepository = utenteInMeetingRepository;
+    this.feedbackMeetingRepository = feedbackMeetingRepository;
+    this.intervalloPresenzaRepository = intervalloPresenzaRepository;
+    this.reportRepository = reportRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setPropagationBehavior(
+        TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.maxTentativi = maxTentativi;
+  }
+
+  /** Ricostruisce il registro con i meeting avviati e gli utenti online salvati nel database. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void ricostruisci() {
+    List<Object[]> avviati = meetingRepository.findIdAvviati();
+    for (Object[] riga : avviati) {
+      registroPresenze.avvia((Long) riga[0], (Long) riga[1]);
+    }
+    int presenti = 0;
+    for (Object[] riga : utenteInMeetingRepository.findPresenzeOnline()) {
+      LocalDateTime ingresso = riga[2] != null ? (LocalDateTime) riga[2] : LocalDateTime.now();
+      registroPresenze.ripristina((Long) riga[0], (Long) riga[1], (String) riga[3], ingresso);
+      presenti++;
+    }
+    log.info(
+        "Registro presenze ricostruito: {} meeting avviati, {} utenti online",
+        avviati.size(),
+        presenti);
+  }
+
+  /**
+   * Scrive nel database i movimenti accodati. Viene eseguito periodicamente e, prima di operazioni
+   * che leggono le presenze dal database, direttamente dal chiamante. Se la scrittura di un meeting
+   * fallisce i suoi movimenti vengono riprovati, nello stesso ordine, agli scarichi successivi;
+   * dopo {@code maxTentativi} fallimenti consecutivi vengono registrati nel log e scartati.
+   */
+  @Scheduled(fixedDelayString = "${meeting.presenze.scarico.intervallo:2000}")
+  public void scarica() {
+    lock.lock();
+    try {
+      List<MovimentoPresenza> batch = new ArrayList<>(sospesi);
+      sospesi.clear();
+      registroPresenze.preleva(batch);
+      if (batch.isEmpty()) {
+        return;
+      }
+      Map<Long, List<MovimentoPresenza>> perMeeting = new LinkedHashMap<>();
+      for (MovimentoPresenza m : batch) {
+        perMeeting.computeIfAbsent(m.getIdMeeting(), id -> new ArrayList<>()).add(m);
+      }
+      perMeeting.forEach(this::scarica);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Scrive in una transazione separata i movimenti di un meeting. Se la scrittura fallisce i
+   * movimenti vengono sospesi per lo scarico successivo oppure, superato il numero di tentativi,
+   * scartati.
+   *
+   * @param idMeeting id del meeting
+   * @param movimentiMeeting movimenti del meeting nell'ordine in cui sono avvenuti
+   */
+  private void scarica(Long idMeeting, List<MovimentoPresenza> movimentiMeeting) {
+    try {
+      Map<Long, Modifica> modifiche = accorpa(movimentiMeeting);
+      transactionTemplate.executeWithoutResult(stato -> applica(idMeeting, modifiche));
+      tentativi.remove(idMeeting);
+    } catch (RuntimeException e) {
+      int fallimenti = tentativi.merge(idMeeting, 1, Integer::sum);
+      if (fallimenti < maxTentativi) {
+        log.warn(
+            "Scrittura di {} movimenti del meeting {} non riuscita (tentativo {} di {})",
+            movimentiMeeting.size(),
+            idMeeting,
+            fallimenti,
+            maxTentativi,
+            e);
+        sospesi.addAll(movimentiMeeting);
+      } else {
+        tentativi.remove(idMeeting);
+        log.error(
+            "Scartati {} movimenti del meeting {} dopo {} tentativi: {}",
+            movimentiMeeting.size(),
+            idMeeting,
+            fallimenti,
+            movimentiMeeting,
+            e);
+      }
+    }
+  }
+
+  /**
+   * Accorpa per utente i movimenti di un meeting.
+   *
+   * @param movimentiMeeting movimenti nell'ordine in cui sono avvenuti
+   * @return modifiche per id dell'utente
+   */
+  private static Map<Long, Modifica> accorpa(List<MovimentoPresenza> movimentiMeeting) {
+    Map<Long, Modifica> modifiche = new LinkedHashMap<>();
+    for (MovimentoPresenza m : movimentiMeeting) {
+      Modifica modifica = modifiche.computeIfAbsent(m.getIdUtente(), id -> new Modifica());
+      modifica.online = m.isIngresso();
+      if (m.isIngresso()) {
+        modifica.ingresso = m.getIstante();
+      } else {
+        modifica.uscite.add(m);
+      }
+    }
+    return modifiche;
+  }
+
+  /**
+   * Scrive nel database le modifiche accorpate delle presenze di un meeting.
+   *
+   * @param idMeeting id del meeting
+   * @param modifiche modifiche per id dell'utente
+   */
+  private void applica(Long idMeeting, Map<Long, Modifica> modifiche) {
+    // un ingresso arrivato dopo la terminazione del meeting non lascia l'utente online
+    if (!registroPresenze.isAvviato(idMeeting)) {
+      modifiche.values().forEach(modifica -> modifica.online = false);
+    }
+    Set<Long> registrati =
+        new HashSet<>(
+            utenteInMeetingRepository.findIdUtentiRegistrati(idMeeting, modifiche.keySet()));
+
+    // utenti entrati per la prima volta: si inseriscono le righe di presenza e questionario
+    List<UtenteInMeeting> nuoviUim = new ArrayList<>();
+    List<FeedbackMeeting> questionari = new ArrayList<>();
+    Meeting meeting = meetingRepository.getReferenceById(idMeeting);
+    Report report = null;
+    for (Map.Entry<Long, Modifica> e : modifiche.entrySet()) {
+      if (registrati.contains(e.getKey())) {
+        continue;
+      }
+      if (report == null) {
+        report = reportRepository.findByMeeting(meeting);
+      }
+      Modifica modifica = e.getValue();
+      Utente utente = utenteRepository.getReferenceById(e.getKey());
+      nuoviUim.add(new UtenteInMeeting(utente, meeting, modifica.online));
+      LocalDateTime ingresso =
+          modifica.ingresso != null ? modifica.ingresso : modifica.uscite.get(0).getIstante();
+      FeedbackMeeting fm =
+          new FeedbackMeeting(utente, meeting, report, Duration.ZERO, ingresso, false);
+      modifica.uscite.forEach(u -> fm.aggiungiIntervallo(u.getInizioSessione(), u.getIstante()));
+      questionari.add(fm);
+    }
+    utenteInMeetingRepository.saveAll(nuoviUim);
+
+    // utenti già registrati: stato online con un UPDATE per valore, questionari in batch
+    List<Long> online = new ArrayList<>();
+    List<Long> offline = new ArrayList<>();
+    modifiche.forEach(
+        (idUtente, modifica) -> {
+          if (registrati.contains(idUtente)) {
+            (modifica.online ? online : offline).add(idUtente);
+          }
+        });
+    if (!online.isEmpty()) {
+      utenteInMeetingRepository.aggiornaOnline(idMeeting, online, true);
+    }
+    if (!offline.isEmpty()) {
+      utenteInMeetingRepository.aggiornaOnline(idMeeting, offline, false);
+    }
+    if (!registrati.isEmpty()) {
+      for (FeedbackMeeting fm :
+          feedbackMeetingRepository.findAllByMeetingAndUtenti(idMeeting, registrati)) {
+        Modifica modifica = modifiche.get(fm.getUtente().getId());
+        if (modifica.ingresso != null) {
+          fm.setDataUltimoAccesso(modifica.ingresso);
+        }
+        modifica.uscite.forEach(u -> fm.aggiungiIntervallo(u.getInizioSessione(), u.getIstante()));
+        questionari.add(fm);
+      }
+    }
+    feedbackMeetingRepository.saveAll(questionari);
+
+    // le sessioni chiuse vengono solo aggiunte al registro degli intervalli, con INSERT in batch
+    List<IntervalloPresenza> intervalli = new ArrayList<>();
+    modifiche.forEach(
+        (idUtente, modifica) -> {
+          Utente utente = utenteRepository.getReferenceById(idUtente);
+          for (MovimentoPresenza u : modifica.uscite) {
+            intervalli.add(
+                new IntervalloPresenza(utente, meeting, u.getInizioSessione(), u.getIstante()));
+          }
+        });
+    intervalloPresenzaRepository.saveAll(intervalli);
+  }
+
+  /** Effetto complessivo dei movimenti di un utente in un meeting. */
+  private static final class Modifica {
+    private boolean online;
+    private LocalDateTime ingresso;
+    private final List<MovimentoPresenza> uscite = new ArrayList<>();
+  }
+}
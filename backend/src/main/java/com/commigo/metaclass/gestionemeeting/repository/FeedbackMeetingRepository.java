@@ -3,8 +3,12 @@ package com.commigo.metaclass.gestionemeeting.repository;
 import com.commigo.metaclass.entity.FeedbackMeeting;
 import com.commigo.metaclass.entity.Meeting;
 import com.commigo.metaclass.entity.Utente;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.FeatureUtente;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /** Repository del meeting per gestire transazioni con i dati persistenti. */
 public interface FeedbackMeetingRepository extends JpaRepository<FeedbackMeeting, Long> {
@@ -25,4 +29,33 @@ public interface FeedbackMeetingRepository extends JpaRepository<FeedbackMeeting
    * @return lista di feedback meeting dato un utente.
    */
   List<FeedbackMeeting> findFeedbackMeetingByUtente(Utente utente);
+
+  /**
+   * Metodo che permette di ricavare, con una sola query, i dati aggregati dei questionari di tutti
+   * gli utenti presenti in una stanza.
+   *
+   * @param id id della stanza su cui si basa la ricerca.
+   * @return lista con età, sesso e medie di immersionLevel e motionSickness per ogni utente.
+   */
+  @Query(
+      "SELECT new com.commigo.metaclass.gestionestimaduratameeting.modello.FeatureUtente("
+          + "u.id, u.dataDiNascita, u.sesso, AVG(fm.immersionLevel), AVG(fm.motionSickness)) "
+          + "FROM StatoPartecipazione sp JOIN sp.utente u "
+          + "LEFT JOIN FeedbackMeeting fm ON fm.utente = u "
+          + "WHERE sp.isInAttesa=false AND sp.isBannato=false AND sp.stanza.id = :id "
+          + "GROUP BY u.id, u.dataDiNascita, u.sesso")
+  List<FeatureUtente> findFeatureUtentiInStanza(@Param("id") Long id);
+
+  /**
+   * Metodo che restituisce con una sola query i questionari di più utenti per un meeting.
+   *
+   * @param idMeeting id del meeting.
+   * @param idUtenti id degli utenti.
+   * @return lista dei questionari trovati.
+   */
+  @Query(
+      "SELECT fm FROM FeedbackMeeting fm JOIN FETCH fm.utente "
+          + "WHERE fm.meeting.id = :idMeeting AND fm.utente.id IN :idUtenti")
+  List<FeedbackMeeting> findAllByMeetingAndUtenti(
+      @Param("idMeeting") Long idMeeting, @Param("idUtenti") Collection<Long> idUtenti);
 }
@@ -0,0 +1,7 @@
+package com.commigo.metaclass.gestionemeeting.repository;
+
+import com.commigo.metaclass.entity.IntervalloPresenza;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/** Repository degli intervalli di presenza per gestire transazioni con i dati persistenti. */
+public interface IntervalloPresenzaRepository extends JpaRepository<IntervalloPresenza, Long> {}
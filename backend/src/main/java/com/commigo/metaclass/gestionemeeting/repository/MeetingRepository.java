@@ -3,7 +3,6 @@ package com.commigo.metaclass.gestionemeeting.repository;
 import com.commigo.metaclass.entity.Meeting;
 import com.commigo.metaclass.entity.Stanza;
 import jakarta.transaction.Transactional;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -16,25 +15,6 @@ import org.springframework.stereotype.Repository;
 @Repository("MeetingRepository")
 public interface MeetingRepository extends JpaRepository<Meeting, Long> {
 
-  /**
-   * Metodo che permette di verificare se un meeting si sovrappone un altro meeting precedentemente
-   * schedulato.
-   *
-   * @param newInizio inizio del meeting che deve essere schedulato.
-   * @param newFine fine del meeting che deve essere schedulato.
-   * @return valore boolean che identifica la riuscita dell'operazione.
-   */
-  @Query(
-          "SELECT CASE WHEN COUNT(m) > 0 THEN true ELSE false END FROM Meeting m "
-                  + "WHERE (:newInizio BETWEEN m.inizio AND m.fine OR :newFine BETWEEN m.inizio AND m.fine "
-                  + "OR m.inizio BETWEEN :newInizio AND :newFine OR m.fine BETWEEN :newInizio AND :newFine "
-                  + "OR m.inizio <= :newInizio AND m.fine >= :newFine) "
-                  + "AND m.stanza.id = :roomId")
-  boolean hasOverlappingMeetings(
-          @Param("newInizio") LocalDateTime newInizio,
-          @Param("newFine") LocalDateTime newFine,
-          @Param("roomId") Long roomId);
-
   /**
    * Metodo che permette la modifica degli attributi di un meeting.
    *
@@ -87,4 +67,21 @@ public interface MeetingRepository extends JpaRepository<Meeting, Long> {
    * @return Lista di meeting schedulati all'interno della stanza.
    */
   List<Meeting> findMeetingByStanza(Stanza stanza);
+
+  /**
+   * Metodo che restituisce i meeting avviati con la loro stanza.
+   *
+   * @return lista di id del meeting e id della stanza.
+   */
+  @Query("SELECT m.id, m.stanza.id FROM Meeting m WHERE m.isAvviato = true")
+  List<Object[]> findIdAvviati();
+
+  /**
+   * Metodo che restituisce gli intervalli occupati dai meeting di una stanza, senza caricarli.
+   *
+   * @param idStanza id della stanza.
+   * @return lista di id, inizio e fine dei meeting della stanza.
+   */
+  @Query("SELECT m.id, m.inizio, m.fine FROM Meeting m WHERE m.stanza.id = :idStanza")
+  List<Object[]> findIntervalliByStanza(@Param("idStanza") Long idStanza);
 }
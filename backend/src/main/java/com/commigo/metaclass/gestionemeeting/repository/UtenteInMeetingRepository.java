@@ -3,8 +3,13 @@ package com.commigo.metaclass.gestionemeeting.repository;
 import com.commigo.metaclass.entity.Meeting;
 import com.commigo.metaclass.entity.Utente;
 import com.commigo.metaclass.entity.UtenteInMeeting;
+import jakarta.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /** Repository dell'utente in meeting per gestire transazioni con i dati persistenti. */
 public interface UtenteInMeetingRepository extends JpaRepository<UtenteInMeeting, Long> {
@@ -33,4 +38,72 @@ public interface UtenteInMeetingRepository extends JpaRepository<UtenteInMeeting
    * @return lista di UtenteinMeeting.
    */
   List<UtenteInMeeting> findUtenteInMeetingsByUtente(Utente u);
+
+  /**
+   * Metodo che restituisce gli utenti che hanno partecipato ad un meeting, senza caricare le righe
+   * di UtenteInMeeting.
+   *
+   * @param idMeeting id del meeting.
+   * @return lista degli utenti entrati nel meeting.
+   */
+  @Query("SELECT uim.utente FROM UtenteInMeeting uim WHERE uim.meeting.id = :idMeeting")
+  List<Utente> findUtentiByMeeting(@Param("idMeeting") Long idMeeting);
+
+  /**
+   * Metodo che fa uscire con un solo UPDATE tutti gli utenti ancora online in un meeting.
+   *
+   * @param idMeeting id del meeting.
+   * @return numero di utenti che erano online.
+   */
+  @Modifying(flushAutomatically = true)
+  @Transactional
+  @Query(
+      "UPDATE UtenteInMeeting uim SET uim.isOnline = false "
+          + "WHERE uim.meeting.id = :idMeeting AND uim.isOnline = true")
+  int uscitaTuttiOnline(@Param("idMeeting") Long idMeeting);
+
+  /**
+   * Metodo che restituisce, tra gli utenti indicati, quelli già entrati almeno una volta in un
+   * meeting.
+   *
+   * @param idMeeting id del meeting.
+   * @param idUtenti id degli utenti.
+   * @return id degli utenti che hanno già una riga in UtenteInMeeting.
+   */
+  @Query(
+      "SELECT uim.utente.id FROM UtenteInMeeting uim "
+          + "WHERE uim.meeting.id = :idMeeting AND uim.utente.id IN :idUtenti")
+  List<Long> findIdUtentiRegistrati(
+      @Param("idMeeting") Long idMeeting, @Param("idUtenti") Collection<Long> idUtenti);
+
+  /**
+   * Metodo che imposta con un solo UPDATE lo stato online di più utenti in un meeting.
+   *
+   * @param idMeeting id del meeting.
+   * @param idUtenti id degli utenti.
+   * @param online nuovo stato online.
+   * @return numero di righe modificate.
+   */
+  @Modifying(flushAutomatically = true)
+  @Transactional
+  @Query(
+      "UPDATE UtenteInMeeting uim SET uim.isOnline = :online "
+          + "WHERE uim.meeting.id = :idMeeting AND uim.utente.id IN :idUtenti")
+  int aggiornaOnline(
+      @Param("idMeeting") Long idMeeting,
+      @Param("idUtenti") Collection<Long> idUtenti,
+      @Param("online") boolean online);
+
+  /**
+   * Metodo che restituisce gli utenti online nei meeting avviati, con l'istante del loro ultimo
+   * ingresso, per ricostruire il registro delle presenze all'avvio.
+   *
+   * @return lista di id del meeting, id dell'utente, data dell'ultimo accesso e metaId.
+   */
+  @Query(
+      "SELECT uim.meeting.id, uim.utente.id, fm.dataUltimoAccesso, uim.utente.metaId "
+          + "FROM UtenteInMeeting uim "
+          + "LEFT JOIN FeedbackMeeting fm ON fm.meeting = uim.meeting AND fm.utente = uim.utente "
+          + "WHERE uim.isOnline = true AND uim.meeting.isAvviato = true")
+  List<Object[]> findPresenzeOnline();
 }
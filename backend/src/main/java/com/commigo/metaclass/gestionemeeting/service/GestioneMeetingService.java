@@ -15,9 +15,13 @@ public interface GestioneMeetingService {
   public boolean creaScheduling(Meeting meeting, String metaId)
       throws ServerRuntimeException, RuntimeException403;
 
-  boolean modificaScheduling(Map<String, Object> params, Long id)
+  boolean modificaScheduling(Map<String, Object> params, Long id, String metaId)
       throws RuntimeException403, RuntimeException401;
 
+  List<Meeting> creaSchedulingRicorrente(
+      Meeting primo, int ripetizioni, int intervalloGiorni, String metaId)
+      throws ServerRuntimeException, RuntimeException403;
+
   Boolean accediMeeting(String metaId, Long idmeeting)
       throws ServerRuntimeException, RuntimeException403;
 
@@ -32,6 +36,10 @@ public interface GestioneMeetingService {
   Boolean uscitaMeeting(String metaId, Long idmeeting)
       throws ServerRuntimeException, RuntimeException403;
 
+  Boolean battitoMeeting(String metaId, Long idmeeting) throws RuntimeException403;
+
+  List<Long> visualizzaPresentiMeeting(String metaId, Long idmeeting) throws RuntimeException403;
+
   List<Meeting> visualizzaQuestionari(String metaId)
       throws ServerRuntimeException, RuntimeException403;
 
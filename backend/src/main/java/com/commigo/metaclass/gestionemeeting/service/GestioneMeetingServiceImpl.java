@@ -3,30 +3,32 @@ package com.commigo.metaclass.gestionemeeting.service;
 import com.commigo.metaclass.entity.FeedbackMeeting;
 import com.commigo.metaclass.entity.Meeting;
 import com.commigo.metaclass.entity.Report;
-import com.commigo.metaclass.entity.Ruolo;
 import com.commigo.metaclass.entity.Scenario;
 import com.commigo.metaclass.entity.Stanza;
-import com.commigo.metaclass.entity.StatoPartecipazione;
 import com.commigo.metaclass.entity.Utente;
 import com.commigo.metaclass.entity.UtenteInMeeting;
 import com.commigo.metaclass.exceptions.RuntimeException401;
 import com.commigo.metaclass.exceptions.RuntimeException403;
 import com.commigo.metaclass.exceptions.ServerRuntimeException;
 import com.commigo.metaclass.gestioneamministrazione.repository.ScenarioRepository;
+import com.commigo.metaclass.gestionemeeting.calendario.IndiceMeetingStanze;
+import com.commigo.metaclass.gestionemeeting.presenza.RegistroPresenze;
+import com.commigo.metaclass.gestionemeeting.presenza.SincronizzazionePresenze;
 import com.commigo.metaclass.gestionemeeting.repository.FeedbackMeetingRepository;
 import com.commigo.metaclass.gestionemeeting.repository.MeetingRepository;
 import com.commigo.metaclass.gestionemeeting.repository.ReportRepository;
 import com.commigo.metaclass.gestionemeeting.repository.UtenteInMeetingRepository;
+import com.commigo.metaclass.gestionestanza.membri.CacheMembri;
+import com.commigo.metaclass.gestionestanza.membri.StatoMembro;
 import com.commigo.metaclass.gestionestanza.repository.StanzaRepository;
-import com.commigo.metaclass.gestionestanza.repository.StatoPartecipazioneRepository;
 import com.commigo.metaclass.gestionestimaduratameeting.service.GestioneStimaMeetingService;
 import com.commigo.metaclass.gestioneutenza.repository.UtenteRepository;
 import com.commigo.metaclass.utility.response.types.Response;
-import com.commigo.metaclass.webconfig.JwtTokenUtil;
-import com.commigo.metaclass.webconfig.ValidationToken;
 import jakarta.transaction.Transactional;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -50,15 +52,23 @@ public class GestioneMeetingServiceImpl implements GestioneMeetingService {
   private final UtenteRepository utenteRepository;
   private final ScenarioRepository scenarioRepository;
   private final UtenteInMeetingRepository utenteInMeetingRepository;
-  private final StatoPartecipazioneRepository statoPartecipazioneRepository;
   private final FeedbackMeetingRepository feedbackMeetingRepository;
   private final ReportRepository reportRepository;
+  private final CacheMembri cacheMembri;
+  private final RegistroPresenze registroPresenze;
+  private final SincronizzazionePresenze sincronizzazionePresenze;
+  private final IndiceMeetingStanze indiceMeetingStanze;
 
-  @Autowired GestioneStimaMeetingService gestioneStimaMeetingService;
+  /** Numero massimo di meeting creati da una schedulazione ricorrente. */
+  private static final int MAX_RIPETIZIONI = 500;
+
+  /** Numero massimo di date in conflitto riportate nel messaggio di errore. */
+  private static final int MAX_CONFLITTI_RIPORTATI = 10;
 
-  @Autowired private ValidationToken validationToken;
+  private static final DateTimeFormatter FORMATO_DATA =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
-  @Autowired private JwtTokenUtil jwtTokenUtil;
+  @Autowired GestioneStimaMeetingService gestioneStimaMeetingService;
 
   /**
    * Metodo che permette la schedulazione di un meeting.
@@ -68,6 +78,7 @@ public class GestioneMeetingServiceImpl implements GestioneMeetingService {
    * @return valore booleano che identifica il successo dell'operazione
    */
   @Override
+  @Transactional(rollbackOn = RuntimeException403.class)
   public boolean creaScheduling(Meeting meeting, String metaId)
       throws ServerRuntimeException, RuntimeException403 {
     // cerca il meeting per verificare se registrato o meno
@@ -80,25 +91,17 @@ public class GestioneMeetingServiceImpl implements GestioneMeetingService {
         throw new ServerRuntimeException("errore nella ricerca della stanza");
       }
 
-      // controllo esistenza dell'utente
-      Utente u;
-      if ((u = utenteRepository.findFirstBymetaId(metaId)) == null) {
-        throw new RuntimeException403("utente non trovato");
-      }
-
       // controllo del ruolo di organizzatore o organizzatore master
-      StatoPartecipazione sp;
-      if ((sp = statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(u, s))
-          == null) {
+      StatoMembro sp = cacheMembri.get(s.getId(), metaId);
+      if (!sp.isMembro()) {
         throw new ServerRuntimeException("errore nella ricerca del ruolo");
       }
-      if (sp.getRuolo().getNome().equalsIgnoreCase(Ruolo.PARTECIPANTE)) {
+      if (sp.isPartecipante()) {
         throw new RuntimeException403("non hai i permessi per schedulare un meeting");
       }
 
       // controllo dei meeting sovrapponibili
-      if (meetingRepository.hasOverlappingMeetings(
-          meeting.getInizio(), meeting.getFine(), meeting.getStanza().getId())) {
+      if (!indiceMeetingStanze.sovrapposizioni(s.getId(), List.of(meeting)).isEmpty()) {
         throw new RuntimeException403("il meeting si accavalla con un altro meeting");
       }
       meeting.setStanza(s);
@@ -106,8 +109,11 @@ public class GestioneMeetingServiceImpl implements GestioneMeetingService {
       // salvo lo scenario iniziale
       meeting.setScenarioIniziale(s.getScenario());
 
-      // Meeting non presente nel database, lo salva
+      // Meeting non presente nel database, lo salva e lo inserisce nel calendario della stanza
       meetingRepository.save(meeting);
+      if (!indiceMeetingStanze.riservaTutti(s.getId(), List.of(meeting)).isEmpty()) {
+        throw new RuntimeException403("il meeting si accavalla con un altro meeting");
+      }
     } else {
       throw new ServerRuntimeException("meeting già schedulato in precedenza");
     }
@@ -120,39 +126,136 @@ public class GestioneMeetingServiceImpl implements GestioneMeetingService {
    *
    * @param params nuovi dati del meeting
    * @param id id del meeting da modificare
+   * @param metaId metaId dell'utente che effettua la modifica
    */
   @Override
-  public boolean modificaScheduling(Map<String, Object> params, Long id)
+  @Transactional(rollbackOn = RuntimeException403.class)
+  public boolean modificaScheduling(Map<String, Object> params, Long id, String metaId)
       throws RuntimeException403, RuntimeException401 {
 
-    // controllo del ruolo di ogm
-    String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
-    Utente ogm = utenteRepository.findFirstBymetaId(metaId);
     Meeting existingMeeting = meetingRepository.findMeetingById(id);
 
     // verifico meeting se esiste
     if (existingMeeting == null) {
       throw new RuntimeException403("Il meeting non esiste");
     }
-    if (ogm == null) {
-      throw new RuntimeException403("Utente non esiste");
-    }
 
-    StatoPartecipazione statoutente =
-        statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(
-            ogm, existingMeeting.getStanza());
+    // controllo del ruolo di ogm
+    StatoMembro statoutente = cacheMembri.get(existingMeeting.getStanza().getId(), metaId);
 
-    if (statoutente == null) {
+    if (!statoutente.isMembro()) {
       throw new RuntimeException403("Non hai acceduto alla stanza");
     }
 
-    if (!statoutente.getRuolo().getNome().equalsIgnoreCase(Ruolo.PARTECIPANTE)) {
-      return meetingRepository.updateAttributes(id, params) > 0;
+    if (!statoutente.isPartecipante()) {
+      LocalDateTime inizio = leggiData(params, "inizio", existingMeeting.getInizio());
+      LocalDateTime fine = leggiData(params, "fine", existingMeeting.getFine());
+      if (!inizio.isBefore(fine)) {
+        throw new RuntimeException403("L'inizio deve essere precedente alla fine");
+      }
+
+      if (meetingRepository.updateAttributes(id, params) == 0) {
+        return false;
+      }
+
+      // controllo dei meeting sovrapponibili, solo se cambiano le date: l'indice viene aggiornato
+      // dopo la modifica della riga e, se il meeting si accavalla, la modifica viene annullata
+      if (!inizio.equals(existingMeeting.getInizio()) || !fine.equals(existingMeeting.getFine())) {
+        if (!indiceMeetingStanze.sposta(existingMeeting.getStanza().getId(), id, inizio, fine)) {
+          throw new RuntimeException403("il meeting si accavalla con un altro meeting");
+        }
+      }
+      return true;
     } else {
       throw new RuntimeException401("devi essere almeno un organizzatore");
     }
   }
 
+  /**
+   * Metodo che permette la schedulazione di una serie di meeting ricorrenti. I meeting vengono
+   * schedulati tutti oppure nessuno: se anche uno solo si accavalla con un altro meeting della
+   * stanza l'operazione fallisce indicando le date in conflitto.
+   *
+   * @param primo primo meeting della serie, gli altri ne copiano nome e durata
+   * @param ripetizioni numero di meeting da schedulare, compreso il primo
+   * @param intervalloGiorni giorni tra l'inizio di un meeting e quello del successivo
+   * @param metaId metaId dell'utente che vuole schedulare i meeting
+   * @return lista dei meeting schedulati
+   */
+  @Override
+  @Transactional(rollbackOn = RuntimeException403.class)
+  public List<Meeting> creaSchedulingRicorrente(
+      Meeting primo, int ripetizioni, int intervalloGiorni, String metaId)
+      throws ServerRuntimeException, RuntimeException403 {
+    if (ripetizioni < 1 || ripetizioni > MAX_RIPETIZIONI) {
+      throw new RuntimeException403(
+          "il numero di ripetizioni deve essere compreso tra 1 e " + MAX_RIPETIZIONI);
+    }
+    if (intervalloGiorni < 1) {
+      throw new RuntimeException403("l'intervallo tra i meeting deve essere di almeno un giorno");
+    }
+
+    // ricerca della stanza da associare ai meeting
+    Stanza s = stanzaRepository.findStanzaById(primo.getStanza().getId());
+    if (s == null) {
+      throw new ServerRuntimeException("errore nella ricerca della stanza");
+    }
+
+    // controllo del ruolo di organizzatore o organizzatore master
+    StatoMembro sp = cacheMembri.get(s.getId(), metaId);
+    if (!sp.isMembro()) {
+      throw new ServerRuntimeException("errore nella ricerca del ruolo");
+    }
+    if (sp.isPartecipante()) {
+      throw new RuntimeException403("non hai i permessi per schedulare un meeting");
+    }
+
+    List<Meeting> serie = new ArrayList<>(ripetizioni);
+    for (int i = 0; i < ripetizioni; i++) {
+      Meeting m = new Meeting();
+      m.setNome(primo.getNome());
+      m.setInizio(primo.getInizio().plusDays((long) i * intervalloGiorni));
+      m.setFine(primo.getFine().plusDays((long) i * intervalloGiorni));
+      m.setStanza(s);
+      m.setScenarioIniziale(s.getScenario());
+      serie.add(m);
+    }
+
+    // controllo dei meeting sovrapponibili, prima e dopo il salvataggio
+    List<Integer> conflitti = indiceMeetingStanze.sovrapposizioni(s.getId(), serie);
+    if (conflitti.isEmpty()) {
+      meetingRepository.saveAll(serie);
+      conflitti = indiceMeetingStanze.riservaTutti(s.getId(), serie);
+    }
+    if (!conflitti.isEmpty()) {
+      String date =
+          conflitti.stream()
+              .limit(MAX_CONFLITTI_RIPORTATI)
+              .map(i -> serie.get(i).getInizio().format(FORMATO_DATA))
+              .collect(Collectors.joining(", "));
+      throw new RuntimeException403(
+          conflitti.size()
+              + " meeting si accavallano con altri meeting: "
+              + date
+              + (conflitti.size() > MAX_CONFLITTI_RIPORTATI ? ", ..." : ""));
+    }
+    return serie;
+  }
+
+  /**
+   * Legge una data dai parametri di modifica di un meeting.
+   *
+   * @param params parametri della modifica
+   * @param chiave nome del parametro
+   * @param attuale valore da usare se il parametro non è presente
+   * @return data letta dai parametri o valore attuale
+   */
+  private static LocalDateTime leggiData(
+      Map<String, Object> params, String chiave, LocalDateTime attuale) {
+    Object valore = params.get(chiave);
+    return valore != null ? LocalDateTime.parse(valore.toString(), FORMATO_DATA) : attuale;
+  }
+
   /**
    * Metodo che permette di fare accesso ad un meeting.
    *
@@ -178,41 +281,13 @@ public class GestioneMeetingServiceImpl implements GestioneMeetingService {
       throw new RuntimeException403("Il meeting non e' stato avviato");
     }
 
-    // salvataggio dell'accesso al meeting
-    UtenteInMeeting uim = new UtenteInMeeting(u, m, true);
-    try {
-
-      // verifico se l'utente ha era già entrato in precedenza
-      UtenteInMeeting existingUim;
-      if ((existingUim = utenteInMeetingRepository.findUtenteInMeetingsByMeetingAndUtente(m, u))
-          != null) {
-        if (!existingUim.isOnline()) { // per poi verificare se è già presente
-
-          // se era uscito e sta rieffettuando l'accesso allora bisogna aggiornare
-          // le sue azioni in FeedBackMeeting
-          FeedbackMeeting fm =
-              feedbackMeetingRepository.findFeedbackMeetingByUtenteAndMeeting(u, m);
-
-          // agiornamento di dataUltimoAccesso
-          fm.setDataUltimoAccesso(LocalDateTime.now());
-          feedbackMeetingRepository.save(fm);
-
-        } else {
-          throw new RuntimeException403("già sei all'interno del meeting");
-        }
-      } else {
-        utenteInMeetingRepository.save(uim);
-
-        // creazione del feedback meeting
-        Report rep = reportRepository.findByMeeting(m);
-        FeedbackMeeting fm = new FeedbackMeeting(u, m, rep);
-        feedbackMeetingRepository.save(fm);
-      }
-
-      return true;
-    } catch (DataIntegrityViolationException e) {
-      throw new ServerRuntimeException("errore nel salvataggio dei dati nel database");
+    // l'accesso è registrato in memoria; UtenteInMeeting e FeedbackMeeting vengono
+    // aggiornati in batch dalla sincronizzazione delle presenze
+    registroPresenze.avvia(m.getId(), m.getStanza().getId());
+    if (!registroPresenze.entra(m.getId(), u.getId(), metaId)) {
+      throw new RuntimeException403("già sei all'interno del meeting");
     }
+    return true;
   }
 
   /**
@@ -236,21 +311,15 @@ public class GestioneMeetingServiceImpl implements GestioneMeetingService {
     }
 
     // controllo ruolo organizzatore
-    // ricerca della stanza
-    Stanza s;
-    if ((s = stanzaRepository.findStanzaById(m.getStanza().getId())) == null) {
-      throw new ServerRuntimeException("stanza non trovata");
-    }
     // ricerca della stato partecipazione
-    StatoPartecipazione sp;
-    if ((sp = statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(org, s))
-        == null) {
+    StatoMembro sp = cacheMembri.get(m.getStanza().getId(), metaId);
+    if (!sp.isMembro()) {
       throw new ServerRuntimeException(
           "Errore nella verifica dell'utente in stanza, "
               + "probabilmente non ha acceduto alla stanza");
     }
     // verifica ruolo
-    if (sp.getRuolo().getNome().equalsIgnoreCase("Partecipante")) {
+    if (sp.isPartecipante()) {
       throw new ServerRuntimeException("non puoi avviare il metting. Sei un partecipante");
     }
 
@@ -264,6 +333,7 @@ public class GestioneMeetingServiceImpl implements GestioneMeetingService {
       // creazione del report che sarà aggiornato a fine meeting
       Report report = new Report(m, org);
       reportRepository.save(report);
+      registroPresenze.avvia(m.getId(), m.getStanza().getId());
 
       // registro l'organizzatore come presente al meeting
       return accediMeeting(metaId, m.getId());
@@ -292,24 +362,22 @@ public class GestioneMeetingServiceImpl implements GestioneMeetingService {
     }
 
     // controllo ruolo organizzatore
-    // ricerca della stanza
-    Stanza s;
-    if ((s = stanzaRepository.findStanzaById(m.getStanza().getId())) == null) {
-      throw new ServerRuntimeException("stanza non trovata");
-    }
     // ricerca della stato partecipazione
-    StatoPartecipazione sp;
-    if ((sp = statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(org, s))
-        == null) {
+    StatoMembro sp = cacheMembri.get(m.getStanza().getId(), metaId);
+    if (!sp.isMembro()) {
       throw new ServerRuntimeException(
           "Errore nella verifica dell'utente in stanza, "
               + "probabilmente non ha acceduto alla stanza");
     }
     // verifica ruolo
-    if (sp.getRuolo().getNome().equalsIgnoreCase("Partecipante")) {
+    if (sp.isPartecipante()) {
       throw new ServerRuntimeException("non puoi terminare il metting. Sei un partecipante");
     }
 
+    // faccio uscire gli utenti ancora presenti e scrivo le presenze prima della chiusura
+    int count = registroPresenze.esconoTutti(m.getId());
+    sincronizzazionePresenze.scarica();
+
     // TERMINAZIONE MEETING
     m.setAvviato(false);
     if (meetingRepository.updateAttributes(m.getId(), m) == 0) {
@@ -317,31 +385,22 @@ public class GestioneMeetingServiceImpl implements GestioneMeetingService {
           "errore nella terminazione del meeting, " + "l'entità meeting non si è aggiornata");
     }
 
-    // Prelevo la lista di utenti presenti nel meeting
-    List<UtenteInMeeting> uimList = utenteInMeetingRepository.findUtenteInMeetingsByMeeting(m);
+    // segno come offline, con un solo UPDATE, eventuali utenti non presenti nel registro
+    utenteInMeetingRepository.uscitaTuttiOnline(m.getId());
 
-    // richiamo la funzione uscitaMeeting per far uscire ogni utente
-    int count = 0;
-    for (UtenteInMeeting uim : uimList) {
-      if (uim.isOnline()) {
-        uscitaMeeting(uim.getUtente().getMetaId(), m.getId());
-        count++;
-      }
-    }
+    // Prelevo la lista di utenti entrati nel meeting
+    List<Utente> utentiList = utenteInMeetingRepository.findUtentiByMeeting(m.getId());
 
     // aggiorno il report ai nuovi dati sul meeting terminato
     Report rep = reportRepository.findByMeeting(m);
     rep.setNumPartecipanti(count);
-    rep.setMaxPartecipanti(uimList.size());
+    rep.setMaxPartecipanti(Math.max(registroPresenze.getPicco(m.getId()), count));
+    registroPresenze.termina(m.getId());
 
     // calcolo tempo trascorso del meeting
     Duration tempoTrascorso = Duration.between(rep.getDataCreazione(), LocalDateTime.now());
     rep.setDurataMeeting(tempoTrascorso);
 
-    // prelevo la lista di utenti
-    List<Utente> utentiList =
-        uimList.stream().map(UtenteInMeeting::getUtente).collect(Collectors.toList());
-
     rep.setListaPartecipanti(utentiList);
 
     try {
@@ -371,26 +430,52 @@ public class GestioneMeetingServiceImpl implements GestioneMeetingService {
       throw new RuntimeException403("meeting non trovato");
     }
 
-    try {
-      // USCITA DAL MEETING
-      // si aggiorna in UtenteInMeeting il campo isOnline
-      UtenteInMeeting uim = utenteInMeetingRepository.findUtenteInMeetingsByMeetingAndUtente(m, u);
-      uim.setOnline(false);
-      utenteInMeetingRepository.save(uim);
-
-      // Aggiornamento della durata totale del meeting
-      FeedbackMeeting fm = feedbackMeetingRepository.findFeedbackMeetingByUtenteAndMeeting(u, m);
-
-      // Calcolo la differenza tra DataPrimoAccesso e LocalDateTime.now()
-      Duration tempoTrascorso = Duration.between(fm.getDataPrimoAccesso(), LocalDateTime.now());
-      fm.setTempoTotale(tempoTrascorso);
-      feedbackMeetingRepository.save(fm);
+    // USCITA DAL MEETING
+    // l'uscita è registrata in memoria; isOnline e la durata totale del meeting vengono
+    // aggiornati in batch dalla sincronizzazione delle presenze
+    if (!registroPresenze.esce(m.getId(), u.getId())) {
+      throw new RuntimeException403("non sei all'interno del meeting");
+    }
+    return true;
+  }
 
-      return true;
+  /**
+   * metodo che registra il battito di un utente presente in un meeting, con cui il client segnala
+   * di essere ancora collegato. Non accede al database, quindi non apre una transazione.
+   *
+   * @param metaId metaId dell'utente
+   * @param idmeeting id del meeting
+   * @return valore boolean che identifica l'esito dell'operazione
+   */
+  @Override
+  @Transactional(Transactional.TxType.SUPPORTS)
+  public Boolean battitoMeeting(String metaId, Long idmeeting) throws RuntimeException403 {
+    if (!registroPresenze.battito(idmeeting, metaId)) {
+      throw new RuntimeException403("non sei all'interno del meeting");
+    }
+    return true;
+  }
 
-    } catch (DataIntegrityViolationException e) {
-      throw new ServerRuntimeException("errore nel salvataggio dei dati nel database");
+  /**
+   * metodo che consente di visualizzare gli utenti presenti in un meeting avviato.
+   *
+   * @param metaId metaId dell'utente che vuole visualizzare i presenti
+   * @param idmeeting id del meeting
+   * @return lista degli id degli utenti presenti nel meeting
+   */
+  @Override
+  @Transactional(Transactional.TxType.SUPPORTS)
+  public List<Long> visualizzaPresentiMeeting(String metaId, Long idmeeting)
+      throws RuntimeException403 {
+    Long idStanza = registroPresenze.getIdStanza(idmeeting);
+    if (idStanza == null) {
+      throw new RuntimeException403("Il meeting non e' stato avviato");
+    }
+    StatoMembro sp = cacheMembri.get(idStanza, metaId);
+    if (!sp.isMembro() || sp.isBannato() || sp.isInAttesa()) {
+      throw new RuntimeException403("Non hai acceduto alla stanza del meeting");
     }
+    return new ArrayList<>(registroPresenze.getPresenti(idmeeting));
   }
 
   /**
@@ -496,7 +581,8 @@ public class GestioneMeetingServiceImpl implements GestioneMeetingService {
       throw new RuntimeException403("meeting non trovato");
     }
 
-    // controllo se esiste il feedbackmeeting
+    // controllo se esiste il feedbackmeeting, scrivendo prima le presenze ancora in memoria
+    sincronizzazionePresenze.scarica();
     FeedbackMeeting fm = feedbackMeetingRepository.findFeedbackMeetingByUtenteAndMeeting(u, m);
     if (fm == null) {
       throw new ServerRuntimeException("errore nella ricerca del feedback meeting");
@@ -0,0 +1,170 @@
+package com.commigo.metaclass.gestionestanza.codici;
+
+import com.commigo.metaclass.entity.Sequenza;
+import com.commigo.metaclass.exceptions.ServerRuntimeException;
+import com.commigo.metaclass.gestionestanza.repository.SequenzaRepository;
+import com.commigo.metaclass.gestionestanza.repository.StanzaRepository;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Allocatore dei codici delle stanze. Ogni istanza riserva dalla tabella delle sequenze un blocco
+ * di numeri progressivi (hi/lo) e li trasforma in codici a 6 cifre con una permutazione di
+ * Feistel sulle due metà da 3 cifre, le cui funzioni di round sono HMAC-SHA256 con una chiave
+ * configurata: numeri diversi danno sempre codici diversi, anche tra istanze diverse (che devono
+ * condividere la chiave), e senza la chiave un codice non permette di dedurre i successivi.
+ */
+@Slf4j
+@Component
+public class AllocatoreCodiciStanza {
+
+  /** Nome della sequenza dei codici stanza. */
+  public static final String SEQUENZA = "codice_stanza";
+
+  /** Numero di codici a 6 cifre. */
+  private static final int SPAZIO_CODICI = 1_000_000;
+
+  /** Dimensione di ciascuna metà del codice, 10^3. */
+  private static final int META = 1_000;
+
+  /** Round della permutazione di Feistel. */
+  private static final int ROUND = 6;
+
+  private final SequenzaRepository sequenzaRepository;
+  private final StanzaRepository stanzaRepository;
+  private final TransactionTemplate nuovaTransazione;
+  private final int dimensioneBlocco;
+
+  /** Funzione di round, usata solo all'interno di {@link #prossimoCodice()}. */
+  private final Mac funzioneRound;
+
+  /** Codici del blocco corrente non ancora assegnati. */
+  private final Deque<String> disponibili = new ArrayDeque<>();
+
+  /**
+   * Costruttore.
+   *
+   * @param sequenzaRepository repository delle sequenze
+   * @param stanzaRepository repository delle stanze
+   * @param transactionManager gestore delle transazioni
+   * @param dimensioneBlocco numero di codici riservati ad ogni accesso alla sequenza
+   * @param chiave chiave della permutazione, uguale su tutte le istanze e mai modificata
+   * @throws GeneralSecurityException se HMAC-SHA256 non è disponibile
+   */
+  public AllocatoreCodiciStanza(
+      SequenzaRepository sequenzaRepository,
+      StanzaRepository stanzaRepository,
+      PlatformTransactionManager transactionManager,
+      @Value("${stanza.codici.blocco:100}") int dimensioneBlocco,
+      @Value("${stanza.codici.chiave}") String chiave)
+      throws GeneralSecurityException {
+    this.sequenzaRepository = sequenzaRepository;
+    this.stanzaRepository = stanzaRepository;
+    this.dimensioneBlocco = Math.max(1, dimensioneBlocco);
+    this.funzioneRound = Mac.getInstance("HmacSHA256");
+    this.funzioneRound.init(
+        new SecretKeySpec(chiave.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+    // il blocco viene riservato e committato subito, indipendentemente dalla creazione della stanza
+    this.nuovaTransazione = new TransactionTemplate(transactionManager);
+    this.nuovaTransazione.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  /**
+   * Restituisce un codice stanza mai assegnato.
+   *
+   * @return codice a 6 cifre
+   * @throws ServerRuntimeException se i codici sono esauriti
+   */
+  public synchronized String prossimoCodice() throws ServerRuntimeException {
+    while (disponibili.isEmpty()) {
+      riservaBlocco();
+    }
+    return disponibili.poll();
+  }
+
+  /**
+   * Trasforma un numero progressivo nel corrispondente codice stanza. Ogni round sostituisce la
+   * coppia (sinistra, destra) con (destra, sinistra + F(round, destra) mod 10^3), che è
+   * invertibile per qualunque F: la trasformazione è quindi una biiezione sui codici a 6 cifre.
+   *
+   * @param n numero progressivo, compreso tra 0 e 10^6 - 1
+   * @return codice a 6 cifre
+   */
+  String codice(long n) {
+    int sinistra = (int) (n / META);
+    int destra = (int) (n % META);
+    for (int round = 0; round < ROUND; round++) {
+      int nuova = Math.floorMod(sinistra + round(round, destra), META);
+      sinistra = destra;
+      destra = nuova;
+    }
+    return String.format("%06d", sinistra * META + destra);
+  }
+
+  private int round(int round, int valore) {
+    byte[] messaggio = {(byte) round, (byte) (valore >> 8), (byte) valore};
+    return ByteBuffer.wrap(funzioneRound.doFinal(messaggio)).getInt();
+  }
+
+  private void riservaBlocco() throws ServerRuntimeException {
+    long inizio = incrementaSequenza();
+    if (inizio >= SPAZIO_CODICI) {
+      throw new ServerRuntimeException("codici stanza esauriti");
+    }
+    long fine = Math.min(inizio + dimensioneBlocco, SPAZIO_CODICI);
+
+    List<String> codici = new ArrayList<>((int) (fine - inizio));
+    for (long n = inizio; n < fine; n++) {
+      codici.add(codice(n));
+    }
+    // scarta i codici già usati da stanze create con altri criteri (es. dati iniziali)
+    Set<String> occupati = new HashSet<>(stanzaRepository.findCodiciEsistenti(codici));
+    for (String c : codici) {
+      if (!occupati.contains(c)) {
+        disponibili.add(c);
+      }
+    }
+    log.debug("Riservati i codici stanza da {} a {}", inizio, fine - 1);
+  }
+
+  private long incrementaSequenza() {
+    while (true) {
+      Long inizio =
+          nuovaTransazione.execute(
+              status -> {
+                Sequenza sequenza = sequenzaRepository.findPerAggiornamento(SEQUENZA);
+                if (sequenza == null) {
+                  return null;
+                }
+                long valore = sequenza.getProssimo();
+                sequenza.setProssimo(valore + dimensioneBlocco);
+                return valore;
+              });
+      if (inizio != null) {
+        return inizio;
+      }
+      try {
+        nuovaTransazione.executeWithoutResult(
+            status -> sequenzaRepository.saveAndFlush(new Sequenza(SEQUENZA, 0)));
+      } catch (DataIntegrityViolationException e) {
+        // la sequenza è stata creata da un'altra istanza
+      }
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package com.commigo.metaclass.gestionestanza.codici;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Mappa a indirizzamento aperto da chiavi int non negative a valori long, senza oggetti per voce.
+ * Usa il probing lineare con cancellazione a scorrimento all'indietro. Non è thread-safe.
+ */
+final class MappaIntLong {
+
+  /** Marcatore di cella libera: le chiavi sono sempre non negative. */
+  private static final int LIBERA = -1;
+
+  private static final float FATTORE_CARICO = 0.5f;
+
+  private int[] chiavi;
+  private long[] valori;
+  private int maschera;
+  private int dimensione;
+
+  /**
+   * Costruttore.
+   *
+   * @param capacita numero di voci previste
+   */
+  MappaIntLong(int capacita) {
+    alloca(Integer.highestOneBit(Math.max(4, (int) (capacita / FATTORE_CARICO)) - 1) << 1);
+  }
+
+  /**
+   * Restituisce il valore associato a una chiave.
+   *
+   * @param chiave chiave non negativa
+   * @param assente valore restituito se la chiave non è presente
+   * @return valore associato alla chiave
+   */
+  long get(int chiave, long assente) {
+    for (int i = indice(chiave); ; i = (i + 1) & maschera) {
+      int k = chiavi[i];
+      if (k == chiave) {
+        return valori[i];
+      }
+      if (k == LIBERA) {
+        return assente;
+      }
+    }
+  }
+
+  /**
+   * Associa un valore a una chiave, sostituendo quello precedente.
+   *
+   * @param chiave chiave non negativa
+   * @param valore valore da associare
+   */
+  void put(int chiave, long valore) {
+    if (chiave < 0) {
+      throw new IllegalArgumentException("chiave negativa: " + chiave);
+    }
+    if (dimensione + 1 > chiavi.length * FATTORE_CARICO) {
+      ridimensiona();
+    }
+    for (int i = indice(chiave); ; i = (i + 1) & maschera) {
+      int k = chiavi[i];
+      if (k == chiave) {
+        valori[i] = valore;
+        return;
+      }
+      if (k == LIBERA) {
+        chiavi[i] = chiave;
+        valori[i] = valore;
+        dimensione++;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Rimuove una chiave.
+   *
+   * @param chiave chiave da rimuovere
+   * @return true se la chiave era presente
+   */
+  boolean remove(int chiave) {
+    for (int i = indice(chiave); ; i = (i + 1) & maschera) {
+      int k = chiavi[i];
+      if (k == LIBERA) {
+        return false;
+      }
+      if (k == chiave) {
+        liberaCella(i);
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Rimuove tutte le voci il cui valore soddisfa un predicato.
+   *
+   * @param predicato predicato sui valori
+   * @return numero di voci rimosse
+   */
+  int removeIf(LongPredicate predicato) {
+    int rimosse = 0;
+    for (int i = 0; i < chiavi.length; i++) {
+      // dopo lo scorrimento la cella può contenere una nuova voce da controllare
+      while (chiavi[i] != LIBERA && predicato.test(valori[i])) {
+        liberaCella(i);
+        rimosse++;
+      }
+    }
+    return rimosse;
+  }
+
+  int size() {
+    return dimensione;
+  }
+
+  void clear() {
+    Arrays.fill(chiavi, LIBERA);
+    dimensione = 0;
+  }
+
+  private void liberaCella(int libera) {
+    // sposta indietro le voci successive che non si troverebbero più col probing
+    int i = libera;
+    while (true) {
+      i = (i + 1) & maschera;
+      int k = chiavi[i];
+      if (k == LIBERA) {
+        break;
+      }
+      int ideale = indice(k);
+      boolean daSpostare =
+          libera <= i ? (ideale <= libera || ideale > i) : (ideale <= libera && ideale > i);
+      if (daSpostare) {
+        chiavi[libera] = k;
+        valori[libera] = valori[i];
+        libera = i;
+      }
+    }
+    chiavi[libera] = LIBERA;
+    dimensione--;
+  }
+
+  private int indice(int chiave) {
+    int h = chiave * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & maschera;
+  }
+
+  private void ridimensiona() {
+    int[] vecchieChiavi = chiavi;
+    long[] vecchiValori = valori;
+    alloca(chiavi.length << 1);
+    for (int i = 0; i < vecchieChiavi.length; i++) {
+      if (vecchieChiavi[i] != LIBERA) {
+        put(vecchieChiavi[i], vecchiValori[i]);
+      }
+    }
+  }
+
+  private void alloca(int capacita) {
+    chiavi = new int[capacita];
+    valori = new long[capacita];
+    Arrays.fill(chiavi, LIBERA);
+    maschera = capacita - 1;
+    dimensione = 0;
+  }
+}
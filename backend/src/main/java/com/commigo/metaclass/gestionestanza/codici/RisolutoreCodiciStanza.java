@@ -0,0 +1,233 @@
+package com.commigo.metaclass.gestionestanza.codici;
+
+import com.commigo.metaclass.gestionestanza.repository.StanzaRepository;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Risolve i codici delle stanze nei rispettivi id senza interrogare il database. I codici a 6
+ * cifre sono usati come chiavi int di una mappa primitiva, caricata all'avvio e aggiornata alla
+ * creazione ed eliminazione delle stanze. Un codice assente dalla mappa è considerato inesistente:
+ * le stanze create da altre istanze vengono caricate leggendo solo quelle con id successivo al
+ * massimo noto, al più una volta per intervallo, così i tentativi di indovinare un codice non
+ * generano più di una query per intervallo.
+ */
+@Slf4j
+@Component
+public class RisolutoreCodiciStanza {
+
+  /** Valore restituito per i codici che non corrispondono ad alcuna stanza. */
+  public static final long NESSUNA_STANZA = -1;
+
+  private static final int CIFRE_CODICE = 6;
+
+  private final StanzaRepository stanzaRepository;
+  private final long intervalloAggiornamento;
+  private final long margineAggiornamento;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /** Codice della stanza verso il suo id. */
+  private final MappaIntLong stanze = new MappaIntLong(1024);
+
+  /** Id della stanza verso il suo codice, per rimuoverlo senza scandire {@link #stanze}. */
+  private final Map<Long, Integer> codici = new HashMap<>();
+
+  /** Id massimo tra le stanze caricate. */
+  private long maxIdNoto;
+
+  /** Istante a partire dal quale un codice assente può causare un nuovo aggiornamento. */
+  private long prossimoAggiornamento;
+
+  /**
+   * Costruttore.
+   *
+   * @param stanzaRepository repository delle stanze
+   * @param intervalloAggiornamento millisecondi minimi tra due letture delle nuove stanze
+   * @param margineAggiornamento id precedenti al massimo noto riletti ad ogni aggiornamento, per
+   *     le stanze che hanno ottenuto l'id prima di un'altra ma hanno fatto commit dopo
+   */
+  public RisolutoreCodiciStanza(
+      StanzaRepository stanzaRepository,
+      @Value("${stanza.codici.aggiornamento.intervallo:250}") long intervalloAggiornamento,
+      @Value("${stanza.codici.aggiornamento.margine:100}") long margineAggiornamento) {
+    this.stanzaRepository = stanzaRepository;
+    this.intervalloAggiornamento = intervalloAggiornamento;
+    this.margineAggiornamento = margineAggiornamento;
+  }
+
+  /** Carica i codici di tutte le stanze all'avvio. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void init() {
+    List<Object[]> righe = stanzaRepository.findCodiciEId();
+    lock.writeLock().lock();
+    try {
+      stanze.clear();
+      codici.clear();
+      maxIdNoto = 0;
+      carica(righe);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    log.info("Caricati {} codici stanza", righe.size());
+  }
+
+  /**
+   * Restituisce l'id della stanza con un certo codice. Se il codice non è in memoria e l'ultimo
+   * aggiornamento è più vecchio dell'intervallo configurato, vengono caricate le stanze create nel
+   * frattempo da altre istanze; altrimenti il codice è considerato inesistente.
+   *
+   * @param codice codice della stanza
+   * @return id della stanza, {@link #NESSUNA_STANZA} se il codice non esiste
+   */
+  public long risolvi(String codice) {
+    int chiave = chiave(codice);
+    if (chiave < 0) {
+      return NESSUNA_STANZA;
+    }
+
+    long adesso = System.currentTimeMillis();
+    long dopo;
+    lock.readLock().lock();
+    try {
+      long id = stanze.get(chiave, NESSUNA_STANZA);
+      if (id != NESSUNA_STANZA || adesso < prossimoAggiornamento) {
+        return id;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    // un solo thread per intervallo legge le nuove stanze, gli altri considerano il codice assente
+    lock.writeLock().lock();
+    try {
+      if (adesso < prossimoAggiornamento) {
+        return stanze.get(chiave, NESSUNA_STANZA);
+      }
+      prossimoAggiornamento = adesso + intervalloAggiornamento;
+      dopo = Math.max(0, maxIdNoto - margineAggiornamento);
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    List<Object[]> nuove = stanzaRepository.findCodiciEIdDopo(dopo);
+    lock.writeLock().lock();
+    try {
+      carica(nuove);
+      return stanze.get(chiave, NESSUNA_STANZA);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Registra il codice di una stanza, rimuovendo quello precedente. L'aggiornamento è ripetuto
+   * dopo il commit della transazione corrente.
+   *
+   * @param idStanza id della stanza
+   * @param codice nuovo codice della stanza
+   */
+  public void registra(long idStanza, String codice) {
+    int chiave = chiave(codice);
+    if (chiave < 0) {
+      return;
+    }
+    Runnable azione =
+        () -> {
+          lock.writeLock().lock();
+          try {
+            aggiungi(chiave, idStanza);
+          } finally {
+            lock.writeLock().unlock();
+          }
+        };
+    azione.run();
+    dopoIlCommit(azione);
+  }
+
+  /**
+   * Rimuove il codice di una stanza, ad esempio alla sua eliminazione o quando risulta non più
+   * valido.
+   *
+   * @param idStanza id della stanza
+   */
+  public void rimuovi(long idStanza) {
+    Runnable azione =
+        () -> {
+          lock.writeLock().lock();
+          try {
+            Integer precedente = codici.remove(idStanza);
+            if (precedente != null) {
+              stanze.remove(precedente);
+            }
+          } finally {
+            lock.writeLock().unlock();
+          }
+        };
+    azione.run();
+    dopoIlCommit(azione);
+  }
+
+  /** Aggiunge alle mappe le coppie [codice, id] lette dal database. Va chiamato con il lock. */
+  private void carica(List<Object[]> righe) {
+    for (Object[] riga : righe) {
+      int chiave = chiave((String) riga[0]);
+      if (chiave >= 0) {
+        aggiungi(chiave, (Long) riga[1]);
+      }
+    }
+  }
+
+  /** Associa un codice a una stanza, rimuovendo il codice precedente. Va chiamato con il lock. */
+  private void aggiungi(int chiave, long idStanza) {
+    Integer precedente = codici.put(idStanza, chiave);
+    if (precedente != null && precedente != chiave) {
+      stanze.remove(precedente);
+    }
+    stanze.put(chiave, idStanza);
+    maxIdNoto = Math.max(maxIdNoto, idStanza);
+  }
+
+  /**
+   * Converte un codice nella chiave della mappa.
+   *
+   * @param codice codice della stanza
+   * @return chiave, -1 se il codice non è composto da 6 cifre
+   */
+  static int chiave(String codice) {
+    if (codice == null || codice.length() != CIFRE_CODICE) {
+      return -1;
+    }
+    int chiave = 0;
+    for (int i = 0; i < CIFRE_CODICE; i++) {
+      char c = codice.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      chiave = chiave * 10 + (c - '0');
+    }
+    return chiave;
+  }
+
+  private static void dopoIlCommit(Runnable azione) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              azione.run();
+            }
+          });
+    }
+  }
+}
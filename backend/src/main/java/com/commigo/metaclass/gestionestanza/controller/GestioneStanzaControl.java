@@ -5,30 +5,36 @@ import com.commigo.metaclass.exceptions.ClientRuntimeException;
 import com.commigo.metaclass.exceptions.RuntimeException401;
 import com.commigo.metaclass.exceptions.RuntimeException403;
 import com.commigo.metaclass.exceptions.ServerRuntimeException;
+import com.commigo.metaclass.gestionestanza.membri.EsitoModerazione;
+import com.commigo.metaclass.gestionestanza.membri.FiltroMembri;
+import com.commigo.metaclass.gestionestanza.membri.PaginaMembri;
 import com.commigo.metaclass.gestionestanza.service.GestioneStanzaService;
 import com.commigo.metaclass.utility.MapValidator;
 import com.commigo.metaclass.utility.request.RequestUtils;
 import com.commigo.metaclass.utility.response.ResponseUtils;
 import com.commigo.metaclass.utility.response.types.AccessResponse;
 import com.commigo.metaclass.utility.response.types.Response;
-import com.commigo.metaclass.webconfig.JwtTokenUtil;
 import com.commigo.metaclass.webconfig.ValidationToken;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /** Richieste API per la gestione stanza. */
 @RestController
@@ -38,8 +44,6 @@ public class GestioneStanzaControl {
 
   @Autowired private ValidationToken validationToken;
 
-  @Autowired private JwtTokenUtil jwtTokenUtil;
-
   /**
    * metodo che gestisce la richiesta di ban di un utente all'interno di una stanza.
    *
@@ -59,7 +63,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
       return stanzaService.banUtente(idStanza, metaid, idUtente);
 
     } catch (RuntimeException403 re) {
@@ -93,7 +97,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403(RequestUtils.errorsRequest(result));
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
 
       stanzaService.creaStanza(s, metaid);
       return ResponseUtils.getResponseOk("Corretto");
@@ -128,7 +132,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
 
       return ResponseEntity.ok(stanzaService.downgradeUtente(metaid, idUtente, idStanza));
 
@@ -157,7 +161,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
 
       return ResponseEntity.ok(stanzaService.deleteRoom(metaid, id));
 
@@ -197,7 +201,7 @@ public class GestioneStanzaControl {
       JsonNode jsonNode = objectMapper.readTree(scelta);
       boolean newScelta = jsonNode.get("scelta").asBoolean();
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
       return stanzaService.gestioneAccesso(metaid, idUtente, idStanza, newScelta);
 
     } catch (RuntimeException403 re) {
@@ -231,7 +235,7 @@ public class GestioneStanzaControl {
       // validazione della map
       MapValidator.stanzaValidate(params);
 
-      if (!stanzaService.modificaDatiStanza(params, id)) {
+      if (!stanzaService.modificaDatiStanza(params, id, validationToken.getMetaId(request))) {
         throw new ServerRuntimeException("modifica non effettuata");
       } else {
         return ResponseEntity.ok(new Response<>(true, "Stanza modificata con successo"));
@@ -269,7 +273,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
 
       return ResponseEntity.ok(stanzaService.upgradeUtente(metaid, idUtente, idStanza));
 
@@ -320,7 +324,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("il codice deve essere un numero di 6 cifre");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
       return ResponseEntity.ok(stanzaService.accessoStanza(codiceStanza, metaId).getBody());
 
     } catch (JsonProcessingException je) {
@@ -403,7 +407,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
       return stanzaService.visualizzaUtentiInAttesaInStanza(id, metaid);
 
     } catch (RuntimeException403 re) {
@@ -519,7 +523,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
       return stanzaService.modificaScenario(metaid, idScenario, idStanza);
 
     } catch (RuntimeException403 e) {
@@ -554,7 +558,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
 
       ObjectMapper objectMapper = new ObjectMapper();
       JsonNode jsonNode = objectMapper.readTree(nome);
@@ -588,7 +592,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
 
       return stanzaService.kickPartecipante(metaid, idStanza, idUtente);
 
@@ -619,7 +623,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
 
       Ruolo r = stanzaService.getRuoloByUserAndStanzaId(metaid, idStanza);
       if (r == null) {
@@ -653,7 +657,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
 
       List<StatoPartecipazione> sp = stanzaService.getStatoPartecipazione(metaid, idStanza);
       if (sp == null) {
@@ -690,7 +694,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
 
       return stanzaService.silenziaPartecipante(metaid, idStanza, idUtente);
 
@@ -720,7 +724,7 @@ public class GestioneStanzaControl {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaid = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaid = validationToken.getMetaId(request);
 
       return stanzaService.unmutePartecipante(metaid, idStanza, idUtente);
 
@@ -731,6 +735,235 @@ public class GestioneStanzaControl {
     }
   }
 
+  /**
+   * metodo che permette di gestire la richiesta di visualizzazione paginata dei membri di una
+   * stanza. Ogni pagina restituisce il cursore da passare come "dopo" per ottenere la successiva.
+   *
+   * @param idStanza id della stanza
+   * @param stato membri da visualizzare: PRESENTI, BANNATI, IN_ATTESA o TUTTI
+   * @param dopo cursore restituito con la pagina precedente, assente per la prima pagina
+   * @param dimensione numero massimo di membri della pagina
+   * @param request richiesta HTTP fornita dal client
+   * @return pagina dei membri della stanza ed un messaggio che descrive l'esito dell'operazione
+   */
+  @PostMapping(value = "/visualizzaMembriStanza/{idStanza}")
+  public ResponseEntity<Response<PaginaMembri>> visualizzaMembriStanza(
+      @PathVariable Long idStanza,
+      @RequestParam(defaultValue = "PRESENTI") String stato,
+      @RequestParam(required = false) Long dopo,
+      @RequestParam(defaultValue = "50") int dimensione,
+      HttpServletRequest request) {
+
+    try {
+      if (!validationToken.isTokenValid(request)) {
+        throw new RuntimeException403("Token non valido");
+      }
+
+      FiltroMembri filtro;
+      try {
+        filtro = FiltroMembri.valueOf(stato.toUpperCase());
+      } catch (IllegalArgumentException e) {
+        throw new RuntimeException403("stato dei membri non valido: " + stato);
+      }
+
+      String metaid = validationToken.getMetaId(request);
+      return stanzaService.visualizzaMembriStanza(metaid, idStanza, filtro, dopo, dimensione);
+
+    } catch (RuntimeException403 re) {
+      return ResponseEntity.status(HttpStatus.FORBIDDEN)
+          .body(new Response<>(null, "Errore durante la richiesta: " + re.getMessage()));
+    } catch (Exception e) {
+      e.printStackTrace();
+      return ResponseEntity.status(500).body(new Response<>(null, "Errore durante l'operazione"));
+    }
+  }
+
+  /**
+   * metodo che permette di gestire la richiesta di ricevere gli eventi di una stanza (accessi,
+   * ban, kick, cambi di ruolo e di scenario) tramite Server-Sent Events, senza interrogare
+   * periodicamente gli endpoint di visualizzazione dello stato della stanza.
+   *
+   * @param idStanza id della stanza
+   * @param request richiesta HTTP fornita dal client
+   * @return canale su cui vengono inviati gli eventi della stanza
+   */
+  @GetMapping(value = "/eventiStanza/{idStanza}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> eventiStanza(
+      @PathVariable Long idStanza, HttpServletRequest request) {
+
+    try {
+      if (!validationToken.isTokenValid(request)) {
+        throw new RuntimeException403("Token non valido");
+      }
+
+      String metaid = validationToken.getMetaId(request);
+      return ResponseEntity.ok(stanzaService.iscriviEventiStanza(metaid, idStanza));
+
+    } catch (RuntimeException403 e) {
+      return ResponseEntity.status(403).build();
+    } catch (Exception e) {
+      e.printStackTrace();
+      return ResponseEntity.status(500).build();
+    }
+  }
+
+  /**
+   * metodo che permette di gestire la richiesta di ban di più utenti all'interno di una stanza.
+   *
+   * @param idStanza id della stanza
+   * @param body body della richiesta con la lista "idUtenti" degli utenti
+   * @param request richiesta HTTP fornita dal client
+   * @return esito dell'operazione per ciascun utente ed un messaggio che descrive l'esito di essa
+   */
+  @PostMapping(value = "/banUtenti/{idStanza}")
+  public ResponseEntity<Response<List<EsitoModerazione>>> banUtenti(
+      @PathVariable Long idStanza, @RequestBody String body, HttpServletRequest request) {
+
+    try {
+      if (!validationToken.isTokenValid(request)) {
+        throw new RuntimeException403("Token non valido");
+      }
+
+      JsonNode jsonNode = new ObjectMapper().readTree(body);
+      List<Long> idUtenti = leggiIdUtenti(jsonNode);
+
+      String metaid = validationToken.getMetaId(request);
+      return stanzaService.banUtenti(metaid, idStanza, idUtenti);
+
+    } catch (JsonProcessingException | RuntimeException403 e) {
+      return ResponseEntity.status(403)
+          .body(new Response<>(null, "Errore nell'operazione: " + e.getMessage()));
+    } catch (Exception e) {
+      e.printStackTrace();
+      return ResponseEntity.status(500).body(new Response<>(null, "Errore durante l'operazione"));
+    }
+  }
+
+  /**
+   * metodo che permette di gestire la richiesta di kick di più partecipanti da una stanza.
+   *
+   * @param idStanza id della stanza
+   * @param body body della richiesta con la lista "idUtenti" degli utenti
+   * @param request richiesta HTTP fornita dal client
+   * @return esito dell'operazione per ciascun utente ed un messaggio che descrive l'esito di essa
+   */
+  @PostMapping(value = "/kickarePartecipanti/{idStanza}")
+  public ResponseEntity<Response<List<EsitoModerazione>>> kickPartecipanti(
+      @PathVariable Long idStanza, @RequestBody String body, HttpServletRequest request) {
+
+    try {
+      if (!validationToken.isTokenValid(request)) {
+        throw new RuntimeException403("Token non valido");
+      }
+
+      JsonNode jsonNode = new ObjectMapper().readTree(body);
+      List<Long> idUtenti = leggiIdUtenti(jsonNode);
+
+      String metaid = validationToken.getMetaId(request);
+      return stanzaService.kickPartecipanti(metaid, idStanza, idUtenti);
+
+    } catch (JsonProcessingException | RuntimeException403 e) {
+      return ResponseEntity.status(403)
+          .body(new Response<>(null, "Errore nell'operazione: " + e.getMessage()));
+    } catch (Exception e) {
+      e.printStackTrace();
+      return ResponseEntity.status(500).body(new Response<>(null, "Errore durante l'operazione"));
+    }
+  }
+
+  /**
+   * metodo che permette di gestire la richiesta di silenziare più partecipanti di una
+   * stanza.
+   *
+   * @param idStanza id della stanza
+   * @param body body della richiesta con la lista "idUtenti" degli utenti
+   * @param request richiesta HTTP fornita dal client
+   * @return esito dell'operazione per ciascun utente ed un messaggio che descrive l'esito di essa
+   */
+  @PostMapping(value = "/silenziarePartecipanti/{idStanza}")
+  public ResponseEntity<Response<List<EsitoModerazione>>> silenziaPartecipanti(
+      @PathVariable Long idStanza, @RequestBody String body, HttpServletRequest request) {
+
+    try {
+      if (!validationToken.isTokenValid(request)) {
+        throw new RuntimeException403("Token non valido");
+      }
+
+      JsonNode jsonNode = new ObjectMapper().readTree(body);
+      List<Long> idUtenti = leggiIdUtenti(jsonNode);
+
+      String metaid = validationToken.getMetaId(request);
+      return stanzaService.silenziaPartecipanti(metaid, idStanza, idUtenti);
+
+    } catch (JsonProcessingException | RuntimeException403 e) {
+      return ResponseEntity.status(403)
+          .body(new Response<>(null, "Errore nell'operazione: " + e.getMessage()));
+    } catch (Exception e) {
+      e.printStackTrace();
+      return ResponseEntity.status(500).body(new Response<>(null, "Errore durante l'operazione"));
+    }
+  }
+
+  /**
+   * metodo che permette di gestire la richiesta di accettare o rifiutare l'accesso di più
+   * utenti in attesa di entrare in una stanza.
+   *
+   * @param idStanza id della stanza
+   * @param body body della richiesta con la lista "idUtenti" degli utenti e la "scelta" di
+   *     accettarli o rifiutarli
+   * @param request richiesta HTTP fornita dal client
+   * @return esito dell'operazione per ciascun utente ed un messaggio che descrive l'esito di essa
+   */
+  @PostMapping(value = "/gestioneAccessi/{idStanza}")
+  public ResponseEntity<Response<List<EsitoModerazione>>> gestioneAccessiMultipli(
+      @PathVariable Long idStanza, @RequestBody String body, HttpServletRequest request) {
+
+    try {
+      if (!validationToken.isTokenValid(request)) {
+        throw new RuntimeException403("Token non valido");
+      }
+
+      JsonNode jsonNode = new ObjectMapper().readTree(body);
+      List<Long> idUtenti = leggiIdUtenti(jsonNode);
+      JsonNode sceltaNode = jsonNode.get("scelta");
+      if (sceltaNode == null || !sceltaNode.isBoolean()) {
+        throw new RuntimeException403("l'attributo 'scelta' deve essere un booleano");
+      }
+
+      String metaid = validationToken.getMetaId(request);
+      return stanzaService.gestioneAccessi(metaid, idStanza, idUtenti, sceltaNode.asBoolean());
+
+    } catch (JsonProcessingException | RuntimeException403 e) {
+      return ResponseEntity.status(403)
+          .body(new Response<>(null, "Errore nell'operazione: " + e.getMessage()));
+    } catch (Exception e) {
+      e.printStackTrace();
+      return ResponseEntity.status(500).body(new Response<>(null, "Errore durante l'operazione"));
+    }
+  }
+
+  /**
+   * Metodo che legge la lista degli id degli utenti dal body di una richiesta.
+   *
+   * @param jsonNode body della richiesta
+   * @return id degli utenti
+   * @throws RuntimeException403 se la lista manca, è vuota o contiene valori non interi
+   */
+  private static List<Long> leggiIdUtenti(JsonNode jsonNode) throws RuntimeException403 {
+    JsonNode utentiNode = jsonNode.get("idUtenti");
+    if (utentiNode == null || !utentiNode.isArray() || utentiNode.isEmpty()) {
+      throw new RuntimeException403("l'attributo 'idUtenti' deve essere una lista non vuota");
+    }
+    List<Long> idUtenti = new ArrayList<>(utentiNode.size());
+    for (JsonNode idNode : utentiNode) {
+      if (!idNode.isIntegralNumber()) {
+        throw new RuntimeException403("gli id degli utenti devono essere numeri interi");
+      }
+      idUtenti.add(idNode.asLong());
+    }
+    return idUtenti;
+  }
+
   /**
    * Metodo che permette di gestire la richiesta di visualizzare l'immagine dello scenario in uso in una stanza
    * @param id_stanza id della stanza di cui di vuole visualizzare l'immagine dello scenario
@@ -0,0 +1,27 @@
+package com.commigo.metaclass.gestionestanza.eventi;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Evento compatto che descrive un cambiamento dello stato di una stanza. Contiene solo gli id
+ * coinvolti: i client aggiornano il proprio stato senza dover interrogare nuovamente il server.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class EventoStanza {
+
+  /** Tipo di cambiamento. */
+  private final TipoEventoStanza tipo;
+
+  /** Id della stanza. */
+  private final Long idStanza;
+
+  /** Id dell'utente coinvolto, null se l'evento riguarda la stanza. */
+  private final Long idUtente;
+
+  /** Valore associato all'evento, null se il tipo non ne prevede uno. */
+  private final String valore;
+}
@@ -0,0 +1,228 @@
+package com.commigo.metaclass.gestionestanza.eventi;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Distribuisce gli eventi delle stanze ai client collegati tramite Server-Sent Events. Gli eventi
+ * sono pubblicati dai service con l'{@link org.springframework.context.ApplicationEventPublisher}
+ * e inoltrati solo dopo il commit della transazione che li ha prodotti.
+ *
+ * <p>Ogni client ha un buffer limitato svuotato da un pool di thread dedicato, così chi pubblica
+ * non attende mai la rete. Un client che non riesce a stare al passo e riempie il proprio buffer
+ * viene scollegato: al ricollegamento ricarica lo stato della stanza.
+ *
+ * <p>Ogni client è associato all'utente che lo ha aperto. Quando un utente viene kickato, bannato
+ * o la sua richiesta di accesso viene rifiutata, i suoi client ricevono l'evento e vengono
+ * scollegati, così non ricevono più gli eventi della stanza.
+ */
+@Slf4j
+@Component
+public class HubEventiStanza {
+
+  /** Segnaposto per i messaggi che mantengono attiva la connessione. */
+  private static final EventoStanza PING = new EventoStanza(null, null, null, null);
+
+  private final ExecutorService executor;
+  private final int dimensioneBuffer;
+  private final long timeout;
+
+  private final Map<Long, Set<Client>> stanze = new ConcurrentHashMap<>();
+
+  /**
+   * Costruttore.
+   *
+   * @param thread numero di thread che inviano gli eventi ai client
+   * @param dimensioneBuffer numero massimo di eventi in attesa di invio per ogni client
+   * @param timeout millisecondi dopo cui una connessione viene chiusa e il client si ricollega
+   */
+  public HubEventiStanza(
+      @Value("${stanza.eventi.thread:4}") int thread,
+      @Value("${stanza.eventi.buffer:64}") int dimensioneBuffer,
+      @Value("${stanza.eventi.timeout:1800000}") long timeout) {
+    this(creaExecutor(thread), dimensioneBuffer, timeout);
+  }
+
+  /**
+   * Costruttore con un executor esplicito, che invia gli eventi ai client.
+   *
+   * @param executor executor che svuota i buffer dei client
+   * @param dimensioneBuffer numero massimo di eventi in attesa di invio per ogni client
+   * @param timeout millisecondi dopo cui una connessione viene chiusa e il client si ricollega
+   */
+  HubEventiStanza(ExecutorService executor, int dimensioneBuffer, long timeout) {
+    this.executor = executor;
+    this.dimensioneBuffer = dimensioneBuffer;
+    this.timeout = timeout;
+  }
+
+  private static ExecutorService creaExecutor(int thread) {
+    AtomicInteger contatore = new AtomicInteger();
+    return Executors.newFixedThreadPool(
+        thread,
+        r -> {
+          Thread t = new Thread(r, "eventi-stanza-" + contatore.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+  }
+
+  /**
+   * Collega un client agli eventi di una stanza.
+   *
+   * @param idStanza id della stanza
+   * @param idUtente id dell'utente che apre il canale
+   * @return canale su cui il client riceve gli eventi
+   */
+  public SseEmitter iscrivi(Long idStanza, Long idUtente) {
+    SseEmitter emitter = new SseEmitter(timeout);
+    Client client =
+        new Client(idStanza, idUtente, emitter, new ArrayBlockingQueue<>(dimensioneBuffer));
+    emitter.onCompletion(() -> rimuovi(client));
+    emitter.onTimeout(() -> rimuovi(client));
+    emitter.onError(e -> rimuovi(client));
+    stanze.compute(
+        idStanza,
+        (id, clients) -> {
+          Set<Client> nuovi = clients != null ? clients : ConcurrentHashMap.newKeySet();
+          nuovi.add(client);
+          return nuovi;
+        });
+    return emitter;
+  }
+
+  /**
+   * Inoltra un evento ai client collegati alla stanza, dopo il commit della transazione corrente
+   * o subito se non c'è una transazione.
+   *
+   * @param evento evento da inoltrare
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void pubblica(EventoStanza evento) {
+    Set<Client> clients = stanze.get(evento.getIdStanza());
+    if (clients != null) {
+      clients.forEach(client -> accoda(client, evento));
+      if (allontana(evento)) {
+        // i client dell'utente allontanato non ricevono altri eventi dopo questo
+        clients.stream().filter(client -> riguarda(client, evento)).forEach(this::rimuovi);
+      }
+    }
+  }
+
+  /** Invia periodicamente un commento a tutti i client, per scoprire le connessioni cadute. */
+  @Scheduled(fixedDelayString = "${stanza.eventi.ping:20000}")
+  public void ping() {
+    stanze.values().forEach(clients -> clients.forEach(client -> accoda(client, PING)));
+  }
+
+  /** Chiude tutte le connessioni allo spegnimento dell'applicazione. */
+  @PreDestroy
+  public void chiudi() {
+    executor.shutdownNow();
+    stanze.values().forEach(clients -> clients.forEach(client -> client.emitter.complete()));
+    stanze.clear();
+  }
+
+  private void accoda(Client client, EventoStanza evento) {
+    if (!client.coda.offer(evento)) {
+      log.debug("Client lento scollegato dagli eventi della stanza {}", client.idStanza);
+      rimuovi(client);
+      client.emitter.complete();
+      return;
+    }
+    if (client.inInvio.compareAndSet(false, true)) {
+      executor.execute(() -> invia(client));
+    }
+  }
+
+  private void invia(Client client) {
+    do {
+      EventoStanza evento;
+      while ((evento = client.coda.poll()) != null) {
+        try {
+          if (evento == PING) {
+            client.emitter.send(SseEmitter.event().comment("ping"));
+          } else {
+            client.emitter.send(
+                SseEmitter.event()
+                    .name(evento.getTipo().name())
+                    .data(evento, MediaType.APPLICATION_JSON));
+          }
+          if (evento.getTipo() == TipoEventoStanza.STANZA_ELIMINATA
+              || allontana(evento) && riguarda(client, evento)) {
+            rimuovi(client);
+            client.emitter.complete();
+            return;
+          }
+        } catch (IOException | IllegalStateException e) {
+          // connessione chiusa dal client
+          rimuovi(client);
+          client.emitter.completeWithError(e);
+          return;
+        }
+      }
+      client.inInvio.set(false);
+      // un evento accodato dopo l'ultimo poll deve essere inviato da questo thread o dal prossimo
+    } while (!client.coda.isEmpty() && client.inInvio.compareAndSet(false, true));
+  }
+
+  /**
+   * Indica se un evento allontana dalla stanza l'utente a cui si riferisce.
+   *
+   * @param evento evento da controllare
+   * @return true per kick, ban e rifiuto della richiesta di accesso
+   */
+  private static boolean allontana(EventoStanza evento) {
+    TipoEventoStanza tipo = evento.getTipo();
+    return tipo == TipoEventoStanza.KICK
+        || tipo == TipoEventoStanza.BAN
+        || tipo == TipoEventoStanza.ACCESSO_RIFIUTATO;
+  }
+
+  private static boolean riguarda(Client client, EventoStanza evento) {
+    return client.idUtente != null && client.idUtente.equals(evento.getIdUtente());
+  }
+
+  private void rimuovi(Client client) {
+    stanze.computeIfPresent(
+        client.idStanza,
+        (id, clients) -> {
+          clients.remove(client);
+          return clients.isEmpty() ? null : clients;
+        });
+  }
+
+  /** Client collegato agli eventi di una stanza. */
+  private static final class Client {
+
+    private final Long idStanza;
+    private final Long idUtente;
+    private final SseEmitter emitter;
+    private final BlockingQueue<EventoStanza> coda;
+    private final AtomicBoolean inInvio = new AtomicBoolean();
+
+    private Client(
+        Long idStanza, Long idUtente, SseEmitter emitter, BlockingQueue<EventoStanza> coda) {
+      this.idStanza = idStanza;
+      this.idUtente = idUtente;
+      this.emitter = emitter;
+      this.coda = coda;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package com.commigo.metaclass.gestionestanza.eventi;
+
+/** Tipi di cambiamento dello stato di una stanza notificati ai client collegati. */
+public enum TipoEventoStanza {
+  /** Un utente è entrato in una stanza pubblica. */
+  ACCESSO,
+  /** Un utente ha chiesto di entrare in una stanza privata. */
+  RICHIESTA_ACCESSO,
+  /** La richiesta di accesso di un utente è stata accettata. */
+  ACCESSO_ACCETTATO,
+  /** La richiesta di accesso di un utente è stata rifiutata. */
+  ACCESSO_RIFIUTATO,
+  /** Un utente è stato bannato. */
+  BAN,
+  /** Il ban di un utente è stato rimosso. */
+  BAN_RIMOSSO,
+  /** Un utente è stato kickato. */
+  KICK,
+  /** Un utente è stato silenziato. */
+  SILENZIATO,
+  /** Un utente non è più silenziato. */
+  SMUTATO,
+  /** Un partecipante è diventato organizzatore. */
+  PROMOZIONE,
+  /** Un organizzatore è diventato partecipante. */
+  DECLASSAMENTO,
+  /** Il nome in stanza di un utente è stato modificato; il valore è il nuovo nome. */
+  NOME_MODIFICATO,
+  /** Lo scenario della stanza è stato modificato; il valore è l'id del nuovo scenario. */
+  SCENARIO_MODIFICATO,
+  /** I dati della stanza sono stati modificati. */
+  DATI_MODIFICATI,
+  /** La stanza è stata eliminata; dopo questo evento il canale viene chiuso. */
+  STANZA_ELIMINATA
+}
@@ -0,0 +1,219 @@
+package com.commigo.metaclass.gestionestanza.membri;
+
+import com.commigo.metaclass.gestionestanza.repository.StatoPartecipazioneRepository;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Cache degli stati dei membri delle stanze, indicizzata per id stanza e metaId. Ogni modifica a
+ * uno stato partecipazione deve invalidare la voce corrispondente: l'invalidazione è ripetuta dopo
+ * il commit, così una lettura concorrente non può rimettere in cache lo stato precedente.
+ *
+ * <p>Le invalidazioni raggiungono solo l'istanza corrente: ogni voce scade dopo una durata
+ * limitata, così le modifiche fatte da altre istanze dell'applicazione vengono viste entro quella
+ * durata. I controlli che non possono attendere, come quelli di ban ed espulsione all'accesso,
+ * usano {@link #leggi(Long, String)}. Il numero di voci è limitato e gli utenti che non sono membri
+ * di una stanza, o che cercano una stanza inesistente, non vengono memorizzati.
+ */
+@Component
+public class CacheMembri {
+
+  private final StatoPartecipazioneRepository statoPartecipazioneRepository;
+  private final long durata;
+  private final int massimo;
+
+  private final Map<Long, Map<String, Voce>> stanze = new ConcurrentHashMap<>();
+  private final AtomicInteger dimensione = new AtomicInteger();
+
+  /** Incrementata ad ogni invalidazione, scarta i caricamenti iniziati prima di essa. */
+  private final AtomicLong generazione = new AtomicLong();
+
+  /**
+   * Costruttore.
+   *
+   * @param statoPartecipazioneRepository repository degli stati partecipazione
+   * @param durata millisecondi per cui uno stato resta in cache
+   * @param massimo numero massimo di stati in cache
+   */
+  public CacheMembri(
+      StatoPartecipazioneRepository statoPartecipazioneRepository,
+      @Value("${stanza.membri.cache.durata:30000}") long durata,
+      @Value("${stanza.membri.cache.massimo:100000}") int massimo) {
+    this.statoPartecipazioneRepository = statoPartecipazioneRepository;
+    this.durata = durata;
+    this.massimo = massimo;
+  }
+
+  /**
+   * Restituisce lo stato di un utente in una stanza, leggendolo dal database solo se non è in
+   * cache.
+   *
+   * @param idStanza id della stanza
+   * @param metaId metaId dell'utente
+   * @return stato dell'utente, {@link StatoMembro#NON_MEMBRO} se non ha acceduto alla stanza
+   */
+  public StatoMembro get(Long idStanza, String metaId) {
+    if (idStanza == null || metaId == null) {
+      return StatoMembro.NON_MEMBRO;
+    }
+    Map<String, Voce> membri = stanze.get(idStanza);
+    Voce voce = membri == null ? null : membri.get(metaId);
+    if (voce != null && voce.scadenza() > System.currentTimeMillis()) {
+      return voce.stato();
+    }
+    return leggi(idStanza, metaId);
+  }
+
+  /**
+   * Restituisce lo stato di un utente in una stanza leggendolo sempre dal database, ad esempio
+   * quando un ban o un'espulsione decisi su un'altra istanza devono avere effetto immediato. La
+   * voce in cache viene aggiornata con lo stato letto.
+   *
+   * @param idStanza id della stanza
+   * @param metaId metaId dell'utente
+   * @return stato dell'utente, {@link StatoMembro#NON_MEMBRO} se non ha acceduto alla stanza
+   */
+  public StatoMembro leggi(Long idStanza, String metaId) {
+    if (idStanza == null || metaId == null) {
+      return StatoMembro.NON_MEMBRO;
+    }
+    long letta = generazione.get();
+    StatoMembro stato = statoPartecipazioneRepository.findStatoMembro(metaId, idStanza);
+    if (stato == null) {
+      // un utente espulso su un'altra istanza può avere ancora una voce valida
+      rimuovi(idStanza, metaId);
+      return StatoMembro.NON_MEMBRO;
+    }
+    memorizza(idStanza, metaId, stato, letta);
+    return stato;
+  }
+
+  /**
+   * Restituisce con una sola query gli stati di chi esegue un'azione di moderazione e dell'utente
+   * che la subisce. Lo stato del chiamante viene anche memorizzato in cache.
+   *
+   * @param idStanza id della stanza
+   * @param metaId metaId di chi esegue l'azione
+   * @param idUtente id dell'utente che subisce l'azione
+   * @return stati dei due utenti
+   */
+  public StatiModerazione getStatiModerazione(Long idStanza, String metaId, Long idUtente) {
+    if (idStanza == null || metaId == null || idUtente == null) {
+      return new StatiModerazione(get(idStanza, metaId), null);
+    }
+
+    long letta = generazione.get();
+    StatoMembro chiamante = StatoMembro.NON_MEMBRO;
+    StatoPartecipante bersaglio = null;
+    for (StatoPartecipante sp :
+        statoPartecipazioneRepository.findStatiChiamanteEBersaglio(idStanza, metaId, idUtente)) {
+      // chi modera se stesso è sia chiamante che bersaglio
+      if (metaId.equals(sp.getMetaId())) {
+        chiamante = sp.getStato();
+      }
+      if (sp.getIdUtente() == idUtente) {
+        bersaglio = sp;
+      }
+    }
+    memorizza(idStanza, metaId, chiamante, letta);
+    return new StatiModerazione(chiamante, bersaglio);
+  }
+
+  private void memorizza(Long idStanza, String metaId, StatoMembro stato, long letta) {
+    // i non membri non vengono memorizzati: gli id delle stanze arrivano dalle richieste
+    if (!stato.isMembro()) {
+      return;
+    }
+    long adesso = System.currentTimeMillis();
+    if (dimensione.get() >= massimo) {
+      pulisci(adesso);
+    }
+    // un'invalidazione avvenuta durante la lettura può riguardare proprio questo stato
+    if (generazione.get() == letta) {
+      Voce precedente =
+          stanze
+              .computeIfAbsent(idStanza, k -> new ConcurrentHashMap<>())
+              .put(metaId, new Voce(stato, adesso + durata));
+      if (precedente == null) {
+        dimensione.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Rimuove le voci scadute e, se la cache è ancora piena, la svuota.
+   *
+   * @param adesso istante attuale in millisecondi
+   */
+  private synchronized void pulisci(long adesso) {
+    if (dimensione.get() < massimo) {
+      return;
+    }
+    stanze.values().forEach(membri -> membri.values().removeIf(v -> v.scadenza() <= adesso));
+    stanze.values().removeIf(Map::isEmpty);
+    dimensione.set(stanze.values().stream().mapToInt(Map::size).sum());
+    if (dimensione.get() >= massimo) {
+      generazione.incrementAndGet();
+      stanze.clear();
+      dimensione.set(0);
+    }
+  }
+
+  /**
+   * Invalida lo stato di un utente in una stanza.
+   *
+   * @param idStanza id della stanza
+   * @param metaId metaId dell'utente
+   */
+  public void invalida(Long idStanza, String metaId) {
+    rimuovi(idStanza, metaId);
+    dopoIlCommit(() -> rimuovi(idStanza, metaId));
+  }
+
+  /**
+   * Invalida gli stati di tutti gli utenti di una stanza, ad esempio alla sua eliminazione.
+   *
+   * @param idStanza id della stanza
+   */
+  public void invalidaStanza(Long idStanza) {
+    rimuoviStanza(idStanza);
+    dopoIlCommit(() -> rimuoviStanza(idStanza));
+  }
+
+  private void rimuoviStanza(Long idStanza) {
+    generazione.incrementAndGet();
+    Map<String, Voce> membri = stanze.remove(idStanza);
+    if (membri != null) {
+      dimensione.addAndGet(-membri.size());
+    }
+  }
+
+  private void rimuovi(Long idStanza, String metaId) {
+    generazione.incrementAndGet();
+    Map<String, Voce> membri = stanze.get(idStanza);
+    if (membri != null && membri.remove(metaId) != null) {
+      dimensione.decrementAndGet();
+    }
+  }
+
+  private void dopoIlCommit(Runnable azione) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+              azione.run();
+            }
+          });
+    }
+  }
+
+  /** Stato in cache con il suo istante di scadenza in millisecondi. */
+  private record Voce(StatoMembro stato, long scadenza) {}
+}
@@ -0,0 +1,21 @@
+package com.commigo.metaclass.gestionestanza.membri;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/** Esito di un'azione di moderazione su uno degli utenti di un'operazione multipla. */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class EsitoModerazione {
+
+  /** Id dell'utente su cui si è agito. */
+  private final long idUtente;
+
+  /** true se l'azione è stata applicata all'utente. */
+  private final boolean riuscita;
+
+  /** Messaggio che descrive l'esito dell'azione. */
+  private final String messaggio;
+}
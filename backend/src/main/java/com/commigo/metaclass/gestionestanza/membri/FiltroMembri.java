@@ -0,0 +1,24 @@
+package com.commigo.metaclass.gestionestanza.membri;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/** Filtri degli elenchi paginati dei membri di una stanza. */
+@Getter
+@RequiredArgsConstructor
+public enum FiltroMembri {
+  /** Utenti all'interno della stanza, né bannati né in attesa. */
+  PRESENTI(false, false),
+  /** Utenti bannati dalla stanza. */
+  BANNATI(true, false),
+  /** Utenti in attesa di entrare nella stanza. */
+  IN_ATTESA(false, true),
+  /** Tutti gli utenti che hanno acceduto alla stanza. */
+  TUTTI(null, null);
+
+  /** Valore richiesto del flag bannato, null per non filtrare. */
+  private final Boolean bannato;
+
+  /** Valore richiesto del flag in attesa, null per non filtrare. */
+  private final Boolean inAttesa;
+}
@@ -0,0 +1,33 @@
+package com.commigo.metaclass.gestionestanza.membri;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Proiezione compatta di un utente in una stanza, usata dagli elenchi paginati dei membri al
+ * posto delle entità utente e stato partecipazione complete.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class MembroStanza {
+
+  /** Id dell'utente, usato anche come cursore della paginazione. */
+  private final long idUtente;
+
+  /** Nome dell'utente all'interno della stanza. */
+  private final String nomeInStanza;
+
+  /** Nome del ruolo dell'utente nella stanza. */
+  private final String ruolo;
+
+  /** Indica se l'utente è in attesa di entrare. */
+  private final boolean inAttesa;
+
+  /** Indica se l'utente è bannato. */
+  private final boolean bannato;
+
+  /** Indica se l'utente è silenziato. */
+  private final boolean silenziato;
+}
@@ -0,0 +1,19 @@
+package com.commigo.metaclass.gestionestanza.membri;
+
+import java.util.List;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/** Pagina di un elenco di membri di una stanza, ordinato per id dell'utente. */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class PaginaMembri {
+
+  /** Membri della pagina. */
+  private final List<MembroStanza> membri;
+
+  /** Cursore da passare per ottenere la pagina successiva, null se questa è l'ultima. */
+  private final Long prossimo;
+}
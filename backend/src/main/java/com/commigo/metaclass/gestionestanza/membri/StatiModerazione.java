@@ -0,0 +1,18 @@
+package com.commigo.metaclass.gestionestanza.membri;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/** Stati di chi esegue un'azione di moderazione e di chi la subisce, nella stessa stanza. */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class StatiModerazione {
+
+  /** Stato di chi esegue l'azione, {@link StatoMembro#NON_MEMBRO} se non ha acceduto. */
+  private final StatoMembro chiamante;
+
+  /** Stato dell'utente su cui si agisce, null se non ha acceduto alla stanza. */
+  private final StatoPartecipante bersaglio;
+}
@@ -0,0 +1,128 @@
+package com.commigo.metaclass.gestionestanza.membri;
+
+import com.commigo.metaclass.entity.Ruolo;
+import com.commigo.metaclass.entity.StatoPartecipazione;
+
+/**
+ * Stato compatto di un utente in una stanza: ruolo e flag sono codificati in un intero, così i
+ * controlli di autorizzazione sono semplici test sui bit.
+ */
+public final class StatoMembro {
+
+  private static final int PARTECIPANTE = 1;
+  private static final int ORGANIZZATORE = 1 << 1;
+  private static final int ORGANIZZATORE_MASTER = 1 << 2;
+  private static final int IN_ATTESA = 1 << 3;
+  private static final int BANNATO = 1 << 4;
+  private static final int SILENZIATO = 1 << 5;
+
+  private static final int RUOLI = PARTECIPANTE | ORGANIZZATORE | ORGANIZZATORE_MASTER;
+
+  /** Stato di un utente che non ha acceduto alla stanza (o di una stanza inesistente). */
+  public static final StatoMembro NON_MEMBRO = new StatoMembro(0);
+
+  private final int flag;
+
+  private StatoMembro(int flag) {
+    this.flag = flag;
+  }
+
+  /**
+   * Costruttore usato dalle query di proiezione.
+   *
+   * @param nomeRuolo nome del ruolo dell'utente nella stanza
+   * @param inAttesa indica se l'utente è in attesa di entrare
+   * @param bannato indica se l'utente è bannato
+   * @param silenziato indica se l'utente è silenziato
+   */
+  public StatoMembro(String nomeRuolo, boolean inAttesa, boolean bannato, boolean silenziato) {
+    this(
+        bitRuolo(nomeRuolo)
+            | (inAttesa ? IN_ATTESA : 0)
+            | (bannato ? BANNATO : 0)
+            | (silenziato ? SILENZIATO : 0));
+  }
+
+  /**
+   * Ricava lo stato compatto da uno stato partecipazione.
+   *
+   * @param sp stato partecipazione, può essere null
+   * @return stato del membro, {@link #NON_MEMBRO} se lo stato è null
+   */
+  public static StatoMembro di(StatoPartecipazione sp) {
+    if (sp == null) {
+      return NON_MEMBRO;
+    }
+    return new StatoMembro(
+        sp.getRuolo().getNome(), sp.isInAttesa(), sp.isBannato(), sp.isSilenziato());
+  }
+
+  private static int bitRuolo(String nomeRuolo) {
+    if (Ruolo.ORGANIZZATORE_MASTER.equalsIgnoreCase(nomeRuolo)) {
+      return ORGANIZZATORE_MASTER;
+    } else if (Ruolo.ORGANIZZATORE.equalsIgnoreCase(nomeRuolo)) {
+      return ORGANIZZATORE;
+    } else {
+      return PARTECIPANTE;
+    }
+  }
+
+  /**
+   * Restituisce il nome del ruolo codificato nello stato.
+   *
+   * @return nome del ruolo, null se l'utente non è membro della stanza
+   */
+  public String getNomeRuolo() {
+    if (isOrganizzatoreMaster()) {
+      return Ruolo.ORGANIZZATORE_MASTER;
+    } else if (isOrganizzatore()) {
+      return Ruolo.ORGANIZZATORE;
+    } else if (isPartecipante()) {
+      return Ruolo.PARTECIPANTE;
+    }
+    return null;
+  }
+
+  public boolean isMembro() {
+    return (flag & RUOLI) != 0;
+  }
+
+  public boolean isPartecipante() {
+    return (flag & PARTECIPANTE) != 0;
+  }
+
+  public boolean isOrganizzatore() {
+    return (flag & ORGANIZZATORE) != 0;
+  }
+
+  public boolean isOrganizzatoreMaster() {
+    return (flag & ORGANIZZATORE_MASTER) != 0;
+  }
+
+  /**
+   * Controlla se l'utente può moderare la stanza: organizzatore master, oppure organizzatore non
+   * bannato.
+   *
+   * @return true se l'utente è almeno un organizzatore
+   */
+  public boolean isAlmenoOrganizzatore() {
+    return isOrganizzatoreMaster() || isOrganizzatore() && !isBannato();
+  }
+
+  public boolean isInAttesa() {
+    return (flag & IN_ATTESA) != 0;
+  }
+
+  public boolean isBannato() {
+    return (flag & BANNATO) != 0;
+  }
+
+  public boolean isSilenziato() {
+    return (flag & SILENZIATO) != 0;
+  }
+
+  @Override
+  public String toString() {
+    return "StatoMembro(" + Integer.toBinaryString(flag) + ")";
+  }
+}
@@ -0,0 +1,41 @@
+package com.commigo.metaclass.gestionestanza.membri;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/** Proiezione dello stato di un utente in una stanza, con i suoi identificativi. */
+@Getter
+@ToString
+public final class StatoPartecipante {
+
+  /** Id dell'utente. */
+  private final long idUtente;
+
+  /** MetaId dell'utente. */
+  private final String metaId;
+
+  /** Ruolo e flag dell'utente nella stanza. */
+  private final StatoMembro stato;
+
+  /**
+   * Costruttore usato dalle query di proiezione.
+   *
+   * @param idUtente id dell'utente
+   * @param metaId metaId dell'utente
+   * @param nomeRuolo nome del ruolo dell'utente nella stanza
+   * @param inAttesa indica se l'utente è in attesa di entrare
+   * @param bannato indica se l'utente è bannato
+   * @param silenziato indica se l'utente è silenziato
+   */
+  public StatoPartecipante(
+      long idUtente,
+      String metaId,
+      String nomeRuolo,
+      boolean inAttesa,
+      boolean bannato,
+      boolean silenziato) {
+    this.idUtente = idUtente;
+    this.metaId = metaId;
+    this.stato = new StatoMembro(nomeRuolo, inAttesa, bannato, silenziato);
+  }
+}
@@ -0,0 +1,289 @@
+package com.commigo.metaclass.gestionestanza.posti;
+
+import com.commigo.metaclass.gestionestanza.repository.StatoPartecipazioneRepository;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Controlla l'ingresso nelle stanze rispettando il numero massimo di posti. Ogni stanza ha un
+ * contatore atomico dei posti occupati, allineato all'avvio con gli stati partecipazione, che
+ * viene incrementato con compare-and-set senza bloccare la riga della stanza nel database.
+ *
+ * <p>Quando la stanza è piena gli utenti entrano in una lista d'attesa FIFO di lunghezza limitata.
+ * Un posto che si libera viene prenotato per il primo utente in lista, che ha a disposizione un
+ * tempo limitato per riprovare l'accesso prima che la prenotazione passi al successivo.
+ */
+@Slf4j
+@Component
+public class AmmissioneStanze {
+
+  /** Esito di una richiesta di ingresso in una stanza. */
+  public enum Esito {
+    /** L'utente ha ottenuto un posto. */
+    AMMESSO,
+    /** La stanza è piena e l'utente è in lista d'attesa. */
+    IN_CODA,
+    /** La stanza e la lista d'attesa sono piene. */
+    PIENA
+  }
+
+  private final StatoPartecipazioneRepository statoPartecipazioneRepository;
+  private final int maxCoda;
+  private final long durataPrenotazione;
+
+  private final Map<Long, PostiStanza> stanze = new ConcurrentHashMap<>();
+
+  /**
+   * Costruttore.
+   *
+   * @param statoPartecipazioneRepository repository degli stati partecipazione
+   * @param maxCoda lunghezza massima della lista d'attesa di una stanza
+   * @param durataPrenotazione millisecondi per cui un posto resta prenotato per chi era in attesa
+   */
+  public AmmissioneStanze(
+      StatoPartecipazioneRepository statoPartecipazioneRepository,
+      @Value("${stanza.posti.coda.massimo:100}") int maxCoda,
+      @Value("${stanza.posti.prenotazione.durata:60000}") long durataPrenotazione) {
+    this.statoPartecipazioneRepository = statoPartecipazioneRepository;
+    this.maxCoda = maxCoda;
+    this.durataPrenotazione = durataPrenotazione;
+  }
+
+  /** Allinea all'avvio i contatori con i posti occupati nel database. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void init() {
+    stanze.clear();
+    for (Object[] riga : statoPartecipazioneRepository.contaPostiOccupati()) {
+      stanze.put((Long) riga[0], new PostiStanza(((Long) riga[1]).intValue(), (Integer) riga[2]));
+    }
+    log.info("Posti occupati caricati per {} stanze", stanze.size());
+  }
+
+  /**
+   * Richiede un posto in una stanza. Se l'utente ha un posto prenotato lo ottiene, altrimenti
+   * prova ad occupare un posto libero; se non ce ne sono, o se altri utenti sono già in attesa,
+   * viene messo in lista d'attesa. Se la transazione corrente viene annullata il posto torna
+   * libero.
+   *
+   * @param idStanza id della stanza
+   * @param maxPosti numero massimo di posti della stanza
+   * @param metaId metaId dell'utente
+   * @param accoda true se l'utente può essere messo in lista d'attesa
+   * @return esito della richiesta
+   */
+  public Esito ammetti(Long idStanza, int maxPosti, String metaId, boolean accoda) {
+    PostiStanza p = posti(idStanza, maxPosti);
+    p.maxPosti = maxPosti;
+
+    if (p.prenotazioni.remove(metaId) != null
+        || ((!accoda || p.lunghezzaCoda.get() == 0) && occupaSeLibero(p))) {
+      liberaSeAnnullata(idStanza);
+      return Esito.AMMESSO;
+    }
+    if (!accoda) {
+      return Esito.PIENA;
+    }
+    if (!p.inCoda.contains(metaId)) {
+      int lunghezza;
+      do {
+        lunghezza = p.lunghezzaCoda.get();
+        if (lunghezza >= maxCoda) {
+          return Esito.PIENA;
+        }
+      } while (!p.lunghezzaCoda.compareAndSet(lunghezza, lunghezza + 1));
+      if (p.inCoda.add(metaId)) {
+        p.coda.add(metaId);
+      } else {
+        p.lunghezzaCoda.decrementAndGet();
+      }
+    }
+
+    // un posto potrebbe essersi liberato mentre l'utente entrava in lista
+    promuovi(p);
+    if (p.prenotazioni.remove(metaId) != null) {
+      liberaSeAnnullata(idStanza);
+      return Esito.AMMESSO;
+    }
+    return Esito.IN_CODA;
+  }
+
+  /**
+   * Occupa un posto anche se la stanza è piena, ad esempio quando un amministratore rimuove il
+   * ban di un utente.
+   *
+   * @param idStanza id della stanza
+   * @param maxPosti numero massimo di posti della stanza
+   */
+  public void occupa(Long idStanza, int maxPosti) {
+    posti(idStanza, maxPosti).occupati.incrementAndGet();
+    liberaSeAnnullata(idStanza);
+  }
+
+  /**
+   * Registra una stanza appena creata, in cui l'organizzatore master occupa il primo posto.
+   *
+   * @param idStanza id della stanza
+   * @param maxPosti numero massimo di posti della stanza
+   */
+  public void registraStanza(Long idStanza, int maxPosti) {
+    stanze.put(idStanza, new PostiStanza(1, maxPosti));
+    dopoLaTransazione(false, () -> stanze.remove(idStanza));
+  }
+
+  /**
+   * Libera il posto di un utente dopo il commit della transazione corrente. Se qualcuno è in
+   * attesa il posto gli viene prenotato.
+   *
+   * @param idStanza id della stanza
+   */
+  public void libera(Long idStanza) {
+    dopoLaTransazione(true, () -> liberaPosto(stanze.get(idStanza)));
+  }
+
+  /**
+   * Aggiorna il numero massimo di posti di una stanza dopo il commit della transazione corrente,
+   * prenotando i nuovi posti per chi è in attesa.
+   *
+   * @param idStanza id della stanza
+   * @param maxPosti nuovo numero massimo di posti
+   */
+  public void ridimensiona(Long idStanza, int maxPosti) {
+    dopoLaTransazione(
+        true,
+        () -> {
+          PostiStanza p = stanze.get(idStanza);
+          if (p != null) {
+            p.maxPosti = maxPosti;
+            promuovi(p);
+          }
+        });
+  }
+
+  /**
+   * Dimentica una stanza eliminata dopo il commit della transazione corrente.
+   *
+   * @param idStanza id della stanza
+   */
+  public void rimuoviStanza(Long idStanza) {
+    dopoLaTransazione(true, () -> stanze.remove(idStanza));
+  }
+
+  /** Passa al prossimo utente in lista i posti la cui prenotazione è scaduta. */
+  @Scheduled(fixedDelayString = "${stanza.posti.prenotazione.pulizia:10000}")
+  public void rimuoviPrenotazioniScadute() {
+    long adesso = System.currentTimeMillis();
+    for (PostiStanza p : stanze.values()) {
+      for (Map.Entry<String, Long> e : p.prenotazioni.entrySet()) {
+        if (e.getValue() <= adesso && p.prenotazioni.remove(e.getKey(), e.getValue())) {
+          liberaPosto(p);
+        }
+      }
+    }
+  }
+
+  private PostiStanza posti(Long idStanza, int maxPosti) {
+    PostiStanza p = stanze.get(idStanza);
+    if (p == null) {
+      // stanza creata da un'altra istanza: il conteggio viene fatto una sola volta
+      int occupati = (int) statoPartecipazioneRepository.contaPostiOccupati(idStanza);
+      p = stanze.computeIfAbsent(idStanza, id -> new PostiStanza(occupati, maxPosti));
+    }
+    return p;
+  }
+
+  private static boolean occupaSeLibero(PostiStanza p) {
+    int occupati;
+    while ((occupati = p.occupati.get()) < p.maxPosti) {
+      if (p.occupati.compareAndSet(occupati, occupati + 1)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void liberaPosto(PostiStanza p) {
+    if (p != null && !prenotaPerIlPrimo(p)) {
+      p.occupati.decrementAndGet();
+      promuovi(p);
+    }
+  }
+
+  private void promuovi(PostiStanza p) {
+    while (p.lunghezzaCoda.get() > 0 && occupaSeLibero(p)) {
+      if (!prenotaPerIlPrimo(p)) {
+        p.occupati.decrementAndGet();
+        return;
+      }
+    }
+  }
+
+  private boolean prenotaPerIlPrimo(PostiStanza p) {
+    String primo = p.coda.poll();
+    if (primo == null) {
+      return false;
+    }
+    p.inCoda.remove(primo);
+    p.lunghezzaCoda.decrementAndGet();
+    p.prenotazioni.put(primo, System.currentTimeMillis() + durataPrenotazione);
+    return true;
+  }
+
+  private void liberaSeAnnullata(Long idStanza) {
+    dopoLaTransazione(false, () -> liberaPosto(stanze.get(idStanza)));
+  }
+
+  /**
+   * Esegue un'azione alla fine della transazione corrente, o subito se non c'è una transazione.
+   *
+   * @param commit true per eseguire l'azione dopo il commit, false dopo il rollback
+   * @param azione azione da eseguire
+   */
+  private static void dopoLaTransazione(boolean commit, Runnable azione) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      if (commit) {
+        azione.run();
+      }
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCompletion(int status) {
+            if ((status == STATUS_COMMITTED) == commit) {
+              azione.run();
+            }
+          }
+        });
+  }
+
+  /** Posti e lista d'attesa di una stanza. */
+  private static final class PostiStanza {
+
+    private final AtomicInteger occupati;
+    private volatile int maxPosti;
+
+    private final Queue<String> coda = new ConcurrentLinkedQueue<>();
+    private final Set<String> inCoda = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger lunghezzaCoda = new AtomicInteger();
+
+    /** metaId di chi era in attesa verso la scadenza del posto prenotato. */
+    private final Map<String, Long> prenotazioni = new ConcurrentHashMap<>();
+
+    private PostiStanza(int occupati, int maxPosti) {
+      this.occupati = new AtomicInteger(occupati);
+      this.maxPosti = maxPosti;
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.commigo.metaclass.gestionestanza.repository;
+
+import com.commigo.metaclass.entity.Sequenza;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/** Repository delle sequenze per gestire transazioni con i dati persistenti. */
+@Repository("SequenzaRepository")
+public interface SequenzaRepository extends JpaRepository<Sequenza, String> {
+
+  /**
+   * Metodo che legge una sequenza bloccandone la riga fino alla fine della transazione.
+   *
+   * @param nome nome della sequenza.
+   * @return sequenza con il nome inserito, null se non esiste.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT s FROM Sequenza s WHERE s.nome = :nome")
+  Sequenza findPerAggiornamento(@Param("nome") String nome);
+}
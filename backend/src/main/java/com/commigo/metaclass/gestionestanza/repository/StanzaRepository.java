@@ -2,6 +2,8 @@ package com.commigo.metaclass.gestionestanza.repository;
 
 import com.commigo.metaclass.entity.Stanza;
 import jakarta.transaction.Transactional;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -30,18 +32,46 @@ public interface StanzaRepository extends JpaRepository<Stanza, Long> {
   Stanza findStanzaById(long id);
 
   /**
-   * Metodo che permette la ricerca dell'ultima stanza creata.
+   * Metodo che restituisce il numero massimo di posti di una stanza, senza caricarla.
    *
-   * @return l'id dell'ultima stanza inserita
+   * @param id id della stanza
+   * @return numero massimo di posti, null se la stanza non esiste
    */
-  @Query("SELECT s.id FROM Stanza s ORDER BY s.id DESC LIMIT 1")
-  Long findIdUltimaTupla();
+  @Query("SELECT s.maxPosti FROM Stanza s WHERE s.id = :id")
+  Integer findMaxPostiById(@Param("id") Long id);
+
+  /**
+   * Metodo che restituisce codice e id di tutte le stanze con un codice.
+   *
+   * @return coppie [codice, id]
+   */
+  @Query("SELECT s.codice, s.id FROM Stanza s WHERE s.codice IS NOT NULL")
+  List<Object[]> findCodiciEId();
+
+  /**
+   * Metodo che restituisce codice e id delle stanze con id successivo a quello indicato.
+   *
+   * @param dopo id da cui partire, escluso
+   * @return coppie [codice, id]
+   */
+  @Query("SELECT s.codice, s.id FROM Stanza s WHERE s.id > :dopo AND s.codice IS NOT NULL")
+  List<Object[]> findCodiciEIdDopo(@Param("dopo") long dopo);
+
+  /**
+   * Metodo che restituisce quali tra i codici indicati sono già assegnati a una stanza.
+   *
+   * @param codici codici da controllare
+   * @return codici già assegnati
+   */
+  @Query("SELECT s.codice FROM Stanza s WHERE s.codice IN :codici")
+  List<String> findCodiciEsistenti(@Param("codici") Collection<String> codici);
 
   // il valore restituito indica il numero di righe modificate, quindi:
   // 1 se tutto ok
   // 0 se non è ok
   /**
-   * Metodo che permette di modificare i dati di una stanza.
+   * Metodo che permette di modificare i dati di una stanza. Il codice non è modificabile: viene
+   * assegnato alla creazione dall'allocatore dei codici.
    *
    * @param id id della stanza da modificare
    * @param attributes i nuovi dati della stanza
@@ -52,7 +82,6 @@ public interface StanzaRepository extends JpaRepository<Stanza, Long> {
   @Query(
       "UPDATE Stanza stanza SET "
           + "stanza.nome = COALESCE(:#{#attributes['nome']}, stanza.nome), "
-          + "stanza.codice = COALESCE(:#{#attributes['codice']}, stanza.codice), "
           + "stanza.descrizione = COALESCE(:#{#attributes['descrizione']}, stanza.descrizione), "
           + "stanza.tipoAccesso = COALESCE(:#{#attributes['tipo_Accesso']}, stanza.tipoAccesso), "
           + "stanza.maxPosti = COALESCE(:#{#attributes['maxPosti']}, stanza.maxPosti), "
@@ -1,10 +1,18 @@
 package com.commigo.metaclass.gestionestanza.repository;
 
+import com.commigo.metaclass.entity.Ruolo;
 import com.commigo.metaclass.entity.Stanza;
 import com.commigo.metaclass.entity.StatoPartecipazione;
 import com.commigo.metaclass.entity.Utente;
+import com.commigo.metaclass.gestionestanza.membri.MembroStanza;
+import com.commigo.metaclass.gestionestanza.membri.StatoMembro;
+import com.commigo.metaclass.gestionestanza.membri.StatoPartecipante;
+import jakarta.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -22,6 +30,227 @@ public interface StatoPartecipazioneRepository extends JpaRepository<StatoPartec
    */
   StatoPartecipazione findStatoPartecipazioneByUtenteAndStanza(Utente utente, Stanza stanza);
 
+  /**
+   * Metodo che restituisce lo stato compatto di un utente in una stanza, senza caricare le entità
+   * utente, stanza e ruolo.
+   *
+   * @param metaId metaId dell'utente.
+   * @param idStanza id della stanza.
+   * @return stato dell'utente nella stanza, null se non ha acceduto alla stanza.
+   */
+  @Query(
+      "SELECT new com.commigo.metaclass.gestionestanza.membri.StatoMembro("
+          + "sp.ruolo.nome, sp.isInAttesa, sp.isBannato, sp.isSilenziato) "
+          + "FROM StatoPartecipazione sp "
+          + "WHERE sp.utente.metaId = :metaId AND sp.stanza.id = :idStanza")
+  StatoMembro findStatoMembro(@Param("metaId") String metaId, @Param("idStanza") Long idStanza);
+
+  /**
+   * Metodo che restituisce in una sola query gli stati di due utenti nella stessa stanza: quello
+   * identificato dal metaId (chi esegue un'azione) e quello identificato dall'id (chi la subisce).
+   *
+   * @param idStanza id della stanza.
+   * @param metaId metaId del primo utente.
+   * @param idUtente id del secondo utente.
+   * @return stati degli utenti che hanno acceduto alla stanza, al più due.
+   */
+  @Query(
+      "SELECT new com.commigo.metaclass.gestionestanza.membri.StatoPartecipante("
+          + "u.id, u.metaId, r.nome, sp.isInAttesa, sp.isBannato, sp.isSilenziato) "
+          + "FROM StatoPartecipazione sp JOIN sp.utente u JOIN sp.ruolo r "
+          + "WHERE sp.stanza.id = :idStanza AND (u.metaId = :metaId OR u.id = :idUtente)")
+  List<StatoPartecipante> findStatiChiamanteEBersaglio(
+      @Param("idStanza") Long idStanza,
+      @Param("metaId") String metaId,
+      @Param("idUtente") Long idUtente);
+
+  /**
+   * Metodo che carica con una sola query gli stati partecipazione di più utenti in una stanza,
+   * insieme a utente, stanza e ruolo.
+   *
+   * @param idStanza id della stanza.
+   * @param idUtenti id degli utenti.
+   * @return stati partecipazione degli utenti che hanno acceduto alla stanza.
+   */
+  @Query(
+      "SELECT sp FROM StatoPartecipazione sp "
+          + "JOIN FETCH sp.utente u JOIN FETCH sp.stanza JOIN FETCH sp.ruolo "
+          + "WHERE sp.stanza.id = :idStanza AND u.id IN :idUtenti")
+  List<StatoPartecipazione> findAllByStanzaAndUtenti(
+      @Param("idStanza") Long idStanza, @Param("idUtenti") Collection<Long> idUtenti);
+
+  /**
+   * Metodo che imposta il flag silenziato di uno o più utenti in una stanza con un solo UPDATE,
+   * senza caricare gli stati partecipazione e senza propagare il merge a stanza e utente.
+   *
+   * @param idStanza id della stanza.
+   * @param idUtenti id degli utenti.
+   * @param silenziato nuovo valore del flag.
+   * @return numero di stati modificati, 0 se gli utenti non hanno acceduto alla stanza.
+   */
+  @Modifying(flushAutomatically = true)
+  @Transactional
+  @Query(
+      "UPDATE StatoPartecipazione sp SET sp.isSilenziato = :silenziato, "
+          + "sp.dataAggiornamento = LOCAL DATETIME "
+          + "WHERE sp.stanza.id = :idStanza AND sp.utente.id IN :idUtenti")
+  int aggiornaSilenziato(
+      @Param("idStanza") Long idStanza,
+      @Param("idUtenti") Collection<Long> idUtenti,
+      @Param("silenziato") boolean silenziato);
+
+  /**
+   * Metodo che imposta il flag bannato di uno o più utenti in una stanza con un solo UPDATE, senza
+   * caricare gli stati partecipazione e senza propagare il merge a stanza e utente.
+   *
+   * @param idStanza id della stanza.
+   * @param idUtenti id degli utenti.
+   * @param bannato nuovo valore del flag.
+   * @return numero di stati modificati, 0 se gli utenti non hanno acceduto alla stanza.
+   */
+  @Modifying(flushAutomatically = true)
+  @Transactional
+  @Query(
+      "UPDATE StatoPartecipazione sp SET sp.isBannato = :bannato, "
+          + "sp.dataAggiornamento = LOCAL DATETIME "
+          + "WHERE sp.stanza.id = :idStanza AND sp.utente.id IN :idUtenti")
+  int aggiornaBannato(
+      @Param("idStanza") Long idStanza,
+      @Param("idUtenti") Collection<Long> idUtenti,
+      @Param("bannato") boolean bannato);
+
+  /**
+   * Metodo che imposta il flag in attesa di uno o più utenti in una stanza con un solo UPDATE,
+   * senza caricare gli stati partecipazione e senza propagare il merge a stanza e utente. Vengono
+   * modificati solo gli stati in cui il flag cambia valore.
+   *
+   * @param idStanza id della stanza.
+   * @param idUtenti id degli utenti.
+   * @param inAttesa nuovo valore del flag.
+   * @return numero di stati modificati, che esclude gli utenti che non hanno acceduto alla stanza
+   *     e quelli che avevano già il nuovo valore.
+   */
+  @Modifying(flushAutomatically = true)
+  @Transactional
+  @Query(
+      "UPDATE StatoPartecipazione sp SET sp.isInAttesa = :inAttesa, "
+          + "sp.dataAggiornamento = LOCAL DATETIME "
+          + "WHERE sp.stanza.id = :idStanza AND sp.utente.id IN :idUtenti "
+          + "AND sp.isInAttesa <> :inAttesa")
+  int aggiornaInAttesa(
+      @Param("idStanza") Long idStanza,
+      @Param("idUtenti") Collection<Long> idUtenti,
+      @Param("inAttesa") boolean inAttesa);
+
+  /**
+   * Metodo che modifica il nome in stanza di uno o più utenti con un solo UPDATE, senza caricare
+   * gli stati partecipazione e senza propagare il merge a stanza e utente.
+   *
+   * @param idStanza id della stanza.
+   * @param idUtenti id degli utenti.
+   * @param nome nuovo nome in stanza.
+   * @return numero di stati modificati, 0 se gli utenti non hanno acceduto alla stanza.
+   */
+  @Modifying(flushAutomatically = true)
+  @Transactional
+  @Query(
+      "UPDATE StatoPartecipazione sp SET sp.nomeInStanza = :nome, "
+          + "sp.dataAggiornamento = LOCAL DATETIME "
+          + "WHERE sp.stanza.id = :idStanza AND sp.utente.id IN :idUtenti")
+  int aggiornaNomeInStanza(
+      @Param("idStanza") Long idStanza,
+      @Param("idUtenti") Collection<Long> idUtenti,
+      @Param("nome") String nome);
+
+  /**
+   * Metodo che modifica il ruolo di uno o più utenti in una stanza con un solo UPDATE, senza
+   * caricare gli stati partecipazione e senza propagare il merge a stanza e utente.
+   *
+   * @param idStanza id della stanza.
+   * @param idUtenti id degli utenti.
+   * @param ruolo nuovo ruolo.
+   * @return numero di stati modificati, 0 se gli utenti non hanno acceduto alla stanza.
+   */
+  @Modifying(flushAutomatically = true)
+  @Transactional
+  @Query(
+      "UPDATE StatoPartecipazione sp SET sp.ruolo = :ruolo, "
+          + "sp.dataAggiornamento = LOCAL DATETIME "
+          + "WHERE sp.stanza.id = :idStanza AND sp.utente.id IN :idUtenti")
+  int aggiornaRuolo(
+      @Param("idStanza") Long idStanza,
+      @Param("idUtenti") Collection<Long> idUtenti,
+      @Param("ruolo") Ruolo ruolo);
+
+  /**
+   * Metodo che elimina con un solo DELETE gli stati partecipazione di uno o più utenti in una
+   * stanza, senza caricarli.
+   *
+   * @param idStanza id della stanza.
+   * @param idUtenti id degli utenti.
+   * @return numero di stati eliminati, 0 se gli utenti non hanno acceduto alla stanza.
+   */
+  @Modifying(flushAutomatically = true)
+  @Transactional
+  @Query(
+      "DELETE FROM StatoPartecipazione sp "
+          + "WHERE sp.stanza.id = :idStanza AND sp.utente.id IN :idUtenti")
+  int eliminaStati(
+      @Param("idStanza") Long idStanza, @Param("idUtenti") Collection<Long> idUtenti);
+
+  /**
+   * Metodo che restituisce una pagina dei membri di una stanza con paginazione a cursore: vengono
+   * letti solo gli utenti con id maggiore del cursore. Filtro e ordinamento usano la colonna
+   * id_utente di StatoPartecipazione, così la chiave primaria (id_stanza, id_utente) o l'indice
+   * idx_stato_stanza_flag_utente restituiscono le righe già ordinate e la lettura si ferma al
+   * limite della pagina.
+   *
+   * @param idStanza id della stanza.
+   * @param dopo id dell'ultimo utente della pagina precedente.
+   * @param bannato valore richiesto del flag bannato, null per non filtrare.
+   * @param inAttesa valore richiesto del flag in attesa, null per non filtrare.
+   * @param pagina numero massimo di membri da restituire.
+   * @return membri della stanza ordinati per id dell'utente.
+   */
+  @Query(
+      "SELECT new com.commigo.metaclass.gestionestanza.membri.MembroStanza("
+          + "sp.utente.id, sp.nomeInStanza, r.nome, sp.isInAttesa, sp.isBannato, "
+          + "sp.isSilenziato) "
+          + "FROM StatoPartecipazione sp JOIN sp.ruolo r "
+          + "WHERE sp.stanza.id = :idStanza AND sp.utente.id > :dopo "
+          + "AND (:bannato IS NULL OR sp.isBannato = :bannato) "
+          + "AND (:inAttesa IS NULL OR sp.isInAttesa = :inAttesa) "
+          + "ORDER BY sp.utente.id")
+  List<MembroStanza> findMembri(
+      @Param("idStanza") Long idStanza,
+      @Param("dopo") long dopo,
+      @Param("bannato") Boolean bannato,
+      @Param("inAttesa") Boolean inAttesa,
+      Pageable pagina);
+
+  /**
+   * Metodo che restituisce per ogni stanza il numero di posti occupati, cioè gli utenti che non
+   * sono bannati né in attesa, e il numero massimo di posti.
+   *
+   * @return terne [id stanza, posti occupati, posti massimi].
+   */
+  @Query(
+      "SELECT s.id, (SELECT COUNT(*) FROM StatoPartecipazione sp "
+          + "WHERE sp.stanza.id = s.id AND sp.isBannato = false AND sp.isInAttesa = false), "
+          + "s.maxPosti FROM Stanza s")
+  List<Object[]> contaPostiOccupati();
+
+  /**
+   * Metodo che restituisce il numero di posti occupati in una stanza.
+   *
+   * @param idStanza id della stanza.
+   * @return numero di utenti nella stanza che non sono bannati né in attesa.
+   */
+  @Query(
+      "SELECT COUNT(*) FROM StatoPartecipazione sp "
+          + "WHERE sp.stanza.id = :idStanza AND sp.isBannato = false AND sp.isInAttesa = false")
+  long contaPostiOccupati(@Param("idStanza") Long idStanza);
+
   /**
    * Metodo che permette di ricercare tutti gli stati di partecipazione di un determinato utente.
    *
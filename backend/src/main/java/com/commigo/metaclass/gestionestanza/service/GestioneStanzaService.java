@@ -4,11 +4,15 @@ import com.commigo.metaclass.entity.*;
 import com.commigo.metaclass.exceptions.RuntimeException401;
 import com.commigo.metaclass.exceptions.RuntimeException403;
 import com.commigo.metaclass.exceptions.ServerRuntimeException;
+import com.commigo.metaclass.gestionestanza.membri.EsitoModerazione;
+import com.commigo.metaclass.gestionestanza.membri.FiltroMembri;
+import com.commigo.metaclass.gestionestanza.membri.PaginaMembri;
 import com.commigo.metaclass.utility.response.types.AccessResponse;
 import com.commigo.metaclass.utility.response.types.Response;
 import java.util.List;
 import java.util.Map;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /** Interfaccia che offre servizi legati alle stanze. */
 public interface GestioneStanzaService {
@@ -32,7 +36,7 @@ public interface GestioneStanzaService {
   Response<Boolean> downgradeUtente(String idUogm, long og, long stanza)
       throws ServerRuntimeException, RuntimeException403;
 
-  Boolean modificaDatiStanza(Map<String, Object> params, Long id)
+  Boolean modificaDatiStanza(Map<String, Object> params, Long id, String metaId)
       throws RuntimeException403, RuntimeException401;
 
   ResponseEntity<Response<Scenario>> findScenarioStanza(Long id);
@@ -69,6 +73,23 @@ public interface GestioneStanzaService {
   ResponseEntity<Response<Boolean>> silenziaPartecipante(
       String metaId, Long idStanza, Long idUtente);
 
+  ResponseEntity<Response<PaginaMembri>> visualizzaMembriStanza(
+      String metaId, Long idStanza, FiltroMembri filtro, Long dopo, int dimensione);
+
+  SseEmitter iscriviEventiStanza(String metaId, Long idStanza) throws RuntimeException403;
+
+  ResponseEntity<Response<List<EsitoModerazione>>> banUtenti(
+      String metaId, Long idStanza, List<Long> idUtenti);
+
+  ResponseEntity<Response<List<EsitoModerazione>>> kickPartecipanti(
+      String metaId, Long idStanza, List<Long> idUtenti);
+
+  ResponseEntity<Response<List<EsitoModerazione>>> silenziaPartecipanti(
+      String metaId, Long idStanza, List<Long> idUtenti);
+
+  ResponseEntity<Response<List<EsitoModerazione>>> gestioneAccessi(
+      String metaId, Long idStanza, List<Long> idUtenti, boolean scelta);
+
   ResponseEntity<Response<Boolean>> unmutePartecipante(String metaId, Long idStanza, Long idUtente);
 
   ResponseEntity<Response<Immagine>>visualizzaImmagineScenario(Long id_stanza) throws RuntimeException403;
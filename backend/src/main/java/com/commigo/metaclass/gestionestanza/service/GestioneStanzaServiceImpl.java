@@ -5,6 +5,21 @@ import com.commigo.metaclass.exceptions.RuntimeException401;
 import com.commigo.metaclass.exceptions.RuntimeException403;
 import com.commigo.metaclass.exceptions.ServerRuntimeException;
 import com.commigo.metaclass.gestioneamministrazione.repository.ScenarioRepository;
+import com.commigo.metaclass.gestionemeeting.calendario.IndiceMeetingStanze;
+import com.commigo.metaclass.gestionestanza.codici.AllocatoreCodiciStanza;
+import com.commigo.metaclass.gestionestanza.codici.RisolutoreCodiciStanza;
+import com.commigo.metaclass.gestionestanza.eventi.EventoStanza;
+import com.commigo.metaclass.gestionestanza.eventi.HubEventiStanza;
+import com.commigo.metaclass.gestionestanza.eventi.TipoEventoStanza;
+import com.commigo.metaclass.gestionestanza.membri.CacheMembri;
+import com.commigo.metaclass.gestionestanza.membri.EsitoModerazione;
+import com.commigo.metaclass.gestionestanza.membri.FiltroMembri;
+import com.commigo.metaclass.gestionestanza.membri.MembroStanza;
+import com.commigo.metaclass.gestionestanza.membri.PaginaMembri;
+import com.commigo.metaclass.gestionestanza.membri.StatiModerazione;
+import com.commigo.metaclass.gestionestanza.membri.StatoMembro;
+import com.commigo.metaclass.gestionestanza.membri.StatoPartecipante;
+import com.commigo.metaclass.gestionestanza.posti.AmmissioneStanze;
 import com.commigo.metaclass.gestionestanza.repository.RuoloRepository;
 import com.commigo.metaclass.gestionestanza.repository.StanzaRepository;
 import com.commigo.metaclass.gestionestanza.repository.StatoPartecipazioneRepository;
@@ -12,17 +27,20 @@ import com.commigo.metaclass.gestioneutenza.repository.UtenteRepository;
 import com.commigo.metaclass.utility.response.ResponseUtils;
 import com.commigo.metaclass.utility.response.types.AccessResponse;
 import com.commigo.metaclass.utility.response.types.Response;
-import com.commigo.metaclass.webconfig.JwtTokenUtil;
-import com.commigo.metaclass.webconfig.ValidationToken;
 import jakarta.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /** Implementazione del service della gestione stanza. */
 @Service
@@ -31,15 +49,24 @@ import org.springframework.stereotype.Service;
 @Transactional // ogni operazione è una transazione
 public class GestioneStanzaServiceImpl implements GestioneStanzaService {
 
+  /** Numero massimo di utenti su cui si può agire con una sola operazione di moderazione. */
+  private static final int MAX_UTENTI_MODERAZIONE = 500;
+
+  /** Numero massimo di membri restituiti in una pagina. */
+  private static final int MAX_DIMENSIONE_PAGINA = 200;
+
   private final StatoPartecipazioneRepository statoPartecipazioneRepository;
   private final RuoloRepository ruoloRepository;
   private final StanzaRepository stanzaRepository;
   private final UtenteRepository utenteRepository;
   private final ScenarioRepository scenarioRepository;
-
-  @Autowired private ValidationToken validationToken;
-
-  @Autowired private JwtTokenUtil jwtTokenUtil;
+  private final CacheMembri cacheMembri;
+  private final AllocatoreCodiciStanza allocatoreCodiciStanza;
+  private final RisolutoreCodiciStanza risolutoreCodiciStanza;
+  private final AmmissioneStanze ammissioneStanze;
+  private final IndiceMeetingStanze indiceMeetingStanze;
+  private final HubEventiStanza hubEventiStanza;
+  private final ApplicationEventPublisher eventPublisher;
 
   /**
    * metodo che permette ad un utente di accedere ad una determinata stanza.
@@ -53,12 +80,34 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
   public ResponseEntity<AccessResponse<Long>> accessoStanza(String codiceStanza, String idUtente)
       throws ServerRuntimeException, RuntimeException403 {
 
-    // controllo stanza se è vuota
-    Stanza stanza = stanzaRepository.findStanzaByCodice(codiceStanza);
-    if (stanza == null) {
+    // risolvo il codice in memoria, senza interrogare il database
+    long idStanza = risolutoreCodiciStanza.risolvi(codiceStanza);
+    if (idStanza == RisolutoreCodiciStanza.NESSUNA_STANZA) {
       throw new RuntimeException403("stanza non trovata");
     }
 
+    // lo stato è letto dal database: un ban deciso su un'altra istanza vale subito
+    StatoMembro stato = cacheMembri.leggi(idStanza, idUtente);
+    if (stato.isBannato()) {
+      throw new RuntimeException403("Sei stato bannato da questa stanza, non puoi entrare");
+    } else if (stato.isInAttesa()) {
+      throw new RuntimeException403("Sei già in attesa di entrare in questa stanza");
+    } else if (stato.isMembro()) {
+      return ResponseEntity.ok(
+          new AccessResponse<>(idStanza, "Sei già all'interno di questa stanza", false));
+    }
+
+    // controllo stanza se è vuota
+    Stanza stanza = stanzaRepository.findStanzaById(idStanza);
+    if (stanza == null || !codiceStanza.equals(stanza.getCodice())) {
+      // la corrispondenza in memoria non è più valida
+      risolutoreCodiciStanza.rimuovi(idStanza);
+      stanza = stanzaRepository.findStanzaByCodice(codiceStanza);
+      if (stanza == null) {
+        throw new RuntimeException403("stanza non trovata");
+      }
+    }
+
     // prelevo l'utente
     Utente u = utenteRepository.findFirstBymetaId(idUtente);
     if (u == null) {
@@ -69,6 +118,19 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
         statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(u, stanza);
 
     if (sp == null) {
+      // nelle stanze pubbliche il posto viene occupato subito, in quelle private all'accettazione
+      if (stanza.isTipoAccesso()) {
+        switch (ammissioneStanze.ammetti(stanza.getId(), stanza.getMaxPosti(), idUtente, true)) {
+          case IN_CODA:
+            return ResponseEntity.ok(
+                new AccessResponse<>(0L, "La stanza è piena, sei in lista d'attesa", true));
+          case PIENA:
+            throw new RuntimeException403("La stanza è piena, riprova più tardi");
+          default:
+            break;
+        }
+      }
+
       sp =
           new StatoPartecipazione(
               stanza,
@@ -78,15 +140,17 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
               false,
               u.getNome(),
               true);
-      statoPartecipazioneRepository.save(sp);
+      salvaStato(sp);
 
       // verifico se la stanza è privata o pubblica
       if (stanza.isTipoAccesso()) {
+        pubblica(TipoEventoStanza.ACCESSO, sp);
         return ResponseEntity.ok(
             new AccessResponse<>(stanza.getId(), "Accesso effettuato con successo", false));
       } else {
         sp.setInAttesa(true);
-        statoPartecipazioneRepository.save(sp);
+        salvaStato(sp);
+        pubblica(TipoEventoStanza.RICHIESTA_ACCESSO, sp);
         return ResponseEntity.ok(
             new AccessResponse<>(0L, "Richiesta accesso alla stanza effettuata", true));
       }
@@ -112,21 +176,13 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
   @Override
   public ResponseEntity<Response<Boolean>> banUtente(Long idStanza, String metaId, Long idUtente)
       throws ServerRuntimeException, RuntimeException403 {
-    Utente ogm;
-    if ((ogm = utenteRepository.findFirstBymetaId(metaId)) == null) {
-      throw new ServerRuntimeException("errore nella ricerca dell'organizzatore master");
-    }
-
-    // controllo stanza
-    Stanza stanza;
-    if ((stanza = stanzaRepository.findStanzaById(idStanza)) == null) {
+    // controllo stanza e stato partecipazione dell'organizzatore e dell'utente da bannare
+    StatiModerazione stati;
+    if ((stati = getStatiModerazione(metaId, idUtente, idStanza)) == null) {
       throw new RuntimeException403("stanza non trovata");
     }
-
-    // controllo dello stato partecipazione dell'organizzatore
-    StatoPartecipazione statoOgm =
-        statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(ogm, stanza);
-    if (statoOgm == null) {
+    StatoMembro statoOgm = stati.getChiamante();
+    if (!statoOgm.isMembro()) {
       throw new RuntimeException403(
           "tu organizzatore non hai acceduto alla stanza, forse sei stato kickato");
     }
@@ -137,30 +193,32 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
       throw new RuntimeException403("sei in attesa di entrare in stanza");
     }
 
-    // controllo organizzatore da bannare
-    Utente u;
-    if ((u = utenteRepository.findUtenteById(idUtente)) == null) {
-      throw new RuntimeException403("utente non trovato");
-    }
-
-    // controllo dello stato partecipazione dell'organizzatore
-    StatoPartecipazione statoUser =
-        statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(u, stanza);
-    if (statoUser == null) {
+    // controllo dello stato partecipazione dell'utente da bannare
+    StatoPartecipante user = stati.getBersaglio();
+    if (user == null) {
+      if (!utenteRepository.existsById(idUtente)) {
+        throw new RuntimeException403("utente non trovato");
+      }
       throw new RuntimeException403(
           "tu organizzatore non hai acceduto alla stanza, forse sei stato kickato");
     }
-    if (statoUser.isBannato()) {
+    if (user.getStato().isBannato()) {
       throw new RuntimeException403("l'utente è già bannato dalla stanza");
     }
     if (statoOgm.isInAttesa()) {
       throw new RuntimeException403("L'utente selezionato è in attesa di entrare in stanza");
     }
 
-    if (statoOgm.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)) {
-      return banOrganizzatore(statoUser);
-    } else if ((statoOgm.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE))) {
-      return banPartecipante(statoUser);
+    if (statoOgm.isOrganizzatoreMaster()) {
+      if (user.getStato().isOrganizzatoreMaster()) {
+        throw new ServerRuntimeException("l'utente selezionato è un organizzatore master");
+      }
+      return banna(idStanza, user.getIdUtente(), user.getMetaId(), user.getStato());
+    } else if (statoOgm.isOrganizzatore()) {
+      if (!user.getStato().isPartecipante()) {
+        throw new ServerRuntimeException("l'utente selezionato è un organizzatore master");
+      }
+      return banna(idStanza, user.getIdUtente(), user.getMetaId(), user.getStato());
     } else {
       return ResponseEntity.ok(
           new Response<>(false, "Non puoi bannare nessuno. non sei un'organizzatore"));
@@ -184,9 +242,7 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
 
     // controllo del ruolo di organizztaore master
     if (!statoUser.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)) {
-      statoUser.setBannato(true);
-      statoPartecipazioneRepository.save(statoUser);
-      return ResponseEntity.ok(new Response<>(true, "L'utente selezionato ora è bannato"));
+      return banna(statoUser);
     }
     throw new ServerRuntimeException("l'utente selezionato è un organizzatore master");
   }
@@ -208,9 +264,7 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
 
     // controllo del ruolo di organizztaore master
     if (statoUser.getRuolo().getNome().equalsIgnoreCase(Ruolo.PARTECIPANTE)) {
-      statoUser.setBannato(true);
-      statoPartecipazioneRepository.save(statoUser);
-      return ResponseEntity.ok(new Response<>(true, "L'utente selezionato ora è bannato"));
+      return banna(statoUser);
     }
     throw new ServerRuntimeException("l'utente selezionato è un organizzatore master");
   }
@@ -243,14 +297,11 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
       throw new RuntimeException403("Scenario non trovato");
     }
 
+    // il codice è assegnato prima del salvataggio, così la stanza viene inserita una sola volta
+    s.setCodice(allocatoreCodiciStanza.prossimoCodice());
     stanzaRepository.save(s);
-
-    // Prelevo l'id della stanza a cui si deve generare il codice
-    Long idStanza = stanzaRepository.findIdUltimaTupla();
-    // Converto l'id in una stringa di 6 caratteri
-    String codice = String.format("%06d", idStanza);
-    s.setCodice(codice);
-    stanzaRepository.save(s);
+    risolutoreCodiciStanza.registra(s.getId(), s.getCodice());
+    ammissioneStanze.registraStanza(s.getId(), s.getMaxPosti());
 
     StatoPartecipazione sp =
         new StatoPartecipazione(
@@ -262,7 +313,7 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
             u.getNome(),
             true);
 
-    statoPartecipazioneRepository.save(sp);
+    salvaStato(sp);
 
     return true;
   }
@@ -280,44 +331,32 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
   public Response<Boolean> downgradeUtente(String idUogm, long idog, long idStanza)
       throws ServerRuntimeException, RuntimeException403 {
 
-    // controllo organizzatore master
-    Utente userOgm = utenteRepository.findFirstBymetaId(idUogm);
-    if (userOgm == null) {
-      throw new ServerRuntimeException("errore nella ricerca dell'organizzatore master");
-    }
-
-    // controllo utente da promuovere
-    Utente user = utenteRepository.findUtenteById(idog);
-    if (user == null) {
-      throw new RuntimeException403("utente non trovato");
-    }
-
-    // controllo stanza
-    Stanza stanza;
-    if ((stanza = stanzaRepository.findStanzaById(idStanza)) == null) {
+    // controllo stanza e accesso dell'organizzatore master e dell'utente nella stanza
+    StatiModerazione stati;
+    if ((stati = getStatiModerazione(idUogm, idog, idStanza)) == null) {
       throw new RuntimeException403("stanza non trovata");
     }
-
-    // controllo dell'accesso dell'organizzatore master nella stanza
-    StatoPartecipazione statoOgm =
-        statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(userOgm, stanza);
-    if (statoOgm == null) {
+    StatoMembro statoOgm = stati.getChiamante();
+    if (!statoOgm.isMembro()) {
       throw new ServerRuntimeException(
           "l'organizzatore master sembra " + "non aver acceduto alla stanza");
     }
 
     // controllo del ruolo di organizztaore master
-    if (!statoOgm.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)) {
+    if (!statoOgm.isOrganizzatoreMaster()) {
       throw new RuntimeException403(
           "Non puoi declassare un'utente perché " + "non sei un'organizzatore master");
     }
 
     // ricerco e controllo se l'utente ha fatto accesso alla stanza
-    StatoPartecipazione statoOg =
-        statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(user, stanza);
-    if (statoOg == null) {
+    StatoPartecipante user = stati.getBersaglio();
+    if (user == null) {
+      if (!utenteRepository.existsById(idog)) {
+        throw new RuntimeException403("utente non trovato");
+      }
       throw new RuntimeException403("l'utente non ha acceduto alla stanza, forse è stato kickato");
     }
+    StatoMembro statoOg = user.getStato();
 
     // verifico se l'utente è in attesa
     if (statoOg.isInAttesa()) {
@@ -331,17 +370,20 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
     }
 
     // verifico il ruolo dell'utente nella stanza
-    if (statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE)) {
+    if (statoOg.isOrganizzatore()) {
 
       // se è organizzatpre allora posso declassarlo a partecipante
       Ruolo r = ruoloRepository.findByNome(Ruolo.PARTECIPANTE);
-      statoOg.setRuolo(r);
-      statoPartecipazioneRepository.save(statoOg);
+      if (statoPartecipazioneRepository.aggiornaRuolo(idStanza, List.of(idog), r) == 0) {
+        throw new RuntimeException403("L'utente selezionato non è presente nella stanza");
+      }
+      cacheMembri.invalida(idStanza, user.getMetaId());
+      pubblica(TipoEventoStanza.DECLASSAMENTO, idStanza, idog);
 
       return ResponseEntity.ok(new Response<>(true, "L'utente selezionato ora è un partecipante"))
           .getBody();
 
-    } else if (statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.PARTECIPANTE)) {
+    } else if (statoOg.isPartecipante()) {
       throw new RuntimeException403("L'utente selezionato è già un partecipante");
     } else {
       throw new RuntimeException403("Sembra sia stato inviato un organizzatore master");
@@ -367,12 +409,16 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
           .getBody();
     }
 
-    StatoPartecipazione statoOgm =
-        statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(ogm, stanza);
-    if (statoOgm.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)
-        || ogm.isAdmin()) {
+    StatoMembro statoOgm = cacheMembri.get(idStanza, metaId);
+    if (statoOgm.isOrganizzatoreMaster() || ogm != null && ogm.isAdmin()) {
       // elimina tutti gli stati partecipazione
       statoPartecipazioneRepository.deleteAllByStanza(stanza);
+      cacheMembri.invalidaStanza(idStanza);
+      risolutoreCodiciStanza.rimuovi(idStanza);
+      ammissioneStanze.rimuoviStanza(idStanza);
+      indiceMeetingStanze.rimuoviStanza(idStanza);
+      eventPublisher.publishEvent(
+          new EventoStanza(TipoEventoStanza.STANZA_ELIMINATA, idStanza, null, null));
       // elimina stanza
       stanzaRepository.delete(stanza);
       return ResponseEntity.ok(new Response<>(true, "Stanza eliminata con successo")).getBody();
@@ -400,28 +446,35 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
   public ResponseEntity<Response<Boolean>> gestioneAccesso(
       String metaId, Long idUtente, Long idStanza, boolean scelta) {
 
-    Utente og = utenteRepository.findFirstBymetaId(metaId);
-    Utente accesso = utenteRepository.findUtenteById(idUtente);
-    Stanza stanza = stanzaRepository.findStanzaById(idStanza);
+    StatiModerazione stati = getStatiModerazione(metaId, idUtente, idStanza);
 
-    if (stanza != null) {
-      StatoPartecipazione statoOg =
-          statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(og, stanza);
-      if (statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)
-          || statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE)
-              && !statoOg.isBannato()) {
-        StatoPartecipazione statoAccesso =
-            statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(accesso, stanza);
-        if (statoAccesso.isInAttesa()) {
+    if (stati != null) {
+      if (stati.getChiamante().isAlmenoOrganizzatore()) {
+        StatoPartecipante accesso = stati.getBersaglio();
+        if (accesso != null && accesso.getStato().isInAttesa()) {
+          List<Long> idAccesso = List.of(idUtente);
           if (scelta) {
-            statoAccesso.setInAttesa(false);
-            statoPartecipazioneRepository.save(statoAccesso);
+            int maxPosti = stanzaRepository.findMaxPostiById(idStanza);
+            if (ammissioneStanze.ammetti(idStanza, maxPosti, accesso.getMetaId(), false)
+                != AmmissioneStanze.Esito.AMMESSO) {
+              return ResponseEntity.status(403)
+                  .body(new Response<>(false, "La stanza è piena, non puoi accettare l'utente"));
+            }
+            if (statoPartecipazioneRepository.aggiornaInAttesa(idStanza, idAccesso, false) == 0) {
+              ammissioneStanze.libera(idStanza);
+              return ResponseEntity.status(403)
+                  .body(new Response<>(false, "L'utente selezionato non è più in attesa"));
+            }
+            cacheMembri.invalida(idStanza, accesso.getMetaId());
+            pubblica(TipoEventoStanza.ACCESSO_ACCETTATO, idStanza, idUtente);
             return ResponseEntity.ok(
                 new Response<>(
                     true,
                     "L'utente selezionato non è più in attesa e sta per entrare nella stanza"));
           } else {
-            statoPartecipazioneRepository.delete(statoAccesso);
+            statoPartecipazioneRepository.eliminaStati(idStanza, idAccesso);
+            cacheMembri.invalida(idStanza, accesso.getMetaId());
+            pubblica(TipoEventoStanza.ACCESSO_RIFIUTATO, idStanza, idUtente);
             return ResponseEntity.ok(
                 new Response<>(
                     true,
@@ -461,23 +514,16 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
   public ResponseEntity<Response<Boolean>> silenziaPartecipante(
       String metaId, Long idStanza, Long idUtente) {
 
-    Utente og = utenteRepository.findFirstBymetaId(metaId);
-    Utente silenzia = utenteRepository.findUtenteById(idUtente);
-    Stanza stanza = stanzaRepository.findStanzaById(idStanza);
+    StatiModerazione stati = getStatiModerazione(metaId, idUtente, idStanza);
 
-    if (stanza != null) {
-      StatoPartecipazione statoOg =
-          statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(og, stanza);
-      if (statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)
-          || statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE)
-              && !statoOg.isBannato()) {
-        StatoPartecipazione statoSilenzio =
-            statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(
-                silenzia, stanza);
-        if (statoSilenzio != null) {
-          if (!statoSilenzio.isSilenziato()) {
-            statoSilenzio.setSilenziato(true);
-            statoPartecipazioneRepository.save(statoSilenzio);
+    if (stati != null) {
+      if (stati.getChiamante().isAlmenoOrganizzatore()) {
+        StatoPartecipante silenzia = stati.getBersaglio();
+        if (silenzia != null) {
+          if (!silenzia.getStato().isSilenziato()) {
+            statoPartecipazioneRepository.aggiornaSilenziato(idStanza, List.of(idUtente), true);
+            cacheMembri.invalida(idStanza, silenzia.getMetaId());
+            pubblica(TipoEventoStanza.SILENZIATO, idStanza, idUtente);
             return ResponseEntity.ok(new Response<>(true, "L'utente selezionato ora è silenziato"));
           } else {
             return ResponseEntity.ok(new Response<>(true, "L'utente selezionato è gia silenziato"));
@@ -505,29 +551,37 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
    *
    * @param params nuovi dati della stanza
    * @param id id della stanza da modificare
+   * @param metaId metaId dell'utente che effettua la modifica
    */
   @Override
-  public Boolean modificaDatiStanza(Map<String, Object> params, Long id)
+  public Boolean modificaDatiStanza(Map<String, Object> params, Long id, String metaId)
       throws RuntimeException403, RuntimeException401 {
 
     // controllo del ruolo di ogm
-    String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
-    Utente ogm = utenteRepository.findFirstBymetaId(metaId);
-    Stanza existingStanza = stanzaRepository.findStanzaById(id);
+    StatoMembro statoutente = getStatoChiamante(metaId, id);
 
-    if (existingStanza == null) {
+    if (statoutente == null) {
       throw new RuntimeException403("La stanza non esiste");
     }
 
-    StatoPartecipazione statoutente =
-        statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(ogm, existingStanza);
-
-    if (statoutente == null) {
+    if (!statoutente.isMembro()) {
       throw new RuntimeException403("Non hai acceduto alla stanza");
     }
 
-    if (!statoutente.getRuolo().getNome().equalsIgnoreCase(Ruolo.PARTECIPANTE)) {
-      return stanzaRepository.updateAttributes(id, params) > 0;
+    if (!statoutente.isPartecipante()) {
+      // i codici sono assegnati solo dall'allocatore, che non conosce quelli scelti a mano
+      if (params.containsKey("codice")) {
+        throw new RuntimeException403("Il codice della stanza non può essere modificato");
+      }
+      boolean modificata = stanzaRepository.updateAttributes(id, params) > 0;
+      if (modificata && params.get("maxPosti") instanceof Integer maxPosti) {
+        ammissioneStanze.ridimensiona(id, maxPosti);
+      }
+      if (modificata) {
+        eventPublisher.publishEvent(
+            new EventoStanza(TipoEventoStanza.DATI_MODIFICATI, id, null, null));
+      }
+      return modificata;
     } else {
       throw new RuntimeException401("devi essere almeno un organizzatore");
     }
@@ -567,44 +621,32 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
   public Response<Boolean> upgradeUtente(String idUogm, long idog, long idStanza)
       throws ServerRuntimeException, RuntimeException403 {
 
-    // controllo organizzatore master
-    Utente ogm;
-    if ((ogm = utenteRepository.findFirstBymetaId(idUogm)) == null) {
-      throw new ServerRuntimeException("errore nella ricerca dell'organizzatore master");
-    }
-
-    // controllo utente da promuovere
-    Utente og;
-    if ((og = utenteRepository.findUtenteById(idog)) == null) {
-      throw new RuntimeException403("utente non trovato");
-    }
-
-    // controllo stanza
-    Stanza stanza;
-    if ((stanza = stanzaRepository.findStanzaById(idStanza)) == null) {
+    // controllo stanza e accesso dell'organizzatore master e dell'utente nella stanza
+    StatiModerazione stati;
+    if ((stati = getStatiModerazione(idUogm, idog, idStanza)) == null) {
       throw new RuntimeException403("stanza non trovata");
     }
-
-    // controllo dell'accesso dell'organizzatore master nella stanza
-    StatoPartecipazione statoOgm =
-        statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(ogm, stanza);
-    if (statoOgm == null) {
+    StatoMembro statoOgm = stati.getChiamante();
+    if (!statoOgm.isMembro()) {
       throw new ServerRuntimeException(
           "l'organizzatore master sembra " + "non aver acceduto alla stanza");
     }
 
     // controllo del ruolo di organizztaore master
-    if (!statoOgm.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)) {
+    if (!statoOgm.isOrganizzatoreMaster()) {
       throw new RuntimeException403(
           "Non puoi promuovere un'utente perché " + "non sei un'organizzatore master");
     }
 
     // ricerco e controllo se l'utente ha fatto accesso alla stanza
-    StatoPartecipazione statoOg =
-        statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(og, stanza);
-    if (statoOg == null) {
+    StatoPartecipante og = stati.getBersaglio();
+    if (og == null) {
+      if (!utenteRepository.existsById(idog)) {
+        throw new RuntimeException403("utente non trovato");
+      }
       throw new RuntimeException403("l'utente non ha acceduto alla stanza, magari è stato kickato");
     }
+    StatoMembro statoOg = og.getStato();
 
     // verifico se l'utente è in attesa
     if (statoOg.isInAttesa()) {
@@ -618,17 +660,20 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
     }
 
     // verifico il ruolo dell'utente nella stanza
-    if (statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.PARTECIPANTE)) {
+    if (statoOg.isPartecipante()) {
 
       // se è partecipante allora posso promuoverlo ad organizzatore
       Ruolo r = ruoloRepository.findByNome(Ruolo.ORGANIZZATORE);
-      statoOg.setRuolo(r);
-      statoPartecipazioneRepository.save(statoOg);
+      if (statoPartecipazioneRepository.aggiornaRuolo(idStanza, List.of(idog), r) == 0) {
+        throw new RuntimeException403("L'utente selezionato non è presente nella stanza");
+      }
+      cacheMembri.invalida(idStanza, og.getMetaId());
+      pubblica(TipoEventoStanza.PROMOZIONE, idStanza, idog);
 
       return ResponseEntity.ok(new Response<>(true, "L'utente selezionato ora è un organizzatore"))
           .getBody();
 
-    } else if (statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE)) {
+    } else if (statoOg.isOrganizzatore()) {
       throw new RuntimeException403("L'utente selezionato è già un'organizzatore");
     } else {
       throw new RuntimeException403("Sembra sia stato inviato un organizzatore master");
@@ -698,15 +743,10 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
   @Override
   public ResponseEntity<Response<List<Utente>>> visualizzaUtentiInAttesaInStanza(
       Long id, String metaId) {
-    Stanza stanza = stanzaRepository.findStanzaById(id);
-    Utente u = utenteRepository.findFirstBymetaId(metaId);
-    if (stanza != null) {
-      StatoPartecipazione stato =
-          statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(u, stanza);
-      if (stato != null) {
-        if (stato.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)
-            || stato.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE)
-                && !stato.isBannato()) {
+    StatoMembro stato = getStatoChiamante(metaId, id);
+    if (stato != null) {
+      if (stato.isMembro()) {
+        if (stato.isAlmenoOrganizzatore()) {
           List<Utente> utenti = statoPartecipazioneRepository.findUtentiInAttesaInStanza(id);
 
           if (utenti != null) {
@@ -751,21 +791,23 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
   @Override
   public ResponseEntity<Response<Boolean>> modificaScenario(
       String metaId, Long idScenario, Long idStanza) {
-    Utente u = utenteRepository.findFirstBymetaId(metaId);
-    Stanza stanza = stanzaRepository.findStanzaById(idStanza);
+    StatoMembro stato = getStatoChiamante(metaId, idStanza);
 
-    if (stanza != null) {
-      StatoPartecipazione stato =
-          statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(u, stanza);
-      if (stato != null) {
-        if (stato.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)
-            || stato.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE)
-                && !stato.isBannato()) {
+    if (stato != null) {
+      if (stato.isMembro()) {
+        if (stato.isAlmenoOrganizzatore()) {
+          Stanza stanza = stanzaRepository.findStanzaById(idStanza);
           Scenario scenario = scenarioRepository.findScenarioById(idScenario);
           if (scenario != null) {
             if (scenario != stanza.getScenario()) {
               stanza.setScenario(scenario);
               stanzaRepository.save(stanza);
+              eventPublisher.publishEvent(
+                  new EventoStanza(
+                      TipoEventoStanza.SCENARIO_MODIFICATO,
+                      idStanza,
+                      null,
+                      String.valueOf(idScenario)));
               return ResponseEntity.ok(new Response<>(true, "Lo scenario è stato modificato"));
             } else {
               return ResponseEntity.status(403)
@@ -811,24 +853,19 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
   @Override
   public ResponseEntity<Response<Boolean>> modificaNomePartecipante(
       String metaId, Long idStanza, Long idUtente, String nome) {
-    Utente og = utenteRepository.findFirstBymetaId(metaId);
-    Stanza stanza = stanzaRepository.findStanzaById(idStanza);
+    StatiModerazione stati = getStatiModerazione(metaId, idUtente, idStanza);
 
-    Utente modifica = utenteRepository.findUtenteById(idUtente);
-    if (stanza != null) {
-      StatoPartecipazione statoOg =
-          statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(og, stanza);
-      if (statoOg != null) {
-        if (statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)
-            || statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE)
-                && !statoOg.isBannato()) {
-
-          StatoPartecipazione statoModifica =
-              statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(
-                  modifica, stanza);
-          if (statoModifica != null) {
-            statoModifica.setNomeInStanza(nome);
-            statoPartecipazioneRepository.save(statoModifica);
+    if (stati != null) {
+      StatoMembro statoOg = stati.getChiamante();
+      if (statoOg.isMembro()) {
+        if (statoOg.isAlmenoOrganizzatore()) {
+
+          StatoPartecipante modifica = stati.getBersaglio();
+          if (modifica != null) {
+            statoPartecipazioneRepository.aggiornaNomeInStanza(idStanza, List.of(idUtente), nome);
+            cacheMembri.invalida(idStanza, modifica.getMetaId());
+            eventPublisher.publishEvent(
+                new EventoStanza(TipoEventoStanza.NOME_MODIFICATO, idStanza, idUtente, nome));
 
             return ResponseEntity.ok(new Response<>(true, "Il nome in stanza è stato modificato"));
           } else {
@@ -871,22 +908,20 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
   @Override
   public ResponseEntity<Response<Boolean>> kickPartecipante(
       String metaId, Long idStanza, Long idUtente) {
-    Utente og = utenteRepository.findFirstBymetaId(metaId);
-    Stanza stanza = stanzaRepository.findStanzaById(idStanza);
-
-    Utente kick = utenteRepository.findUtenteById(idUtente);
-    if (stanza != null) {
-      StatoPartecipazione statoOg =
-          statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(og, stanza);
-      if (statoOg != null) {
-        if (statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)
-            || statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE)
-                && !statoOg.isBannato()) {
-
-          StatoPartecipazione statoKick =
-              statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(kick, stanza);
-          if (statoKick != null) {
-            statoPartecipazioneRepository.delete(statoKick);
+    StatiModerazione stati = getStatiModerazione(metaId, idUtente, idStanza);
+
+    if (stati != null) {
+      StatoMembro statoOg = stati.getChiamante();
+      if (statoOg.isMembro()) {
+        if (statoOg.isAlmenoOrganizzatore()) {
+
+          StatoPartecipante kick = stati.getBersaglio();
+          if (kick != null) {
+            if (statoPartecipazioneRepository.eliminaStati(idStanza, List.of(idUtente)) > 0) {
+              liberaPosto(idStanza, kick.getStato());
+              cacheMembri.invalida(idStanza, kick.getMetaId());
+              pubblica(TipoEventoStanza.KICK, idStanza, idUtente);
+            }
             return ResponseEntity.ok(new Response<>(true, "L'utente è stato kickato con successo"));
           } else {
             return ResponseEntity.status(403)
@@ -921,22 +956,15 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
   public Ruolo getRuoloByUserAndStanzaId(String metaId, Long idStanza)
       throws ServerRuntimeException, RuntimeException403 {
 
-    Utente u;
-    Stanza stanza;
-    if ((u = utenteRepository.findFirstBymetaId(metaId)) == null) {
-      throw new ServerRuntimeException(("Utente non torvato"));
-    }
-    if ((stanza = stanzaRepository.findStanzaById(idStanza)) == null) {
+    StatoMembro sp;
+    if ((sp = getStatoChiamante(metaId, idStanza)) == null) {
       throw new RuntimeException403("Stanza non trovata");
     }
-
-    StatoPartecipazione sp;
-    if ((sp = statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(u, stanza))
-        == null) {
+    if (!sp.isMembro()) {
       throw new RuntimeException403("L'utente non ha acceduto alla stanza");
     }
 
-    if (sp.getRuolo().getNome().equalsIgnoreCase(Ruolo.PARTECIPANTE)) {
+    if (sp.isPartecipante()) {
       if (sp.isBannato()) {
         throw new RuntimeException403("Utente bannato dalla stanza");
       }
@@ -945,7 +973,7 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
       }
     }
 
-    return sp.getRuolo();
+    return ruoloRepository.findByNome(sp.getNomeRuolo());
   }
 
   /**
@@ -980,23 +1008,16 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
   public ResponseEntity<Response<Boolean>> unmutePartecipante(
       String metaId, Long idStanza, Long idUtente) {
 
-    Utente og = utenteRepository.findFirstBymetaId(metaId);
-    Utente silenzia = utenteRepository.findUtenteById(idUtente);
-    Stanza stanza = stanzaRepository.findStanzaById(idStanza);
+    StatiModerazione stati = getStatiModerazione(metaId, idUtente, idStanza);
 
-    if (stanza != null) {
-      StatoPartecipazione statoOg =
-          statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(og, stanza);
-      if (statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)
-          || statoOg.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE)
-              && !statoOg.isBannato()) {
-        StatoPartecipazione statoSilenzio =
-            statoPartecipazioneRepository.findStatoPartecipazioneByUtenteAndStanza(
-                silenzia, stanza);
-        if (statoSilenzio != null) {
-          if (statoSilenzio.isSilenziato()) {
-            statoSilenzio.setSilenziato(false);
-            statoPartecipazioneRepository.save(statoSilenzio);
+    if (stati != null) {
+      if (stati.getChiamante().isAlmenoOrganizzatore()) {
+        StatoPartecipante silenzia = stati.getBersaglio();
+        if (silenzia != null) {
+          if (silenzia.getStato().isSilenziato()) {
+            statoPartecipazioneRepository.aggiornaSilenziato(idStanza, List.of(idUtente), false);
+            cacheMembri.invalida(idStanza, silenzia.getMetaId());
+            pubblica(TipoEventoStanza.SMUTATO, idStanza, idUtente);
             return ResponseEntity.ok(
                 new Response<>(true, "L'utente selezionato ora non è più silenziato"));
           } else {
@@ -1066,4 +1087,460 @@ public class GestioneStanzaServiceImpl implements GestioneStanzaService {
         new Response<Immagine>(
             stanza.getScenario().getImage(), "Immagine dello scenario trovata con successo"));
   }
+
+  /**
+   * metodo che permette di visualizzare una pagina dei membri di una stanza. Le pagine sono
+   * ordinate per id dell'utente e contengono solo i dati necessari agli elenchi, così anche le
+   * stanze più grandi vengono restituite in tempo e dimensione limitati.
+   *
+   * @param metaId metaId dell'utente che vuole visualizzare i membri
+   * @param idStanza id della stanza
+   * @param filtro membri da visualizzare
+   * @param dopo cursore restituito con la pagina precedente, null per la prima pagina
+   * @param dimensione numero massimo di membri della pagina
+   * @return pagina dei membri ed un messaggio che descrive l'esito dell'operazione
+   */
+  @Override
+  public ResponseEntity<Response<PaginaMembri>> visualizzaMembriStanza(
+      String metaId, Long idStanza, FiltroMembri filtro, Long dopo, int dimensione) {
+
+    StatoMembro stato = getStatoChiamante(metaId, idStanza);
+    if (stato == null) {
+      return ResponseEntity.status(403)
+          .body(new Response<>(null, "La stanza selezionata non esiste"));
+    }
+    if (!stato.isMembro() || stato.isBannato() || stato.isInAttesa()) {
+      return ResponseEntity.status(403)
+          .body(new Response<>(null, "Non puoi visualizzare i membri di questa stanza"));
+    }
+    if (filtro != FiltroMembri.PRESENTI && !stato.isAlmenoOrganizzatore()) {
+      return ResponseEntity.status(403)
+          .body(
+              new Response<>(
+                  null, "Per visualizzare questi utenti devi essere almeno un organizzatore"));
+    }
+
+    int limite = Math.max(1, Math.min(dimensione, MAX_DIMENSIONE_PAGINA));
+    List<MembroStanza> membri =
+        statoPartecipazioneRepository.findMembri(
+            idStanza,
+            dopo != null ? dopo : 0L,
+            filtro.getBannato(),
+            filtro.getInAttesa(),
+            PageRequest.of(0, limite));
+    Long prossimo = membri.size() == limite ? membri.get(limite - 1).getIdUtente() : null;
+    return ResponseEntity.ok(
+        new Response<>(new PaginaMembri(membri, prossimo), "operazione effettuata con successo"));
+  }
+
+  /**
+   * metodo che collega un utente agli eventi di una stanza, così da ricevere i cambiamenti dello
+   * stato della stanza senza interrogare periodicamente il server.
+   *
+   * @param metaId metaId dell'utente
+   * @param idStanza id della stanza
+   * @return canale su cui l'utente riceve gli eventi della stanza
+   */
+  @Override
+  public SseEmitter iscriviEventiStanza(String metaId, Long idStanza) throws RuntimeException403 {
+    // come all'accesso, ban ed espulsioni decisi su un'altra istanza non passano dalla cache
+    StatoMembro stato = cacheMembri.leggi(idStanza, metaId);
+    if (!stato.isMembro() && (idStanza == null || !stanzaRepository.existsById(idStanza))) {
+      throw new RuntimeException403("La stanza selezionata non esiste");
+    }
+    if (!stato.isMembro()) {
+      throw new RuntimeException403("Non hai acceduto alla stanza");
+    }
+    if (stato.isBannato()) {
+      throw new RuntimeException403("Sei stato bannato da questa stanza");
+    }
+    if (stato.isInAttesa()) {
+      throw new RuntimeException403("La tua richiesta di accesso non è stata ancora accettata");
+    }
+    Utente u = utenteRepository.findFirstBymetaId(metaId);
+    if (u == null) {
+      throw new RuntimeException403("Utente non registrato nei sistemi");
+    }
+    return hubEventiStanza.iscrivi(idStanza, u.getId());
+  }
+
+  /**
+   * metodo che permette di bannare più utenti all'interno di una stanza con una sola richiesta.
+   *
+   * @param metaId metaId dell'utente che vuole effettuare il ban
+   * @param idStanza id della stanza da cui si vogliono bannare gli utenti
+   * @param idUtenti id degli utenti che devono essere bannati
+   * @return esito del ban per ciascun utente ed un messaggio che descrive l'esito dell'operazione
+   */
+  @Override
+  public ResponseEntity<Response<List<EsitoModerazione>>> banUtenti(
+      String metaId, Long idStanza, List<Long> idUtenti) {
+
+    StatoMembro statoOgm = getStatoChiamante(metaId, idStanza);
+    ResponseEntity<Response<List<EsitoModerazione>>> errore =
+        verificaModeratore(statoOgm, idUtenti, "Per bannare degli utenti");
+    if (errore != null) {
+      return errore;
+    }
+
+    Map<Long, StatoPartecipazione> stati = caricaStati(idStanza, idUtenti);
+    List<EsitoModerazione> esiti = new ArrayList<>(stati.size());
+    List<StatoPartecipazione> modificati = new ArrayList<>();
+    for (Map.Entry<Long, StatoPartecipazione> e : stati.entrySet()) {
+      StatoPartecipazione sp = e.getValue();
+      if (sp == null) {
+        esiti.add(new EsitoModerazione(e.getKey(), false, "L'utente non è presente nella stanza"));
+      } else if (sp.isBannato()) {
+        esiti.add(new EsitoModerazione(e.getKey(), false, "L'utente è già bannato"));
+      } else if (sp.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)) {
+        esiti.add(new EsitoModerazione(e.getKey(), false, "L'utente è un organizzatore master"));
+      } else if (!statoOgm.isOrganizzatoreMaster()
+          && !sp.getRuolo().getNome().equalsIgnoreCase(Ruolo.PARTECIPANTE)) {
+        esiti.add(new EsitoModerazione(e.getKey(), false, "L'utente è un organizzatore"));
+      } else {
+        liberaPosto(sp);
+        modificati.add(sp);
+        pubblica(TipoEventoStanza.BAN, sp);
+        esiti.add(new EsitoModerazione(e.getKey(), true, "L'utente ora è bannato"));
+      }
+    }
+    aggiornaStati(
+        modificati, ids -> statoPartecipazioneRepository.aggiornaBannato(idStanza, ids, true));
+    return ResponseEntity.ok(new Response<>(esiti, "Operazione effettuata con successo"));
+  }
+
+  /**
+   * metodo che permette di kickare più partecipanti da una stanza con una sola richiesta.
+   *
+   * @param metaId metaId dell'utente che vuole kickare i partecipanti
+   * @param idStanza id della stanza da cui si vogliono kickare i partecipanti
+   * @param idUtenti id degli utenti che devono essere kickati
+   * @return esito del kick per ciascun utente ed un messaggio che descrive l'esito dell'operazione
+   */
+  @Override
+  public ResponseEntity<Response<List<EsitoModerazione>>> kickPartecipanti(
+      String metaId, Long idStanza, List<Long> idUtenti) {
+
+    ResponseEntity<Response<List<EsitoModerazione>>> errore =
+        verificaModeratore(
+            getStatoChiamante(metaId, idStanza), idUtenti, "Per kickare dei partecipanti");
+    if (errore != null) {
+      return errore;
+    }
+
+    Map<Long, StatoPartecipazione> stati = caricaStati(idStanza, idUtenti);
+    List<EsitoModerazione> esiti = new ArrayList<>(stati.size());
+    List<StatoPartecipazione> eliminati = new ArrayList<>();
+    for (Map.Entry<Long, StatoPartecipazione> e : stati.entrySet()) {
+      StatoPartecipazione sp = e.getValue();
+      if (sp == null) {
+        esiti.add(new EsitoModerazione(e.getKey(), false, "L'utente non è presente nella stanza"));
+      } else if (sp.getRuolo().getNome().equalsIgnoreCase(Ruolo.ORGANIZZATORE_MASTER)) {
+        esiti.add(new EsitoModerazione(e.getKey(), false, "L'utente è un organizzatore master"));
+      } else {
+        liberaPosto(sp);
+        eliminati.add(sp);
+        pubblica(TipoEventoStanza.KICK, sp);
+        esiti.add(new EsitoModerazione(e.getKey(), true, "L'utente è stato kickato"));
+      }
+    }
+    aggiornaStati(eliminati, ids -> statoPartecipazioneRepository.eliminaStati(idStanza, ids));
+    return ResponseEntity.ok(new Response<>(esiti, "Operazione effettuata con successo"));
+  }
+
+  /**
+   * metodo che permette di silenziare più partecipanti di una stanza con una sola richiesta.
+   *
+   * @param metaId metaId dell'utente che vuole silenziare i partecipanti
+   * @param idStanza id della stanza in cui si vogliono silenziare i partecipanti
+   * @param idUtenti id degli utenti che devono essere silenziati
+   * @return esito per ciascun utente ed un messaggio che descrive l'esito dell'operazione
+   */
+  @Override
+  public ResponseEntity<Response<List<EsitoModerazione>>> silenziaPartecipanti(
+      String metaId, Long idStanza, List<Long> idUtenti) {
+
+    ResponseEntity<Response<List<EsitoModerazione>>> errore =
+        verificaModeratore(
+            getStatoChiamante(metaId, idStanza), idUtenti, "Per silenziare dei partecipanti");
+    if (errore != null) {
+      return errore;
+    }
+
+    Map<Long, StatoPartecipazione> stati = caricaStati(idStanza, idUtenti);
+    List<EsitoModerazione> esiti = new ArrayList<>(stati.size());
+    List<StatoPartecipazione> modificati = new ArrayList<>();
+    for (Map.Entry<Long, StatoPartecipazione> e : stati.entrySet()) {
+      StatoPartecipazione sp = e.getValue();
+      if (sp == null) {
+        esiti.add(new EsitoModerazione(e.getKey(), false, "L'utente non è presente nella stanza"));
+      } else if (sp.isSilenziato()) {
+        esiti.add(new EsitoModerazione(e.getKey(), true, "L'utente è già silenziato"));
+      } else {
+        modificati.add(sp);
+        pubblica(TipoEventoStanza.SILENZIATO, sp);
+        esiti.add(new EsitoModerazione(e.getKey(), true, "L'utente ora è silenziato"));
+      }
+    }
+    aggiornaStati(
+        modificati, ids -> statoPartecipazioneRepository.aggiornaSilenziato(idStanza, ids, true));
+    return ResponseEntity.ok(new Response<>(esiti, "Operazione effettuata con successo"));
+  }
+
+  /**
+   * metodo che permette di accettare o rifiutare con una sola richiesta l'accesso di più utenti
+   * in attesa di entrare in una stanza.
+   *
+   * @param metaId metaId dell'utente che gestisce gli accessi
+   * @param idStanza id della stanza a cui gli utenti vogliono accedere
+   * @param idUtenti id degli utenti in attesa
+   * @param scelta true per accettare gli utenti, false per rifiutarli
+   * @return esito per ciascun utente ed un messaggio che descrive l'esito dell'operazione
+   */
+  @Override
+  public ResponseEntity<Response<List<EsitoModerazione>>> gestioneAccessi(
+      String metaId, Long idStanza, List<Long> idUtenti, boolean scelta) {
+
+    ResponseEntity<Response<List<EsitoModerazione>>> errore =
+        verificaModeratore(
+            getStatoChiamante(metaId, idStanza),
+            idUtenti,
+            "Per accettare o rifiutare richieste di accesso");
+    if (errore != null) {
+      return errore;
+    }
+
+    Map<Long, StatoPartecipazione> stati = caricaStati(idStanza, idUtenti);
+    List<EsitoModerazione> esiti = new ArrayList<>(stati.size());
+    List<StatoPartecipazione> modificati = new ArrayList<>();
+    for (Map.Entry<Long, StatoPartecipazione> e : stati.entrySet()) {
+      StatoPartecipazione sp = e.getValue();
+      if (sp == null || !sp.isInAttesa()) {
+        esiti.add(new EsitoModerazione(e.getKey(), false, "L'utente non è in attesa"));
+      } else if (!scelta) {
+        modificati.add(sp);
+        pubblica(TipoEventoStanza.ACCESSO_RIFIUTATO, sp);
+        esiti.add(new EsitoModerazione(e.getKey(), true, "Richiesta di accesso rifiutata"));
+      } else if (ammissioneStanze.ammetti(
+              idStanza, sp.getStanza().getMaxPosti(), sp.getUtente().getMetaId(), false)
+          != AmmissioneStanze.Esito.AMMESSO) {
+        esiti.add(new EsitoModerazione(e.getKey(), false, "La stanza è piena"));
+      } else {
+        modificati.add(sp);
+        pubblica(TipoEventoStanza.ACCESSO_ACCETTATO, sp);
+        esiti.add(new EsitoModerazione(e.getKey(), true, "Richiesta di accesso accettata"));
+      }
+    }
+    if (scelta) {
+      aggiornaStati(
+          modificati,
+          ids -> {
+            // le richieste ritirate o accettate nel frattempo restituiscono il posto riservato
+            int accettati = statoPartecipazioneRepository.aggiornaInAttesa(idStanza, ids, false);
+            for (int i = accettati; i < ids.size(); i++) {
+              ammissioneStanze.libera(idStanza);
+            }
+            if (accettati < ids.size()) {
+              log.warn(
+                  "Stanza {}: {} richieste di accesso non più in attesa",
+                  idStanza,
+                  ids.size() - accettati);
+            }
+          });
+    } else {
+      aggiornaStati(modificati, ids -> statoPartecipazioneRepository.eliminaStati(idStanza, ids));
+    }
+    return ResponseEntity.ok(new Response<>(esiti, "Operazione effettuata con successo"));
+  }
+
+  /**
+   * Metodo che verifica chi esegue un'azione di moderazione su più utenti.
+   *
+   * @param statoOgm stato di chi esegue l'azione, null se la stanza non esiste
+   * @param idUtenti id degli utenti su cui si agisce
+   * @param azione descrizione dell'azione, usata nel messaggio di errore
+   * @return risposta di errore, null se l'azione è permessa
+   */
+  private static ResponseEntity<Response<List<EsitoModerazione>>> verificaModeratore(
+      StatoMembro statoOgm, List<Long> idUtenti, String azione) {
+    if (statoOgm == null) {
+      return ResponseEntity.status(403)
+          .body(new Response<>(null, "La stanza selezionata non esiste"));
+    }
+    if (!statoOgm.isAlmenoOrganizzatore()) {
+      return ResponseEntity.status(403)
+          .body(new Response<>(null, azione + " devi essere almeno un organizzatore"));
+    }
+    if (idUtenti.size() > MAX_UTENTI_MODERAZIONE) {
+      return ResponseEntity.status(403)
+          .body(
+              new Response<>(
+                  null, "Puoi agire al più su " + MAX_UTENTI_MODERAZIONE + " utenti per volta"));
+    }
+    return null;
+  }
+
+  /**
+   * Metodo che carica con una sola query gli stati partecipazione di più utenti in una stanza.
+   *
+   * @param idStanza id della stanza
+   * @param idUtenti id degli utenti, eventualmente ripetuti
+   * @return stati degli utenti nell'ordine della richiesta, null per chi non ha acceduto
+   */
+  private Map<Long, StatoPartecipazione> caricaStati(Long idStanza, List<Long> idUtenti) {
+    Map<Long, StatoPartecipazione> stati = new LinkedHashMap<>();
+    idUtenti.forEach(id -> stati.put(id, null));
+    for (StatoPartecipazione sp :
+        statoPartecipazioneRepository.findAllByStanzaAndUtenti(idStanza, stati.keySet())) {
+      stati.put(sp.getUtente().getId(), sp);
+    }
+    return stati;
+  }
+
+  /**
+   * Metodo che restituisce lo stato del chiamante in una stanza tramite la cache dei membri.
+   *
+   * @param metaId metaId del chiamante
+   * @param idStanza id della stanza
+   * @return stato del chiamante, null se la stanza non esiste
+   */
+  private StatoMembro getStatoChiamante(String metaId, Long idStanza) {
+    StatoMembro stato = cacheMembri.get(idStanza, metaId);
+    if (!stato.isMembro() && (idStanza == null || !stanzaRepository.existsById(idStanza))) {
+      return null;
+    }
+    return stato;
+  }
+
+  /**
+   * Metodo che restituisce con una sola query gli stati di chi esegue un'azione di moderazione e
+   * dell'utente che la subisce.
+   *
+   * @param metaId metaId di chi esegue l'azione
+   * @param idUtente id dell'utente che subisce l'azione
+   * @param idStanza id della stanza
+   * @return stati dei due utenti, null se la stanza non esiste
+   */
+  private StatiModerazione getStatiModerazione(String metaId, Long idUtente, Long idStanza) {
+    StatiModerazione stati = cacheMembri.getStatiModerazione(idStanza, metaId, idUtente);
+    if (!stati.getChiamante().isMembro()
+        && stati.getBersaglio() == null
+        && (idStanza == null || !stanzaRepository.existsById(idStanza))) {
+      return null;
+    }
+    return stati;
+  }
+
+  /**
+   * Metodo che banna un utente da una stanza aggiornandone solo il flag, senza caricarne lo stato
+   * partecipazione.
+   *
+   * @param idStanza id della stanza
+   * @param idUtente id dell'utente da bannare
+   * @param metaId metaId dell'utente da bannare
+   * @param stato stato dell'utente prima del ban
+   * @return valore boolean che identifica la riuscita dell'operazione ed un messaggio che descrive
+   *     l'esito di essa
+   */
+  private ResponseEntity<Response<Boolean>> banna(
+      Long idStanza, long idUtente, String metaId, StatoMembro stato) {
+    if (statoPartecipazioneRepository.aggiornaBannato(idStanza, List.of(idUtente), true) == 0) {
+      return ResponseEntity.status(403)
+          .body(new Response<>(false, "L'utente selezionato non è presente nella stanza"));
+    }
+    liberaPosto(idStanza, stato);
+    cacheMembri.invalida(idStanza, metaId);
+    pubblica(TipoEventoStanza.BAN, idStanza, idUtente);
+    return ResponseEntity.ok(new Response<>(true, "L'utente selezionato ora è bannato"));
+  }
+
+  /**
+   * Metodo che banna l'utente di uno stato partecipazione già caricato.
+   *
+   * @param sp stato partecipazione dell'utente da bannare
+   * @return valore boolean che identifica la riuscita dell'operazione ed un messaggio che descrive
+   *     l'esito di essa
+   */
+  private ResponseEntity<Response<Boolean>> banna(StatoPartecipazione sp) {
+    return banna(
+        sp.getStanza().getId(),
+        sp.getUtente().getId(),
+        sp.getUtente().getMetaId(),
+        StatoMembro.di(sp));
+  }
+
+  /**
+   * Metodo che pubblica un evento che riguarda un utente di una stanza. L'evento viene inoltrato
+   * ai client collegati solo dopo il commit della transazione.
+   *
+   * @param tipo tipo dell'evento
+   * @param sp stato partecipazione dell'utente coinvolto
+   */
+  private void pubblica(TipoEventoStanza tipo, StatoPartecipazione sp) {
+    eventPublisher.publishEvent(
+        new EventoStanza(tipo, sp.getStanza().getId(), sp.getUtente().getId(), null));
+  }
+
+  /**
+   * Metodo che pubblica un evento che riguarda un utente di una stanza di cui non è stato caricato
+   * lo stato partecipazione.
+   *
+   * @param tipo tipo dell'evento
+   * @param idStanza id della stanza
+   * @param idUtente id dell'utente coinvolto
+   */
+  private void pubblica(TipoEventoStanza tipo, Long idStanza, Long idUtente) {
+    eventPublisher.publishEvent(new EventoStanza(tipo, idStanza, idUtente, null));
+  }
+
+  /**
+   * Metodo che salva uno stato partecipazione invalidandone la voce nella cache dei membri.
+   *
+   * @param sp stato partecipazione da salvare
+   */
+  private void salvaStato(StatoPartecipazione sp) {
+    statoPartecipazioneRepository.save(sp);
+    cacheMembri.invalida(sp.getStanza().getId(), sp.getUtente().getMetaId());
+  }
+
+  /**
+   * Metodo che libera il posto occupato nella stanza da un utente che sta per essere bannato o
+   * rimosso. Gli utenti in attesa o già bannati non occupano un posto.
+   *
+   * @param sp stato partecipazione dell'utente
+   */
+  private void liberaPosto(StatoPartecipazione sp) {
+    if (!sp.isInAttesa() && !sp.isBannato()) {
+      ammissioneStanze.libera(sp.getStanza().getId());
+    }
+  }
+
+  /**
+   * Metodo che libera il posto occupato nella stanza da un utente di cui si conosce solo lo stato
+   * nella cache dei membri.
+   *
+   * @param idStanza id della stanza
+   * @param stato stato dell'utente prima della modifica
+   */
+  private void liberaPosto(Long idStanza, StatoMembro stato) {
+    if (!stato.isInAttesa() && !stato.isBannato()) {
+      ammissioneStanze.libera(idStanza);
+    }
+  }
+
+  /**
+   * Metodo che applica con una sola istruzione la stessa modifica a più stati partecipazione,
+   * invalidandone le voci nella cache dei membri.
+   *
+   * @param stati stati partecipazione da modificare
+   * @param aggiornamento aggiornamento o eliminazione da eseguire sugli id degli utenti
+   */
+  private void aggiornaStati(
+      List<StatoPartecipazione> stati, Consumer<List<Long>> aggiornamento) {
+    if (stati.isEmpty()) {
+      return;
+    }
+    aggiornamento.accept(stati.stream().map(sp -> sp.getUtente().getId()).toList());
+    stati.forEach(sp -> cacheMembri.invalida(sp.getStanza().getId(), sp.getUtente().getMetaId()));
+  }
 }
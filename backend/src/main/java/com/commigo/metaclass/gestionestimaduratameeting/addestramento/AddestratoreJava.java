@@ -0,0 +1,139 @@
+package com.commigo.metaclass.gestionestimaduratameeting.addestramento;
+
+import com.commigo.metaclass.exceptions.ServerRuntimeException;
+import com.commigo.metaclass.gestionestimaduratameeting.dataset.ArchivioDataset;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.EsportatorePmml;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.ForestaCasuale;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.ModelloDurata;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.RegistroModelloDurata;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.VersioneModello;
+import jakarta.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Addestratore che costruisce una foresta casuale direttamente nella JVM, senza processi esterni.
+ * Viene utilizzato quando la proprietà {@code stima.addestramento.motore} vale {@code java}.
+ *
+ * <p>La foresta addestrata viene esportata in PMML e pubblicata al posto del file monitorato dal
+ * {@link RegistroModelloDurata}, così dopo un riavvio viene ricaricato l'ultimo modello addestrato.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stima.addestramento.motore", havingValue = "java")
+public class AddestratoreJava implements AddestratoreModello {
+
+  /** Colonne del dataset nell'ordine definito da {@link ModelloDurata}. */
+  private static final String[] COLONNE_FEATURE = {
+    "Age", "Gender", "ImmersionLevel", "MotionSickness"
+  };
+
+  private static final String COLONNA_TARGET = "Duration";
+
+  private final RegistroModelloDurata registroModello;
+  private final ArchivioDataset archivioDataset;
+  private final CostruttoreForesta costruttore;
+  private final ForkJoinPool pool;
+
+  /**
+   * Costruttore dell'addestratore.
+   *
+   * @param registroModello registro in cui pubblicare il modello.
+   * @param archivioDataset archivio da cui leggere il dataset.
+   * @param numeroAlberi numero di alberi della foresta.
+   * @param profonditaMassima profondità massima degli alberi.
+   * @param minCampioniFoglia numero minimo di campioni per foglia.
+   * @param seme seme del generatore casuale.
+   * @param parallelismo numero di thread usati per l'addestramento.
+   */
+  public AddestratoreJava(
+      RegistroModelloDurata registroModello,
+      ArchivioDataset archivioDataset,
+      @Value("${stima.addestramento.foresta.alberi:100}") int numeroAlberi,
+      @Value("${stima.addestramento.foresta.profondita:20}") int profonditaMassima,
+      @Value("${stima.addestramento.foresta.min-foglia:1}") int minCampioniFoglia,
+      @Value("${stima.addestramento.foresta.seme:42}") long seme,
+      @Value("${stima.addestramento.foresta.thread:0}") int parallelismo) {
+    this.registroModello = registroModello;
+    this.archivioDataset = archivioDataset;
+    this.costruttore =
+        new CostruttoreForesta(numeroAlberi, profonditaMassima, minCampioniFoglia, seme);
+    this.pool =
+        new ForkJoinPool(
+            parallelismo > 0 ? parallelismo : Runtime.getRuntime().availableProcessors());
+  }
+
+  @Override
+  public VersioneModello addestra() throws ServerRuntimeException {
+    File snapshot = new File(archivioDataset.getPercorso() + ".snapshot");
+    archivioDataset.esportaSnapshot(snapshot);
+
+    long inizio = System.currentTimeMillis();
+    double[][] colonne = new double[ModelloDurata.NUMERO_FEATURE][1024];
+    double[] y = new double[1024];
+    int n = 0;
+    try (Reader reader = Files.newBufferedReader(snapshot.toPath(), StandardCharsets.UTF_8);
+        CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader())) {
+      for (CSVRecord record : parser) {
+        if (n == y.length) {
+          y = Arrays.copyOf(y, n * 2);
+          for (int f = 0; f < colonne.length; f++) {
+            colonne[f] = Arrays.copyOf(colonne[f], n * 2);
+          }
+        }
+        try {
+          for (int f = 0; f < colonne.length; f++) {
+            colonne[f][n] = Double.parseDouble(record.get(COLONNE_FEATURE[f]));
+          }
+          y[n] = Double.parseDouble(record.get(COLONNA_TARGET));
+          n++;
+        } catch (IllegalArgumentException e) {
+          // righe incomplete o malformate non vengono usate
+          log.debug("Riga {} del dataset ignorata", record.getRecordNumber());
+        }
+      }
+    } catch (IOException e) {
+      throw new ServerRuntimeException("Errore nella lettura del dataset");
+    }
+    if (n == 0) {
+      throw new ServerRuntimeException("Il dataset è vuoto.");
+    }
+    for (int f = 0; f < colonne.length; f++) {
+      colonne[f] = Arrays.copyOf(colonne[f], n);
+    }
+
+    ForestaCasuale foresta = costruttore.addestra(colonne, Arrays.copyOf(y, n), pool);
+    log.info(
+        "Foresta di {} alberi addestrata su {} righe in {} ms",
+        foresta.getNumeroAlberi(),
+        n,
+        System.currentTimeMillis() - inizio);
+
+    // il file temporaneo è nella stessa cartella del modello, così lo spostamento è atomico
+    File uscita = new File(registroModello.getPercorso() + ".tmp");
+    try {
+      EsportatorePmml.esporta(foresta, "foresta java (" + n + " righe)", uscita);
+    } catch (IOException e) {
+      throw new ServerRuntimeException("Errore nell'esportazione del modello: " + e.getMessage());
+    }
+    return registroModello.pubblicaFile(uscita);
+  }
+
+  /** Metodo che arresta il pool di addestramento alla chiusura del contesto. */
+  @PreDestroy
+  public void chiudi() {
+    pool.shutdownNow();
+  }
+}
@@ -0,0 +1,16 @@
+package com.commigo.metaclass.gestionestimaduratameeting.addestramento;
+
+import com.commigo.metaclass.exceptions.ServerRuntimeException;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.VersioneModello;
+
+/** Interfaccia che descrive un motore di addestramento del modello di stima. */
+public interface AddestratoreModello {
+
+  /**
+   * Metodo che addestra un nuovo modello sul dataset corrente e lo pubblica nel registro.
+   *
+   * @return la versione del modello pubblicata.
+   * @throws ServerRuntimeException errore durante l'addestramento o la pubblicazione.
+   */
+  VersioneModello addestra() throws ServerRuntimeException;
+}
@@ -0,0 +1,91 @@
+package com.commigo.metaclass.gestionestimaduratameeting.addestramento;
+
+import com.commigo.metaclass.exceptions.ServerRuntimeException;
+import com.commigo.metaclass.gestionestimaduratameeting.dataset.ArchivioDataset;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.RegistroModelloDurata;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.VersioneModello;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Addestratore che esegue lo script Python del modulo AI. Il PMML viene scritto in un file
+ * temporaneo e pubblicato nel registro solo dopo la verifica. È il motore predefinito.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(
+    name = "stima.addestramento.motore",
+    havingValue = "python",
+    matchIfMissing = true)
+@RequiredArgsConstructor
+public class AddestratorePython implements AddestratoreModello {
+
+  private static final String SCRIPT = "trainingModel.py";
+
+  private final RegistroModelloDurata registroModello;
+  private final ArchivioDataset archivioDataset;
+
+  @Value("${stima.addestramento.python:python}")
+  private String interprete;
+
+  @Value("${stima.addestramento.directory:ModuloAI}")
+  private String directory;
+
+  @Value("${stima.addestramento.timeout:600}")
+  private long timeoutSecondi;
+
+  @Override
+  public VersioneModello addestra() throws ServerRuntimeException {
+    File uscita = new File(registroModello.getPercorso() + ".tmp");
+    File snapshot = new File(archivioDataset.getPercorso() + ".snapshot");
+    File fileOutput = new File(registroModello.getPercorso() + ".log");
+
+    // lo script lavora su una copia coerente, mentre il dataset continua a crescere
+    archivioDataset.esportaSnapshot(snapshot);
+
+    try {
+      ProcessBuilder processBuilder =
+          new ProcessBuilder(
+              interprete, SCRIPT, uscita.getAbsolutePath(), snapshot.getAbsolutePath());
+      processBuilder.directory(new File(directory));
+      processBuilder.redirectErrorStream(true);
+      // l'output va su file: il processo non si blocca sulla pipe e il timeout resta efficace
+      // anche se lo script si blocca senza chiudere lo stdout
+      processBuilder.redirectOutput(fileOutput);
+      Process process = processBuilder.start();
+
+      try {
+        if (!process.waitFor(timeoutSecondi, TimeUnit.SECONDS)) {
+          throw new ServerRuntimeException("Timeout nell'esecuzione del modulo Python");
+        }
+      } finally {
+        if (process.isAlive()) {
+          process.destroyForcibly();
+        }
+      }
+
+      String output = new String(Files.readAllBytes(fileOutput.toPath()), StandardCharsets.UTF_8);
+      if (process.exitValue() != 0 || !uscita.isFile()) {
+        throw new ServerRuntimeException(
+            "Errore nell'esecuzione del modulo Python. Messaggio di errore: " + output);
+      }
+      log.debug("Output del modulo Python: {}", output);
+
+    } catch (IOException e) {
+      throw new ServerRuntimeException("Errore nell'esecuzione del modulo Python");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServerRuntimeException("Addestramento interrotto");
+    }
+
+    return registroModello.pubblicaFile(uscita);
+  }
+}
@@ -0,0 +1,250 @@
+package com.commigo.metaclass.gestionestimaduratameeting.addestramento;
+
+import com.commigo.metaclass.gestionestimaduratameeting.modello.AlberoRegressione;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.ForestaCasuale;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Addestramento di una foresta casuale di regressione. Ogni albero viene costruito su un campione
+ * bootstrap con divisioni CART (riduzione dell'errore quadratico) calcolate su istogrammi delle
+ * feature discretizzate. Gli alberi vengono costruiti in parallelo con il fork-join.
+ */
+public final class CostruttoreForesta {
+
+  /** Numero massimo di intervalli in cui viene discretizzata una feature. */
+  static final int MAX_BIN = 255;
+
+  /** Numero di alberi sotto il quale un task fork-join non viene più diviso. */
+  private static final int ALBERI_PER_TASK = 2;
+
+  private final int numeroAlberi;
+  private final int profonditaMassima;
+  private final int minCampioniFoglia;
+  private final long seme;
+
+  /**
+   * Costruttore con gli iperparametri della foresta.
+   *
+   * @param numeroAlberi numero di alberi.
+   * @param profonditaMassima profondità massima di ogni albero.
+   * @param minCampioniFoglia numero minimo di campioni in una foglia.
+   * @param seme seme del generatore casuale, per addestramenti riproducibili.
+   */
+  public CostruttoreForesta(
+      int numeroAlberi, int profonditaMassima, int minCampioniFoglia, long seme) {
+    this.numeroAlberi = numeroAlberi;
+    this.profonditaMassima = profonditaMassima;
+    this.minCampioniFoglia = Math.max(1, minCampioniFoglia);
+    this.seme = seme;
+  }
+
+  /**
+   * Metodo che addestra la foresta.
+   *
+   * @param colonne valori delle feature, una colonna per feature.
+   * @param y valori da predire.
+   * @param pool pool fork-join su cui costruire gli alberi.
+   * @return la foresta addestrata.
+   */
+  public ForestaCasuale addestra(double[][] colonne, double[] y, ForkJoinPool pool) {
+    if (y.length == 0) {
+      throw new IllegalArgumentException("il dataset è vuoto");
+    }
+    Discretizzazione dati = new Discretizzazione(colonne);
+    AlberoRegressione[] alberi = new AlberoRegressione[numeroAlberi];
+    pool.invoke(new CostruisciAlberi(dati, y, alberi, 0, numeroAlberi));
+    return new ForestaCasuale(alberi);
+  }
+
+  /** Task fork-join che costruisce un intervallo di alberi. */
+  private final class CostruisciAlberi extends RecursiveAction {
+
+    private final Discretizzazione dati;
+    private final double[] y;
+    private final AlberoRegressione[] alberi;
+    private final int da;
+    private final int a;
+
+    CostruisciAlberi(Discretizzazione dati, double[] y, AlberoRegressione[] alberi, int da, int a) {
+      this.dati = dati;
+      this.y = y;
+      this.alberi = alberi;
+      this.da = da;
+      this.a = a;
+    }
+
+    @Override
+    protected void compute() {
+      if (a - da <= ALBERI_PER_TASK) {
+        for (int i = da; i < a; i++) {
+          // un seme diverso per albero rende il risultato indipendente dallo scheduling
+          alberi[i] = new CostruzioneAlbero(dati, y, new SplittableRandom(seme + i)).costruisci();
+        }
+        return;
+      }
+      int mezzo = (da + a) >>> 1;
+      invokeAll(
+          new CostruisciAlberi(dati, y, alberi, da, mezzo),
+          new CostruisciAlberi(dati, y, alberi, mezzo, a));
+    }
+  }
+
+  /** Costruzione di un singolo albero; non condivisa tra thread. */
+  private final class CostruzioneAlbero {
+
+    private final Discretizzazione dati;
+    private final double[] y;
+    private final int[] campioni;
+    private final double[] sommaBin = new double[MAX_BIN];
+    private final int[] conteggioBin = new int[MAX_BIN];
+
+    private final AlberoRegressione.Costruttore nodi = new AlberoRegressione.Costruttore();
+
+    CostruzioneAlbero(Discretizzazione dati, double[] y, SplittableRandom random) {
+      this.dati = dati;
+      this.y = y;
+      int n = y.length;
+      this.campioni = new int[n];
+      for (int i = 0; i < n; i++) {
+        campioni[i] = random.nextInt(n);
+      }
+    }
+
+    AlberoRegressione costruisci() {
+      dividi(0, campioni.length, 0);
+      return nodi.costruisci();
+    }
+
+    private int dividi(int da, int a, int profondita) {
+      int conteggio = a - da;
+      double somma = 0;
+      for (int i = da; i < a; i++) {
+        somma += y[campioni[i]];
+      }
+      int nodo = nodi.nuovoNodo(somma / conteggio);
+      if (profondita >= profonditaMassima || conteggio < 2 * minCampioniFoglia) {
+        return nodo;
+      }
+
+      // a parità di somma dei quadrati, massimizzare sL^2/nL + sR^2/nR minimizza l'errore
+      double migliore = somma * somma / conteggio + 1e-9;
+      int migliorFeature = -1;
+      int migliorBin = -1;
+      for (int f = 0; f < dati.codici.length; f++) {
+        short[] codici = dati.codici[f];
+        int bin = dati.numeroBin[f];
+        Arrays.fill(sommaBin, 0, bin, 0);
+        Arrays.fill(conteggioBin, 0, bin, 0);
+        for (int i = da; i < a; i++) {
+          int c = codici[campioni[i]];
+          sommaBin[c] += y[campioni[i]];
+          conteggioBin[c]++;
+        }
+        double sommaSx = 0;
+        int contSx = 0;
+        for (int b = 0; b < bin - 1; b++) {
+          if (conteggioBin[b] == 0) {
+            continue;
+          }
+          sommaSx += sommaBin[b];
+          contSx += conteggioBin[b];
+          int contDx = conteggio - contSx;
+          if (contSx < minCampioniFoglia) {
+            continue;
+          }
+          if (contDx < minCampioniFoglia) {
+            break;
+          }
+          double sommaDx = somma - sommaSx;
+          double guadagno = sommaSx * sommaSx / contSx + sommaDx * sommaDx / contDx;
+          if (guadagno > migliore) {
+            migliore = guadagno;
+            migliorFeature = f;
+            migliorBin = b;
+          }
+        }
+      }
+      if (migliorFeature < 0) {
+        return nodo;
+      }
+
+      // partiziono i campioni; la soglia cade a metà tra i due valori adiacenti
+      short[] codici = dati.codici[migliorFeature];
+      double[] colonna = dati.colonne[migliorFeature];
+      double massimoSx = Double.NEGATIVE_INFINITY;
+      double minimoDx = Double.POSITIVE_INFINITY;
+      int mezzo = da;
+      for (int i = da; i < a; i++) {
+        int campione = campioni[i];
+        if (codici[campione] <= migliorBin) {
+          massimoSx = Math.max(massimoSx, colonna[campione]);
+          campioni[i] = campioni[mezzo];
+          campioni[mezzo++] = campione;
+        } else {
+          minimoDx = Math.min(minimoDx, colonna[campione]);
+        }
+      }
+
+      nodi.dividi(nodo, migliorFeature, (massimoSx + minimoDx) / 2);
+      int figlioSx = dividi(da, mezzo, profondita + 1);
+      int figlioDx = dividi(mezzo, a, profondita + 1);
+      nodi.collega(nodo, figlioSx, figlioDx);
+      return nodo;
+    }
+  }
+
+  /**
+   * Feature discretizzate in al massimo {@link #MAX_BIN} intervalli. Se una feature ha pochi valori
+   * distinti ogni valore ha il proprio intervallo, altrimenti si usano i quantili.
+   */
+  private static final class Discretizzazione {
+
+    private final double[][] colonne;
+    private final short[][] codici;
+    private final int[] numeroBin;
+
+    Discretizzazione(double[][] colonne) {
+      this.colonne = colonne;
+      this.codici = new short[colonne.length][];
+      this.numeroBin = new int[colonne.length];
+      for (int f = 0; f < colonne.length; f++) {
+        double[] limiti = limiti(colonne[f]);
+        numeroBin[f] = limiti.length;
+        short[] c = new short[colonne[f].length];
+        for (int i = 0; i < c.length; i++) {
+          int pos = Arrays.binarySearch(limiti, colonne[f][i]);
+          c[i] = (short) (pos >= 0 ? pos : Math.min(-pos - 1, limiti.length - 1));
+        }
+        codici[f] = c;
+      }
+    }
+
+    /** Limiti superiori degli intervalli, ordinati e distinti. */
+    private static double[] limiti(double[] valori) {
+      double[] ordinati = valori.clone();
+      Arrays.sort(ordinati);
+      double[] distinti = new double[ordinati.length];
+      int k = 0;
+      for (double v : ordinati) {
+        if (k == 0 || distinti[k - 1] != v) {
+          distinti[k++] = v;
+        }
+      }
+      if (k <= MAX_BIN) {
+        return Arrays.copyOf(distinti, k);
+      }
+      double[] quantili = new double[MAX_BIN];
+      int q = 0;
+      for (int b = 1; b <= MAX_BIN; b++) {
+        double v = ordinati[(int) ((long) b * ordinati.length / MAX_BIN) - 1];
+        if (q == 0 || quantili[q - 1] != v) {
+          quantili[q++] = v;
+        }
+      }
+      return Arrays.copyOf(quantili, q);
+    }
+  }
+}
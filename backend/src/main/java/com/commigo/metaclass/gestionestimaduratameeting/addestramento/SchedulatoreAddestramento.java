@@ -0,0 +1,124 @@
+package com.commigo.metaclass.gestionestimaduratameeting.addestramento;
+
+import com.commigo.metaclass.exceptions.ServerRuntimeException;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.VersioneModello;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Schedulatore che esegue il riaddestramento del modello in background. Le nuove righe del
+ * dataset vengono accumulate e una raffica di inserimenti produce un solo addestramento, avviato
+ * al raggiungimento di una soglia di righe o dopo un intervallo di tempo. Non vengono mai eseguiti
+ * due addestramenti contemporaneamente.
+ */
+@Slf4j
+@Component
+public class SchedulatoreAddestramento {
+
+  /** Un solo thread: gli addestramenti sono sempre sequenziali. */
+  private final ExecutorService executor =
+      Executors.newSingleThreadExecutor(
+          r -> {
+            Thread t = new Thread(r, "addestramento-modello");
+            t.setDaemon(true);
+            return t;
+          });
+
+  private final AtomicInteger righePendenti = new AtomicInteger();
+  private final AtomicBoolean pianificato = new AtomicBoolean();
+  private volatile long ultimoAddestramento = System.currentTimeMillis();
+
+  @Autowired private AddestratoreModello addestratore;
+
+  @Value("${stima.addestramento.soglia-righe:100}")
+  private int sogliaRighe;
+
+  @Value("${stima.addestramento.intervallo:600000}")
+  private long intervallo;
+
+  @Value("${stima.addestramento.all-avvio:false}")
+  private boolean addestraAllAvvio;
+
+  /** Metodo che, se configurato, addestra un modello appena l'applicazione è pronta. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void avvio() {
+    if (addestraAllAvvio) {
+      richiediAddestramento();
+    }
+  }
+
+  /**
+   * Metodo che segnala l'aggiunta di nuove righe al dataset.
+   *
+   * @param righe numero di righe aggiunte.
+   */
+  public void segnalaNuoveRighe(int righe) {
+    if (righePendenti.addAndGet(righe) >= sogliaRighe) {
+      richiediAddestramento();
+    }
+  }
+
+  /** Metodo che avvia un addestramento se ci sono righe in attesa da troppo tempo. */
+  @Scheduled(fixedDelayString = "${stima.addestramento.controllo:60000}")
+  public void controllaIntervallo() {
+    if (righePendenti.get() > 0 && System.currentTimeMillis() - ultimoAddestramento >= intervallo) {
+      richiediAddestramento();
+    }
+  }
+
+  /**
+   * Metodo che accoda un addestramento. Le richieste arrivate mentre un addestramento è già in
+   * coda vengono unite a quest'ultimo.
+   */
+  public void richiediAddestramento() {
+    if (pianificato.compareAndSet(false, true)) {
+      executor.execute(this::esegui);
+    }
+  }
+
+  private void esegui() {
+    // le righe arrivate da qui in poi richiederanno un nuovo addestramento
+    pianificato.set(false);
+    int righe = righePendenti.getAndSet(0);
+    long inizio = System.currentTimeMillis();
+    try {
+      VersioneModello versione = addestratore.addestra();
+      log.info(
+          "Addestramento completato in {} ms su {} nuove righe: modello v{}",
+          System.currentTimeMillis() - inizio,
+          righe,
+          versione.getVersione());
+    } catch (ServerRuntimeException | RuntimeException e) {
+      // le righe restano in attesa per il prossimo tentativo
+      righePendenti.addAndGet(righe);
+      log.error("Addestramento del modello fallito: {}", e.getMessage());
+    } finally {
+      ultimoAddestramento = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Metodo che restituisce il numero di righe non ancora usate per l'addestramento.
+   *
+   * @return righe in attesa.
+   */
+  public int getRighePendenti() {
+    return righePendenti.get();
+  }
+
+  /** Metodo che arresta il thread di addestramento alla chiusura del contesto. */
+  @PreDestroy
+  public void chiudi() {
+    executor.shutdownNow();
+  }
+}
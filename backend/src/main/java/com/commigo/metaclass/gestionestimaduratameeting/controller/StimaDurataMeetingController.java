@@ -2,10 +2,14 @@ package com.commigo.metaclass.gestionestimaduratameeting.controller;
 
 import com.commigo.metaclass.exceptions.RuntimeException403;
 import com.commigo.metaclass.exceptions.ServerRuntimeException;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.StimaDurata;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.VersioneModello;
 import com.commigo.metaclass.gestionestimaduratameeting.service.GestioneStimaMeetingService;
 import com.commigo.metaclass.utility.response.types.Response;
 import com.commigo.metaclass.webconfig.ValidationToken;
 import jakarta.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -40,8 +44,47 @@ public class StimaDurataMeetingController {
         throw new RuntimeException403("Token non valido");
       }
 
-      double durata = gestioneStimaMeetingService.getDurataMeeting(idStanza);
-      return ResponseEntity.ok(new Response<>(durata, "Stima effettuata con successo"));
+      // la versione riportata è quella usata per la stima, anche se nel frattempo è cambiata
+      StimaDurata stima = gestioneStimaMeetingService.getDurataMeeting(idStanza);
+      return ResponseEntity.ok(
+          new Response<>(
+              stima.getDurata(),
+              "Stima effettuata con successo (modello v"
+                  + stima.getVersione().getVersione()
+                  + ")"));
+
+    } catch (RuntimeException403 re) {
+      return ResponseEntity.status(HttpStatus.FORBIDDEN)
+          .body(new Response<>(null, "Errore durante la richiesta: " + re.getMessage()));
+    } catch (ServerRuntimeException e) {
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(new Response<>(null, "Errore durante la richiesta: " + e.getMessage()));
+    }
+  }
+
+  /**
+   * Metodo che permette di visualizzare la versione del modello di stima attualmente in uso.
+   *
+   * @param request richiesta HTTP fornita dal client
+   * @return ritorna versione, origine e data di caricamento del modello
+   */
+  @GetMapping(value = "/stimaMeeting/modello")
+  public ResponseEntity<Response<Map<String, Object>>> visualizzaVersioneModello(
+      HttpServletRequest request) {
+
+    try {
+
+      // validazione dl token
+      if (!validationToken.isTokenValid(request)) {
+        throw new RuntimeException403("Token non valido");
+      }
+
+      VersioneModello versione = gestioneStimaMeetingService.getVersioneModello();
+      Map<String, Object> info = new LinkedHashMap<>();
+      info.put("versione", versione.getVersione());
+      info.put("origine", versione.getOrigine());
+      info.put("caricatoIl", versione.getCaricatoIl());
+      return ResponseEntity.ok(new Response<>(info, "Modello di stima in uso"));
 
     } catch (RuntimeException403 re) {
       return ResponseEntity.status(HttpStatus.FORBIDDEN)
@@ -0,0 +1,305 @@
+package com.commigo.metaclass.gestionestimaduratameeting.dataset;
+
+import com.commigo.metaclass.exceptions.ServerRuntimeException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Archivio append-only del dataset di addestramento. Le righe vengono accodate e scritte da un
+ * unico thread, a blocchi, con una sola sincronizzazione su disco per blocco. Il prossimo UserID
+ * viene calcolato una sola volta all'avvio leggendo l'ultima riga del file.
+ *
+ * <p>Un blocco viene scartato solo dopo essere stato scritto e sincronizzato su disco. Se la
+ * scrittura fallisce il file viene riportato alla fine dell'ultimo blocco completo e lo stesso
+ * blocco viene riscritto dopo un'attesa crescente; nel frattempo le nuove righe restano in coda.
+ */
+@Slf4j
+@Component
+public class ArchivioDataset {
+
+  private static final String RISORSA_INIZIALE = "ModuloAI/data.csv";
+
+  private static final String PERCORSO_DEFAULT =
+      System.getProperty("user.dir") + File.separator + "ModuloAI" + File.separator + "data.csv";
+
+  private static final long ATTESA_MINIMA_RIPROVA = 100;
+  private static final long ATTESA_MASSIMA_RIPROVA = 30_000;
+
+  private final AtomicInteger ultimoUserId = new AtomicInteger();
+
+  @Value("${stima.dataset.path:}")
+  private String percorso;
+
+  @Value("${stima.dataset.capacita-coda:10000}")
+  private int capacitaCoda;
+
+  @Value("${stima.dataset.dimensione-blocco:500}")
+  private int dimensioneBlocco;
+
+  @Value("${stima.dataset.intervallo-flush:1000}")
+  private long intervalloFlush;
+
+  private BlockingQueue<RigaDataset> coda;
+  private FileChannel canale;
+  private Thread scrittore;
+  private volatile boolean attivo;
+
+  /** Dimensione del file fino all'ultimo blocco scritto e sincronizzato su disco. */
+  private volatile long dimensioneCompleta;
+
+  /**
+   * Metodo che prepara il file del dataset, copiandolo dalle risorse se non esiste, e avvia il
+   * thread di scrittura.
+   *
+   * @throws IOException errore nella creazione o lettura del dataset.
+   */
+  @PostConstruct
+  public void init() throws IOException {
+    if (percorso == null || percorso.isBlank()) {
+      percorso = PERCORSO_DEFAULT;
+    }
+    Path file = Path.of(percorso);
+    if (!Files.exists(file)) {
+      inizializzaFile(file);
+    }
+    ultimoUserId.set(leggiUltimoUserId(file));
+
+    coda = new ArrayBlockingQueue<>(capacitaCoda);
+    // scrittura per posizione, così un blocco fallito può essere annullato e riscritto
+    canale = FileChannel.open(file, StandardOpenOption.WRITE);
+    dimensioneCompleta = canale.size();
+    attivo = true;
+    scrittore = new Thread(this::scrivi, "scrittore-dataset");
+    scrittore.setDaemon(true);
+    scrittore.start();
+    log.info("Dataset di addestramento in {} (ultimo UserID {})", percorso, ultimoUserId.get());
+  }
+
+  /**
+   * Metodo che accoda una nuova riga al dataset, assegnandole il prossimo UserID.
+   *
+   * @param age età dell'utente.
+   * @param gender genere dell'utente (0 "O", 1 "F", 2 "M").
+   * @param duration durata in minuti.
+   * @param motionSickness livello di fastidio.
+   * @param immersionLevel livello di immersività.
+   * @return riga accodata.
+   * @throws ServerRuntimeException la coda di scrittura è piena o l'archivio è chiuso.
+   */
+  public RigaDataset aggiungi(
+      int age, int gender, double duration, int motionSickness, int immersionLevel)
+      throws ServerRuntimeException {
+    if (!attivo) {
+      throw new ServerRuntimeException("il dataset non è disponibile");
+    }
+    RigaDataset riga =
+        new RigaDataset(
+            ultimoUserId.incrementAndGet(), age, gender, duration, motionSickness, immersionLevel);
+    if (!coda.offer(riga)) {
+      throw new ServerRuntimeException("il dataset è momentaneamente saturo");
+    }
+    return riga;
+  }
+
+  /**
+   * Metodo che esporta un'istantanea coerente del dataset, contenente solo righe complete.
+   *
+   * @param destinazione file in cui scrivere l'istantanea.
+   * @throws ServerRuntimeException errore nella copia del dataset.
+   */
+  public void esportaSnapshot(File destinazione) throws ServerRuntimeException {
+    // oltre questa dimensione il file può contenere un blocco non ancora sincronizzato o fallito
+    long dimensione = dimensioneCompleta;
+    try (FileChannel sorgente = FileChannel.open(Path.of(percorso), StandardOpenOption.READ);
+        FileChannel uscita =
+            FileChannel.open(
+                destinazione.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+      long copiati = 0;
+      while (copiati < dimensione) {
+        copiati += sorgente.transferTo(copiati, dimensione - copiati, uscita);
+      }
+    } catch (IOException e) {
+      throw new ServerRuntimeException("errore nell'esportazione del dataset");
+    }
+  }
+
+  /**
+   * Metodo che restituisce il percorso del file del dataset.
+   *
+   * @return percorso del dataset.
+   */
+  public String getPercorso() {
+    return percorso;
+  }
+
+  /** Metodo che scrive le righe rimaste in coda e chiude il file. */
+  @PreDestroy
+  public void chiudi() {
+    attivo = false;
+    try {
+      scrittore.join(TimeUnit.SECONDS.toMillis(10));
+      canale.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      log.error("Errore nella chiusura del dataset: {}", e.getMessage());
+    }
+  }
+
+  private void scrivi() {
+    List<RigaDataset> blocco = new ArrayList<>(dimensioneBlocco);
+    long attesa = ATTESA_MINIMA_RIPROVA;
+    boolean interrotto = false;
+    while (attivo || !coda.isEmpty() || !blocco.isEmpty()) {
+      try {
+        if (blocco.isEmpty()) {
+          // dopo un'interruzione la coda viene svuotata senza attendere nuove righe
+          RigaDataset prima =
+              interrotto ? coda.poll() : coda.poll(intervalloFlush, TimeUnit.MILLISECONDS);
+          if (prima == null) {
+            if (interrotto) {
+              break;
+            }
+            continue;
+          }
+          blocco.add(prima);
+          coda.drainTo(blocco, dimensioneBlocco - 1);
+        }
+
+        scriviBlocco(blocco);
+        blocco.clear();
+        attesa = ATTESA_MINIMA_RIPROVA;
+      } catch (InterruptedException e) {
+        interrotto = true;
+      } catch (IOException e) {
+        if (!canale.isOpen()) {
+          log.error(
+              "Dataset chiuso: {} righe non sono state scritte", blocco.size() + coda.size());
+          break;
+        }
+        log.error(
+            "Errore nella scrittura di {} righe del dataset, nuovo tentativo tra {} ms: {}",
+            blocco.size(),
+            attesa,
+            e.getMessage());
+        try {
+          Thread.sleep(attesa);
+        } catch (InterruptedException ie) {
+          interrotto = true;
+        }
+        attesa = Math.min(attesa * 2, ATTESA_MASSIMA_RIPROVA);
+      }
+    }
+    if (interrotto) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Metodo che scrive un blocco di righe dopo l'ultimo blocco completo e lo sincronizza su disco.
+   * Se la scrittura fallisce il file viene riportato alla dimensione precedente, così non restano
+   * righe parziali.
+   *
+   * @param blocco righe da scrivere.
+   * @throws IOException errore di scrittura o sincronizzazione.
+   */
+  private void scriviBlocco(List<RigaDataset> blocco) throws IOException {
+    StringBuilder testo = new StringBuilder(blocco.size() * 48);
+    for (RigaDataset riga : blocco) {
+      testo.append(riga.toCsv()).append('\n');
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(testo.toString().getBytes(StandardCharsets.UTF_8));
+    long inizio = dimensioneCompleta;
+    try {
+      while (buffer.hasRemaining()) {
+        canale.write(buffer, inizio + buffer.position());
+      }
+      canale.force(false);
+    } catch (IOException e) {
+      try {
+        canale.truncate(inizio);
+      } catch (IOException ignorata) {
+        // la prossima scrittura riparte comunque da inizio, sovrascrivendo la riga parziale
+      }
+      throw e;
+    }
+    dimensioneCompleta = inizio + buffer.limit();
+  }
+
+  private void inizializzaFile(Path file) throws IOException {
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    try (InputStream is = getClass().getClassLoader().getResourceAsStream(RISORSA_INIZIALE)) {
+      if (is != null) {
+        Files.copy(is, file);
+      } else {
+        Files.writeString(file, RigaDataset.INTESTAZIONE + "\n", StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  /**
+   * Metodo che legge a ritroso l'ultima riga del dataset per ricavarne lo UserID, senza
+   * analizzare l'intero file.
+   *
+   * @param file file del dataset.
+   * @return ultimo UserID presente, 0 se il dataset contiene solo l'intestazione.
+   * @throws IOException errore di lettura del file.
+   */
+  private static int leggiUltimoUserId(Path file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+      long pos = raf.length() - 1;
+      // salto i separatori finali
+      while (pos >= 0) {
+        raf.seek(pos);
+        int c = raf.read();
+        if (c != '\n' && c != '\r') {
+          break;
+        }
+        pos--;
+      }
+      long fine = pos;
+      while (pos >= 0) {
+        raf.seek(pos);
+        if (raf.read() == '\n') {
+          break;
+        }
+        pos--;
+      }
+      byte[] bytes = new byte[(int) (fine - pos)];
+      raf.seek(pos + 1);
+      raf.readFully(bytes);
+      String ultimaRiga = new String(bytes, StandardCharsets.UTF_8);
+      String primoCampo = ultimaRiga.split(",", 2)[0].trim();
+      try {
+        return Integer.parseInt(primoCampo);
+      } catch (NumberFormatException e) {
+        // solo intestazione
+        return 0;
+      }
+    }
+  }
+}
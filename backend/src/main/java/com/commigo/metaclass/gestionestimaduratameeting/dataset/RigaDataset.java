@@ -0,0 +1,33 @@
+package com.commigo.metaclass.gestionestimaduratameeting.dataset;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.commons.csv.CSVFormat;
+
+/** Riga immutabile del dataset di addestramento del modello di stima. */
+@Getter
+@AllArgsConstructor
+public class RigaDataset {
+
+  /** Intestazione del dataset, nell'ordine in cui vengono scritte le colonne. */
+  public static final String INTESTAZIONE =
+      "UserID,Age,Gender,VRHeadset,Duration,MotionSickness,ImmersionLevel";
+
+  private final int userId;
+  private final int age;
+  private final int gender;
+  private final double duration;
+  private final int motionSickness;
+  private final int immersionLevel;
+
+  /**
+   * Metodo che restituisce la riga formattata in CSV, senza separatore finale.
+   *
+   * @return riga CSV.
+   */
+  public String toCsv() {
+    // VRHeadset non è utilizzato e viene rimosso nella feature selection
+    return CSVFormat.DEFAULT.format(
+        userId, age, gender, null, duration, motionSickness, immersionLevel);
+  }
+}
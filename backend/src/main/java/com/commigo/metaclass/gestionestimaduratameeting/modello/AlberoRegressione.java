@@ -0,0 +1,147 @@
+package com.commigo.metaclass.gestionestimaduratameeting.modello;
+
+import java.util.Arrays;
+
+/**
+ * Albero di regressione immutabile memorizzato in array piatti. Il nodo 0 è la radice; un nodo con
+ * feature negativa è una foglia. Si scende a sinistra quando il valore della feature è minore o
+ * uguale alla soglia.
+ */
+public final class AlberoRegressione {
+
+  private final int[] feature;
+  private final double[] soglia;
+  private final int[] sinistro;
+  private final int[] destro;
+  private final double[] valore;
+
+  /**
+   * Costruttore dell'albero. Gli array vengono adottati senza copia e non devono essere modificati.
+   *
+   * @param feature indice della feature di ogni nodo, negativo per le foglie.
+   * @param soglia soglia di ogni nodo interno.
+   * @param sinistro indice del figlio sinistro di ogni nodo interno.
+   * @param destro indice del figlio destro di ogni nodo interno.
+   * @param valore valore predetto da ogni foglia.
+   */
+  public AlberoRegressione(
+      int[] feature, double[] soglia, int[] sinistro, int[] destro, double[] valore) {
+    this.feature = feature;
+    this.soglia = soglia;
+    this.sinistro = sinistro;
+    this.destro = destro;
+    this.valore = valore;
+  }
+
+  /**
+   * Metodo che restituisce il valore della foglia raggiunta dalla riga.
+   *
+   * @param riga valori delle feature.
+   * @return valore della foglia.
+   */
+  public double predici(double[] riga) {
+    int nodo = 0;
+    while (feature[nodo] >= 0) {
+      nodo = riga[feature[nodo]] <= soglia[nodo] ? sinistro[nodo] : destro[nodo];
+    }
+    return valore[nodo];
+  }
+
+  /**
+   * Metodo che restituisce il numero di nodi dell'albero.
+   *
+   * @return numero di nodi.
+   */
+  public int getNumeroNodi() {
+    return feature.length;
+  }
+
+  int getFeature(int nodo) {
+    return feature[nodo];
+  }
+
+  double getSoglia(int nodo) {
+    return soglia[nodo];
+  }
+
+  int getSinistro(int nodo) {
+    return sinistro[nodo];
+  }
+
+  int getDestro(int nodo) {
+    return destro[nodo];
+  }
+
+  double getValore(int nodo) {
+    return valore[nodo];
+  }
+
+  /** Costruttore incrementale di un albero, con array che crescono a raddoppio. */
+  public static final class Costruttore {
+
+    private int[] feature = new int[64];
+    private double[] soglia = new double[64];
+    private int[] sinistro = new int[64];
+    private int[] destro = new int[64];
+    private double[] valore = new double[64];
+    private int numeroNodi;
+
+    /**
+     * Metodo che aggiunge un nodo, inizialmente foglia.
+     *
+     * @param valoreFoglia valore predetto dal nodo se resta una foglia.
+     * @return indice del nodo.
+     */
+    public int nuovoNodo(double valoreFoglia) {
+      if (numeroNodi == feature.length) {
+        int capacita = numeroNodi * 2;
+        feature = Arrays.copyOf(feature, capacita);
+        soglia = Arrays.copyOf(soglia, capacita);
+        sinistro = Arrays.copyOf(sinistro, capacita);
+        destro = Arrays.copyOf(destro, capacita);
+        valore = Arrays.copyOf(valore, capacita);
+      }
+      feature[numeroNodi] = -1;
+      valore[numeroNodi] = valoreFoglia;
+      return numeroNodi++;
+    }
+
+    /**
+     * Metodo che trasforma un nodo in un nodo interno.
+     *
+     * @param nodo indice del nodo.
+     * @param indiceFeature feature su cui divide il nodo.
+     * @param sogliaNodo soglia della divisione.
+     */
+    public void dividi(int nodo, int indiceFeature, double sogliaNodo) {
+      feature[nodo] = indiceFeature;
+      soglia[nodo] = sogliaNodo;
+    }
+
+    /**
+     * Metodo che collega un nodo interno ai propri figli.
+     *
+     * @param nodo indice del nodo.
+     * @param figlioSx figlio per i valori minori o uguali alla soglia.
+     * @param figlioDx figlio per i valori maggiori della soglia.
+     */
+    public void collega(int nodo, int figlioSx, int figlioDx) {
+      sinistro[nodo] = figlioSx;
+      destro[nodo] = figlioDx;
+    }
+
+    /**
+     * Metodo che restituisce l'albero costruito.
+     *
+     * @return albero immutabile.
+     */
+    public AlberoRegressione costruisci() {
+      return new AlberoRegressione(
+          Arrays.copyOf(feature, numeroNodi),
+          Arrays.copyOf(soglia, numeroNodi),
+          Arrays.copyOf(sinistro, numeroNodi),
+          Arrays.copyOf(destro, numeroNodi),
+          Arrays.copyOf(valore, numeroNodi));
+    }
+  }
+}
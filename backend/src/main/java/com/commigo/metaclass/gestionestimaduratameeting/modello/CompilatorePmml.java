@@ -0,0 +1,258 @@
+package com.commigo.metaclass.gestionestimaduratameeting.modello;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.dmg.pmml.DerivedField;
+import org.dmg.pmml.Expression;
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.FieldRef;
+import org.dmg.pmml.LocalTransformations;
+import org.dmg.pmml.Model;
+import org.dmg.pmml.PMML;
+import org.dmg.pmml.Predicate;
+import org.dmg.pmml.SimplePredicate;
+import org.dmg.pmml.TransformationDictionary;
+import org.dmg.pmml.True;
+import org.dmg.pmml.mining.MiningModel;
+import org.dmg.pmml.mining.Segment;
+import org.dmg.pmml.mining.Segmentation;
+import org.dmg.pmml.tree.Node;
+import org.dmg.pmml.tree.TreeModel;
+import org.jpmml.evaluator.ModelEvaluator;
+
+/**
+ * Compilatore che trasforma una foresta di alberi PMML in una {@link ForestaCasuale} con nodi in
+ * array primitivi, valutabile senza allocazioni. Sono supportati un TreeModel o un MiningModel con
+ * segmenti TreeModel combinati per media o somma, con divisioni binarie su SimplePredicate; per gli
+ * altri modelli si usa l'evaluator JPMML.
+ */
+@Slf4j
+public final class CompilatorePmml {
+
+  /** Scarto relativo ammesso tra il modello compilato e l'evaluator JPMML. */
+  private static final double TOLLERANZA = 1e-6;
+
+  private final Map<FieldName, FieldName> derivati = new HashMap<>();
+
+  private CompilatorePmml() {}
+
+  /**
+   * Metodo che carica un file PMML e restituisce il modello compilato, oppure l'evaluator JPMML se
+   * il modello non può essere compilato o la compilazione fallisce per qualsiasi motivo.
+   *
+   * @param file file PMML da caricare.
+   * @return modello pronto per la predizione.
+   * @throws IOException errore di lettura del file o modello non valido.
+   */
+  public static ModelloDurata carica(File file) throws IOException {
+    ModelEvaluator<?> evaluator = ModelloPmml.caricaEvaluator(file);
+    ModelloPmml jpmml = ModelloPmml.di(evaluator);
+    try {
+      ForestaCasuale compilato = new CompilatorePmml().compila(evaluator.getPMML(), evaluator);
+      verifica(compilato, jpmml);
+      log.info("Modello {} compilato in {} alberi", file.getName(), compilato.getNumeroAlberi());
+      return compilato;
+    } catch (UnsupportedOperationException e) {
+      log.info("Modello {} valutato con JPMML: {}", file.getName(), e.getMessage());
+      return jpmml;
+    } catch (RuntimeException e) {
+      // PMML malformato o verifica non eseguibile: l'evaluator JPMML resta utilizzabile
+      log.warn("Compilazione del modello {} non riuscita, uso JPMML", file.getName(), e);
+      return jpmml;
+    }
+  }
+
+  private ForestaCasuale compila(PMML pmml, ModelEvaluator<?> evaluator) {
+    TransformationDictionary dizionario = pmml.getTransformationDictionary();
+    if (dizionario != null && dizionario.hasDerivedFields()) {
+      registraDerivati(dizionario.getDerivedFields());
+    }
+    Model model = evaluator.getModel();
+    registraDerivati(model.getLocalTransformations());
+    if (model.getTargets() != null) {
+      throw new UnsupportedOperationException("trasformazioni del target non supportate");
+    }
+
+    if (model instanceof TreeModel) {
+      return new ForestaCasuale(new AlberoRegressione[] {compilaAlbero((TreeModel) model)});
+    }
+    if (!(model instanceof MiningModel)) {
+      throw new UnsupportedOperationException("modello " + model.getClass().getSimpleName());
+    }
+
+    Segmentation segmentation = ((MiningModel) model).getSegmentation();
+    List<AlberoRegressione> alberi = new ArrayList<>();
+    for (Segment segment : segmentation.getSegments()) {
+      if (!(segment.getPredicate() instanceof True) || !(segment.getModel() instanceof TreeModel)) {
+        throw new UnsupportedOperationException("segmento non supportato");
+      }
+      registraDerivati(segment.getModel().getLocalTransformations());
+      alberi.add(compilaAlbero((TreeModel) segment.getModel()));
+    }
+    if (alberi.isEmpty()) {
+      throw new UnsupportedOperationException("segmentazione vuota");
+    }
+
+    AlberoRegressione[] array = alberi.toArray(new AlberoRegressione[0]);
+    switch (segmentation.getMultipleModelMethod()) {
+      case AVERAGE:
+        return new ForestaCasuale(array);
+      case SUM:
+        return new ForestaCasuale(array, 1.0);
+      default:
+        throw new UnsupportedOperationException(
+            "combinazione " + segmentation.getMultipleModelMethod());
+    }
+  }
+
+  private void registraDerivati(LocalTransformations trasformazioni) {
+    if (trasformazioni != null && trasformazioni.hasDerivedFields()) {
+      registraDerivati(trasformazioni.getDerivedFields());
+    }
+  }
+
+  private void registraDerivati(List<DerivedField> campi) {
+    // sono ammessi solo campi derivati che rinominano o convertono un altro campo
+    for (DerivedField campo : campi) {
+      Expression expression = campo.getExpression();
+      if (expression instanceof FieldRef) {
+        derivati.put(campo.getName(), ((FieldRef) expression).getField());
+      }
+    }
+  }
+
+  private int indiceFeature(FieldName campo) {
+    FieldName nome = campo;
+    for (int i = 0; i < 16 && derivati.containsKey(nome); i++) {
+      nome = derivati.get(nome);
+    }
+    int indice = ModelloPmml.indiceFeature(nome.getValue());
+    if (indice < 0) {
+      throw new UnsupportedOperationException("campo " + campo.getValue());
+    }
+    return indice;
+  }
+
+  private AlberoRegressione compilaAlbero(TreeModel treeModel) {
+    Node radice = treeModel.getNode();
+    if (radice == null || !(radice.getPredicate() instanceof True)) {
+      throw new UnsupportedOperationException("radice dell'albero non supportata");
+    }
+    AlberoRegressione.Costruttore nodi = new AlberoRegressione.Costruttore();
+    compilaNodo(radice, nodi);
+    return nodi.costruisci();
+  }
+
+  private int compilaNodo(Node node, AlberoRegressione.Costruttore nodi) {
+    if (!node.hasNodes()) {
+      if (node.getScore() == null) {
+        throw new UnsupportedOperationException("foglia senza punteggio");
+      }
+      return nodi.nuovoNodo(Double.parseDouble(node.getScore().toString()));
+    }
+
+    List<Node> figli = node.getNodes();
+    if (figli.size() != 2) {
+      throw new UnsupportedOperationException("nodo con " + figli.size() + " figli");
+    }
+    Node primo = figli.get(0);
+    Node secondo = figli.get(1);
+    if (!(primo.getPredicate() instanceof SimplePredicate)) {
+      throw new UnsupportedOperationException("predicato non supportato");
+    }
+    SimplePredicate predicato = (SimplePredicate) primo.getPredicate();
+    if (!complementare(predicato, secondo.getPredicate())) {
+      throw new UnsupportedOperationException("divisione non binaria");
+    }
+
+    // il confronto compilato è sempre "valore <= soglia" verso il figlio sinistro
+    double valore = Double.parseDouble(String.valueOf(predicato.getValue()));
+    Node sinistro;
+    Node destro;
+    double soglia;
+    switch (predicato.getOperator()) {
+      case LESS_OR_EQUAL:
+        soglia = valore;
+        sinistro = primo;
+        destro = secondo;
+        break;
+      case LESS_THAN:
+        soglia = Math.nextDown(valore);
+        sinistro = primo;
+        destro = secondo;
+        break;
+      case GREATER_THAN:
+        soglia = valore;
+        sinistro = secondo;
+        destro = primo;
+        break;
+      case GREATER_OR_EQUAL:
+        soglia = Math.nextDown(valore);
+        sinistro = secondo;
+        destro = primo;
+        break;
+      default:
+        throw new UnsupportedOperationException("operatore " + predicato.getOperator());
+    }
+
+    int indice = nodi.nuovoNodo(0);
+    nodi.dividi(indice, indiceFeature(predicato.getField()), soglia);
+    int figlioSx = compilaNodo(sinistro, nodi);
+    int figlioDx = compilaNodo(destro, nodi);
+    nodi.collega(indice, figlioSx, figlioDx);
+    return indice;
+  }
+
+  /** Il secondo figlio deve essere sempre vero oppure il predicato opposto al primo. */
+  private static boolean complementare(SimplePredicate primo, Predicate secondo) {
+    if (secondo instanceof True) {
+      return true;
+    }
+    if (!(secondo instanceof SimplePredicate)) {
+      return false;
+    }
+    SimplePredicate altro = (SimplePredicate) secondo;
+    if (!primo.getField().equals(altro.getField())
+        || !String.valueOf(primo.getValue()).equals(String.valueOf(altro.getValue()))) {
+      return false;
+    }
+    switch (primo.getOperator()) {
+      case LESS_OR_EQUAL:
+        return altro.getOperator() == SimplePredicate.Operator.GREATER_THAN;
+      case LESS_THAN:
+        return altro.getOperator() == SimplePredicate.Operator.GREATER_OR_EQUAL;
+      case GREATER_THAN:
+        return altro.getOperator() == SimplePredicate.Operator.LESS_OR_EQUAL;
+      case GREATER_OR_EQUAL:
+        return altro.getOperator() == SimplePredicate.Operator.LESS_THAN;
+      default:
+        return false;
+    }
+  }
+
+  /** Confronta il modello compilato con l'evaluator JPMML su una griglia di righe plausibili. */
+  private static void verifica(ForestaCasuale compilato, ModelloPmml jpmml) {
+    double[] riga = new double[ModelloDurata.NUMERO_FEATURE];
+    for (int eta = 15; eta <= 75; eta += 10) {
+      for (int genere = 0; genere <= 2; genere++) {
+        for (int immersion = 1; immersion <= 5; immersion += 2) {
+          for (int motion = 1; motion <= 10; motion += 3) {
+            riga[ModelloDurata.ETA] = eta;
+            riga[ModelloDurata.GENERE] = genere;
+            riga[ModelloDurata.IMMERSION_LEVEL] = immersion;
+            riga[ModelloDurata.MOTION_SICKNESS] = motion;
+            double atteso = jpmml.predici(riga);
+            if (Math.abs(compilato.predici(riga) - atteso) > TOLLERANZA * Math.max(1, atteso)) {
+              throw new UnsupportedOperationException("il modello compilato non coincide");
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package com.commigo.metaclass.gestionestimaduratameeting.modello;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Esportatore che scrive una {@link ForestaCasuale} come MiningModel PMML di TreeModel con
+ * divisioni binarie, nella forma letta da {@link CompilatorePmml}. Il file prodotto può essere
+ * pubblicato con {@link RegistroModelloDurata#pubblicaFile}, così il modello sopravvive al riavvio.
+ */
+public final class EsportatorePmml {
+
+  private static final String NAMESPACE = "http://www.dmg.org/PMML-4_4";
+  private static final String TARGET = "Duration";
+
+  private EsportatorePmml() {}
+
+  /**
+   * Metodo che scrive una foresta in un file PMML.
+   *
+   * @param foresta foresta da esportare.
+   * @param descrizione descrizione del modello, scritta nell'intestazione.
+   * @param file file di destinazione.
+   * @throws IOException errore di scrittura del file.
+   */
+  public static void esporta(ForestaCasuale foresta, String descrizione, File file)
+      throws IOException {
+    String metodo = metodoCombinazione(foresta);
+    try (OutputStream os = Files.newOutputStream(file.toPath())) {
+      XMLStreamWriter w = XMLOutputFactory.newInstance().createXMLStreamWriter(os, "UTF-8");
+      w.writeStartDocument("UTF-8", "1.0");
+      w.writeStartElement("PMML");
+      w.writeDefaultNamespace(NAMESPACE);
+      w.writeAttribute("version", "4.4");
+
+      w.writeEmptyElement("Header");
+      w.writeAttribute("description", descrizione);
+
+      w.writeStartElement("DataDictionary");
+      w.writeAttribute("numberOfFields", String.valueOf(ModelloDurata.NUMERO_FEATURE + 1));
+      for (int f = 0; f < ModelloDurata.NUMERO_FEATURE; f++) {
+        scriviCampo(w, ModelloPmml.NOMI_FEATURE[f]);
+      }
+      scriviCampo(w, TARGET);
+      w.writeEndElement();
+
+      w.writeStartElement("MiningModel");
+      w.writeAttribute("functionName", "regression");
+      scriviSchema(w, true);
+      w.writeStartElement("Segmentation");
+      w.writeAttribute("multipleModelMethod", metodo);
+      for (int i = 0; i < foresta.getNumeroAlberi(); i++) {
+        w.writeStartElement("Segment");
+        w.writeAttribute("id", String.valueOf(i + 1));
+        w.writeEmptyElement("True");
+        scriviAlbero(w, foresta.getAlbero(i));
+        w.writeEndElement();
+      }
+      w.writeEndElement();
+      w.writeEndElement();
+
+      w.writeEndElement();
+      w.writeEndDocument();
+      w.close();
+    } catch (XMLStreamException e) {
+      throw new IOException("errore nella scrittura del modello PMML: " + e.getMessage(), e);
+    }
+  }
+
+  /** La foresta restituisce la media degli alberi, oppure la loro somma con fattore 1. */
+  private static String metodoCombinazione(ForestaCasuale foresta) {
+    double fattore = foresta.getFattore();
+    if (fattore == 1.0) {
+      return "sum";
+    }
+    if (Math.abs(fattore * foresta.getNumeroAlberi() - 1.0) < 1e-12) {
+      return "average";
+    }
+    throw new IllegalArgumentException("fattore di combinazione non esportabile: " + fattore);
+  }
+
+  private static void scriviCampo(XMLStreamWriter w, String nome) throws XMLStreamException {
+    w.writeEmptyElement("DataField");
+    w.writeAttribute("name", nome);
+    w.writeAttribute("optype", "continuous");
+    w.writeAttribute("dataType", "double");
+  }
+
+  private static void scriviSchema(XMLStreamWriter w, boolean conTarget)
+      throws XMLStreamException {
+    w.writeStartElement("MiningSchema");
+    if (conTarget) {
+      w.writeEmptyElement("MiningField");
+      w.writeAttribute("name", TARGET);
+      w.writeAttribute("usageType", "target");
+    }
+    for (int f = 0; f < ModelloDurata.NUMERO_FEATURE; f++) {
+      w.writeEmptyElement("MiningField");
+      w.writeAttribute("name", ModelloPmml.NOMI_FEATURE[f]);
+    }
+    w.writeEndElement();
+  }
+
+  private static void scriviAlbero(XMLStreamWriter w, AlberoRegressione albero)
+      throws XMLStreamException {
+    w.writeStartElement("TreeModel");
+    w.writeAttribute("functionName", "regression");
+    w.writeAttribute("splitCharacteristic", "binarySplit");
+    scriviSchema(w, false);
+    w.writeStartElement("Node");
+    if (albero.getFeature(0) < 0) {
+      w.writeAttribute("score", Double.toString(albero.getValore(0)));
+    }
+    w.writeEmptyElement("True");
+    scriviFigli(w, albero, 0);
+    w.writeEndElement();
+    w.writeEndElement();
+  }
+
+  /** Scrive i figli di un nodo interno: a sinistra i valori minori o uguali alla soglia. */
+  private static void scriviFigli(XMLStreamWriter w, AlberoRegressione albero, int nodo)
+      throws XMLStreamException {
+    int feature = albero.getFeature(nodo);
+    if (feature < 0) {
+      return;
+    }
+    String campo = ModelloPmml.NOMI_FEATURE[feature];
+    String soglia = Double.toString(albero.getSoglia(nodo));
+    scriviNodo(w, albero, albero.getSinistro(nodo), campo, "lessOrEqual", soglia);
+    scriviNodo(w, albero, albero.getDestro(nodo), campo, "greaterThan", soglia);
+  }
+
+  private static void scriviNodo(
+      XMLStreamWriter w,
+      AlberoRegressione albero,
+      int nodo,
+      String campo,
+      String operatore,
+      String soglia)
+      throws XMLStreamException {
+    w.writeStartElement("Node");
+    if (albero.getFeature(nodo) < 0) {
+      w.writeAttribute("score", Double.toString(albero.getValore(nodo)));
+    }
+    w.writeEmptyElement("SimplePredicate");
+    w.writeAttribute("field", campo);
+    w.writeAttribute("operator", operatore);
+    w.writeAttribute("value", soglia);
+    scriviFigli(w, albero, nodo);
+    w.writeEndElement();
+  }
+}
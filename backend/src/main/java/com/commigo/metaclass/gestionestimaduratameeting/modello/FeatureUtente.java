@@ -0,0 +1,55 @@
+package com.commigo.metaclass.gestionestimaduratameeting.modello;
+
+import java.time.LocalDate;
+import java.time.Period;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Proiezione con i dati aggregati di un partecipante necessari alla stima, ottenuta con una sola
+ * query per tutta la stanza.
+ */
+@Getter
+@AllArgsConstructor
+public class FeatureUtente {
+
+  private final Long idUtente;
+  private final LocalDate dataDiNascita;
+  private final String sesso;
+
+  /** Media degli ImmersionLevel dell'utente, null se non ha questionari. */
+  private final Double mediaImmersionLevel;
+
+  /** Media dei MotionSickness dell'utente, null se non ha questionari. */
+  private final Double mediaMotionSickness;
+
+  /**
+   * Metodo che costruisce la riga di feature per il modello.
+   *
+   * @param oggi data rispetto alla quale calcolare l'età.
+   * @return riga di feature nell'ordine definito da {@link ModelloDurata}.
+   */
+  public double[] toRiga(LocalDate oggi) {
+    double[] riga = new double[ModelloDurata.NUMERO_FEATURE];
+
+    // calcolo l'età
+    riga[ModelloDurata.ETA] = Period.between(dataDiNascita, oggi).getYears();
+
+    // conversione sesso (0"O", 1"F" o 2"M")
+    if ("M".equalsIgnoreCase(sesso)) {
+      riga[ModelloDurata.GENERE] = 2;
+    } else if ("F".equalsIgnoreCase(sesso)) {
+      riga[ModelloDurata.GENERE] = 1;
+    } else {
+      riga[ModelloDurata.GENERE] = 0;
+    }
+
+    // le medie vengono troncate come i valori del dataset di addestramento
+    riga[ModelloDurata.IMMERSION_LEVEL] =
+        mediaImmersionLevel == null ? 0 : mediaImmersionLevel.intValue();
+    riga[ModelloDurata.MOTION_SICKNESS] =
+        mediaMotionSickness == null ? 0 : mediaMotionSickness.intValue();
+
+    return riga;
+  }
+}
@@ -0,0 +1,60 @@
+package com.commigo.metaclass.gestionestimaduratameeting.modello;
+
+/**
+ * Modello di stima formato da un insieme di alberi di regressione. La predizione è la somma delle
+ * predizioni degli alberi moltiplicata per un fattore, di norma l'inverso del numero di alberi.
+ */
+public final class ForestaCasuale implements ModelloDurata {
+
+  private final AlberoRegressione[] alberi;
+  private final double fattore;
+
+  /**
+   * Costruttore della foresta che restituisce la media delle predizioni degli alberi.
+   *
+   * @param alberi alberi della foresta, almeno uno.
+   */
+  public ForestaCasuale(AlberoRegressione[] alberi) {
+    this(alberi, 1.0 / Math.max(1, alberi.length));
+  }
+
+  /**
+   * Costruttore della foresta con un fattore di combinazione esplicito.
+   *
+   * @param alberi alberi della foresta, almeno uno.
+   * @param fattore fattore per cui viene moltiplicata la somma delle predizioni.
+   */
+  public ForestaCasuale(AlberoRegressione[] alberi, double fattore) {
+    if (alberi.length == 0) {
+      throw new IllegalArgumentException("la foresta deve contenere almeno un albero");
+    }
+    this.alberi = alberi.clone();
+    this.fattore = fattore;
+  }
+
+  @Override
+  public double predici(double[] riga) {
+    double somma = 0;
+    for (AlberoRegressione albero : alberi) {
+      somma += albero.predici(riga);
+    }
+    return somma * fattore;
+  }
+
+  /**
+   * Metodo che restituisce il numero di alberi della foresta.
+   *
+   * @return numero di alberi.
+   */
+  public int getNumeroAlberi() {
+    return alberi.length;
+  }
+
+  AlberoRegressione getAlbero(int indice) {
+    return alberi[indice];
+  }
+
+  double getFattore() {
+    return fattore;
+  }
+}
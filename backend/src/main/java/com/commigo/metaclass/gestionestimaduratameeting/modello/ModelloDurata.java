@@ -0,0 +1,53 @@
+package com.commigo.metaclass.gestionestimaduratameeting.modello;
+
+import java.util.stream.IntStream;
+
+/**
+ * Interfaccia che rappresenta un modello di regressione per la stima della durata di un meeting.
+ * Le implementazioni devono essere immutabili e utilizzabili da più thread contemporaneamente.
+ */
+public interface ModelloDurata {
+
+  /** Posizione dell'età dell'utente nella riga di feature. */
+  int ETA = 0;
+
+  /** Posizione del genere dell'utente (0 "O", 1 "F", 2 "M") nella riga di feature. */
+  int GENERE = 1;
+
+  /** Posizione della media degli ImmersionLevel dell'utente nella riga di feature. */
+  int IMMERSION_LEVEL = 2;
+
+  /** Posizione della media dei MotionSickness dell'utente nella riga di feature. */
+  int MOTION_SICKNESS = 3;
+
+  /** Numero di feature attese dal modello. */
+  int NUMERO_FEATURE = 4;
+
+  /** Numero di righe oltre il quale la predizione in blocco viene distribuita sui core. */
+  int SOGLIA_PARALLELO = 64;
+
+  /**
+   * Metodo che effettua la predizione per una singola riga di feature.
+   *
+   * @param riga valori delle feature, nell'ordine definito dalle costanti dell'interfaccia.
+   * @return durata stimata del meeting per la riga.
+   */
+  double predici(double[] riga);
+
+  /**
+   * Metodo che effettua la predizione per un blocco di righe. Oltre {@link #SOGLIA_PARALLELO}
+   * righe la valutazione viene distribuita sui core disponibili.
+   *
+   * @param righe righe di feature da valutare.
+   * @return durate stimate, nello stesso ordine delle righe.
+   */
+  default double[] prediciBlocco(double[][] righe) {
+    double[] risultati = new double[righe.length];
+    IntStream indici = IntStream.range(0, righe.length);
+    if (righe.length >= SOGLIA_PARALLELO) {
+      indici = indici.parallel();
+    }
+    indici.forEach(i -> risultati[i] = predici(righe[i]));
+    return risultati;
+  }
+}
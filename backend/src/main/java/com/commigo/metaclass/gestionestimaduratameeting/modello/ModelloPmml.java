@@ -0,0 +1,143 @@
+package com.commigo.metaclass.gestionestimaduratameeting.modello;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.dmg.pmml.FieldName;
+import org.jpmml.evaluator.EvaluatorUtil;
+import org.jpmml.evaluator.FieldValue;
+import org.jpmml.evaluator.InputField;
+import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import org.jpmml.evaluator.ModelEvaluator;
+import org.jpmml.evaluator.TargetField;
+
+/** Modello di stima basato sull'evaluator JPMML del regressore esportato in formato PMML. */
+public final class ModelloPmml implements ModelloDurata {
+
+  /** Nomi delle feature del dataset, nell'ordine definito da {@link ModelloDurata}. */
+  static final String[] NOMI_FEATURE = {
+    "Age", "Gender", "ImmersionLevel", "MotionSickness"
+  };
+
+  /**
+   * Feature corrispondenti ai nomi posizionali (x1, x2, ...) assegnati da sklearn2pmml quando il
+   * modello è addestrato senza nomi di colonna: l'ordine è quello delle colonne del dataset.
+   */
+  private static final int[] FEATURE_POSIZIONALI = {ETA, GENERE, MOTION_SICKNESS, IMMERSION_LEVEL};
+
+  private final ModelEvaluator<?> evaluator;
+  private final InputField[] campi;
+  private final int[] indici;
+  private final FieldName target;
+
+  private ModelloPmml(ModelEvaluator<?> evaluator) {
+    this.evaluator = evaluator;
+
+    List<InputField> inputFields = evaluator.getInputFields();
+    this.campi = new InputField[inputFields.size()];
+    this.indici = new int[inputFields.size()];
+    for (int i = 0; i < campi.length; i++) {
+      campi[i] = inputFields.get(i);
+      indici[i] = indiceFeature(campi[i].getName().getValue());
+      if (indici[i] < 0) {
+        throw new IllegalArgumentException(
+            "feature non riconosciuta nel modello: " + campi[i].getName().getValue());
+      }
+    }
+
+    List<TargetField> targets = evaluator.getTargetFields();
+    if (targets.isEmpty()) {
+      throw new IllegalArgumentException("il modello non definisce un target");
+    }
+    this.target = targets.get(0).getName();
+  }
+
+  /**
+   * Metodo che restituisce la posizione nella riga di feature corrispondente a un campo del
+   * modello PMML.
+   *
+   * @param nome nome del campo nel modello.
+   * @return posizione nella riga di feature, -1 se il campo non è riconosciuto.
+   */
+  static int indiceFeature(String nome) {
+    for (int i = 0; i < NOMI_FEATURE.length; i++) {
+      if (NOMI_FEATURE[i].equals(nome)) {
+        return i;
+      }
+    }
+    if (nome.matches("x[1-9]")) {
+      int posizione = nome.charAt(1) - '1';
+      return posizione < FEATURE_POSIZIONALI.length ? FEATURE_POSIZIONALI[posizione] : -1;
+    }
+    return -1;
+  }
+
+  /**
+   * Metodo che carica e verifica l'evaluator JPMML di un file PMML.
+   *
+   * @param file file PMML da caricare.
+   * @return evaluator verificato.
+   * @throws IOException errore di lettura del file o modello non valido.
+   */
+  static ModelEvaluator<?> caricaEvaluator(File file) throws IOException {
+    try (InputStream is = new FileInputStream(file)) {
+      ModelEvaluator<?> evaluator = new LoadingModelEvaluatorBuilder().load(is).build();
+      evaluator.verify();
+      return evaluator;
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("modello PMML non valido: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Metodo che carica e verifica un modello PMML da file.
+   *
+   * @param file file PMML da caricare.
+   * @return modello pronto per la predizione.
+   * @throws IOException errore di lettura del file.
+   */
+  public static ModelloPmml carica(File file) throws IOException {
+    return di(caricaEvaluator(file));
+  }
+
+  /**
+   * Metodo che crea il modello a partire da un evaluator già caricato.
+   *
+   * @param evaluator evaluator JPMML.
+   * @return modello pronto per la predizione.
+   * @throws IOException il modello non espone le feature attese.
+   */
+  static ModelloPmml di(ModelEvaluator<?> evaluator) throws IOException {
+    try {
+      return new ModelloPmml(evaluator);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("modello PMML non valido: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Metodo che restituisce l'evaluator JPMML sottostante.
+   *
+   * @return evaluator del modello.
+   */
+  public ModelEvaluator<?> getEvaluator() {
+    return evaluator;
+  }
+
+  @Override
+  public double predici(double[] riga) {
+    Map<FieldName, FieldValue> arguments = new HashMap<>();
+    for (int i = 0; i < campi.length; i++) {
+      arguments.put(campi[i].getName(), campi[i].prepare(riga[indici[i]]));
+    }
+    Map<String, ?> results = EvaluatorUtil.decodeAll(evaluator.evaluate(arguments));
+    Object y = results.get(target == null ? "y" : target.getValue());
+    return ((Number) y).doubleValue();
+  }
+}
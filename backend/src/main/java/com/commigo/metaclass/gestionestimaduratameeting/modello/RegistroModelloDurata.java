@@ -0,0 +1,162 @@
+package com.commigo.metaclass.gestionestimaduratameeting.modello;
+
+import com.commigo.metaclass.exceptions.ServerRuntimeException;
+import jakarta.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registro che mantiene il modello di stima della durata dei meeting. Il modello viene caricato e
+ * verificato una sola volta e sostituito in modo atomico quando il file PMML cambia su disco.
+ */
+@Slf4j
+@Component
+public class RegistroModelloDurata {
+
+  private static final String PERCORSO_DEFAULT =
+      System.getProperty("user.dir")
+          + File.separator
+          + "ModuloAI"
+          + File.separator
+          + "RegressoreDurataMeeting.pmml";
+
+  private final AtomicReference<VersioneModello> corrente = new AtomicReference<>();
+  private final AtomicLong contatoreVersioni = new AtomicLong();
+
+  /** Data di modifica del file PMML già esaminata, per non ricaricare lo stesso file. */
+  private volatile long ultimaModificaVista;
+
+  @Value("${stima.modello.path:}")
+  private String percorso;
+
+  /** Metodo che effettua il primo caricamento del modello all'avvio. */
+  @PostConstruct
+  public void init() {
+    if (percorso == null || percorso.isBlank()) {
+      percorso = PERCORSO_DEFAULT;
+    }
+    try {
+      ricarica();
+    } catch (ServerRuntimeException e) {
+      log.warn("Modello di stima non disponibile all'avvio: {}", e.getMessage());
+    }
+  }
+
+  /** Metodo che controlla periodicamente se il file PMML è stato modificato. */
+  @Scheduled(
+      fixedDelayString = "${stima.modello.intervallo-controllo:10000}",
+      initialDelayString = "${stima.modello.intervallo-controllo:10000}")
+  public void controllaAggiornamenti() {
+    File file = new File(percorso);
+    if (!file.isFile() || file.lastModified() == ultimaModificaVista) {
+      return;
+    }
+    try {
+      ricarica();
+    } catch (ServerRuntimeException e) {
+      // la versione precedente resta in uso
+      log.error("Impossibile aggiornare il modello di stima: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Metodo che carica il modello dal file PMML e lo pubblica come versione corrente.
+   *
+   * @return la nuova versione del modello.
+   * @throws ServerRuntimeException il file non esiste o non contiene un modello valido.
+   */
+  public synchronized VersioneModello ricarica() throws ServerRuntimeException {
+    File file = new File(percorso);
+    if (!file.isFile()) {
+      throw new ServerRuntimeException("file del modello non trovato: " + percorso);
+    }
+    long ultimaModifica = file.lastModified();
+    ultimaModificaVista = ultimaModifica;
+    try {
+      return pubblica(CompilatorePmml.carica(file), file.getPath(), ultimaModifica);
+    } catch (IOException e) {
+      throw new ServerRuntimeException(e.getMessage());
+    }
+  }
+
+  /**
+   * Metodo che verifica un nuovo file PMML, lo sposta atomicamente al posto di quello monitorato e
+   * lo pubblica come versione corrente. Se il file non è valido il modello in uso non cambia.
+   *
+   * @param nuovo file PMML appena prodotto.
+   * @return la nuova versione del modello.
+   * @throws ServerRuntimeException il file non è un modello valido o non può essere spostato.
+   */
+  public synchronized VersioneModello pubblicaFile(File nuovo) throws ServerRuntimeException {
+    try {
+      ModelloDurata modello = CompilatorePmml.carica(nuovo);
+      File destinazione = new File(percorso);
+      Files.move(
+          nuovo.toPath(),
+          destinazione.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      ultimaModificaVista = destinazione.lastModified();
+      return pubblica(modello, destinazione.getPath(), ultimaModificaVista);
+    } catch (IOException e) {
+      throw new ServerRuntimeException("nuovo modello non pubblicato: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Metodo che sostituisce in modo atomico il modello corrente.
+   *
+   * @param modello modello da pubblicare.
+   * @param origine descrizione dell'origine del modello.
+   * @param ultimaModificaFile data di ultima modifica del file del modello.
+   * @return la versione pubblicata.
+   */
+  public VersioneModello pubblica(
+      ModelloDurata modello, String origine, long ultimaModificaFile) {
+    VersioneModello nuova =
+        new VersioneModello(
+            contatoreVersioni.incrementAndGet(),
+            modello,
+            origine,
+            ultimaModificaFile,
+            LocalDateTime.now());
+    VersioneModello precedente = corrente.getAndSet(nuova);
+    log.info(
+        "Modello di stima aggiornato alla versione {} (precedente: {})",
+        nuova.getVersione(),
+        precedente == null ? "nessuna" : precedente.getVersione());
+    return nuova;
+  }
+
+  /**
+   * Metodo che restituisce la versione del modello attualmente in uso.
+   *
+   * @return versione corrente.
+   * @throws ServerRuntimeException nessun modello è stato ancora caricato.
+   */
+  public VersioneModello getVersioneCorrente() throws ServerRuntimeException {
+    VersioneModello versione = corrente.get();
+    if (versione == null) {
+      throw new ServerRuntimeException("modello di stima non disponibile");
+    }
+    return versione;
+  }
+
+  /**
+   * Metodo che restituisce il percorso del file PMML monitorato.
+   *
+   * @return percorso del file del modello.
+   */
+  public String getPercorso() {
+    return percorso;
+  }
+}
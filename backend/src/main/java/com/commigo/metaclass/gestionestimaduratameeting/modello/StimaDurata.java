@@ -0,0 +1,18 @@
+package com.commigo.metaclass.gestionestimaduratameeting.modello;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/** Durata stimata di un meeting insieme alla versione del modello che l'ha calcolata. */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class StimaDurata {
+
+  /** Durata stimata del meeting. */
+  private final double durata;
+
+  /** Versione del modello usata per la stima. */
+  private final VersioneModello versione;
+}
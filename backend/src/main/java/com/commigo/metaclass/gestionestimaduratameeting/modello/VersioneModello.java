@@ -0,0 +1,28 @@
+package com.commigo.metaclass.gestionestimaduratameeting.modello;
+
+import java.time.LocalDateTime;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/** Istantanea immutabile del modello di stima attualmente in uso. */
+@Getter
+@ToString(exclude = "modello")
+@RequiredArgsConstructor
+public final class VersioneModello {
+
+  /** Numero progressivo della versione, incrementato ad ogni sostituzione. */
+  private final long versione;
+
+  /** Modello utilizzato per le predizioni. */
+  private final ModelloDurata modello;
+
+  /** Origine del modello (percorso del file o descrizione dell'addestramento). */
+  private final String origine;
+
+  /** Data di ultima modifica del file da cui è stato caricato il modello. */
+  private final long ultimaModificaFile;
+
+  /** Istante in cui la versione è stata pubblicata. */
+  private final LocalDateTime caricatoIl;
+}
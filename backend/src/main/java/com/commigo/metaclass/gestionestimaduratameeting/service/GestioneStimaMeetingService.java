@@ -3,6 +3,8 @@ package com.commigo.metaclass.gestionestimaduratameeting.service;
 import com.commigo.metaclass.entity.Utente;
 import com.commigo.metaclass.exceptions.RuntimeException403;
 import com.commigo.metaclass.exceptions.ServerRuntimeException;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.StimaDurata;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.VersioneModello;
 import java.time.Duration;
 
 /** Interfaccia che per servizi legati al modulo AI. */
@@ -11,11 +13,12 @@ public interface GestioneStimaMeetingService {
    * Metodo che permette di visualizzare la durata di un meeting.
    *
    * @param idStanza id della stanza
-   * @return valore double
+   * @return durata stimata e versione del modello che l'ha calcolata
    * @throws RuntimeException403 eccezione generata quando avviene un errore Client.
    * @throws ServerRuntimeException eccezione generata quando avviene un errore Server
    */
-  public Double getDurataMeeting(Long idStanza) throws RuntimeException403, ServerRuntimeException;
+  public StimaDurata getDurataMeeting(Long idStanza)
+      throws RuntimeException403, ServerRuntimeException;
 
   /**
    * Metodo che richiama l'adapter per arricchire il dataset.
@@ -28,4 +31,12 @@ public interface GestioneStimaMeetingService {
    */
   public void addUtenteInDataset(Utente u, Duration durata, int immersionLevel, int motionSickness)
       throws ServerRuntimeException;
+
+  /**
+   * Metodo che restituisce la versione del modello di stima attualmente in uso.
+   *
+   * @return versione corrente del modello.
+   * @throws ServerRuntimeException nessun modello è disponibile.
+   */
+  public VersioneModello getVersioneModello() throws ServerRuntimeException;
 }
@@ -1,180 +1,83 @@
 package com.commigo.metaclass.gestionestimaduratameeting.service;
 
-import com.commigo.metaclass.entity.FeedbackMeeting;
 import com.commigo.metaclass.entity.Stanza;
 import com.commigo.metaclass.entity.Utente;
 import com.commigo.metaclass.exceptions.RuntimeException403;
 import com.commigo.metaclass.exceptions.ServerRuntimeException;
 import com.commigo.metaclass.gestionemeeting.repository.FeedbackMeetingRepository;
 import com.commigo.metaclass.gestionestanza.repository.StanzaRepository;
-import com.commigo.metaclass.gestionestanza.repository.StatoPartecipazioneRepository;
 import com.commigo.metaclass.gestionestimaduratameeting.adapter.StimaDurataMeetingAdapter;
-import com.commigo.metaclass.gestionestimaduratameeting.adapter.StimaDurataMeetingAdapterImpl;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
+import com.commigo.metaclass.gestionestimaduratameeting.addestramento.SchedulatoreAddestramento;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.FeatureUtente;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.RegistroModelloDurata;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.StimaDurata;
+import com.commigo.metaclass.gestionestimaduratameeting.modello.VersioneModello;
 import java.time.Duration;
 import java.time.LocalDate;
-import java.time.Period;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import org.dmg.pmml.FieldName;
-import org.jpmml.evaluator.Evaluator;
-import org.jpmml.evaluator.EvaluatorUtil;
-import org.jpmml.evaluator.FieldValue;
-import org.jpmml.evaluator.FieldValueUtil;
-import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 /** Service gestione stima meeting. */
+@Slf4j
 @Service("GestioneStimaMeetingService")
 public class GestioneStimaMeetingServiceImpl implements GestioneStimaMeetingService {
 
   /** Adapter per ottenere i risultati dell'agente intelligente. */
-  private StimaDurataMeetingAdapter stimaProgressiAdapter;
+  @Autowired private StimaDurataMeetingAdapter stimaProgressiAdapter;
 
+  @Autowired private SchedulatoreAddestramento schedulatoreAddestramento;
   @Autowired private StanzaRepository stanzaRepository;
-  @Autowired private StatoPartecipazioneRepository statoPartecipazioneRepository;
   @Autowired private FeedbackMeetingRepository feedbackMeetingRepository;
-  private Evaluator evaluator;
-
-  private static final String REGRESSOR_ROOT = System.getProperty("user.dir") + File.separator + "ModuloAI"
-          + File.separator + "RegressoreDurataMeeting.pmml";
-
-  /** constructor. */
-  public GestioneStimaMeetingServiceImpl() {
-    stimaProgressiAdapter = new StimaDurataMeetingAdapterImpl();
-  }
+  @Autowired private RegistroModelloDurata registroModello;
 
   /**
    * Metodo che permette di visualizzare la durata di un meeting.
    *
    * @param idStanza id della stanza
-   * @return valore double
+   * @return durata stimata e versione del modello che l'ha calcolata
    * @throws RuntimeException403 eccezione generata quando avviene un errore Client.
    * @throws ServerRuntimeException eccezione generata quando avviene un errore Server
    */
   @Override
-  public Double getDurataMeeting(Long idStanza) throws RuntimeException403, ServerRuntimeException {
+  public StimaDurata getDurataMeeting(Long idStanza)
+      throws RuntimeException403, ServerRuntimeException {
     // controllo la stanza se esiste
     Stanza s;
     if ((s = stanzaRepository.findStanzaById(idStanza)) == null) {
       throw new RuntimeException403("non è possibile effettuare la stima: stanza non trovata");
     }
-    // mi recapito la lista di utenti in stanza
-    List<Utente> users;
-    if ((users = statoPartecipazioneRepository.findUtentiInStanza(s.getId())) == null) {
+    // ricavo con una sola query le feature di tutti gli utenti in stanza
+    List<FeatureUtente> utenti;
+    if ((utenti = feedbackMeetingRepository.findFeatureUtentiInStanza(s.getId())) == null) {
       throw new ServerRuntimeException(
           "non è possibile effettuare la stima: " + "errore nella ricerca dei partecipanti");
     }
-    double mediaDuration = 0;
-
-    for (Utente u : users) {
-      mediaDuration += requestPrediction(u);
+    LocalDate oggi = LocalDate.now();
+    double[][] righe = new double[utenti.size()][];
+    for (int i = 0; i < righe.length; i++) {
+      righe[i] = utenti.get(i).toRiga(oggi);
     }
-    return mediaDuration / users.size();
-  }
-
-  /**
-   * Metodo per preparare gli argomenti.
-   *
-   * @param input Mappa conententi valori con chiave una stringa
-   * @return mappa con i valori del dataset.
-   */
-  private Map<FieldName, FieldValue> prepareArguments(Map<String, Object> input) {
-    Map<FieldName, FieldValue> arguments = new HashMap<>();
-
-    for (Map.Entry<String, Object> entry : input.entrySet()) {
-      FieldName fieldName = FieldName.create(entry.getKey());
-      Object value = entry.getValue();
-
-      FieldValue fieldValue = FieldValueUtil.create(value);
-
-      arguments.put(fieldName, fieldValue);
-    }
-
-    return arguments;
-  }
-
-  /**
-   * Metodo che decodifica i risultato del modello di AI.
-   *
-   * @param arguments mappa di valori da dare al modello.
-   * @return mappa con la predizione.
-   */
-  public Map<String, ?> predict(Map<FieldName, FieldValue> arguments) {
-    Map<FieldName, ?> results = evaluator.evaluate(arguments);
 
-    return EvaluatorUtil.decodeAll(results);
+    // la stessa versione del modello serve tutti i partecipanti della stima
+    VersioneModello versione = registroModello.getVersioneCorrente();
+    double[] stime = versione.getModello().prediciBlocco(righe);
+    log.debug(
+        "Stima per la stanza {} effettuata con il modello v{}", idStanza, versione.getVersione());
+    return new StimaDurata(Arrays.stream(stime).sum() / stime.length, versione);
   }
 
   /**
-   * Metodo che effettua la predizione tramite il modello.
+   * Metodo che restituisce la versione del modello di stima attualmente in uso.
    *
-   * @param utente Istanza di un utente.
-   * @return Valore di durata del meeting per l'utente.
+   * @return versione corrente del modello.
+   * @throws ServerRuntimeException nessun modello è disponibile.
    */
-  private Double requestPrediction(Utente utente) {
-
-    try (InputStream is = new FileInputStream(REGRESSOR_ROOT)) {
-      evaluator = new LoadingModelEvaluatorBuilder().load(is).build();
-
-      // calcolo l'età
-      Period periodo = Period.between(utente.getDataDiNascita(), LocalDate.now());
-
-      // conversione sesso
-      int sex;
-      if (utente.getSesso().equalsIgnoreCase("M")) {
-        sex = 2;
-      } else if (utente.getSesso().equalsIgnoreCase("F")) {
-        sex = 1;
-      } else {
-        sex = 0;
-      }
-
-      // ricavo la media dei vari ImmersionLevel dell'utente
-      List<FeedbackMeeting> feeds = feedbackMeetingRepository.findFeedbackMeetingByUtente(utente);
-      double immersionLevelAverage =
-              feeds.stream()
-                      .mapToInt(
-                              FeedbackMeeting::getImmersionLevel) // Estrae gli immersionLevel come IntStream
-                      .average() // Calcola la media degli immersionLevel
-                      .orElse(0.0); // Valore di default se la lista è vuota
-
-      // ricavo la media dei motionSickness
-      double motionSicknessAverage =
-              feeds.stream()
-                      .mapToInt(FeedbackMeeting::getMotionSickness) // Estrae motionSickness come IntStream
-                      .average() // Calcola la media dei motionSickness
-                      .orElse(0.0); // Valore di default se la lista è vuota
-
-      // Esempio di utilizzo
-      Map<String, Object> input = new HashMap<>();
-      input.put("Age", periodo.getYears()); // Sostituisci con il valore effettivo
-      input.put("Gender", sex); // Sostituisci con il valore effettivo (0"O", 1"F" o 2"M")
-      input.put(
-              "ImmersionLevel",
-              (int) immersionLevelAverage); // Sostituisci con il valore effettivo (da 1 a 5)
-      input.put(
-              "MotionSickness",
-              (int) motionSicknessAverage); // Sostituisci con il valore effettivo (da 1 a 10)
-
-      Map<FieldName, FieldValue> arguments = prepareArguments(input);
-
-      Map<String, ?> results = predict(arguments);
-
-      // Stampa i risultati
-      return (Double) results.get("y");
-
-    } catch (Exception e) {
-      e.printStackTrace();
-      return null;
-    }
-
-
+  @Override
+  public VersioneModello getVersioneModello() throws ServerRuntimeException {
+    return registroModello.getVersioneCorrente();
   }
 
   /**
@@ -190,5 +93,7 @@ public class GestioneStimaMeetingServiceImpl implements GestioneStimaMeetingServ
   public void addUtenteInDataset(Utente u, Duration durata, int immersionLevel, int motionSickness)
       throws ServerRuntimeException {
     stimaProgressiAdapter.addUtenteInDataset(u, durata, immersionLevel, motionSickness);
+    // il riaddestramento avviene in background, senza rallentare il questionario
+    schedulatoreAddestramento.segnalaNuoveRighe(1);
   }
 }
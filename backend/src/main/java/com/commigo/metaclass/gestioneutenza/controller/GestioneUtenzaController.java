@@ -4,12 +4,12 @@ import com.commigo.metaclass.entity.Stanza;
 import com.commigo.metaclass.entity.Utente;
 import com.commigo.metaclass.exceptions.RuntimeException403;
 import com.commigo.metaclass.exceptions.ServerRuntimeException;
+import com.commigo.metaclass.gestioneutenza.service.EsitoLogin;
 import com.commigo.metaclass.gestioneutenza.service.GestioneUtenzaService;
 import com.commigo.metaclass.utility.MapValidator;
 import com.commigo.metaclass.utility.request.RequestUtils;
 import com.commigo.metaclass.utility.response.types.LoginResponse;
 import com.commigo.metaclass.utility.response.types.Response;
-import com.commigo.metaclass.webconfig.JwtTokenUtil;
 import com.commigo.metaclass.webconfig.ValidationToken;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -35,8 +35,6 @@ public class GestioneUtenzaController {
 
   @Autowired private GestioneUtenzaService utenzaService;
 
-  @Autowired private JwtTokenUtil jwtTokenUtil;
-
   @Autowired private ValidationToken validationToken;
 
   /**
@@ -53,26 +51,26 @@ public class GestioneUtenzaController {
 
     try {
 
-      // Generazione del token JWT usando metaId come identificatore
-      String token = jwtTokenUtil.generateToken(u.getMetaId());
-      u.setTokenAuth(token);
-
       // controllo errori di validazione
       if (result.hasErrors()) {
         throw new RuntimeException403(RequestUtils.errorsRequest(result));
       }
 
+      // Generazione del token JWT usando metaId come identificatore
+      EsitoLogin esito = utenzaService.loginMeta(u);
+      if (esito.getToken() == null) {
+        throw new ServerRuntimeException("errore nel login");
+      }
+      String token = esito.getToken();
+
       // Aggiungi il token al cookie
       Cookie cookie = new Cookie("jwtToken", token);
       cookie.setPath("/");
       response.addCookie(cookie);
 
-      if (!utenzaService.loginMeta(u)) {
-        throw new ServerRuntimeException("errore nel login");
-      }
-
       return ResponseEntity.ok(
-          new LoginResponse<>(true, "Login effettuato con successo", token, u.isAdmin()));
+          new LoginResponse<>(
+              true, "Login effettuato con successo", token, esito.getUtente().isAdmin()));
     } catch (ServerRuntimeException e) {
       return ResponseEntity.status(500)
           .body(new LoginResponse<>(false, e.getMessage(), null, false));
@@ -109,21 +107,8 @@ public class GestioneUtenzaController {
         }
       }
 
-      // Ottieni l'header Authorization dalla richiesta
-      String authorizationHeader = request.getHeader("Authorization");
-      String token = null;
-
-      // Verifica che l'header Authorization sia presente e inizia con "Bearer "
-      if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-        // Estrai solo la parte del token dopo "Bearer "
-        token = authorizationHeader.substring(7);
-      } else {
-        throw new RuntimeException403("Token non valido");
-      }
-
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
-      // Rimuovi il token nel sistema
-      if (utenzaService.logoutMeta(metaId, validationToken)) {
+      // Revoca il token nel sistema
+      if (utenzaService.logoutMeta(validationToken.getUtenteAutenticato(request))) {
         return ResponseEntity.ok(new Response<Boolean>(true, "Utente disconnesso con successo"));
       } else {
         throw new ServerRuntimeException("Errore nella rimozione del token dell'utente");
@@ -156,7 +141,7 @@ public class GestioneUtenzaController {
       // Validazione dati utente
       MapValidator.utenteValidate(params);
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
 
       utenzaService.modificaDatiUtente(metaId, params);
       return ResponseEntity.ok(new Response<>(true, "Utente modificato con successo"));
@@ -180,7 +165,7 @@ public class GestioneUtenzaController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String metaId = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String metaId = validationToken.getMetaId(request);
       List<Stanza> stanze = utenzaService.getStanzeByUserId(metaId);
 
       if (stanze.isEmpty()) {
@@ -214,7 +199,7 @@ public class GestioneUtenzaController {
         throw new RuntimeException403("Token non valido");
       }
 
-      String idMeta = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
+      String idMeta = validationToken.getMetaId(request);
       utente = utenzaService.getUtenteByUserId(idMeta);
       if (utente == null) {
         return ResponseEntity.status(500)
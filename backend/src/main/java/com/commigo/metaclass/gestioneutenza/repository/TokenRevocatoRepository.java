@@ -0,0 +1,34 @@
+package com.commigo.metaclass.gestioneutenza.repository;
+
+import com.commigo.metaclass.entity.TokenRevocato;
+import jakarta.transaction.Transactional;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/** Repository dei token revocati per gestire transazioni con i dati persistenti. */
+@Repository("TokenRevocatoRepository")
+public interface TokenRevocatoRepository extends JpaRepository<TokenRevocato, String> {
+
+  /**
+   * Metodo che restituisce i token revocati non ancora scaduti.
+   *
+   * @param adesso istante corrente in millisecondi
+   * @return token revocati con scadenza successiva all'istante indicato
+   */
+  List<TokenRevocato> findAllByScadenzaGreaterThan(long adesso);
+
+  /**
+   * Metodo che elimina i token revocati ormai scaduti.
+   *
+   * @param adesso istante corrente in millisecondi
+   * @return numero di righe eliminate
+   */
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM TokenRevocato t WHERE t.scadenza <= :adesso")
+  int eliminaScaduti(@Param("adesso") long adesso);
+}
@@ -0,0 +1,17 @@
+package com.commigo.metaclass.gestioneutenza.service;
+
+import com.commigo.metaclass.entity.Utente;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/** Token JWT assegnato al login insieme all'utente salvato a cui si riferisce. */
+@Getter
+@RequiredArgsConstructor
+public final class EsitoLogin {
+
+  /** Token JWT dell'utente. */
+  private final String token;
+
+  /** Utente salvato nel database, con il ruolo effettivo. */
+  private final Utente utente;
+}
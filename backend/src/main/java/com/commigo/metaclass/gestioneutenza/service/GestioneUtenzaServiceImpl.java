@@ -10,7 +10,8 @@ import com.commigo.metaclass.gestionestanza.repository.StanzaRepository;
 import com.commigo.metaclass.gestionestanza.repository.StatoPartecipazioneRepository;
 import com.commigo.metaclass.gestioneutenza.repository.UtenteRepository;
 import com.commigo.metaclass.webconfig.JwtTokenUtil;
-import com.commigo.metaclass.webconfig.ValidationToken;
+import com.commigo.metaclass.webconfig.RegistroRevocheToken;
+import com.commigo.metaclass.webconfig.UtenteAutenticato;
 import jakarta.transaction.Transactional;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -24,6 +25,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
@@ -38,9 +40,8 @@ public class GestioneUtenzaServiceImpl implements GestioneUtenzaService {
   private final UtenteRepository utenteRepository;
   private final StatoPartecipazioneRepository statoPartecipazioneRepository;
   private final StanzaRepository stanzaRepository;
-  @Autowired private ValidationToken validationToken;
-
   @Autowired private JwtTokenUtil jwtTokenUtil;
+  @Autowired private RegistroRevocheToken registroRevocheToken;
   private final Set<String> adminmetaIds = loadAdminmetaIdsFromFile();
 
   /**
@@ -66,29 +67,32 @@ public class GestioneUtenzaServiceImpl implements GestioneUtenzaService {
   }
 
   /**
-   * Metodo che consente a un utente di effettuare il login/registrazione.
+   * Metodo che consente a un utente di effettuare il login/registrazione. Il token non viene
+   * salvato: la riga dell'utente viene scritta solo alla registrazione o se l'utente viene aggiunto
+   * agli admin. Il ruolo di admin non viene mai letto dalla richiesta, ma solo dal file degli admin
+   * e dal database.
    *
    * @param u Utente che esegue il login/registrazione
-   * @return valore boolean che identifica l'esito dell'operazione
+   * @return token JWT assegnato all'utente e utente salvato, con il ruolo effettivo
    * @throws ServerRuntimeException Eccezione generata da un errore del server.
    */
   @Override
-  public boolean loginMeta(Utente u) throws ServerRuntimeException {
+  public EsitoLogin loginMeta(Utente u) throws ServerRuntimeException {
     try {
 
-      if (adminmetaIds.contains(u.getMetaId())) {
-        u.setAdmin(true);
-      }
+      boolean admin = adminmetaIds.contains(u.getMetaId());
 
       Utente ut;
-      if ((ut = utenteRepository.findFirstBymetaId(u.getMetaId())) != null) {
-        ut.setTokenAuth(u.getTokenAuth());
-        utenteRepository.save(ut);
-      } else {
-        utenteRepository.save(u);
+      if ((ut = utenteRepository.findFirstBymetaId(u.getMetaId())) == null) {
+        u.setAdmin(admin);
+        ut = utenteRepository.save(u);
+      } else if (admin && !ut.isAdmin()) {
+        ut.setAdmin(true);
+        ut = utenteRepository.save(ut);
       }
 
-      return true;
+      // il token contiene id e ruolo, così le richieste non devono rileggerli dal database
+      return new EsitoLogin(jwtTokenUtil.generateToken(ut), ut);
     } catch (DataIntegrityViolationException e) {
       throw new ServerRuntimeException("errore nella registrazione dell'utente");
     }
@@ -106,9 +110,7 @@ public class GestioneUtenzaServiceImpl implements GestioneUtenzaService {
   public boolean modificaDatiUtente(String metaId, Map<String, Object> params)
       throws RuntimeException403 {
 
-    String metaId2 = jwtTokenUtil.getmetaIdFromToken(validationToken.getToken());
-
-    Utente u = utenteRepository.findFirstBymetaId(metaId2);
+    Utente u = utenteRepository.findFirstBymetaId(metaId);
 
     if (u == null) {
       throw new RuntimeException403("Utente non registrato nei sistemi");
@@ -162,28 +164,24 @@ public class GestioneUtenzaServiceImpl implements GestioneUtenzaService {
   }
 
   /**
-   * Metodo che permette a un utente loggato di effettuare il logout.
+   * Metodo che permette a un utente loggato di effettuare il logout, revocando il suo token fino
+   * alla scadenza.
    *
-   * @param metaId metaId dell'utente che desidera effettuare il logout
-   * @param validationToken token assegnato all'utente in fase di login
+   * @param utente utente autenticato che desidera effettuare il logout
    * @return valore boolean che identifica la riuscita dell'operazione
    * @throws ServerRuntimeException Eccezione generata da un errore del server.
    */
   @Override
-  public boolean logoutMeta(String metaId, ValidationToken validationToken)
-      throws ServerRuntimeException {
-
-    Utente u = utenteRepository.findFirstBymetaId(metaId);
-    if (u == null) {
+  public boolean logoutMeta(UtenteAutenticato utente) throws ServerRuntimeException {
+    if (utente == null) {
       return false;
     }
 
-    u.setTokenAuth(Utente.DEFAULT_TOKEN);
     try {
-      utenteRepository.save(u);
+      registroRevocheToken.revoca(utente);
       return true;
-    } catch (DataIntegrityViolationException e) {
-      throw new ServerRuntimeException("errore nel salvataggio del utente");
+    } catch (DataAccessException e) {
+      throw new ServerRuntimeException("errore nella revoca del token");
     }
   }
 }
@@ -0,0 +1,173 @@
+package com.commigo.metaclass.inizializer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cattura l'SQL generato da Hibernate per verificarne il piano di esecuzione. Il DataSource
+ * dell'applicazione viene avvolto in modo che, solo nel thread e durante la chiamata passata a
+ * {@link #cattura(Runnable)}, ogni statement preparato non venga eseguito: al suo posto viene
+ * eseguito EXPLAIN con gli stessi parametri e lo statement termina con un errore. Fuori dalla
+ * cattura le connessioni vengono restituite senza modifiche.
+ */
+@Component
+@ConditionalOnProperty(name = "db.verifica-piani.abilitata", havingValue = "true")
+public class CatturaSql implements BeanPostProcessor {
+
+  /** Messaggio dell'errore con cui termina uno statement catturato. */
+  private static final String STATEMENT_NON_ESEGUITO =
+      "statement catturato per la verifica del piano";
+
+  /**
+   * Statement catturato.
+   *
+   * @param sql SQL generato da Hibernate
+   * @param piano righe restituite da EXPLAIN, vuoto se EXPLAIN non è riuscito
+   * @param errore errore di EXPLAIN, null se è riuscito
+   */
+  record StatementCatturato(String sql, List<Map<String, Object>> piano, String errore) {}
+
+  private final ThreadLocal<List<StatementCatturato>> catturati = new ThreadLocal<>();
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (bean instanceof DataSource dataSource && !(bean instanceof DataSourceCatturato)) {
+      return new DataSourceCatturato(dataSource);
+    }
+    return bean;
+  }
+
+  /**
+   * Esegue un'azione catturando gli statement preparati nel thread corrente. L'azione deve
+   * ottenere una nuova connessione, ad esempio aprendo una transazione.
+   *
+   * @param azione azione che esegue le query da verificare
+   * @return statement catturati, nell'ordine di esecuzione
+   */
+  List<StatementCatturato> cattura(Runnable azione) {
+    List<StatementCatturato> statement = new ArrayList<>();
+    catturati.set(statement);
+    try {
+      azione.run();
+    } finally {
+      catturati.remove();
+    }
+    return statement;
+  }
+
+  /** DataSource che restituisce connessioni che catturano gli statement durante la cattura. */
+  private final class DataSourceCatturato extends DelegatingDataSource {
+
+    private DataSourceCatturato(DataSource dataSource) {
+      super(dataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      return avvolgi(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+      return avvolgi(super.getConnection(username, password));
+    }
+
+    private Connection avvolgi(Connection connessione) {
+      List<StatementCatturato> statement = catturati.get();
+      if (statement == null) {
+        return connessione;
+      }
+      return proxy(
+          Connection.class,
+          (p, metodo, args) -> {
+            Object risultato = invoca(connessione, metodo, args);
+            if (metodo.getName().equals("prepareStatement")) {
+              return statementCatturato(
+                  connessione, (PreparedStatement) risultato, (String) args[0], statement);
+            }
+            return risultato;
+          });
+    }
+  }
+
+  /**
+   * Avvolge uno statement preparato registrandone i parametri. Quando viene eseguito, esegue
+   * EXPLAIN con gli stessi parametri e termina con un errore.
+   */
+  private static PreparedStatement statementCatturato(
+      Connection connessione,
+      PreparedStatement originale,
+      String sql,
+      List<StatementCatturato> statement) {
+    List<Object[]> parametri = new ArrayList<>();
+    return proxy(
+        PreparedStatement.class,
+        (p, metodo, args) -> {
+          String nome = metodo.getName();
+          if (nome.startsWith("set")
+              && args != null
+              && args.length >= 2
+              && args[0] instanceof Integer) {
+            parametri.add(new Object[] {metodo, args});
+          } else if (nome.equals("clearParameters")) {
+            parametri.clear();
+          } else if (nome.startsWith("execute")) {
+            statement.add(spiega(connessione, sql, parametri));
+            throw new SQLException(STATEMENT_NON_ESEGUITO);
+          }
+          return invoca(originale, metodo, args);
+        });
+  }
+
+  private static StatementCatturato spiega(
+      Connection connessione, String sql, List<Object[]> parametri) {
+    List<Map<String, Object>> piano = new ArrayList<>();
+    try (PreparedStatement explain = connessione.prepareStatement("EXPLAIN " + sql)) {
+      for (Object[] parametro : parametri) {
+        invoca(explain, (Method) parametro[0], (Object[]) parametro[1]);
+      }
+      try (ResultSet rs = explain.executeQuery()) {
+        ResultSetMetaData colonne = rs.getMetaData();
+        while (rs.next()) {
+          Map<String, Object> passo = new LinkedHashMap<>();
+          for (int i = 1; i <= colonne.getColumnCount(); i++) {
+            passo.put(colonne.getColumnLabel(i), rs.getObject(i));
+          }
+          piano.add(passo);
+        }
+      }
+    } catch (Throwable e) {
+      return new StatementCatturato(sql, List.of(), e.getMessage());
+    }
+    return new StatementCatturato(sql, piano, null);
+  }
+
+  private static Object invoca(Object bersaglio, Method metodo, Object[] args) throws Throwable {
+    try {
+      return metodo.invoke(bersaglio, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> tipo, InvocationHandler gestore) {
+    return (T) Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[] {tipo}, gestore);
+  }
+}
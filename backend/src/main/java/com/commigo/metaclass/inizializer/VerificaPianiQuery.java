@@ -0,0 +1,326 @@
+package com.commigo.metaclass.inizializer;
+
+import com.commigo.metaclass.inizializer.CatturaSql.StatementCatturato;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Verifica all'avvio, con EXPLAIN, i piani di esecuzione di tutte le query dichiarate nei
+ * repository dell'applicazione, e segnala quelle che leggono un'intera tabella senza poter usare
+ * un indice. Negli elenchi usati ad ogni accesso alle stanze e ai meeting la tabella principale
+ * deve inoltre essere letta dal solo indice, senza ordinamenti aggiuntivi.
+ *
+ * <p>Ogni metodo dei repository viene chiamato con valori di esempio dentro una transazione
+ * annullata, mentre {@link CatturaSql} sostituisce l'esecuzione degli statement con EXPLAIN: viene
+ * quindi verificato esattamente l'SQL generato da Hibernate, senza leggere né modificare dati. I
+ * metodi ereditati da JpaRepository accedono per chiave primaria e non vengono verificati.
+ *
+ * <p>La verifica è utile su un database con dati realistici: su tabelle quasi vuote MySQL può
+ * preferire una scansione completa anche quando un indice è disponibile. Si attiva con la
+ * proprietà {@code db.verifica-piani.abilitata=true}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "db.verifica-piani.abilitata", havingValue = "true")
+public class VerificaPianiQuery {
+
+  /**
+   * Elenchi che devono leggere dal solo indice la tabella indicata; da aggiornare insieme agli
+   * indici dichiarati sulle entità.
+   */
+  private static final Map<String, String> ELENCHI =
+      Map.ofEntries(
+          Map.entry("StatoPartecipazioneRepository.findUtentiInStanza", "stato_partecipazione"),
+          Map.entry(
+              "StatoPartecipazioneRepository.findUtentiBannatiInStanza", "stato_partecipazione"),
+          Map.entry(
+              "StatoPartecipazioneRepository.findUtentiInAttesaInStanza", "stato_partecipazione"),
+          Map.entry("StatoPartecipazioneRepository.findMembri", "stato_partecipazione"),
+          Map.entry("StatoPartecipazioneRepository.contaPostiOccupati", "stato_partecipazione"),
+          Map.entry("FeedbackMeetingRepository.findFeatureUtentiInStanza", "stato_partecipazione"),
+          Map.entry("UtenteInMeetingRepository.findIdUtentiRegistrati", "utente_in_meeting"),
+          Map.entry("MeetingRepository.findIntervalliByStanza", "meeting"),
+          Map.entry("StanzaRepository.findCodiciEIdDopo", "stanza"));
+
+  /** Tabelle e alias nell'SQL generato da Hibernate. */
+  private static final Pattern TABELLA =
+      Pattern.compile("(?i)\\b(?:from|join|update)\\s+(\\w+)(?:\\s+(?!set\\b|where\\b)(\\w+))?");
+
+  /** Valore che indica un parametro per cui non è possibile costruire un esempio. */
+  private static final Object NESSUN_ESEMPIO = new Object();
+
+  private final CatturaSql catturaSql;
+  private final ListableBeanFactory beanFactory;
+  private final TransactionTemplate transazione;
+
+  /**
+   * Costruttore.
+   *
+   * @param catturaSql cattura dell'SQL generato da Hibernate
+   * @param beanFactory contesto dell'applicazione, da cui vengono letti i repository
+   * @param transactionManager gestore delle transazioni
+   */
+  public VerificaPianiQuery(
+      CatturaSql catturaSql,
+      ListableBeanFactory beanFactory,
+      PlatformTransactionManager transactionManager) {
+    this.catturaSql = catturaSql;
+    this.beanFactory = beanFactory;
+    this.transazione = new TransactionTemplate(transactionManager);
+    // ogni metodo ottiene una connessione nuova, su cui viene attivata la cattura
+    this.transazione.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  /** Metodo che esegue la verifica dei piani quando l'applicazione è pronta. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void verifica() {
+    Repositories repositories = new Repositories(beanFactory);
+    int verificate = 0;
+    int avvisi = 0;
+    for (Class<?> dominio : repositories) {
+      Class<?> tipo =
+          repositories.getRepositoryInformationFor(dominio).get().getRepositoryInterface();
+      Object repository = repositories.getRepositoryFor(dominio).get();
+      Method[] metodi = tipo.getDeclaredMethods();
+      Arrays.sort(metodi, Comparator.comparing(Method::getName));
+      for (Method metodo : metodi) {
+        if (metodo.isDefault()
+            || metodo.isSynthetic()
+            || Modifier.isStatic(metodo.getModifiers())) {
+          continue;
+        }
+        String nome = tipo.getSimpleName() + "." + metodo.getName();
+        verificate++;
+        if (!verificaMetodo(nome, repository, metodo)) {
+          avvisi++;
+        }
+      }
+    }
+    log.info("Verificati i piani di {} query dei repository, {} avvisi", verificate, avvisi);
+  }
+
+  /**
+   * Metodo che cattura e verifica i piani delle query eseguite da un metodo di un repository.
+   *
+   * @param nome nome del metodo, usato nei log
+   * @param repository repository
+   * @param metodo metodo da verificare
+   * @return false se il metodo è stato segnalato
+   */
+  private boolean verificaMetodo(String nome, Object repository, Method metodo) {
+    Type[] tipi = metodo.getGenericParameterTypes();
+    Object[] argomenti = new Object[tipi.length];
+    for (int i = 0; i < tipi.length; i++) {
+      argomenti[i] = esempio(tipi[i]);
+      if (argomenti[i] == NESSUN_ESEMPIO) {
+        log.warn("Impossibile verificare il piano di '{}': parametro {}", nome, tipi[i]);
+        return false;
+      }
+    }
+
+    Throwable[] errore = new Throwable[1];
+    List<StatementCatturato> statement =
+        catturaSql.cattura(
+            () ->
+                transazione.executeWithoutResult(
+                    stato -> {
+                      stato.setRollbackOnly();
+                      try {
+                        metodo.invoke(repository, argomenti);
+                      } catch (InvocationTargetException e) {
+                        // atteso: lo statement catturato termina con un errore
+                        errore[0] = e.getCause();
+                      } catch (ReflectiveOperationException e) {
+                        errore[0] = e;
+                      }
+                    }));
+    if (statement.isEmpty()) {
+      log.warn(
+          "Impossibile verificare il piano di '{}': nessuna query eseguita ({})",
+          nome,
+          errore[0] == null ? "nessun errore" : errore[0].toString());
+      return false;
+    }
+
+    boolean valido = true;
+    for (StatementCatturato s : statement) {
+      if (s.errore() != null) {
+        log.warn("Impossibile verificare il piano di '{}': {}", nome, s.errore());
+        valido = false;
+        continue;
+      }
+      Map<String, String> tabelle = tabelle(s.sql());
+      for (Map<String, Object> passo : s.piano()) {
+        log.debug("Piano di '{}' ({}): {}", nome, s.sql(), passo);
+        valido &= verificaPasso(nome, tabelle, passo);
+      }
+    }
+    return valido;
+  }
+
+  /**
+   * Metodo che verifica un passo del piano di esecuzione di una query.
+   *
+   * @param nome nome del metodo del repository
+   * @param tabelle tabelle della query per alias
+   * @param passo riga restituita da EXPLAIN
+   * @return false se il passo è stato segnalato
+   */
+  private boolean verificaPasso(
+      String nome, Map<String, String> tabelle, Map<String, Object> passo) {
+    String alias = String.valueOf(passo.get("table"));
+    String tabella = tabelle.getOrDefault(alias, alias);
+    String tipo = String.valueOf(passo.get("type"));
+    Object indiciPossibili = passo.get("possible_keys");
+    Object indice = passo.get("key");
+    String extra = String.valueOf(passo.get("Extra"));
+
+    if ("ALL".equals(tipo) && indiciPossibili == null) {
+      log.warn("'{}' legge l'intera tabella {}: nessun indice utilizzabile", nome, tabella);
+      return false;
+    }
+    if (tabella.equals(ELENCHI.get(nome))) {
+      // "Using index condition" indica solo il filtro sull'indice, non una lettura del solo
+      // indice; la chiave primaria di InnoDB contiene già le righe della tabella
+      boolean soloIndice =
+          extra.matches(".*Using index(?! condition).*") || "PRIMARY".equals(indice);
+      if (indice == null || !soloIndice) {
+        log.warn("'{}' legge le righe di {} oltre all'indice {}", nome, tabella, indice);
+        return false;
+      }
+      if (extra.contains("Using filesort")) {
+        log.warn("'{}' ordina le righe di {} invece di leggerle dall'indice", nome, tabella);
+        return false;
+      }
+    }
+    if ("ALL".equals(tipo) || "index".equals(tipo)) {
+      log.info(
+          "'{}' scandisce tutta la tabella {} pur avendo gli indici {}: normale su poche righe",
+          nome,
+          tabella,
+          indiciPossibili);
+    }
+    return true;
+  }
+
+  /**
+   * Metodo che ricava dall'SQL le tabelle della query e i loro alias.
+   *
+   * @param sql SQL generato da Hibernate
+   * @return nome della tabella per alias e per nome
+   */
+  private static Map<String, String> tabelle(String sql) {
+    Map<String, String> tabelle = new HashMap<>();
+    Matcher m = TABELLA.matcher(sql);
+    while (m.find()) {
+      tabelle.put(m.group(1), m.group(1));
+      if (m.group(2) != null) {
+        tabelle.put(m.group(2), m.group(1));
+      }
+    }
+    return tabelle;
+  }
+
+  /**
+   * Metodo che costruisce un valore di esempio per un parametro di un metodo di un repository.
+   *
+   * @param tipo tipo del parametro
+   * @return valore di esempio, NESSUN_ESEMPIO se il tipo non è supportato
+   */
+  private static Object esempio(Type tipo) {
+    if (tipo instanceof ParameterizedType parametrizzato) {
+      Class<?> grezzo = (Class<?>) parametrizzato.getRawType();
+      if (Collection.class.isAssignableFrom(grezzo)) {
+        // due valori, perché MySQL tratta IN con un solo valore come un'uguaglianza
+        Type elemento = parametrizzato.getActualTypeArguments()[0];
+        Object primo = esempio(elemento);
+        Object secondo = elemento == Long.class ? (Object) 2L : primo;
+        return primo == NESSUN_ESEMPIO ? NESSUN_ESEMPIO : List.of(primo, secondo);
+      }
+      if (Map.class.isAssignableFrom(grezzo)) {
+        return new HashMap<>();
+      }
+      return NESSUN_ESEMPIO;
+    }
+    Class<?> classe = (Class<?>) tipo;
+    if (classe == Long.class || classe == long.class) {
+      return 1L;
+    }
+    if (classe == Integer.class || classe == int.class) {
+      return 1;
+    }
+    if (classe == Boolean.class || classe == boolean.class) {
+      return false;
+    }
+    if (classe == String.class) {
+      return "000000";
+    }
+    if (classe == LocalDateTime.class) {
+      return LocalDateTime.now();
+    }
+    if (classe == LocalDate.class) {
+      return LocalDate.now();
+    }
+    if (classe == Pageable.class) {
+      return PageRequest.of(0, 50);
+    }
+    if (classe.isAnnotationPresent(Entity.class)) {
+      return entitaDiEsempio(classe);
+    }
+    return NESSUN_ESEMPIO;
+  }
+
+  /**
+   * Metodo che costruisce un'entità non salvata con identificativo di esempio, usata come
+   * parametro delle query derivate.
+   *
+   * @param classe classe dell'entità
+   * @return entità di esempio, NESSUN_ESEMPIO se non può essere costruita
+   */
+  private static Object entitaDiEsempio(Class<?> classe) {
+    try {
+      Object entita = classe.getDeclaredConstructor().newInstance();
+      for (Field campo : classe.getDeclaredFields()) {
+        if (campo.isAnnotationPresent(Id.class)) {
+          Object id = esempio(campo.getType());
+          if (id == NESSUN_ESEMPIO) {
+            return NESSUN_ESEMPIO;
+          }
+          campo.setAccessible(true);
+          campo.set(entita, id);
+        }
+      }
+      return entita;
+    } catch (ReflectiveOperationException e) {
+      return NESSUN_ESEMPIO;
+    }
+  }
+}
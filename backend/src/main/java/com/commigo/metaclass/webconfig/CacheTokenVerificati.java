@@ -0,0 +1,123 @@
+package com.commigo.metaclass.webconfig;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache limitata dei token già verificati, indicizzata con l'hash SHA-256 del token. Ogni voce
+ * scade insieme al token, così la firma di un token viene verificata una sola volta nel suo
+ * periodo di validità.
+ */
+@Component
+public class CacheTokenVerificati {
+
+  private final Map<String, UtenteAutenticato> voci = new ConcurrentHashMap<>();
+  private final LongAdder hit = new LongAdder();
+  private final LongAdder miss = new LongAdder();
+
+  @Value("${jwt.cache.dimensione:10000}")
+  private int dimensioneMassima;
+
+  /**
+   * Restituisce il principal di un token, verificandolo solo se non è già in cache.
+   *
+   * @param token token da verificare
+   * @param verifica funzione che verifica il token, null se non valido
+   * @return principal del token, null se non valido o scaduto
+   */
+  public UtenteAutenticato get(String token, Function<String, UtenteAutenticato> verifica) {
+    String chiave = hash(token);
+    long adesso = System.currentTimeMillis();
+    UtenteAutenticato memorizzato = voci.get(chiave);
+    if (memorizzato != null) {
+      if (memorizzato.getScadenza() > adesso) {
+        hit.increment();
+        return memorizzato;
+      }
+      voci.remove(chiave, memorizzato);
+    }
+
+    miss.increment();
+    UtenteAutenticato utente = verifica.apply(token);
+    if (utente != null && utente.getScadenza() > adesso) {
+      if (voci.size() >= dimensioneMassima) {
+        rimuoviScadute();
+      }
+      // a cache piena il token resta valido ma non viene memorizzato
+      if (voci.size() < dimensioneMassima) {
+        voci.put(chiave, utente);
+      }
+    }
+    return utente;
+  }
+
+  /**
+   * Rimuove un token dalla cache, ad esempio dopo il logout.
+   *
+   * @param token token da rimuovere
+   */
+  public void invalida(String token) {
+    voci.remove(hash(token));
+  }
+
+  /** Svuota la cache, ad esempio quando una chiave di firma viene ritirata. */
+  public void svuota() {
+    voci.clear();
+  }
+
+  /** Rimuove periodicamente le voci scadute. */
+  @Scheduled(fixedDelayString = "${jwt.cache.pulizia:60000}")
+  public void rimuoviScadute() {
+    long adesso = System.currentTimeMillis();
+    Iterator<UtenteAutenticato> it = voci.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().getScadenza() <= adesso) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Restituisce le statistiche d'uso della cache.
+   *
+   * @return hit, miss, hit rate e numero di voci
+   */
+  public Map<String, Object> getStatistiche() {
+    long h = hit.sum();
+    long m = miss.sum();
+    Map<String, Object> statistiche = new LinkedHashMap<>();
+    statistiche.put("hit", h);
+    statistiche.put("miss", m);
+    statistiche.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+    statistiche.put("dimensione", voci.size());
+    statistiche.put("dimensioneMassima", dimensioneMassima);
+    return statistiche;
+  }
+
+  /**
+   * Calcola l'hash con cui il token viene indicizzato.
+   *
+   * @param token token di cui calcolare l'hash
+   * @return hash SHA-256 del token codificato in base64
+   */
+  static String hash(String token) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return Base64.getEncoder()
+          .encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 non disponibile", e);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.commigo.metaclass.webconfig;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Filtro che decodifica il token JWT una sola volta per richiesta e ne espone il principal negli
+ * attributi della richiesta e nel SecurityContext.
+ */
+@Component
+public class FiltroAutenticazione extends OncePerRequestFilter {
+
+  @Autowired private ValidationToken validationToken;
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    UtenteAutenticato utente = validationToken.getUtenteAutenticato(request);
+    if (utente != null) {
+      List<SimpleGrantedAuthority> ruoli =
+          utente.isAdmin()
+              ? List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))
+              : List.of(new SimpleGrantedAuthority("ROLE_USER"));
+      SecurityContextHolder.getContext()
+          .setAuthentication(new UsernamePasswordAuthenticationToken(utente, null, ruoli));
+    }
+    chain.doFilter(request, response);
+  }
+}
@@ -1,14 +1,20 @@
 package com.commigo.metaclass.webconfig;
 
+import com.commigo.metaclass.entity.Utente;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import jakarta.annotation.PostConstruct;
 import java.security.Key;
 import java.util.Date;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -18,7 +24,19 @@ import org.springframework.stereotype.Component;
 @AllArgsConstructor
 public class JwtTokenUtil {
 
-  private Key secretKey;
+  /** Claim con il flag di amministratore. */
+  public static final String CLAIM_ADMIN = "admin";
+
+  /** Claim con l'id dell'utente. */
+  public static final String CLAIM_ID_UTENTE = "uid";
+
+  private JwtParser parser;
+
+  @Autowired private CacheTokenVerificati cacheTokenVerificati;
+
+  @Autowired private PortachiaviJwt portachiavi;
+
+  @Autowired private RegistroRevocheToken registroRevocheToken;
 
   @Value("${jwt.expiration}000")
   private Long expiration;
@@ -26,27 +44,94 @@ public class JwtTokenUtil {
   /** Inizializza il controllore dei token. */
   @PostConstruct
   public void init() {
-    // Inizializza la chiave segreta al momento della creazione del bean
-    secretKey = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+    // la chiave di verifica viene scelta in base al kid dell'header del token
+    parser =
+        Jwts.parserBuilder()
+            .setSigningKeyResolver(
+                new SigningKeyResolverAdapter() {
+                  @Override
+                  public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                    Key chiave = portachiavi.getChiave(header.getKeyId());
+                    if (chiave == null) {
+                      throw new JwtException("chiave di firma sconosciuta: " + header.getKeyId());
+                    }
+                    return chiave;
+                  }
+                })
+            .build();
   }
 
   /**
    * genera il token per utente con metaId.
    *
    * @param metaId metaId
+   * @return token firmato
    */
   public String generateToken(String metaId) {
     Date now = new Date();
     Date expiryDate = new Date(now.getTime() + expiration);
 
-    return Jwts.builder()
-        .setSubject(metaId)
-        .setIssuedAt(now)
-        .setExpiration(expiryDate)
-        .signWith(SignatureAlgorithm.HS512, secretKey)
+    return firma(Jwts.builder().setSubject(metaId).setIssuedAt(now).setExpiration(expiryDate));
+  }
+
+  /**
+   * genera il token per un utente registrato, includendo id e flag di amministratore.
+   *
+   * @param utente utente a cui assegnare il token
+   * @return token firmato
+   */
+  public String generateToken(Utente utente) {
+    Date now = new Date();
+    Date expiryDate = new Date(now.getTime() + expiration);
+
+    return firma(
+        Jwts.builder()
+            .setSubject(utente.getMetaId())
+            .claim(CLAIM_ADMIN, utente.isAdmin())
+            .claim(CLAIM_ID_UTENTE, utente.getId())
+            .setIssuedAt(now)
+            .setExpiration(expiryDate));
+  }
+
+  /** Firma il token con la chiave attiva, indicandone il kid nell'header. */
+  private String firma(JwtBuilder builder) {
+    return builder
+        .setHeaderParam(JwsHeader.KEY_ID, portachiavi.getKidAttivo())
+        .signWith(portachiavi.getChiaveAttiva(), SignatureAlgorithm.HS512)
         .compact();
   }
 
+  /**
+   * Verifica un token e ne ricava il principal. La firma viene verificata solo la prima volta,
+   * poi il principal è servito dalla cache fino alla scadenza del token.
+   *
+   * @param token token da verificare
+   * @return principal dell'utente, null se il token non è valido o è stato revocato
+   */
+  public UtenteAutenticato autentica(String token) {
+    UtenteAutenticato utente = cacheTokenVerificati.get(token, this::verifica);
+    // la revoca può arrivare da un'altra istanza dopo che il token è entrato in cache
+    if (utente != null && registroRevocheToken.isRevocato(token)) {
+      return null;
+    }
+    return utente;
+  }
+
+  private UtenteAutenticato verifica(String token) {
+    try {
+      Claims claims = parser.parseClaimsJws(token).getBody();
+      Number idUtente = claims.get(CLAIM_ID_UTENTE, Number.class);
+      return new UtenteAutenticato(
+          claims.getSubject(),
+          Boolean.TRUE.equals(claims.get(CLAIM_ADMIN, Boolean.class)),
+          idUtente == null ? null : idUtente.longValue(),
+          token,
+          claims.getExpiration().getTime());
+    } catch (JwtException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
   /**
    * Ottieni il metaId dal token.
    *
@@ -54,9 +139,11 @@ public class JwtTokenUtil {
    * @return metaId
    */
   public String getmetaIdFromToken(String token) {
-    Claims claims = Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody();
-
-    return claims.getSubject();
+    UtenteAutenticato utente = autentica(token);
+    if (utente == null) {
+      throw new JwtException("token non valido");
+    }
+    return utente.getMetaId();
   }
 
   /**
@@ -66,11 +153,6 @@ public class JwtTokenUtil {
    * @return ritorna se è valido o meno
    */
   public boolean validateToken(String token) {
-    try {
-      Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token);
-      return true;
-    } catch (Exception e) {
-      return false;
-    }
+    return autentica(token) != null;
   }
 }
@@ -0,0 +1,157 @@
+package com.commigo.metaclass.webconfig;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.Key;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Portachiavi delle chiavi di firma dei token JWT. Le chiavi sono lette da un file di properties
+ * condiviso tra le istanze del backend, nel formato:
+ *
+ * <pre>
+ * attiva=k2
+ * chiave.k1=&lt;segreto base64, almeno 64 byte&gt;
+ * chiave.k2=&lt;segreto base64, almeno 64 byte&gt;
+ * </pre>
+ *
+ * <p>La chiave attiva firma i nuovi token, tutte le chiavi presenti verificano quelli esistenti.
+ * Il file viene riletto periodicamente: per ruotare si aggiunge una chiave, la si rende attiva e si
+ * rimuove la precedente quando i token firmati con essa sono scaduti.
+ */
+@Slf4j
+@Component
+public class PortachiaviJwt {
+
+  private static final String PROPRIETA_ATTIVA = "attiva";
+  private static final String PREFISSO_CHIAVE = "chiave.";
+
+  /** Lunghezza minima di un segreto HS512, in byte. */
+  private static final int LUNGHEZZA_MINIMA = 64;
+
+  @Autowired private CacheTokenVerificati cacheTokenVerificati;
+
+  @Value("${jwt.chiavi.path:}")
+  private String percorso;
+
+  private volatile Anello anello;
+  private long ultimaModifica;
+
+  /** Insieme immutabile di chiavi con l'identificativo di quella attiva. */
+  private record Anello(Map<String, Key> chiavi, String kidAttivo) {}
+
+  /** Carica le chiavi all'avvio; senza file configurato usa una chiave casuale locale. */
+  @PostConstruct
+  public void init() {
+    if (percorso == null || percorso.isBlank()) {
+      log.warn(
+          "jwt.chiavi.path non configurato: i token saranno validi solo su questa istanza "
+              + "e fino al suo riavvio");
+      String kid = "locale-" + UUID.randomUUID();
+      anello = new Anello(Map.of(kid, Keys.secretKeyFor(SignatureAlgorithm.HS512)), kid);
+      return;
+    }
+    try {
+      anello = leggi(new File(percorso));
+      ultimaModifica = new File(percorso).lastModified();
+    } catch (IOException | IllegalArgumentException e) {
+      throw new IllegalStateException("Impossibile caricare le chiavi JWT: " + e.getMessage(), e);
+    }
+  }
+
+  /** Rilegge il file delle chiavi quando viene modificato. */
+  @Scheduled(fixedDelayString = "${jwt.chiavi.intervallo-controllo:30000}")
+  public synchronized void controllaRotazione() {
+    if (percorso == null || percorso.isBlank()) {
+      return;
+    }
+    File file = new File(percorso);
+    if (!file.isFile() || file.lastModified() == ultimaModifica) {
+      return;
+    }
+    try {
+      Anello nuovo = leggi(file);
+      Anello precedente = anello;
+      anello = nuovo;
+      ultimaModifica = file.lastModified();
+      log.info(
+          "Chiavi JWT aggiornate: attiva {}, {} in verifica",
+          nuovo.kidAttivo(),
+          nuovo.chiavi().size());
+      if (!nuovo.chiavi().keySet().containsAll(precedente.chiavi().keySet())) {
+        // i token firmati con chiavi ritirate non devono più essere accettati dalla cache
+        cacheTokenVerificati.svuota();
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      // le chiavi precedenti restano in uso
+      log.error("Impossibile aggiornare le chiavi JWT: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Restituisce l'identificativo della chiave con cui firmare i nuovi token.
+   *
+   * @return kid della chiave attiva
+   */
+  public String getKidAttivo() {
+    return anello.kidAttivo();
+  }
+
+  /**
+   * Restituisce la chiave con cui firmare i nuovi token.
+   *
+   * @return chiave attiva
+   */
+  public Key getChiaveAttiva() {
+    Anello corrente = anello;
+    return corrente.chiavi().get(corrente.kidAttivo());
+  }
+
+  /**
+   * Restituisce la chiave di verifica con un certo identificativo. I token senza kid vengono
+   * verificati con la chiave attiva.
+   *
+   * @param kid identificativo della chiave, può essere null
+   * @return chiave di verifica, null se il kid non è noto
+   */
+  public Key getChiave(String kid) {
+    Anello corrente = anello;
+    return corrente.chiavi().get(kid == null ? corrente.kidAttivo() : kid);
+  }
+
+  private static Anello leggi(File file) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream is = Files.newInputStream(file.toPath())) {
+      properties.load(is);
+    }
+    Map<String, Key> chiavi = new HashMap<>();
+    for (String nome : properties.stringPropertyNames()) {
+      if (nome.startsWith(PREFISSO_CHIAVE)) {
+        byte[] segreto = Base64.getDecoder().decode(properties.getProperty(nome).trim());
+        if (segreto.length < LUNGHEZZA_MINIMA) {
+          throw new IllegalArgumentException("la chiave " + nome + " è più corta di 64 byte");
+        }
+        chiavi.put(nome.substring(PREFISSO_CHIAVE.length()), Keys.hmacShaKeyFor(segreto));
+      }
+    }
+    String attiva = properties.getProperty(PROPRIETA_ATTIVA);
+    if (attiva == null || !chiavi.containsKey(attiva.trim())) {
+      throw new IllegalArgumentException("chiave attiva mancante o non definita");
+    }
+    return new Anello(Map.copyOf(chiavi), attiva.trim());
+  }
+}
@@ -0,0 +1,74 @@
+package com.commigo.metaclass.webconfig;
+
+import com.commigo.metaclass.entity.TokenRevocato;
+import com.commigo.metaclass.gestioneutenza.repository.TokenRevocatoRepository;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lista dei token revocati prima della loro scadenza. I token non sono salvati al login: il
+ * database contiene solo le revoche, che ogni istanza tiene in memoria e risincronizza
+ * periodicamente.
+ */
+@Slf4j
+@Component
+public class RegistroRevocheToken {
+
+  /** Hash del token revocato e relativa scadenza in millisecondi. */
+  private final Map<String, Long> revocati = new ConcurrentHashMap<>();
+
+  @Autowired private TokenRevocatoRepository tokenRevocatoRepository;
+
+  @Autowired private CacheTokenVerificati cacheTokenVerificati;
+
+  /**
+   * Revoca un token fino alla sua scadenza.
+   *
+   * @param utente principal del token da revocare
+   */
+  public void revoca(UtenteAutenticato utente) {
+    String hash = CacheTokenVerificati.hash(utente.getToken());
+    revocati.put(hash, utente.getScadenza());
+    cacheTokenVerificati.invalida(utente.getToken());
+    tokenRevocatoRepository.save(new TokenRevocato(hash, utente.getScadenza()));
+  }
+
+  /**
+   * Controlla se un token è stato revocato.
+   *
+   * @param token token da controllare
+   * @return true se il token è stato revocato
+   */
+  public boolean isRevocato(String token) {
+    return !revocati.isEmpty() && revocati.containsKey(CacheTokenVerificati.hash(token));
+  }
+
+  /** Carica le revoche all'avvio. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void init() {
+    sincronizza();
+  }
+
+  /** Allinea la lista con le revoche effettuate dalle altre istanze ed elimina quelle scadute. */
+  @Scheduled(fixedDelayString = "${jwt.revoche.intervallo-sincronizzazione:30000}")
+  public void sincronizza() {
+    long adesso = System.currentTimeMillis();
+    try {
+      for (TokenRevocato t : tokenRevocatoRepository.findAllByScadenzaGreaterThan(adesso)) {
+        revocati.put(t.getHash(), t.getScadenza());
+      }
+      tokenRevocatoRepository.eliminaScaduti(adesso);
+    } catch (DataAccessException e) {
+      // le revoche già note restano valide, si riprova al prossimo giro
+      log.error("Impossibile sincronizzare i token revocati: {}", e.getMessage());
+    }
+    revocati.values().removeIf(scadenza -> scadenza <= adesso);
+  }
+}
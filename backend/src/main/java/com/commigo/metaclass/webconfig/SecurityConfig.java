@@ -2,11 +2,13 @@ package com.commigo.metaclass.webconfig;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 /** Imposta la sicurezza del backend. */
 @Configuration
@@ -16,10 +18,13 @@ public class SecurityConfig {
    * Controlla la sicurezza delle richiesta http.
    *
    * @param http parametro di httpsecurity
+   * @param filtroAutenticazione filtro che ricava l'utente autenticato dal token
    */
   @Bean
-  public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+  public SecurityFilterChain filterChain(
+      HttpSecurity http, FiltroAutenticazione filtroAutenticazione) throws Exception {
     http.authorizeHttpRequests((authz) -> authz.anyRequest().permitAll())
+        .addFilterBefore(filtroAutenticazione, UsernamePasswordAuthenticationFilter.class)
         .csrf(AbstractHttpConfigurer::disable)
         .httpBasic(withDefaults())
         .logout(
@@ -28,4 +33,19 @@ public class SecurityConfig {
 
     return http.build();
   }
+
+  /**
+   * Evita che il filtro di autenticazione venga registrato anche fuori dalla catena di sicurezza.
+   *
+   * @param filtroAutenticazione filtro di autenticazione
+   * @return registrazione disabilitata del filtro
+   */
+  @Bean
+  public FilterRegistrationBean<FiltroAutenticazione> registrazioneFiltroAutenticazione(
+      FiltroAutenticazione filtroAutenticazione) {
+    FilterRegistrationBean<FiltroAutenticazione> registrazione =
+        new FilterRegistrationBean<>(filtroAutenticazione);
+    registrazione.setEnabled(false);
+    return registrazione;
+  }
 }
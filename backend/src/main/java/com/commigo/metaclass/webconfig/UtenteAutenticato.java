@@ -0,0 +1,33 @@
+package com.commigo.metaclass.webconfig;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Principal immutabile dell'utente autenticato, ricavato una sola volta per richiesta dal token
+ * JWT.
+ */
+@Getter
+@ToString(exclude = "token")
+@RequiredArgsConstructor
+public final class UtenteAutenticato {
+
+  /** Attributo della richiesta in cui il filtro di autenticazione salva il principal. */
+  public static final String ATTRIBUTO = UtenteAutenticato.class.getName();
+
+  /** MetaId dell'utente, soggetto del token. */
+  private final String metaId;
+
+  /** Indica se l'utente è un amministratore. */
+  private final boolean admin;
+
+  /** Id dell'utente, null per token emessi senza questa informazione. */
+  private final Long idUtente;
+
+  /** Token JWT da cui è stato ricavato il principal. */
+  private final String token;
+
+  /** Istante di scadenza del token, in millisecondi. */
+  private final long scadenza;
+}
@@ -1,17 +1,22 @@
 package com.commigo.metaclass.webconfig;
 
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.Data;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-/** Classe per la validazione del token. */
+/**
+ * Classe per la validazione del token. Non mantiene stato: il principal di ogni richiesta è
+ * salvato negli attributi della richiesta stessa dal {@link FiltroAutenticazione}.
+ */
 @Component
-@Data
 public class ValidationToken {
 
+  /** Valore salvato nella richiesta quando il token è assente o non valido. */
+  private static final Object NON_AUTENTICATO = new Object();
+
+  private static final String PREFISSO_BEARER = "Bearer ";
+
   @Autowired private JwtTokenUtil jwtTokenUtil;
-  private String token;
 
   /**
    * Controlla se il token è valido.
@@ -20,14 +25,53 @@ public class ValidationToken {
    * @return ritorna se è valido o no il token
    */
   public boolean isTokenValid(HttpServletRequest request) {
-    this.token = request.getHeader("Authorization");
-
-    if (this.token != null && this.token.startsWith("Bearer ")) {
-      this.token = this.token.substring(7);
+    return getUtenteAutenticato(request) != null;
+  }
 
-      return jwtTokenUtil.validateToken(this.token);
+  /**
+   * Restituisce l'utente autenticato della richiesta. Il token viene decodificato al più una volta
+   * per richiesta.
+   *
+   * @param request richiesta da cui prende il token
+   * @return principal dell'utente, null se il token è assente o non valido
+   */
+  public UtenteAutenticato getUtenteAutenticato(HttpServletRequest request) {
+    Object attributo = request.getAttribute(UtenteAutenticato.ATTRIBUTO);
+    if (attributo instanceof UtenteAutenticato) {
+      return (UtenteAutenticato) attributo;
+    }
+    if (attributo == NON_AUTENTICATO) {
+      return null;
     }
 
-    return false;
+    String token = estraiToken(request);
+    UtenteAutenticato utente = token == null ? null : jwtTokenUtil.autentica(token);
+    request.setAttribute(UtenteAutenticato.ATTRIBUTO, utente == null ? NON_AUTENTICATO : utente);
+    return utente;
+  }
+
+  /**
+   * Restituisce il metaId dell'utente autenticato della richiesta.
+   *
+   * @param request richiesta da cui prende il token
+   * @return metaId dell'utente, null se il token è assente o non valido
+   */
+  public String getMetaId(HttpServletRequest request) {
+    UtenteAutenticato utente = getUtenteAutenticato(request);
+    return utente == null ? null : utente.getMetaId();
+  }
+
+  /**
+   * Estrae il token dall'header Authorization.
+   *
+   * @param request richiesta da cui prende il token
+   * @return token senza prefisso, null se l'header è assente o malformato
+   */
+  public static String estraiToken(HttpServletRequest request) {
+    String header = request.getHeader("Authorization");
+    if (header != null && header.startsWith(PREFISSO_BEARER)) {
+      return header.substring(PREFISSO_BEARER.length());
+    }
+    return null;
   }
 }
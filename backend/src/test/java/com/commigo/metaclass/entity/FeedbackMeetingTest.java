@@ -0,0 +1,76 @@
+package com.commigo.metaclass.entity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+
+/** Test del conteggio incrementale del tempo di presenza in un meeting. */
+class FeedbackMeetingTest {
+
+  private static final LocalDateTime GIORNO = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+  @Test
+  void intervalliDisgiuntiSiSommano() {
+    FeedbackMeeting f = new FeedbackMeeting(null, null, null);
+
+    f.aggiungiIntervallo(minuto(0), minuto(10));
+    f.aggiungiIntervallo(minuto(20), minuto(25));
+
+    assertThat(f.getTempoTotale()).isEqualTo(Duration.ofMinutes(15));
+    assertThat(f.getFineConteggiata()).isEqualTo(minuto(25));
+  }
+
+  @Test
+  void intervalliConsecutiviSiSommano() {
+    FeedbackMeeting f = new FeedbackMeeting(null, null, null);
+
+    f.aggiungiIntervallo(minuto(0), minuto(10));
+    f.aggiungiIntervallo(minuto(10), minuto(15));
+
+    assertThat(f.getTempoTotale()).isEqualTo(Duration.ofMinutes(15));
+  }
+
+  @Test
+  void sovrapposizioneContataUnaSolaVolta() {
+    FeedbackMeeting f = new FeedbackMeeting(null, null, null);
+
+    // due sessioni aperte insieme, ad esempio da due schede del browser
+    f.aggiungiIntervallo(minuto(0), minuto(10));
+    f.aggiungiIntervallo(minuto(5), minuto(12));
+
+    assertThat(f.getTempoTotale()).isEqualTo(Duration.ofMinutes(12));
+    assertThat(f.getFineConteggiata()).isEqualTo(minuto(12));
+  }
+
+  @Test
+  void intervalloContenutoNonAggiungeTempo() {
+    FeedbackMeeting f = new FeedbackMeeting(null, null, null);
+
+    f.aggiungiIntervallo(minuto(0), minuto(30));
+    f.aggiungiIntervallo(minuto(0), minuto(10));
+    f.aggiungiIntervallo(minuto(10), minuto(20));
+
+    assertThat(f.getTempoTotale()).isEqualTo(Duration.ofMinutes(30));
+    assertThat(f.getFineConteggiata()).isEqualTo(minuto(30));
+
+    // la fine conteggiata non torna indietro dopo un intervallo contenuto
+    f.aggiungiIntervallo(minuto(25), minuto(35));
+    assertThat(f.getTempoTotale()).isEqualTo(Duration.ofMinutes(35));
+  }
+
+  @Test
+  void intervalloVuotoIgnorato() {
+    FeedbackMeeting f = new FeedbackMeeting(null, null, null);
+
+    f.aggiungiIntervallo(minuto(5), minuto(5));
+
+    assertThat(f.getTempoTotale()).isEqualTo(Duration.ZERO);
+    assertThat(f.getFineConteggiata()).isNull();
+  }
+
+  private static LocalDateTime minuto(int minuti) {
+    return GIORNO.plusMinutes(minuti);
+  }
+}
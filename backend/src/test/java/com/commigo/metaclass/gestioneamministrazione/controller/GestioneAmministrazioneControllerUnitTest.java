@@ -9,6 +9,7 @@ import com.commigo.metaclass.gestioneamministrazione.service.GestioneAmministraz
 import com.commigo.metaclass.gestionestanza.controller.GestioneStanzaControl;
 import com.commigo.metaclass.gestionestanza.service.GestioneStanzaService;
 import com.commigo.metaclass.gestionestanza.service.GestioneStanzaServiceImpl;
+import com.commigo.metaclass.webconfig.CacheTokenVerificati;
 import com.commigo.metaclass.webconfig.JwtTokenUtil;
 import com.commigo.metaclass.webconfig.ValidationToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -66,6 +67,7 @@ class GestioneAmministrazioneControllerUnitTest {
   @MockBean private GestioneStanzaService gestioneStanzaService;
   @MockBean private ValidationToken validationToken;
   @MockBean private JwtTokenUtil jwtTokenUtil;
+  @MockBean private CacheTokenVerificati cacheTokenVerificati;
   @InjectMocks private GestioneAmministrazioneController amministrazioneController;
   @InjectMocks private GestioneStanzaControl stanzaController;
   private Utente utente;
@@ -195,7 +197,7 @@ class GestioneAmministrazioneControllerUnitTest {
     when(validationToken.isTokenValid(any(HttpServletRequest.class))).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     when(amministrazioneController.checkAdmin(any(String.class))).thenReturn(true);
@@ -217,7 +219,7 @@ class GestioneAmministrazioneControllerUnitTest {
     when(validationToken.isTokenValid(any(HttpServletRequest.class))).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     when(amministrazioneController.checkAdmin(any(String.class))).thenReturn(false);
@@ -246,7 +248,7 @@ class GestioneAmministrazioneControllerUnitTest {
     when(validationToken.isTokenValid(any(HttpServletRequest.class))).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     when(amministrazioneController.checkAdmin(any(String.class))).thenReturn(true);
@@ -268,7 +270,7 @@ class GestioneAmministrazioneControllerUnitTest {
     when(validationToken.isTokenValid(any(HttpServletRequest.class))).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     when(amministrazioneController.checkAdmin(any(String.class))).thenReturn(true);
@@ -290,7 +292,7 @@ class GestioneAmministrazioneControllerUnitTest {
     when(validationToken.isTokenValid(any(HttpServletRequest.class))).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     when(amministrazioneController.checkAdmin(any(String.class))).thenReturn(true);
@@ -313,7 +315,7 @@ class GestioneAmministrazioneControllerUnitTest {
     when(validationToken.isTokenValid(any(HttpServletRequest.class))).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     when(amministrazioneController.checkAdmin(any(String.class))).thenReturn(true);
@@ -335,7 +337,7 @@ class GestioneAmministrazioneControllerUnitTest {
     when(validationToken.isTokenValid(any(HttpServletRequest.class))).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     when(amministrazioneController.checkAdmin(any(String.class))).thenReturn(true);
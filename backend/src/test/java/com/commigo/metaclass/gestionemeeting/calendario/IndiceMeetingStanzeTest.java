@@ -0,0 +1,211 @@
+package com.commigo.metaclass.gestionemeeting.calendario;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.commigo.metaclass.entity.Meeting;
+import com.commigo.metaclass.gestionemeeting.repository.MeetingRepository;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/** Test dell'indice in memoria dei meeting schedulati nelle stanze. */
+class IndiceMeetingStanzeTest {
+
+  private static final Long ID_STANZA = 1L;
+  private static final LocalDateTime GIORNO = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+  private MeetingRepository meetingRepository;
+  private List<Object[]> salvati;
+  private IndiceMeetingStanze indice;
+
+  @BeforeEach
+  void setUp() {
+    meetingRepository = mock(MeetingRepository.class);
+    salvati = new ArrayList<>();
+    when(meetingRepository.findIntervalliByStanza(ID_STANZA)).thenReturn(salvati);
+    indice = new IndiceMeetingStanze(meetingRepository);
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  void sovrapposizioneConUnMeetingSalvato() {
+    salva(1L, ora(10, 0), ora(11, 0));
+
+    assertThat(libero(ora(8, 0), ora(9, 0))).isTrue();
+    assertThat(libero(ora(10, 30), ora(12, 0))).isFalse();
+    assertThat(libero(ora(9, 0), ora(12, 0))).isFalse();
+    assertThat(libero(ora(10, 15), ora(10, 45))).isFalse();
+    assertThat(libero(ora(11, 1), ora(12, 0))).isTrue();
+  }
+
+  @Test
+  void estremiCoincidentiSonoSovrapposti() {
+    salva(1L, ora(10, 0), ora(11, 0));
+
+    // come nella query sostituita, un meeting che tocca un altro lo accavalla
+    List<Integer> sovrapposti =
+        indice.sovrapposizioni(
+            ID_STANZA,
+            List.of(meeting(0, ora(9, 0), ora(10, 0)), meeting(0, ora(11, 0), ora(12, 0))));
+
+    assertThat(sovrapposti).containsExactly(0, 1);
+  }
+
+  @Test
+  void sovrapposizioniTraINuoviMeeting() {
+    List<Integer> sovrapposti =
+        indice.sovrapposizioni(
+            ID_STANZA,
+            List.of(
+                meeting(0, ora(16, 0), ora(17, 0)),
+                meeting(0, ora(8, 0), ora(9, 0)),
+                meeting(0, ora(13, 0), ora(18, 0)),
+                meeting(0, ora(14, 0), ora(15, 0)),
+                meeting(0, ora(19, 0), ora(20, 0))));
+
+    // il meeting più lungo accavalla anche quelli che non si toccano tra loro
+    assertThat(sovrapposti).containsExactly(0, 2, 3);
+  }
+
+  @Test
+  void meetingSalvatiGiaSovrappostiNonNascondonoGliAltri() {
+    // salvati prima dell'indice: il secondo è contenuto nel primo
+    salva(1L, ora(1, 0), ora(10, 0));
+    salva(2L, ora(2, 0), ora(3, 0));
+
+    assertThat(indice.sovrapposizioni(ID_STANZA, List.of(meeting(0, ora(5, 0), ora(6, 0)))))
+        .containsExactly(0);
+    assertThat(indice.sovrapposizioni(ID_STANZA, List.of(meeting(0, ora(11, 0), ora(12, 0)))))
+        .isEmpty();
+    assertThat(indice.sposta(ID_STANZA, 3L, ora(4, 0), ora(5, 0))).isFalse();
+
+    // spostato il meeting contenuto, il calendario torna disgiunto
+    assertThat(indice.sposta(ID_STANZA, 2L, ora(20, 0), ora(21, 0))).isTrue();
+    assertThat(indice.sovrapposizioni(ID_STANZA, List.of(meeting(0, ora(5, 0), ora(6, 0)))))
+        .containsExactly(0);
+    assertThat(indice.sovrapposizioni(ID_STANZA, List.of(meeting(0, ora(12, 0), ora(13, 0)))))
+        .isEmpty();
+  }
+
+  @Test
+  void riservaTuttiInserisceSoloSeNessunoSiAccavalla() {
+    salva(1L, ora(10, 0), ora(11, 0));
+
+    List<Integer> rifiutati =
+        indice.riservaTutti(
+            ID_STANZA,
+            List.of(meeting(2L, ora(12, 0), ora(13, 0)), meeting(3L, ora(10, 30), ora(11, 30))));
+    assertThat(rifiutati).containsExactly(1);
+    assertThat(libero(ora(12, 0), ora(13, 0))).isTrue();
+
+    assertThat(
+            indice.riservaTutti(
+                ID_STANZA,
+                List.of(
+                    meeting(2L, ora(12, 0), ora(13, 0)), meeting(3L, ora(14, 0), ora(15, 0)))))
+        .isEmpty();
+    assertThat(libero(ora(12, 30), ora(12, 45))).isFalse();
+    assertThat(libero(ora(14, 30), ora(16, 0))).isFalse();
+  }
+
+  @Test
+  void spostaIgnoraLoStessoMeeting() {
+    salva(1L, ora(10, 0), ora(11, 0));
+    salva(2L, ora(12, 0), ora(13, 0));
+
+    // il nuovo intervallo si sovrappone solo al vecchio intervallo dello stesso meeting
+    assertThat(indice.sposta(ID_STANZA, 1L, ora(10, 30), ora(11, 30))).isTrue();
+
+    assertThat(libero(ora(10, 0), ora(10, 15))).isTrue();
+    assertThat(libero(ora(11, 15), ora(11, 20))).isFalse();
+  }
+
+  @Test
+  void spostaRifiutatoLasciaIlMeetingAlSuoPosto() {
+    salva(1L, ora(10, 0), ora(11, 0));
+    salva(2L, ora(12, 0), ora(13, 0));
+
+    assertThat(indice.sposta(ID_STANZA, 1L, ora(11, 30), ora(12, 30))).isFalse();
+
+    assertThat(libero(ora(10, 15), ora(10, 30))).isFalse();
+    assertThat(libero(ora(11, 30), ora(11, 45))).isTrue();
+  }
+
+  @Test
+  void rollbackAnnullaLaRiserva() {
+    TransactionSynchronizationManager.initSynchronization();
+    assertThat(indice.riservaTutti(ID_STANZA, List.of(meeting(1L, ora(10, 0), ora(11, 0)))))
+        .isEmpty();
+    assertThat(libero(ora(10, 0), ora(11, 0))).isFalse();
+
+    completaTransazione(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+    assertThat(libero(ora(10, 0), ora(11, 0))).isTrue();
+  }
+
+  @Test
+  void rollbackAnnullaLoSpostamento() {
+    salva(1L, ora(10, 0), ora(11, 0));
+
+    TransactionSynchronizationManager.initSynchronization();
+    assertThat(indice.sposta(ID_STANZA, 1L, ora(14, 0), ora(15, 0))).isTrue();
+    completaTransazione(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+    assertThat(libero(ora(10, 15), ora(10, 30))).isFalse();
+    assertThat(libero(ora(14, 15), ora(14, 30))).isTrue();
+  }
+
+  @Test
+  void commitMantieneLoSpostamento() {
+    salva(1L, ora(10, 0), ora(11, 0));
+
+    TransactionSynchronizationManager.initSynchronization();
+    assertThat(indice.sposta(ID_STANZA, 1L, ora(14, 0), ora(15, 0))).isTrue();
+    completaTransazione(TransactionSynchronization.STATUS_COMMITTED);
+
+    assertThat(libero(ora(10, 15), ora(10, 30))).isTrue();
+    assertThat(libero(ora(14, 15), ora(14, 30))).isFalse();
+  }
+
+  private boolean libero(LocalDateTime inizio, LocalDateTime fine) {
+    return indice.sovrapposizioni(ID_STANZA, List.of(meeting(0, inizio, fine))).isEmpty();
+  }
+
+  private void salva(Long id, LocalDateTime inizio, LocalDateTime fine) {
+    salvati.add(new Object[] {id, inizio, fine});
+  }
+
+  private static Meeting meeting(long id, LocalDateTime inizio, LocalDateTime fine) {
+    Meeting m = new Meeting();
+    m.setId(id);
+    m.setInizio(inizio);
+    m.setFine(fine);
+    return m;
+  }
+
+  private static LocalDateTime ora(int ore, int minuti) {
+    return GIORNO.plusHours(ore).plusMinutes(minuti);
+  }
+
+  private static void completaTransazione(int stato) {
+    List<TransactionSynchronization> sincronizzazioni =
+        TransactionSynchronizationManager.getSynchronizations();
+    TransactionSynchronizationManager.clearSynchronization();
+    for (TransactionSynchronization s : sincronizzazioni) {
+      s.afterCompletion(stato);
+    }
+  }
+}
@@ -239,7 +239,7 @@ class GestioneMeetingControllerUnitTest {
     // Simula un token valido
     when(validationToken.isTokenValid(any(HttpServletRequest.class))).thenReturn(true);
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     try {
@@ -266,7 +266,7 @@ class GestioneMeetingControllerUnitTest {
     when(validationToken.isTokenValid(any())).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     when(meetingService.creaScheduling(meeting, utente.getMetaId()))
@@ -392,7 +392,7 @@ class GestioneMeetingControllerUnitTest {
     when(validationToken.isTokenValid(any(HttpServletRequest.class))).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(anyString())).thenReturn(utente.getMetaId());
+    when(validationToken.getMetaId(any(HttpServletRequest.class))).thenReturn(utente.getMetaId());
 
     try {
       // vedere i metodi private testExpectedResult e sendRequest
@@ -0,0 +1,181 @@
+package com.commigo.metaclass.gestionemeeting.presenza;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/** Test della ruota delle scadenze. */
+class RuotaScadenzeTest {
+
+  private static final long TICK = 10;
+  private static final long ORIZZONTE = 100;
+
+  @Test
+  void elementoRestituitoAlTickDellaScadenza() {
+    RuotaScadenze<String> ruota = new RuotaScadenze<>(TICK, ORIZZONTE, 0);
+    ruota.aggiungi("a", 55);
+
+    assertThat(avanza(ruota, 49)).isEmpty();
+    assertThat(avanza(ruota, 55)).containsExactly("a");
+    assertThat(avanza(ruota, 200)).isEmpty();
+  }
+
+  @Test
+  void scadenzaGiaPassataRestituitaAlProssimoTick() {
+    RuotaScadenze<String> ruota = new RuotaScadenze<>(TICK, ORIZZONTE, 1000);
+    ruota.aggiungi("a", 500);
+
+    assertThat(avanza(ruota, 1009)).isEmpty();
+    assertThat(avanza(ruota, 1010)).containsExactly("a");
+  }
+
+  @Test
+  void scadenzeCasualiAttraversoPiuGiriDellaRuota() {
+    Random random = new Random(7);
+    RuotaScadenze<Integer> ruota = new RuotaScadenze<>(TICK, ORIZZONTE, 0);
+    // tick in cui ogni elemento deve essere restituito
+    Map<Integer, Long> attesi = new HashMap<>();
+    long ora = 0;
+    int prossimo = 0;
+
+    // molti giri della ruota, con avanzamenti che saltano anche più slot insieme
+    while (ora < 100 * ORIZZONTE) {
+      for (int i = random.nextInt(4); i > 0; i--) {
+        long scadenza = ora - TICK + random.nextInt((int) (ORIZZONTE + TICK) + 1);
+        // una scadenza nel tick corrente o già passata va al tick successivo
+        attesi.put(prossimo, Math.max(scadenza / TICK, ora / TICK + 1));
+        ruota.aggiungi(prossimo++, scadenza);
+      }
+      long precedente = ora;
+      ora += 1 + random.nextInt((int) (3 * TICK));
+      for (Integer e : avanza(ruota, ora)) {
+        // né prima del suo tick né dopo il primo avanzamento che lo raggiunge
+        assertThat(attesi.remove(e))
+            .isGreaterThan(precedente / TICK)
+            .isLessThanOrEqualTo(ora / TICK);
+      }
+      for (long tick : attesi.values()) {
+        assertThat(tick).isGreaterThan(ora / TICK);
+      }
+    }
+  }
+
+  @Test
+  void scadenzaOltreLOrizzonteRestituitaInAnticipoEReinserita() {
+    RuotaScadenze<String> ruota = new RuotaScadenze<>(TICK, ORIZZONTE, 0);
+    long scadenza = 10 * ORIZZONTE + 5;
+    ruota.aggiungi("a", scadenza);
+
+    List<Long> restituzioni = new ArrayList<>();
+    for (long ora = TICK; ora <= 2 * scadenza; ora += TICK) {
+      long adesso = ora;
+      ruota.avanza(
+          ora,
+          e -> {
+            restituzioni.add(adesso);
+            // come RegistroPresenze: chi non è ancora scaduto viene reinserito
+            if (scadenza > adesso) {
+              ruota.aggiungi(e, scadenza);
+            }
+          });
+    }
+
+    // la ruota copre l'orizzonte: l'elemento torna al più un tick più avanti dell'orizzonte
+    assertThat(restituzioni.get(0)).isLessThanOrEqualTo(ORIZZONTE + TICK);
+    // l'ultima restituzione è il primo avanzamento che raggiunge la scadenza
+    long ultima = restituzioni.get(restituzioni.size() - 1);
+    assertThat(ultima).isGreaterThanOrEqualTo(scadenza).isLessThan(scadenza + TICK);
+    assertThat(restituzioni.size()).isLessThanOrEqualTo((int) (scadenza / ORIZZONTE) + 1);
+  }
+
+  @Test
+  void reinserimentoDuranteLoSvuotamentoVaAlProssimoTick() {
+    RuotaScadenze<String> ruota = new RuotaScadenze<>(TICK, ORIZZONTE, 0);
+    ruota.aggiungi("a", 30);
+
+    List<String> primo = new ArrayList<>();
+    ruota.avanza(
+        30,
+        e -> {
+          primo.add(e);
+          // reinserito con una scadenza del tick in svuotamento: non deve tornare subito
+          ruota.aggiungi(e, 30);
+        });
+
+    assertThat(primo).containsExactly("a");
+    assertThat(avanza(ruota, 39)).isEmpty();
+    assertThat(avanza(ruota, 40)).containsExactly("a");
+  }
+
+  @Test
+  void inserimentiConcorrentiDuranteLAvanzamentoNonSiPerdono() throws Exception {
+    RuotaScadenze<Integer> ruota = new RuotaScadenze<>(1, ORIZZONTE, 0);
+    AtomicLong orologio = new AtomicLong();
+    AtomicInteger prossimo = new AtomicInteger();
+    AtomicBoolean fermo = new AtomicBoolean();
+    Map<Integer, AtomicInteger> restituiti = new ConcurrentHashMap<>();
+    int produttori = 4;
+    CountDownLatch via = new CountDownLatch(1);
+    List<Thread> thread = new ArrayList<>();
+
+    for (int p = 0; p < produttori; p++) {
+      Random random = new Random(p);
+      thread.add(
+          new Thread(
+              () -> {
+                try {
+                  via.await();
+                } catch (InterruptedException e) {
+                  return;
+                }
+                for (int i = 0; i < 20_000; i++) {
+                  long scadenza = orologio.get() + random.nextInt((int) ORIZZONTE);
+                  ruota.aggiungi(prossimo.getAndIncrement(), scadenza);
+                }
+              }));
+    }
+    Thread avanzamento =
+        new Thread(
+            () -> {
+              while (!fermo.get()) {
+                long ora = orologio.incrementAndGet();
+                ruota.avanza(
+                    ora,
+                    e -> restituiti.computeIfAbsent(e, k -> new AtomicInteger()).incrementAndGet());
+              }
+            });
+    thread.forEach(Thread::start);
+    avanzamento.start();
+    via.countDown();
+    for (Thread t : thread) {
+      t.join();
+    }
+    fermo.set(true);
+    avanzamento.join();
+
+    // dopo un giro completo della ruota ogni elemento è stato restituito esattamente una volta
+    ruota.avanza(
+        orologio.get() + 2 * ORIZZONTE,
+        e -> restituiti.computeIfAbsent(e, k -> new AtomicInteger()).incrementAndGet());
+    assertThat(restituiti.size()).isEqualTo(prossimo.get());
+    for (AtomicInteger volte : restituiti.values()) {
+      assertThat(volte.get()).isEqualTo(1);
+    }
+  }
+
+  private static <T> List<T> avanza(RuotaScadenze<T> ruota, long ora) {
+    List<T> restituiti = new ArrayList<>();
+    ruota.avanza(ora, restituiti::add);
+    return restituiti;
+  }
+}
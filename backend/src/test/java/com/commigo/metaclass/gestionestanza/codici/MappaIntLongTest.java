@@ -0,0 +1,92 @@
+package com.commigo.metaclass.gestionestanza.codici;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Confronta MappaIntLong con una HashMap su sequenze casuali di operazioni. */
+class MappaIntLongTest {
+
+  private static final long ASSENTE = Long.MIN_VALUE;
+
+  @Test
+  void operazioniCasualiComeHashMap() {
+    Random random = new Random(42);
+    // capacità minima: si attraversano più ridimensionamenti e il giro dell'array
+    MappaIntLong mappa = new MappaIntLong(1);
+    Map<Integer, Long> attesa = new HashMap<>();
+
+    for (int passo = 0; passo < 200_000; passo++) {
+      // chiavi poco numerose per avere collisioni, rimozioni e sostituzioni frequenti
+      int chiave = random.nextInt(2_000);
+      int operazione = random.nextInt(10);
+      if (operazione < 5) {
+        long valore = random.nextLong() & 0xFFFF;
+        mappa.put(chiave, valore);
+        attesa.put(chiave, valore);
+      } else if (operazione < 9) {
+        assertThat(mappa.remove(chiave)).isEqualTo(attesa.remove(chiave) != null);
+      } else {
+        long soglia = random.nextInt(0x10000);
+        int rimosse = mappa.removeIf(v -> v < soglia);
+        int dimensionePrima = attesa.size();
+        attesa.values().removeIf(v -> v < soglia);
+        assertThat(rimosse).isEqualTo(dimensionePrima - attesa.size());
+      }
+      assertThat(mappa.size()).isEqualTo(attesa.size());
+      if (passo % 1_000 == 0) {
+        verificaContenuto(mappa, attesa, 2_000);
+      }
+    }
+    verificaContenuto(mappa, attesa, 2_000);
+  }
+
+  @Test
+  void rimozioniSenzaRidimensionamento() {
+    MappaIntLong mappa = new MappaIntLong(8);
+    Map<Integer, Long> attesa = new HashMap<>();
+    // riempie fino al fattore di carico senza ridimensionare, poi svuota in ordine sparso
+    for (int chiave = 0; chiave < 8; chiave++) {
+      mappa.put(chiave, chiave * 10L);
+      attesa.put(chiave, chiave * 10L);
+    }
+    for (int chiave : new int[] {3, 7, 0, 5}) {
+      assertThat(mappa.remove(chiave)).isTrue();
+      attesa.remove(chiave);
+      verificaContenuto(mappa, attesa, 8);
+    }
+    assertThat(mappa.remove(3)).isFalse();
+  }
+
+  @Test
+  void clearSvuotaLaMappa() {
+    MappaIntLong mappa = new MappaIntLong(4);
+    for (int chiave = 0; chiave < 100; chiave++) {
+      mappa.put(chiave, chiave);
+    }
+    mappa.clear();
+
+    assertThat(mappa.size()).isZero();
+    assertThat(mappa.get(10, ASSENTE)).isEqualTo(ASSENTE);
+    mappa.put(10, 1L);
+    assertThat(mappa.get(10, ASSENTE)).isEqualTo(1L);
+  }
+
+  @Test
+  void chiaveNegativaRifiutata() {
+    MappaIntLong mappa = new MappaIntLong(4);
+
+    assertThatThrownBy(() -> mappa.put(-1, 0L)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static void verificaContenuto(
+      MappaIntLong mappa, Map<Integer, Long> attesa, int maxChiave) {
+    for (int chiave = 0; chiave < maxChiave; chiave++) {
+      assertThat(mappa.get(chiave, ASSENTE)).isEqualTo(attesa.getOrDefault(chiave, ASSENTE));
+    }
+  }
+}
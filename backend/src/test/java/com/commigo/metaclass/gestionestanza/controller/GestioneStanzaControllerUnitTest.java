@@ -217,7 +217,7 @@ class GestioneStanzaControllerUnitTest {
     // Simula un token valido
     when(validationToken.isTokenValid(any(HttpServletRequest.class))).thenReturn(true);
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     try {
@@ -244,7 +244,7 @@ class GestioneStanzaControllerUnitTest {
     when(validationToken.isTokenValid(any())).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     when(stanzaService.creaStanza(stanza, utente.getMetaId()))
@@ -260,7 +260,7 @@ class GestioneStanzaControllerUnitTest {
     when(validationToken.isTokenValid(any())).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     when(stanzaService.accessoStanza(stanza.getCodice(), utente.getMetaId()))
@@ -432,7 +432,7 @@ class GestioneStanzaControllerUnitTest {
     when(validationToken.isTokenValid(any(HttpServletRequest.class))).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     try {
@@ -481,7 +481,7 @@ class GestioneStanzaControllerUnitTest {
     when(validationToken.isTokenValid(any())).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     when(stanzaService.accessoStanza(any(), any()))
@@ -508,7 +508,7 @@ class GestioneStanzaControllerUnitTest {
     when(validationToken.isTokenValid(any())).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     when(stanzaService.accessoStanza(stanza.getCodice(), utente.getMetaId()))
@@ -524,7 +524,7 @@ class GestioneStanzaControllerUnitTest {
     when(validationToken.isTokenValid(any())).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     ObjectMapper objectMapper = new ObjectMapper();
@@ -552,7 +552,7 @@ class GestioneStanzaControllerUnitTest {
     when(validationToken.isTokenValid(any())).thenReturn(true);
 
     // Simula la decodifica del token e restituisce un metaId valido
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId());
 
     ObjectMapper objectMapper = new ObjectMapper();
@@ -0,0 +1,118 @@
+package com.commigo.metaclass.gestionestanza.eventi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Verifica lo scollegamento dei client lenti e di quelli degli utenti allontanati da una stanza.
+ * L'executor ha un solo thread, così i test decidono quando gli eventi vengono inviati.
+ */
+class HubEventiStanzaTest {
+
+  private static final long STANZA = 1L;
+  private static final long ALTRA_STANZA = 2L;
+  private static final int BUFFER = 4;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final HubEventiStanza hub = new HubEventiStanza(executor, BUFFER, 60_000);
+
+  @AfterEach
+  void chiudi() {
+    hub.chiudi();
+  }
+
+  @Test
+  void bufferPienoScollegaSoloIlClientLento() throws Exception {
+    CountDownLatch sblocca = blocca();
+    SseEmitter lento = hub.iscrivi(STANZA, 10L);
+    for (int i = 0; i < BUFFER; i++) {
+      hub.pubblica(evento(TipoEventoStanza.DATI_MODIFICATI, null));
+    }
+    // collegato dopo, ha ancora spazio nel buffer quando quello del primo client si riempie
+    SseEmitter veloce = hub.iscrivi(STANZA, 11L);
+    assertThat(chiuso(lento)).isFalse();
+
+    hub.pubblica(evento(TipoEventoStanza.DATI_MODIFICATI, null));
+
+    assertThat(chiuso(lento)).isTrue();
+    sblocca.countDown();
+    attendiInvii();
+    assertThat(chiuso(veloce)).isFalse();
+
+    // il client lento non riceve più eventi, gli altri sì
+    hub.pubblica(evento(TipoEventoStanza.NOME_MODIFICATO, null));
+    attendiInvii();
+    assertThat(chiuso(veloce)).isFalse();
+  }
+
+  @Test
+  void kickChiudeSoloICanaliDellUtente() throws Exception {
+    verificaAllontanamento(TipoEventoStanza.KICK);
+  }
+
+  @Test
+  void banChiudeSoloICanaliDellUtente() throws Exception {
+    verificaAllontanamento(TipoEventoStanza.BAN);
+  }
+
+  private void verificaAllontanamento(TipoEventoStanza tipo) throws Exception {
+    SseEmitter primo = hub.iscrivi(STANZA, 10L);
+    SseEmitter secondo = hub.iscrivi(STANZA, 10L);
+    SseEmitter altroUtente = hub.iscrivi(STANZA, 11L);
+    SseEmitter altraStanza = hub.iscrivi(ALTRA_STANZA, 10L);
+
+    hub.pubblica(evento(tipo, 10L));
+    attendiInvii();
+
+    assertThat(chiuso(primo)).isTrue();
+    assertThat(chiuso(secondo)).isTrue();
+    assertThat(chiuso(altroUtente)).isFalse();
+    assertThat(chiuso(altraStanza)).isFalse();
+
+    // gli altri client continuano a ricevere gli eventi della stanza
+    hub.pubblica(evento(TipoEventoStanza.DATI_MODIFICATI, null));
+    attendiInvii();
+    assertThat(chiuso(altroUtente)).isFalse();
+  }
+
+  private static EventoStanza evento(TipoEventoStanza tipo, Long idUtente) {
+    return new EventoStanza(tipo, STANZA, idUtente, null);
+  }
+
+  /** Occupa l'unico thread dell'executor finché il latch restituito non viene sbloccato. */
+  private CountDownLatch blocca() {
+    CountDownLatch sblocca = new CountDownLatch(1);
+    executor.execute(
+        () -> {
+          try {
+            sblocca.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+    return sblocca;
+  }
+
+  /** Attende che l'executor abbia eseguito tutti gli invii accodati finora. */
+  private void attendiInvii() throws Exception {
+    executor.submit(() -> {}).get(5, TimeUnit.SECONDS);
+  }
+
+  /** Un canale completato dal server rifiuta ogni nuovo invio. */
+  private static boolean chiuso(SseEmitter emitter) {
+    try {
+      emitter.send(SseEmitter.event().comment("verifica"));
+      return false;
+    } catch (IllegalStateException | IOException e) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,256 @@
+package com.commigo.metaclass.gestionestanza.posti;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.commigo.metaclass.gestionestanza.posti.AmmissioneStanze.Esito;
+import com.commigo.metaclass.gestionestanza.repository.StatoPartecipazioneRepository;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/** Test dell'ammissione nelle stanze: posti, lista d'attesa, prenotazioni e transazioni. */
+class AmmissioneStanzeTest {
+
+  private static final Long ID_STANZA = 1L;
+  private static final int THREAD = 64;
+
+  private StatoPartecipazioneRepository statoPartecipazioneRepository;
+  private ExecutorService esecutore;
+
+  @BeforeEach
+  void setUp() {
+    // stanza vuota: il conteggio dal database restituisce 0 posti occupati
+    statoPartecipazioneRepository = mock(StatoPartecipazioneRepository.class);
+    esecutore = Executors.newFixedThreadPool(THREAD);
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    esecutore.shutdownNow();
+    esecutore.awaitTermination(10, TimeUnit.SECONDS);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  void ingressiConcorrentiNonSuperanoIPosti() throws Exception {
+    AmmissioneStanze ammissione = new AmmissioneStanze(statoPartecipazioneRepository, 100, 60000);
+
+    Map<Esito, Integer> esiti = entraInParallelo(ammissione, 10, false, "u");
+
+    assertThat(esiti.get(Esito.AMMESSO)).isEqualTo(10);
+    assertThat(esiti.get(Esito.PIENA)).isEqualTo(THREAD - 10);
+  }
+
+  @Test
+  void ingressiConcorrentiRiempionoLaListaDAttesa() throws Exception {
+    AmmissioneStanze ammissione = new AmmissioneStanze(statoPartecipazioneRepository, 20, 60000);
+
+    Map<Esito, Integer> esiti = entraInParallelo(ammissione, 10, true, "u");
+
+    assertThat(esiti.get(Esito.AMMESSO)).isEqualTo(10);
+    assertThat(esiti.get(Esito.IN_CODA)).isEqualTo(20);
+    assertThat(esiti.get(Esito.PIENA)).isEqualTo(THREAD - 30);
+  }
+
+  @Test
+  void uscitaConcorrenteLiberaIPosti() throws Exception {
+    AmmissioneStanze ammissione = new AmmissioneStanze(statoPartecipazioneRepository, 100, 60000);
+    entraInParallelo(ammissione, 10, false, "u");
+
+    // kick e ban di tutti i presenti, con altri utenti che provano ad entrare nel frattempo
+    CountDownLatch via = new CountDownLatch(1);
+    List<Future<?>> uscite = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      uscite.add(
+          esecutore.submit(
+              () -> {
+                via.await();
+                ammissione.libera(ID_STANZA);
+                return null;
+              }));
+    }
+    List<Future<Esito>> ingressi = new ArrayList<>();
+    for (int i = 0; i < THREAD - 10; i++) {
+      String metaId = "v" + i;
+      ingressi.add(
+          esecutore.submit(
+              () -> {
+                via.await();
+                return ammissione.ammetti(ID_STANZA, 10, metaId, false);
+              }));
+    }
+    via.countDown();
+    for (Future<?> f : uscite) {
+      f.get();
+    }
+    int ammessi = 0;
+    for (Future<Esito> f : ingressi) {
+      if (f.get() == Esito.AMMESSO) {
+        ammessi++;
+      }
+    }
+
+    // i posti liberati sono stati presi al massimo una volta ciascuno
+    assertThat(ammessi).isLessThanOrEqualTo(10);
+    int liberi = 0;
+    while (ammissione.ammetti(ID_STANZA, 10, "w" + liberi, false) == Esito.AMMESSO) {
+      liberi++;
+    }
+    assertThat(ammessi + liberi).isEqualTo(10);
+  }
+
+  @Test
+  void postoLiberatoPrenotatoPerIlPrimoInLista() {
+    AmmissioneStanze ammissione = new AmmissioneStanze(statoPartecipazioneRepository, 100, 60000);
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "a", true)).isEqualTo(Esito.AMMESSO);
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "b", true)).isEqualTo(Esito.IN_CODA);
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "c", true)).isEqualTo(Esito.IN_CODA);
+
+    ammissione.libera(ID_STANZA);
+
+    // il posto è di b: né c né chi non può attendere lo ottengono
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "c", true)).isEqualTo(Esito.IN_CODA);
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "d", false)).isEqualTo(Esito.PIENA);
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "b", true)).isEqualTo(Esito.AMMESSO);
+
+    ammissione.libera(ID_STANZA);
+
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "c", true)).isEqualTo(Esito.AMMESSO);
+  }
+
+  @Test
+  void richiesteRipetuteNonDuplicanoLUtenteInLista() {
+    AmmissioneStanze ammissione = new AmmissioneStanze(statoPartecipazioneRepository, 2, 60000);
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "a", true)).isEqualTo(Esito.AMMESSO);
+
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "b", true)).isEqualTo(Esito.IN_CODA);
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "b", true)).isEqualTo(Esito.IN_CODA);
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "c", true)).isEqualTo(Esito.IN_CODA);
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "d", true)).isEqualTo(Esito.PIENA);
+  }
+
+  @Test
+  void prenotazioneScadutaPassaAlSuccessivo() {
+    // le prenotazioni scadono subito
+    AmmissioneStanze ammissione = new AmmissioneStanze(statoPartecipazioneRepository, 100, 0);
+    ammissione.ammetti(ID_STANZA, 1, "a", true);
+    ammissione.ammetti(ID_STANZA, 1, "b", true);
+    ammissione.ammetti(ID_STANZA, 1, "c", true);
+    ammissione.libera(ID_STANZA);
+
+    ammissione.rimuoviPrenotazioniScadute();
+
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "b", true)).isEqualTo(Esito.IN_CODA);
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "c", true)).isEqualTo(Esito.AMMESSO);
+  }
+
+  @Test
+  void prenotazioneScadutaSenzaAttesaLiberaIlPosto() {
+    AmmissioneStanze ammissione = new AmmissioneStanze(statoPartecipazioneRepository, 100, 0);
+    ammissione.ammetti(ID_STANZA, 1, "a", true);
+    ammissione.ammetti(ID_STANZA, 1, "b", true);
+    ammissione.libera(ID_STANZA);
+
+    ammissione.rimuoviPrenotazioniScadute();
+
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "d", false)).isEqualTo(Esito.AMMESSO);
+  }
+
+  @Test
+  void rollbackLiberaIlPosto() {
+    AmmissioneStanze ammissione = new AmmissioneStanze(statoPartecipazioneRepository, 100, 60000);
+
+    TransactionSynchronizationManager.initSynchronization();
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "a", false)).isEqualTo(Esito.AMMESSO);
+    completaTransazione(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "b", false)).isEqualTo(Esito.AMMESSO);
+  }
+
+  @Test
+  void commitMantieneIlPosto() {
+    AmmissioneStanze ammissione = new AmmissioneStanze(statoPartecipazioneRepository, 100, 60000);
+
+    TransactionSynchronizationManager.initSynchronization();
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "a", false)).isEqualTo(Esito.AMMESSO);
+    completaTransazione(TransactionSynchronization.STATUS_COMMITTED);
+
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "b", false)).isEqualTo(Esito.PIENA);
+  }
+
+  @Test
+  void liberaAttendeIlCommit() {
+    AmmissioneStanze ammissione = new AmmissioneStanze(statoPartecipazioneRepository, 100, 60000);
+    ammissione.ammetti(ID_STANZA, 1, "a", false);
+
+    TransactionSynchronizationManager.initSynchronization();
+    ammissione.libera(ID_STANZA);
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "b", false)).isEqualTo(Esito.PIENA);
+    completaTransazione(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+    // il kick annullato non ha liberato il posto
+    assertThat(ammissione.ammetti(ID_STANZA, 1, "b", false)).isEqualTo(Esito.PIENA);
+  }
+
+  @Test
+  void postiOccupatiCaricatiAllAvvio() {
+    List<Object[]> righe = Collections.singletonList(new Object[] {ID_STANZA, 2L, 3});
+    when(statoPartecipazioneRepository.contaPostiOccupati()).thenReturn(righe);
+    AmmissioneStanze ammissione = new AmmissioneStanze(statoPartecipazioneRepository, 100, 60000);
+
+    ammissione.init();
+
+    assertThat(ammissione.ammetti(ID_STANZA, 3, "a", false)).isEqualTo(Esito.AMMESSO);
+    assertThat(ammissione.ammetti(ID_STANZA, 3, "b", false)).isEqualTo(Esito.PIENA);
+  }
+
+  private Map<Esito, Integer> entraInParallelo(
+      AmmissioneStanze ammissione, int maxPosti, boolean accoda, String prefisso)
+      throws Exception {
+    CountDownLatch via = new CountDownLatch(1);
+    List<Future<Esito>> risultati = new ArrayList<>();
+    for (int i = 0; i < THREAD; i++) {
+      String metaId = prefisso + i;
+      risultati.add(
+          esecutore.submit(
+              () -> {
+                via.await();
+                return ammissione.ammetti(ID_STANZA, maxPosti, metaId, accoda);
+              }));
+    }
+    via.countDown();
+    Map<Esito, Integer> esiti = new ConcurrentHashMap<>();
+    for (Esito esito : Esito.values()) {
+      esiti.put(esito, 0);
+    }
+    for (Future<Esito> f : risultati) {
+      esiti.merge(f.get(), 1, Integer::sum);
+    }
+    return esiti;
+  }
+
+  private static void completaTransazione(int stato) {
+    List<TransactionSynchronization> sincronizzazioni =
+        TransactionSynchronizationManager.getSynchronizations();
+    TransactionSynchronizationManager.clearSynchronization();
+    for (TransactionSynchronization s : sincronizzazioni) {
+      s.afterCompletion(stato);
+    }
+  }
+}
@@ -0,0 +1,239 @@
+package com.commigo.metaclass.gestionestimaduratameeting.modello;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Confronta le predizioni dei modelli compilati da CompilatorePmml con quelle dell'evaluator JPMML
+ * sullo stesso file, e verifica il ritorno a JPMML per i modelli non compilabili.
+ */
+class CompilatorePmmlTest {
+
+  private static final String INTESTAZIONE =
+      """
+      <?xml version="1.0" encoding="UTF-8"?>
+      <PMML xmlns="http://www.dmg.org/PMML-4_4" version="4.4">
+        <Header/>
+        <DataDictionary numberOfFields="5">
+          <DataField name="Age" optype="continuous" dataType="double"/>
+          <DataField name="Gender" optype="continuous" dataType="double"/>
+          <DataField name="ImmersionLevel" optype="continuous" dataType="double"/>
+          <DataField name="MotionSickness" optype="continuous" dataType="double"/>
+          <DataField name="Duration" optype="continuous" dataType="double"/>
+        </DataDictionary>
+      """;
+
+  /** Schema dei modelli di primo livello, che dichiarano anche il target. */
+  private static final String SCHEMA_CON_TARGET =
+      """
+      <MiningSchema>
+        <MiningField name="Duration" usageType="target"/>
+        <MiningField name="Age"/>
+        <MiningField name="Gender"/>
+        <MiningField name="ImmersionLevel"/>
+        <MiningField name="MotionSickness"/>
+      </MiningSchema>
+      """;
+
+  /** Schema dei segmenti. */
+  private static final String SCHEMA =
+      """
+      <MiningSchema>
+        <MiningField name="Age"/>
+        <MiningField name="Gender"/>
+        <MiningField name="ImmersionLevel"/>
+        <MiningField name="MotionSickness"/>
+      </MiningSchema>
+      """;
+
+  /** Albero con divisioni "minore o uguale" e "maggiore" su due livelli. */
+  private static final String ALBERO_MINORE_UGUALE =
+      """
+      <TreeModel functionName="regression" splitCharacteristic="binarySplit">
+        %s
+        <Node><True/>
+          <Node>
+            <SimplePredicate field="Age" operator="lessOrEqual" value="30"/>
+            <Node score="12.5">
+              <SimplePredicate field="MotionSickness" operator="lessOrEqual" value="4"/>
+            </Node>
+            <Node score="7.25">
+              <SimplePredicate field="MotionSickness" operator="greaterThan" value="4"/>
+            </Node>
+          </Node>
+          <Node>
+            <SimplePredicate field="Age" operator="greaterThan" value="30"/>
+            <Node score="20">
+              <SimplePredicate field="ImmersionLevel" operator="lessOrEqual" value="2.5"/>
+            </Node>
+            <Node score="26.5"><True/></Node>
+          </Node>
+        </Node>
+      </TreeModel>
+      """
+          .formatted(SCHEMA);
+
+  /** Albero con divisioni "maggiore o uguale" e "minore", scritte con il ramo destro per primo. */
+  private static final String ALBERO_MAGGIORE_UGUALE =
+      """
+      <TreeModel functionName="regression" splitCharacteristic="binarySplit">
+        %s
+        <Node><True/>
+          <Node>
+            <SimplePredicate field="Gender" operator="greaterOrEqual" value="1"/>
+            <Node score="3">
+              <SimplePredicate field="Age" operator="greaterOrEqual" value="45"/>
+            </Node>
+            <Node score="-1.5">
+              <SimplePredicate field="Age" operator="lessThan" value="45"/>
+            </Node>
+          </Node>
+          <Node score="0.75">
+            <SimplePredicate field="Gender" operator="lessThan" value="1"/>
+          </Node>
+        </Node>
+      </TreeModel>
+      """
+          .formatted(SCHEMA);
+
+  @TempDir Path cartella;
+
+  @Test
+  void forestaMediaCoincideConJpmml() throws IOException {
+    File file = scrivi("media.pmml", foresta("average"));
+
+    ModelloDurata modello = CompilatorePmml.carica(file);
+
+    assertThat(modello).isInstanceOf(ForestaCasuale.class);
+    assertThat(((ForestaCasuale) modello).getNumeroAlberi()).isEqualTo(3);
+    confronta(modello, ModelloPmml.carica(file));
+  }
+
+  @Test
+  void forestaSommaCoincideConJpmml() throws IOException {
+    File file = scrivi("somma.pmml", foresta("sum"));
+
+    ModelloDurata modello = CompilatorePmml.carica(file);
+
+    assertThat(modello).isInstanceOf(ForestaCasuale.class);
+    confronta(modello, ModelloPmml.carica(file));
+  }
+
+  @Test
+  void forestaEsportataCoincideConJpmml() throws IOException {
+    Random random = new Random(7);
+    AlberoRegressione[] alberi = new AlberoRegressione[5];
+    for (int i = 0; i < alberi.length; i++) {
+      AlberoRegressione.Costruttore nodi = new AlberoRegressione.Costruttore();
+      alberoCasuale(nodi, random, 4);
+      alberi[i] = nodi.costruisci();
+    }
+    File file = cartella.resolve("esportata.pmml").toFile();
+    EsportatorePmml.esporta(new ForestaCasuale(alberi), "test", file);
+
+    ModelloDurata modello = CompilatorePmml.carica(file);
+
+    assertThat(modello).isInstanceOf(ForestaCasuale.class);
+    assertThat(((ForestaCasuale) modello).getNumeroAlberi()).isEqualTo(alberi.length);
+    confronta(modello, ModelloPmml.carica(file));
+  }
+
+  @Test
+  void combinazioneNonSupportataUsaJpmml() throws IOException {
+    // la mediana degli alberi non è compilabile: il modello resta valutato da JPMML
+    File file = scrivi("mediana.pmml", foresta("median"));
+
+    ModelloDurata modello = CompilatorePmml.carica(file);
+
+    assertThat(modello).isInstanceOf(ModelloPmml.class);
+    confronta(modello, ModelloPmml.carica(file));
+  }
+
+  @Test
+  void divisioneNonBinariaUsaJpmml() throws IOException {
+    String albero =
+        """
+        <TreeModel functionName="regression" splitCharacteristic="multiSplit">
+          %s
+          <Node><True/>
+            <Node score="1"><SimplePredicate field="Age" operator="lessThan" value="20"/></Node>
+            <Node score="2"><SimplePredicate field="Age" operator="lessThan" value="40"/></Node>
+            <Node score="3"><True/></Node>
+          </Node>
+        </TreeModel>
+        """
+            .formatted(SCHEMA_CON_TARGET);
+    File file = scrivi("multisplit.pmml", INTESTAZIONE + albero + "</PMML>");
+
+    ModelloDurata modello = CompilatorePmml.carica(file);
+
+    assertThat(modello).isInstanceOf(ModelloPmml.class);
+    confronta(modello, ModelloPmml.carica(file));
+  }
+
+  private static String foresta(String metodo) {
+    return INTESTAZIONE
+        + "<MiningModel functionName=\"regression\">"
+        + SCHEMA_CON_TARGET
+        + "<Segmentation multipleModelMethod=\""
+        + metodo
+        + "\">"
+        + "<Segment id=\"1\"><True/>"
+        + ALBERO_MINORE_UGUALE
+        + "</Segment>"
+        + "<Segment id=\"2\"><True/>"
+        + ALBERO_MAGGIORE_UGUALE
+        + "</Segment>"
+        + "<Segment id=\"3\"><True/>"
+        + ALBERO_MINORE_UGUALE
+        + "</Segment>"
+        + "</Segmentation></MiningModel></PMML>";
+  }
+
+  /** Costruisce un albero casuale con soglie intere e semi-intere, per provare i casi limite. */
+  private static int alberoCasuale(AlberoRegressione.Costruttore nodi, Random random, int altezza) {
+    if (altezza == 0 || random.nextInt(4) == 0) {
+      return nodi.nuovoNodo(random.nextInt(600) / 10.0);
+    }
+    int nodo = nodi.nuovoNodo(0);
+    int feature = random.nextInt(ModelloDurata.NUMERO_FEATURE);
+    nodi.dividi(nodo, feature, random.nextInt(20) * 2.5);
+    int sinistro = alberoCasuale(nodi, random, altezza - 1);
+    int destro = alberoCasuale(nodi, random, altezza - 1);
+    nodi.collega(nodo, sinistro, destro);
+    return nodo;
+  }
+
+  /** Confronta i modelli anche sui valori delle soglie, dove contano gli operatori. */
+  private static void confronta(ModelloDurata modello, ModelloPmml jpmml) {
+    double[] riga = new double[ModelloDurata.NUMERO_FEATURE];
+    for (double eta = 10; eta <= 80; eta += 2.5) {
+      for (int genere = 0; genere <= 2; genere++) {
+        for (double immersion = 0; immersion <= 6; immersion += 0.5) {
+          for (double motion = 0; motion <= 10; motion += 1) {
+            riga[ModelloDurata.ETA] = eta;
+            riga[ModelloDurata.GENERE] = genere;
+            riga[ModelloDurata.IMMERSION_LEVEL] = immersion;
+            riga[ModelloDurata.MOTION_SICKNESS] = motion;
+            assertThat(modello.predici(riga)).isCloseTo(jpmml.predici(riga), within(1e-9));
+          }
+        }
+      }
+    }
+  }
+
+  private File scrivi(String nome, String contenuto) throws IOException {
+    Path file = cartella.resolve(nome);
+    Files.writeString(file, contenuto, StandardCharsets.UTF_8);
+    return file.toFile();
+  }
+}
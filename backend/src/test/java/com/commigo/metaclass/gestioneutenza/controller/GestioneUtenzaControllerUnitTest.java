@@ -175,7 +175,7 @@ class GestioneUtenzaControllerUnitTest {
 
     // Mock your token validation result
     when(validationToken.isTokenValid(any(HttpServletRequest.class))).thenReturn(true);
-    when(jwtTokenUtil.getmetaIdFromToken(validationToken.getToken()))
+    when(validationToken.getMetaId(any(HttpServletRequest.class)))
         .thenReturn(utente.getMetaId()); // Mock your service method result
     when(utenzaService.modificaDatiUtente(Mockito.anyString(), Mockito.anyMap())).thenReturn(true);
 